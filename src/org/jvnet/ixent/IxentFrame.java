@@ -44,6 +44,7 @@ import org.jvnet.ixent.algorithms.geometry.delaunay.DelaunayManager;
 import org.jvnet.ixent.algorithms.geometry.delaunay.DelaunayManagerFactory;
 import org.jvnet.ixent.algorithms.geometry.delaunay.locator.PointLocator;
 import org.jvnet.ixent.algorithms.geometry.delaunay.locator.PointLocatorFactory;
+import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurveFactory;
 import org.jvnet.ixent.algorithms.graphics.colorreduction.ColorReductor;
 import org.jvnet.ixent.algorithms.graphics.colorreduction.ColorReductorFactory;
 import org.jvnet.ixent.algorithms.graphics.edgedetection.EdgeDetector;
@@ -177,6 +178,8 @@ public class IxentFrame extends JFrame implements ImageCallback {
 					Tesselator tesselator = panelControls2.getTesselator();
 					int tesselationCellRadius = panelControls2
 							.getTesselationCellRadius();
+					SpaceFillingCurveFactory.Kind tesselationCenterPlacement = panelControls2
+							.getTesselationCenterPlacement();
 					DelaunayManager tesselatorTriangulator = panelControls2
 							.getTesselationTriangulator();
 					PointLocator tesselatorPointLocator = panelControls2
@@ -193,6 +196,7 @@ public class IxentFrame extends JFrame implements ImageCallback {
 					PointLocatorFactory.instance = tesselatorPointLocator;
 					DelaunayManagerFactory.instance = tesselatorTriangulator;
 					TesselatorFactory.instance = tesselator;
+					SpaceFillingCurveFactory.kind = tesselationCenterPlacement;
 					TurbulenceGeneratorFactory.instance = turbulenceGenerator;
 
 					DisplacementLinkInfo displacementLinkInfo = new DisplacementLinkInfo(
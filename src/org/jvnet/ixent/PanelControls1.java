@@ -36,6 +36,8 @@ import javax.swing.*;
 import org.jvnet.ixent.algorithms.graphics.colorreduction.ColorReductor;
 import org.jvnet.ixent.algorithms.graphics.colorreduction.MedianCutColorReductor;
 import org.jvnet.ixent.algorithms.graphics.edgedetection.CannyEdgeDetector;
+import org.jvnet.ixent.algorithms.graphics.edgedetection.CannyEdgeDetectorParallel;
+import org.jvnet.ixent.algorithms.graphics.edgedetection.ColorCannyEdgeDetector;
 import org.jvnet.ixent.algorithms.graphics.edgedetection.EdgeDetector;
 import org.jvnet.ixent.algorithms.graphics.segmentation.Segmentator;
 import org.jvnet.ixent.algorithms.graphics.segmentation.multiscale.*;
@@ -66,6 +68,10 @@ public class PanelControls1 extends JPanel {
 		MapComboBoxModel<String, EdgeDetector> comboEdgeDetectionAlgorithmModel = new MapComboBoxModel<String, EdgeDetector>();
 		comboEdgeDetectionAlgorithmModel.addPair("Canny",
 				new CannyEdgeDetector());
+		comboEdgeDetectionAlgorithmModel.addPair("Canny Parallel",
+				new CannyEdgeDetectorParallel());
+		comboEdgeDetectionAlgorithmModel.addPair("Canny Color",
+				new ColorCannyEdgeDetector());
 		this.comboEdgeDetectionAlgorithm
 				.setModel(comboEdgeDetectionAlgorithmModel);
 		this.comboEdgeDetectionAlgorithm.setRenderer(new MapComboBoxRenderer(
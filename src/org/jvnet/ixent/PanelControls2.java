@@ -35,6 +35,7 @@ import javax.swing.*;
 
 import org.jvnet.ixent.algorithms.geometry.delaunay.*;
 import org.jvnet.ixent.algorithms.geometry.delaunay.locator.*;
+import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurveFactory;
 import org.jvnet.ixent.algorithms.graphics.tesselation.*;
 import org.jvnet.ixent.algorithms.graphics.turbulence.PerlinTurbulenceGenerator;
 import org.jvnet.ixent.algorithms.graphics.turbulence.TurbulenceGenerator;
@@ -47,6 +48,7 @@ public class PanelControls2 extends JPanel {
 
 	private JComboBox comboDisplacementTurbulenceAlgorithm;
 	private JComboBox comboTesselationAlgorithm;
+	private JComboBox comboTesselationCenterPlacement;
 	private JComboBox comboTesselationPointLocatorAlgorithm;
 	private JComboBox comboTesselationTriangulationAlgorithm;
 	private JSpinner spinnerDisplacementMainDirection;
@@ -72,6 +74,8 @@ public class PanelControls2 extends JPanel {
 				new PointLocatorLocalConflict());
 		comboTesselationPointLocatorAlgorithmModel.addPair("Quad Tree",
 				new PointLocatorQuadTree());
+		comboTesselationPointLocatorAlgorithmModel.addPair("Hilbert Walk",
+				new PointLocatorHilbertWalk());
 		this.comboTesselationPointLocatorAlgorithm
 				.setModel(comboTesselationPointLocatorAlgorithmModel);
 		this.comboTesselationPointLocatorAlgorithm
@@ -82,6 +86,12 @@ public class PanelControls2 extends JPanel {
 				new DelaunayManagerEdgeFlip());
 		comboTesselationTriangulationAlgorithmModel.addPair("Watson",
 				new DelaunayManagerWatson());
+		comboTesselationTriangulationAlgorithmModel.addPair("Half Edge",
+				new DelaunayManagerHalfEdge());
+		comboTesselationTriangulationAlgorithmModel.addPair("Parallel",
+				new DelaunayManagerParallel());
+		comboTesselationTriangulationAlgorithmModel.addPair("Dynamic",
+				new DelaunayManagerDynamic());
 		this.comboTesselationTriangulationAlgorithm
 				.setModel(comboTesselationTriangulationAlgorithmModel);
 		this.comboTesselationTriangulationAlgorithm
@@ -98,6 +108,17 @@ public class PanelControls2 extends JPanel {
 		this.comboTesselationAlgorithm.setRenderer(new MapComboBoxRenderer(
 				this.comboTesselationAlgorithm));
 		this.comboTesselationAlgorithm.setSelectedIndex(2);
+		this.comboTesselationCenterPlacement = new JComboBox();
+		MapComboBoxModel<String, SpaceFillingCurveFactory.Kind> comboTesselationCenterPlacementModel = new MapComboBoxModel<String, SpaceFillingCurveFactory.Kind>();
+		comboTesselationCenterPlacementModel.addPair("Structure",
+				SpaceFillingCurveFactory.Kind.STRUCTURE);
+		comboTesselationCenterPlacementModel.addPair("Poisson Disk",
+				SpaceFillingCurveFactory.Kind.POISSON_DISK);
+		this.comboTesselationCenterPlacement
+				.setModel(comboTesselationCenterPlacementModel);
+		this.comboTesselationCenterPlacement
+				.setRenderer(new MapComboBoxRenderer(
+						this.comboTesselationCenterPlacement));
 		SpinnerNumberModel tesselationCellRadiusModel = new SpinnerNumberModel();
 		tesselationCellRadiusModel.setMinimum(5);
 		tesselationCellRadiusModel.setMaximum(30);
@@ -105,6 +126,8 @@ public class PanelControls2 extends JPanel {
 		this.spinnerTesselationCellRadius.setModel(tesselationCellRadiusModel);
 		formBuilder.append("Algorithm", this.comboTesselationAlgorithm);
 		formBuilder.append("Cell radius", this.spinnerTesselationCellRadius);
+		formBuilder.append("Center placement",
+				this.comboTesselationCenterPlacement);
 		formBuilder.append("Triangulation algorithm",
 				this.comboTesselationTriangulationAlgorithm);
 		formBuilder.append("Point locator algorithm",
@@ -160,6 +183,12 @@ public class PanelControls2 extends JPanel {
 		return model.getSelectedItem().value;
 	}
 
+	public SpaceFillingCurveFactory.Kind getTesselationCenterPlacement() {
+		MapComboBoxModel<String, SpaceFillingCurveFactory.Kind> model = (MapComboBoxModel<String, SpaceFillingCurveFactory.Kind>) this.comboTesselationCenterPlacement
+				.getModel();
+		return model.getSelectedItem().value;
+	}
+
 	public PointLocator getTesselationPointLocator() {
 		MapComboBoxModel<String, PointLocator> model = (MapComboBoxModel<String, PointLocator>) this.comboTesselationPointLocatorAlgorithm
 				.getModel();
@@ -0,0 +1,299 @@
+package org.jvnet.ixent.algorithms.geometry.delaunay;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+import org.jvnet.ixent.graphics.objects.Triangle;
+import org.jvnet.ixent.graphics.objects.TriangleEdge;
+import org.jvnet.ixent.math.coord.Rectangle2D;
+import org.jvnet.ixent.math.coord.Vertex2D;
+
+/**
+ * Dynamic Delaunay triangulation. After the initial triangulation, single
+ * vertices can be inserted and removed, and only the triangles around the
+ * changed vertex are rebuilt. Each change reports the removed and the added
+ * triangles, so that the triangles of a tesselation can be updated in time
+ * proportional to the change.<br>
+ * <p/>
+ * The triangulation is stored in {@link HalfEdgeTriangulation}, and the
+ * <code>Triangle</code> objects are kept in sync with its triangle slots.
+ * The triangles that have a vertex of the enclosing super triangle are not
+ * reported.
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class DelaunayManagerDynamic implements DelaunayManager {
+    private HalfEdgeTriangulation triangulation;
+
+    /**
+     * Triangulation vertex index for each vertex
+     */
+    private Map<Vertex2D, Integer> vertexIndices;
+
+    /**
+     * Vertex for each triangulation vertex index
+     */
+    private List<Vertex2D> vertices;
+
+    /**
+     * <code>Triangle</code> for each triangle slot, null for free slots and
+     * for triangles with a super triangle vertex
+     */
+    private List<Triangle> triangles;
+
+    /**
+     * <code>TriangleEdge</code> for each half-edge of the triangles in
+     * <code>triangles</code>
+     */
+    private List<TriangleEdge> edges;
+
+    private Logger logger;
+
+    /**
+     * Constructor.
+     */
+    public DelaunayManagerDynamic() {
+        this.logger = Logger.getLogger(
+                DelaunayManagerDynamic.class.getPackage().getName());
+    }
+
+    /**
+     * Initialize this manager with a list of 2-D points. The vertices that
+     * are inserted later should lie not too far from the bounding rectangle
+     * of these points.
+     *
+     * @param vertices triangulation vertices
+     */
+    public void init(Vertex2D[] vertices) {
+        double minX = 0.0, minY = 0.0, maxX = 0.0, maxY = 0.0;
+        if (vertices.length > 0) {
+            minX = Double.MAX_VALUE;
+            minY = Double.MAX_VALUE;
+            maxX = -Double.MAX_VALUE;
+            maxY = -Double.MAX_VALUE;
+            for (Vertex2D vertex : vertices) {
+                minX = Math.min(minX, vertex.getX());
+                minY = Math.min(minY, vertex.getY());
+                maxX = Math.max(maxX, vertex.getX());
+                maxY = Math.max(maxY, vertex.getY());
+            }
+        }
+        this.init(vertices, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Initialize this manager with a list of 2-D points and the area that
+     * will hold all the vertices that are inserted later
+     *
+     * @param vertices          triangulation vertices
+     * @param boundingRectangle area of all the vertices
+     * @throws IllegalArgumentException if the bounding rectangle is null
+     */
+    public void init(Vertex2D[] vertices, Rectangle2D boundingRectangle) {
+        if (boundingRectangle == null) {
+            throw new IllegalArgumentException(
+                    "Can't pass null bounding rectangle");
+        }
+        this.init(vertices, boundingRectangle.getPointTL().getX(),
+                boundingRectangle.getPointTL().getY(),
+                boundingRectangle.getPointBR().getX(),
+                boundingRectangle.getPointBR().getY());
+    }
+
+    private void init(Vertex2D[] vertices, double minX, double minY,
+                      double maxX, double maxY) {
+        long time0 = System.currentTimeMillis();
+        int count = vertices.length;
+        this.triangulation = new HalfEdgeTriangulation(minX, minY, maxX,
+                maxY, count);
+        this.vertexIndices = new HashMap<Vertex2D, Integer>();
+        this.vertices = new ArrayList<Vertex2D>();
+        this.triangles = new ArrayList<Triangle>();
+        this.edges = new ArrayList<TriangleEdge>();
+        for (int i = 0; i < HalfEdgeTriangulation.SUPER_VERTEX_COUNT; i++) {
+            this.vertices.add(null);
+        }
+
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = vertices[i].getX();
+            ys[i] = vertices[i].getY();
+        }
+        int[] order = DelaunayManagerHalfEdge.getInsertionOrder(xs, ys, minX,
+                minY, maxX, maxY);
+        for (int index : order) {
+            if (!this.insertVertex(vertices[index])) {
+                this.logger.warning("Vertex " + index + " "
+                        + vertices[index].toString()
+                        + " duplicates another vertex in Delaunay");
+            }
+        }
+
+        // create the triangles once for the final triangulation
+        for (int t = 0; t < this.triangulation.getSlotCount(); t++) {
+            if (this.triangulation.isLive(t)) {
+                this.createTriangle(t);
+            }
+        }
+        long time1 = System.currentTimeMillis();
+        this.logger.fine("Delaunay triangulation (" + count
+                + " vertices) : " + (time1 - time0));
+    }
+
+    /**
+     * Insert vertex into the triangulation without updating the triangles
+     *
+     * @param vertex vertex
+     * @return <code>true</code> if the vertex was inserted
+     */
+    private boolean insertVertex(Vertex2D vertex) {
+        int index = this.triangulation.insert(vertex.getX(), vertex.getY());
+        if (index < 0) {
+            return false;
+        }
+        while (this.vertices.size() <= index) {
+            this.vertices.add(null);
+        }
+        this.vertices.set(index, vertex);
+        this.vertexIndices.put(vertex, index);
+        return true;
+    }
+
+    /**
+     * Create <code>Triangle</code> for the specified triangle slot, sharing
+     * the edges with the existing neighbouring triangles
+     *
+     * @param slot triangle slot
+     * @return the new triangle, null if the triangle has a super triangle
+     *         vertex
+     */
+    private Triangle createTriangle(int slot) {
+        while (this.triangles.size() < this.triangulation.getSlotCount()) {
+            this.triangles.add(null);
+            this.edges.add(null);
+            this.edges.add(null);
+            this.edges.add(null);
+        }
+        if (this.triangulation.isOuter(slot)) {
+            this.triangles.set(slot, null);
+            return null;
+        }
+        for (int e = 3 * slot; e < 3 * slot + 3; e++) {
+            int twin = this.triangulation.getTwin(e);
+            TriangleEdge edge = null;
+            if ((twin >= 0) && (this.triangles.get(twin / 3) != null)) {
+                edge = this.edges.get(twin);
+            }
+            if (edge == null) {
+                edge = new TriangleEdge(false, this.vertices
+                        .get(this.triangulation.getOrigin(e)), this.vertices
+                        .get(this.triangulation.getOrigin(
+                        HalfEdgeTriangulation.next(e))));
+            }
+            this.edges.set(e, edge);
+        }
+        Triangle triangle = new Triangle(this.edges.get(3 * slot),
+                this.edges.get(3 * slot + 1), this.edges.get(3 * slot + 2));
+        this.triangles.set(slot, triangle);
+        return triangle;
+    }
+
+    /**
+     * Update the triangles after the last insertion or removal
+     *
+     * @return the change
+     */
+    private TriangulationChange updateTriangles() {
+        List<Triangle> removed = new LinkedList<Triangle>();
+        for (int i = 0; i < this.triangulation.getRemovedCount(); i++) {
+            int slot = this.triangulation.getRemovedTriangle(i);
+            Triangle triangle = this.triangles.get(slot);
+            if (triangle != null) {
+                triangle.removeAsNeighbour();
+                removed.add(triangle);
+                this.triangles.set(slot, null);
+            }
+        }
+        List<Triangle> added = new LinkedList<Triangle>();
+        for (int i = 0; i < this.triangulation.getCreatedCount(); i++) {
+            Triangle triangle = this.createTriangle(
+                    this.triangulation.getCreatedTriangle(i));
+            if (triangle != null) {
+                added.add(triangle);
+            }
+        }
+        return new TriangulationChange(removed, added);
+    }
+
+    /**
+     * Insert vertex into the triangulation
+     *
+     * @param vertex vertex to insert
+     * @return the change of the triangulation, <code>null</code> if the
+     *         vertex duplicates an existing vertex or lies too far from the
+     *         initial bounding rectangle
+     * @throws IllegalArgumentException if the vertex is null or is already
+     *                                  in the triangulation
+     * @throws IllegalStateException    if this manager is not initialized
+     */
+    public TriangulationChange addVertex(Vertex2D vertex) {
+        if (vertex == null) {
+            throw new IllegalArgumentException("Can't pass null vertex");
+        }
+        if (this.triangulation == null) {
+            throw new IllegalStateException("Manager is not initialized");
+        }
+        if (this.vertexIndices.containsKey(vertex)) {
+            throw new IllegalArgumentException("Vertex " + vertex.toString()
+                    + " is already in the triangulation");
+        }
+        if (!this.insertVertex(vertex)) {
+            return null;
+        }
+        return this.updateTriangles();
+    }
+
+    /**
+     * Remove vertex from the triangulation
+     *
+     * @param vertex vertex to remove
+     * @return the change of the triangulation
+     * @throws IllegalArgumentException if the vertex is null or is not in the
+     *                                  triangulation
+     * @throws IllegalStateException    if this manager is not initialized
+     */
+    public TriangulationChange removeVertex(Vertex2D vertex) {
+        if (vertex == null) {
+            throw new IllegalArgumentException("Can't pass null vertex");
+        }
+        if (this.triangulation == null) {
+            throw new IllegalStateException("Manager is not initialized");
+        }
+        Integer index = this.vertexIndices.remove(vertex);
+        if (index == null) {
+            throw new IllegalArgumentException("Vertex " + vertex.toString()
+                    + " is not in the triangulation");
+        }
+        this.triangulation.remove(index);
+        this.vertices.set(index, null);
+        return this.updateTriangles();
+    }
+
+    /**
+     * Get a list of all triangles in this triangulation
+     *
+     * @return triangle list
+     */
+    public List<Triangle> getTriangulation() {
+        List<Triangle> result = new LinkedList<Triangle>();
+        if (this.triangles != null) {
+            for (Triangle triangle : this.triangles) {
+                if (triangle != null) {
+                    result.add(triangle);
+                }
+            }
+        }
+        return result;
+    }
+}
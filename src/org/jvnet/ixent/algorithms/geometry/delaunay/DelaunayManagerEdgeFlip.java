@@ -385,8 +385,11 @@ public final class DelaunayManagerEdgeFlip implements DelaunayManager {
     public List<Triangle> getTriangulation() {
         long time0 = System.currentTimeMillis();
         if (this.originalVertices != null) {
+            int[] order = this.pointLocator.getInsertionOrder();
             for (int i = 0; i < this.originalVertices.length; i++) {
-                if (!this.addSingleVertex(this.originalVertices[i], i)) {
+                int index = (order == null) ? i : order[i];
+                if (!this.addSingleVertex(this.originalVertices[index],
+                        index)) {
                     return null;
                 }
             }
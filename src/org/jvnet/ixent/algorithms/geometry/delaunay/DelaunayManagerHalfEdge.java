@@ -0,0 +1,175 @@
+package org.jvnet.ixent.algorithms.geometry.delaunay;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+import org.jvnet.ixent.algorithms.geometry.spacefilling.HilbertOrder;
+import org.jvnet.ixent.graphics.objects.Triangle;
+import org.jvnet.ixent.graphics.objects.TriangleEdge;
+import org.jvnet.ixent.math.coord.Vertex2D;
+
+/**
+ * Bowyer-Watson implementation of Delaunay triangulation on compact
+ * index-based half-edge arrays. No objects are created per triangle during
+ * the triangulation - the <code>Triangle</code> and <code>TriangleEdge</code>
+ * objects are created only for the final triangulation.<br>
+ * <p/>
+ * The vertices are inserted in biased randomized insertion order (BRIO): the
+ * vertices are shuffled and split into rounds of doubling size, and each round
+ * is sorted along the Hilbert curve. The containing triangle of each vertex is
+ * found by walking from the previously created triangle.
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class DelaunayManagerHalfEdge implements DelaunayManager {
+    /**
+     * Seed for shuffling the vertices. Fixed so that the triangulation of
+     * the same input is always the same.
+     */
+    private static final long SEED = 0x5DEECE66DL;
+
+    /**
+     * Rounds smaller than this are merged into the first round
+     */
+    private static final int MIN_ROUND_SIZE = 64;
+
+    private Vertex2D[] originalVertices;
+
+    private Logger logger;
+
+    /**
+     * Constructor.
+     */
+    public DelaunayManagerHalfEdge() {
+        this.logger = Logger.getLogger(
+                DelaunayManagerHalfEdge.class.getPackage().getName());
+    }
+
+    /**
+     * Initialize this manager with a list of 2-D points
+     *
+     * @param vertices triangulation vertices
+     */
+    public void init(Vertex2D[] vertices) {
+        this.originalVertices = vertices;
+    }
+
+    /**
+     * Compute the biased randomized insertion order of the vertices
+     *
+     * @param xs   X coordinates of the vertices
+     * @param ys   Y coordinates of the vertices
+     * @param minX minimal X of the vertices
+     * @param minY minimal Y of the vertices
+     * @param maxX maximal X of the vertices
+     * @param maxY maximal Y of the vertices
+     * @return vertex indices in insertion order
+     */
+    static int[] getInsertionOrder(double[] xs, double[] ys, double minX,
+                                   double minY, double maxX, double maxY) {
+        int count = xs.length;
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(SEED);
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+        // each round is a random sample twice as large as the previous one
+        int end = count;
+        while (end > 0) {
+            int start = (end > MIN_ROUND_SIZE) ? end / 2 : 0;
+            HilbertOrder.sort(order, start, end, xs, ys, minX, minY, maxX,
+                    maxY);
+            end = start;
+        }
+        return order;
+    }
+
+    /**
+     * Create a list of triangles that do not touch the super triangle. The
+     * adjacent triangles share their common <code>TriangleEdge</code>.
+     *
+     * @param triangulation triangulation
+     * @param vertices      the vertices of the triangulation (by triangulation
+     *                      vertex index)
+     * @return list of triangles
+     */
+    static List<Triangle> createTriangles(HalfEdgeTriangulation triangulation,
+                                          Vertex2D[] vertices) {
+        List<Triangle> result = new LinkedList<Triangle>();
+        TriangleEdge[] edges = new TriangleEdge[3 * triangulation
+                .getSlotCount()];
+        for (int t = 0; t < triangulation.getSlotCount(); t++) {
+            if (!triangulation.isLive(t) || triangulation.isOuter(t)) {
+                continue;
+            }
+            for (int e = 3 * t; e < 3 * t + 3; e++) {
+                int twin = triangulation.getTwin(e);
+                if ((twin >= 0) && (edges[twin] != null)) {
+                    edges[e] = edges[twin];
+                }
+                else {
+                    edges[e] = new TriangleEdge(false,
+                            vertices[triangulation.getOrigin(e)],
+                            vertices[triangulation.getOrigin(
+                                    HalfEdgeTriangulation.next(e))]);
+                }
+            }
+            result.add(new Triangle(edges[3 * t], edges[3 * t + 1],
+                    edges[3 * t + 2]));
+        }
+        return result;
+    }
+
+    /**
+     * Get a list of all triangles in this triangulation
+     *
+     * @return triangle list
+     */
+    public List<Triangle> getTriangulation() {
+        long time0 = System.currentTimeMillis();
+        int count = this.originalVertices.length;
+        if (count == 0) {
+            return new LinkedList<Triangle>();
+        }
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            xs[i] = this.originalVertices[i].getX();
+            ys[i] = this.originalVertices[i].getY();
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        HalfEdgeTriangulation triangulation = new HalfEdgeTriangulation(minX,
+                minY, maxX, maxY, count);
+        Vertex2D[] vertices = new Vertex2D[count
+                + HalfEdgeTriangulation.SUPER_VERTEX_COUNT];
+        int[] order = getInsertionOrder(xs, ys, minX, minY, maxX, maxY);
+        for (int index : order) {
+            int vertex = triangulation.insert(xs[index], ys[index]);
+            if (vertex < 0) {
+                this.logger.warning("Vertex " + index + " "
+                        + this.originalVertices[index].toString()
+                        + " duplicates another vertex in Delaunay");
+                continue;
+            }
+            vertices[vertex] = this.originalVertices[index];
+        }
+
+        List<Triangle> result = createTriangles(triangulation, vertices);
+        long time1 = System.currentTimeMillis();
+        this.logger.fine("Delaunay triangulation (" + count
+                + " vertices) : " + (time1 - time0));
+        return result;
+    }
+}
@@ -0,0 +1,463 @@
+package org.jvnet.ixent.algorithms.geometry.delaunay;
+
+import static org.jvnet.ixent.math.MathConstants.EPS;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+import org.jvnet.ixent.graphics.objects.Triangle;
+import org.jvnet.ixent.graphics.objects.TriangleEdge;
+import org.jvnet.ixent.math.coord.Vertex2D;
+import org.jvnet.ixent.util.BandExecutor;
+
+/**
+ * Parallel implementation of Delaunay triangulation for large vertex sets.
+ * The vertices are split into vertical strips of equal vertex count, and the
+ * strips are triangulated concurrently on a fixed thread pool.<br>
+ * <p/>
+ * A triangle of a strip whose circumcircle lies strictly inside the strip
+ * can't have a vertex of another strip in its circumcircle, so it belongs
+ * to the final triangulation. All the other triangles are discarded, and
+ * their vertices (the seam vertices) are triangulated again. A vertex that
+ * is not a seam vertex is surrounded only by final triangles, so every
+ * missing triangle has all its vertices on the seams and appears in the seam
+ * triangulation. The seam triangles that lie outside the final strip
+ * triangles complete the triangulation. The result is the same as of the
+ * sequential {@link DelaunayManagerHalfEdge}.
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class DelaunayManagerParallel implements DelaunayManager {
+    /**
+     * Vertex sets smaller than this are triangulated sequentially, and the
+     * strips are never smaller than this
+     */
+    private static final int MIN_PARTITION_SIZE = 4096;
+
+    private Vertex2D[] originalVertices;
+
+    private int threadCount;
+
+    private Logger logger;
+
+    /**
+     * Triangulation of a single strip
+     */
+    private static final class Partition {
+        /**
+         * Indices of the strip vertices in the original vertex array
+         */
+        private int[] indices;
+
+        /**
+         * Maximal X of the vertices in the strips to the left
+         */
+        private double minX;
+
+        /**
+         * Minimal X of the vertices in the strips to the right
+         */
+        private double maxX;
+
+        private HalfEdgeTriangulation triangulation;
+
+        /**
+         * Original vertex index for each triangulation vertex
+         */
+        private int[] originalIndices;
+
+        /**
+         * For each triangle slot, whether it belongs to the final
+         * triangulation
+         */
+        private boolean[] isFinal;
+
+        private int duplicateCount;
+
+        /**
+         * @param x X coordinate
+         * @return <code>true</code> if the X coordinate lies strictly inside
+         *         this strip
+         */
+        private boolean isInside(double x) {
+            return (x > this.minX) && (x < this.maxX);
+        }
+    }
+
+    /**
+     * Task for triangulating a single strip
+     */
+    private static final class PartitionTask implements Runnable {
+        private Partition partition;
+        private double[] xs;
+        private double[] ys;
+
+        private PartitionTask(Partition pPartition, double[] pXs,
+                              double[] pYs) {
+            this.partition = pPartition;
+            this.xs = pXs;
+            this.ys = pYs;
+        }
+
+        public void run() {
+            triangulate(this.partition, this.xs, this.ys);
+        }
+    }
+
+    /**
+     * Constructor.
+     */
+    public DelaunayManagerParallel() {
+        this.logger = Logger.getLogger(
+                DelaunayManagerParallel.class.getPackage().getName());
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Initialize this manager with a list of 2-D points
+     *
+     * @param vertices triangulation vertices
+     */
+    public void init(Vertex2D[] vertices) {
+        this.originalVertices = vertices;
+    }
+
+    /**
+     * Set number of threads for triangulating the strips. The vertices are
+     * split into twice as many strips.
+     *
+     * @param pThreadCount number of threads
+     * @throws IllegalArgumentException if the number of threads is not
+     *                                  positive
+     */
+    public void setThreadCount(int pThreadCount) {
+        if (pThreadCount < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive");
+        }
+        this.threadCount = pThreadCount;
+    }
+
+    /**
+     * Triangulate a single strip and mark its final triangles
+     *
+     * @param partition strip
+     * @param xs        X coordinates of all the vertices
+     * @param ys        Y coordinates of all the vertices
+     */
+    private static void triangulate(Partition partition, double[] xs,
+                                    double[] ys) {
+        int count = partition.indices.length;
+        double[] partXs = new double[count];
+        double[] partYs = new double[count];
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            partXs[i] = xs[partition.indices[i]];
+            partYs[i] = ys[partition.indices[i]];
+            minX = Math.min(minX, partXs[i]);
+            minY = Math.min(minY, partYs[i]);
+            maxX = Math.max(maxX, partXs[i]);
+            maxY = Math.max(maxY, partYs[i]);
+        }
+
+        HalfEdgeTriangulation triangulation = new HalfEdgeTriangulation(minX,
+                minY, maxX, maxY, count);
+        partition.originalIndices = new int[count
+                + HalfEdgeTriangulation.SUPER_VERTEX_COUNT];
+        Arrays.fill(partition.originalIndices, -1);
+        int[] order = DelaunayManagerHalfEdge.getInsertionOrder(partXs,
+                partYs, minX, minY, maxX, maxY);
+        for (int index : order) {
+            int vertex = triangulation.insert(partXs[index], partYs[index]);
+            if (vertex < 0) {
+                partition.duplicateCount++;
+                continue;
+            }
+            partition.originalIndices[vertex] = partition.indices[index];
+        }
+        partition.triangulation = triangulation;
+
+        partition.isFinal = new boolean[triangulation.getSlotCount()];
+        for (int t = 0; t < triangulation.getSlotCount(); t++) {
+            if (!triangulation.isLive(t) || triangulation.isOuter(t)) {
+                continue;
+            }
+            int e = 3 * t;
+            double ax = triangulation.getX(triangulation.getOrigin(e));
+            double ay = triangulation.getY(triangulation.getOrigin(e));
+            double bx = triangulation.getX(triangulation.getOrigin(e + 1)) - ax;
+            double by = triangulation.getY(triangulation.getOrigin(e + 1)) - ay;
+            double cx = triangulation.getX(triangulation.getOrigin(e + 2)) - ax;
+            double cy = triangulation.getY(triangulation.getOrigin(e + 2)) - ay;
+            double d = 2.0 * (bx * cy - by * cx);
+            if (Math.abs(d) < EPS) {
+                continue;
+            }
+            double b2 = bx * bx + by * by;
+            double c2 = cx * cx + cy * cy;
+            double centerX = (cy * b2 - by * c2) / d;
+            double centerY = (bx * c2 - cx * b2) / d;
+            double radius = Math.sqrt(centerX * centerX + centerY * centerY);
+            centerX += ax;
+            partition.isFinal[t] = (centerX - radius > partition.minX + EPS)
+                    && (centerX + radius < partition.maxX - EPS);
+        }
+    }
+
+    /**
+     * Checks whether the point lies inside a final triangle of one of the
+     * strips
+     *
+     * @param partitions strips
+     * @param px         X coordinate of the point
+     * @param py         Y coordinate of the point
+     * @return <code>true</code> if the point is covered by a final triangle
+     */
+    private static boolean isCovered(Partition[] partitions, double px,
+                                     double py) {
+        for (Partition partition : partitions) {
+            if (!partition.isInside(px)) {
+                continue;
+            }
+            int t = partition.triangulation.locate(px, py);
+            if ((t >= 0) && partition.isFinal[t]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add the final triangles of a strip to the result. Edges between two
+     * final triangles are shared through the half-edge twins, and the other
+     * edges are shared through the map, since they may be shared with seam
+     * triangles.
+     *
+     * @param result    triangle list
+     * @param edges     edges of previously added triangles by their key
+     * @param partition strip
+     */
+    private void addFinalTriangles(List<Triangle> result,
+                                   Map<Long, TriangleEdge> edges,
+                                   Partition partition) {
+        HalfEdgeTriangulation triangulation = partition.triangulation;
+        int[] originalIndices = partition.originalIndices;
+        TriangleEdge[] triangleEdges = new TriangleEdge[3 * triangulation
+                .getSlotCount()];
+        for (int t = 0; t < triangulation.getSlotCount(); t++) {
+            if (!triangulation.isLive(t) || !partition.isFinal[t]) {
+                continue;
+            }
+            for (int e = 3 * t; e < 3 * t + 3; e++) {
+                int twin = triangulation.getTwin(e);
+                int index1 = originalIndices[triangulation.getOrigin(e)];
+                int index2 = originalIndices[triangulation
+                        .getOrigin(HalfEdgeTriangulation.next(e))];
+                if ((twin < 0) || !partition.isFinal[twin / 3]) {
+                    triangleEdges[e] = this.getEdge(edges, index1, index2);
+                }
+                else if (triangleEdges[twin] != null) {
+                    triangleEdges[e] = triangleEdges[twin];
+                }
+                else {
+                    triangleEdges[e] = new TriangleEdge(false,
+                            this.originalVertices[index1],
+                            this.originalVertices[index2]);
+                }
+            }
+            result.add(new Triangle(triangleEdges[3 * t],
+                    triangleEdges[3 * t + 1], triangleEdges[3 * t + 2]));
+        }
+    }
+
+    /**
+     * Add triangle to the result, sharing the edges with the previously
+     * added triangles through the map
+     *
+     * @param result   triangle list
+     * @param edges    edges of previously added triangles by their key
+     * @param index1   original index of the first vertex
+     * @param index2   original index of the second vertex
+     * @param index3   original index of the third vertex
+     */
+    private void addTriangle(List<Triangle> result,
+                             Map<Long, TriangleEdge> edges, int index1,
+                             int index2, int index3) {
+        result.add(new Triangle(this.getEdge(edges, index1, index2),
+                this.getEdge(edges, index2, index3),
+                this.getEdge(edges, index3, index1)));
+    }
+
+    private TriangleEdge getEdge(Map<Long, TriangleEdge> edges, int index1,
+                                 int index2) {
+        long key = (long) Math.min(index1, index2)
+                * this.originalVertices.length + Math.max(index1, index2);
+        TriangleEdge edge = edges.get(key);
+        if (edge == null) {
+            edge = new TriangleEdge(false, this.originalVertices[index1],
+                    this.originalVertices[index2]);
+            edges.put(key, edge);
+        }
+        return edge;
+    }
+
+    /**
+     * Get a list of all triangles in this triangulation
+     *
+     * @return triangle list
+     */
+    public List<Triangle> getTriangulation() {
+        int count = this.originalVertices.length;
+        int partitionCount = Math.min(2 * this.threadCount, count
+                / MIN_PARTITION_SIZE);
+        if (partitionCount < 2) {
+            DelaunayManagerHalfEdge sequential = new DelaunayManagerHalfEdge();
+            sequential.init(this.originalVertices);
+            return sequential.getTriangulation();
+        }
+
+        long time0 = System.currentTimeMillis();
+        final double[] xs = new double[count];
+        double[] ys = new double[count];
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        Integer[] sorted = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = this.originalVertices[i].getX();
+            ys[i] = this.originalVertices[i].getY();
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(xs[o1], xs[o2]);
+            }
+        });
+
+        // split into strips. The outermost strips are bounded by the
+        // bounding rectangle so that the final triangles never reach the
+        // super triangle
+        Partition[] partitions = new Partition[partitionCount];
+        for (int p = 0; p < partitionCount; p++) {
+            int from = (int) ((long) count * p / partitionCount);
+            int to = (int) ((long) count * (p + 1) / partitionCount);
+            Partition partition = new Partition();
+            partition.indices = new int[to - from];
+            for (int i = from; i < to; i++) {
+                partition.indices[i - from] = sorted[i];
+            }
+            partition.minX = (p == 0) ? minX : xs[sorted[from - 1]];
+            partition.maxX = (p == (partitionCount - 1)) ? maxX
+                    : xs[sorted[to]];
+            partitions[p] = partition;
+        }
+
+        ExecutorService executor = Executors
+                .newFixedThreadPool(this.threadCount);
+        try {
+            List<Future<?>> futures = new LinkedList<Future<?>>();
+            for (Partition partition : partitions) {
+                futures.add(executor.submit(new PartitionTask(partition, xs,
+                        ys)));
+            }
+            BandExecutor.waitFor(futures);
+        } finally {
+            executor.shutdown();
+        }
+        long time1 = System.currentTimeMillis();
+
+        // collect the final triangles and the seam vertices
+        List<Triangle> result = new LinkedList<Triangle>();
+        Map<Long, TriangleEdge> edges = new HashMap<Long, TriangleEdge>();
+        boolean[] isSeam = new boolean[count];
+        int seamCount = 0;
+        int duplicateCount = 0;
+        for (Partition partition : partitions) {
+            duplicateCount += partition.duplicateCount;
+            this.addFinalTriangles(result, edges, partition);
+            HalfEdgeTriangulation triangulation = partition.triangulation;
+            int[] originalIndices = partition.originalIndices;
+            for (int t = 0; t < triangulation.getSlotCount(); t++) {
+                if (!triangulation.isLive(t) || partition.isFinal[t]) {
+                    continue;
+                }
+                int e = 3 * t;
+                for (int i = e; i < e + 3; i++) {
+                    int index = originalIndices[triangulation.getOrigin(i)];
+                    if ((index >= 0) && !isSeam[index]) {
+                        isSeam[index] = true;
+                        seamCount++;
+                    }
+                }
+            }
+        }
+
+        // triangulate the seam vertices
+        int[] seamIndices = new int[seamCount];
+        double[] seamXs = new double[seamCount];
+        double[] seamYs = new double[seamCount];
+        int seamIndex = 0;
+        for (int i = 0; i < count; i++) {
+            if (isSeam[i]) {
+                seamIndices[seamIndex] = i;
+                seamXs[seamIndex] = xs[i];
+                seamYs[seamIndex] = ys[i];
+                seamIndex++;
+            }
+        }
+        // same bounding rectangle (and super triangle) as the sequential
+        // triangulation of all the vertices
+        HalfEdgeTriangulation seamTriangulation = new HalfEdgeTriangulation(
+                minX, minY, maxX, maxY, seamCount);
+        int[] seamOriginalIndices = new int[seamCount
+                + HalfEdgeTriangulation.SUPER_VERTEX_COUNT];
+        int[] order = DelaunayManagerHalfEdge.getInsertionOrder(seamXs,
+                seamYs, minX, minY, maxX, maxY);
+        for (int index : order) {
+            int vertex = seamTriangulation.insert(seamXs[index], seamYs[index]);
+            if (vertex < 0) {
+                duplicateCount++;
+                continue;
+            }
+            seamOriginalIndices[vertex] = seamIndices[index];
+        }
+        for (int t = 0; t < seamTriangulation.getSlotCount(); t++) {
+            if (!seamTriangulation.isLive(t) || seamTriangulation.isOuter(t)) {
+                continue;
+            }
+            int e = 3 * t;
+            int v1 = seamTriangulation.getOrigin(e);
+            int v2 = seamTriangulation.getOrigin(e + 1);
+            int v3 = seamTriangulation.getOrigin(e + 2);
+            // the seam triangle lies either completely inside or completely
+            // outside the final triangles - check its mass center
+            double centerX = (seamTriangulation.getX(v1)
+                    + seamTriangulation.getX(v2) + seamTriangulation.getX(v3))
+                    / 3.0;
+            double centerY = (seamTriangulation.getY(v1)
+                    + seamTriangulation.getY(v2) + seamTriangulation.getY(v3))
+                    / 3.0;
+            if (isCovered(partitions, centerX, centerY)) {
+                continue;
+            }
+            this.addTriangle(result, edges, seamOriginalIndices[v1],
+                    seamOriginalIndices[v2], seamOriginalIndices[v3]);
+        }
+
+        if (duplicateCount > 0) {
+            this.logger.warning(duplicateCount
+                    + " vertices duplicate other vertices in Delaunay");
+        }
+        long time2 = System.currentTimeMillis();
+        this.logger.fine("Delaunay triangulation (" + count + " vertices, "
+                + partitionCount + " strips, " + seamCount
+                + " seam vertices) : " + (time1 - time0) + " + "
+                + (time2 - time1));
+        return result;
+    }
+}
@@ -0,0 +1,807 @@
+package org.jvnet.ixent.algorithms.geometry.delaunay;
+
+import static org.jvnet.ixent.math.MathConstants.EPS;
+
+import java.util.Arrays;
+
+/**
+ * Delaunay triangulation stored in compact index-based half-edge arrays.
+ * Each triangle <i>t</i> consists of the three half-edges <i>3t</i>,
+ * <i>3t+1</i> and <i>3t+2</i> in counter-clockwise order. For each half-edge
+ * the arrays hold its origin vertex and its twin half-edge in the adjacent
+ * triangle (-1 if there is no adjacent triangle). The slots of removed
+ * triangles and the indices of removed vertices are reused.<br>
+ * <p/>
+ * The triangulation starts with a "super triangle" (vertices 0, 1 and 2)
+ * that encloses the specified bounding rectangle, and the vertices are added
+ * by Bowyer-Watson insertion. The containing triangle is found by walking
+ * from the last created triangle, so inserting the vertices in spatially
+ * coherent order takes (amortized) constant time per location.
+ *
+ * @author Kirill Grouchnikov
+ */
+final class HalfEdgeTriangulation {
+    /**
+     * Number of vertices of the super triangle
+     */
+    static final int SUPER_VERTEX_COUNT = 3;
+
+    /**
+     * Size of the super triangle relative to the bounding rectangle
+     */
+    private static final double SUPER_TRIANGLE_FACTOR = 20.0;
+
+    private double[] xs;
+    private double[] ys;
+
+    /**
+     * Number of allocated vertex indices (live and free)
+     */
+    private int vertexCount;
+
+    private int[] freeVertices;
+    private int freeVertexCount;
+
+    /**
+     * One outgoing half-edge of each vertex
+     */
+    private int[] vertexEdges;
+
+    /**
+     * Origin vertex of each half-edge, -1 for half-edges of free triangle
+     * slots
+     */
+    private int[] origins;
+
+    /**
+     * Twin of each half-edge, -1 if none
+     */
+    private int[] twins;
+
+    /**
+     * Number of allocated triangle slots (live and free)
+     */
+    private int slotCount;
+
+    private int[] freeSlots;
+    private int freeCount;
+
+    /**
+     * The triangle to start walks from
+     */
+    private int lastTriangle;
+
+    // state of the random walk
+    private int walkSeed = 0x2545F491;
+
+    // insertion buffers
+    private int[] cavity = new int[16];
+    private int cavityCount;
+    private int[] stack = new int[16];
+    private int[] marks;
+    private int markStamp;
+    private int[] boundaryEdges = new int[16];
+    private int boundaryCount;
+    private int[] fanByVertex;
+
+    // triangles removed and created by the last insertion or removal
+    private int[] removedTriangles = new int[16];
+    private int removedCount;
+    private int[] createdTriangles = new int[16];
+    private int createdCount;
+
+    /**
+     * Construct triangulation that contains only the super triangle
+     *
+     * @param minX             minimal X of the area that will hold the
+     *                         vertices
+     * @param minY             minimal Y of the area that will hold the
+     *                         vertices
+     * @param maxX             maximal X of the area that will hold the
+     *                         vertices
+     * @param maxY             maximal Y of the area that will hold the
+     *                         vertices
+     * @param expectedVertices expected number of vertices
+     */
+    HalfEdgeTriangulation(double minX, double minY, double maxX, double maxY,
+                          int expectedVertices) {
+        int vertexCapacity = Math.max(expectedVertices, 1) + SUPER_VERTEX_COUNT;
+        this.xs = new double[vertexCapacity];
+        this.ys = new double[vertexCapacity];
+        this.vertexEdges = new int[vertexCapacity];
+        this.fanByVertex = new int[vertexCapacity];
+        int triangleCapacity = 2 * vertexCapacity;
+        this.origins = new int[3 * triangleCapacity];
+        this.twins = new int[3 * triangleCapacity];
+        this.marks = new int[triangleCapacity];
+        this.freeSlots = new int[16];
+        this.freeVertices = new int[16];
+
+        double centerX = (minX + maxX) / 2.0;
+        double centerY = (minY + maxY) / 2.0;
+        double size = Math.max(Math.max(maxX - minX, maxY - minY), 1.0)
+                * SUPER_TRIANGLE_FACTOR;
+        this.addVertex(centerX - size, centerY - size);
+        this.addVertex(centerX + size, centerY - size);
+        this.addVertex(centerX, centerY + size);
+        int t = this.allocateTriangle();
+        this.setTriangle(t, 0, 1, 2);
+        this.twins[3 * t] = -1;
+        this.twins[3 * t + 1] = -1;
+        this.twins[3 * t + 2] = -1;
+        this.lastTriangle = t;
+    }
+
+    /**
+     * Returns the next half-edge in the same triangle
+     *
+     * @param edge half-edge
+     * @return the next (counter-clockwise) half-edge of its triangle
+     */
+    static int next(int edge) {
+        return ((edge % 3) == 2) ? edge - 2 : edge + 1;
+    }
+
+    /**
+     * Returns the previous half-edge in the same triangle
+     *
+     * @param edge half-edge
+     * @return the previous (counter-clockwise) half-edge of its triangle
+     */
+    static int prev(int edge) {
+        return ((edge % 3) == 0) ? edge + 2 : edge - 1;
+    }
+
+    /**
+     * Orientation test
+     *
+     * @return positive value if the three points are in counter-clockwise
+     *         order, negative value if they are in clockwise order and zero
+     *         if they lie on one line
+     */
+    static double orient(double ax, double ay, double bx, double by,
+                         double cx, double cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    /**
+     * In-circle test
+     *
+     * @return positive value if the point <i>p</i> lies inside the circle
+     *         through the counter-clockwise points <i>a</i>, <i>b</i> and
+     *         <i>c</i>, negative value if it lies outside and zero if it lies
+     *         on the circle
+     */
+    static double inCircle(double ax, double ay, double bx, double by,
+                           double cx, double cy, double px, double py) {
+        double adx = ax - px;
+        double ady = ay - py;
+        double bdx = bx - px;
+        double bdy = by - py;
+        double cdx = cx - px;
+        double cdy = cy - py;
+        return (adx * adx + ady * ady) * (bdx * cdy - cdx * bdy)
+                + (bdx * bdx + bdy * bdy) * (cdx * ady - adx * cdy)
+                + (cdx * cdx + cdy * cdy) * (adx * bdy - bdx * ady);
+    }
+
+    /**
+     * @return number of vertex indices (including the super triangle
+     *         vertices). Some of the indices may be free
+     */
+    int getVertexCount() {
+        return this.vertexCount;
+    }
+
+    /**
+     * @return number of triangle slots. Some of the slots may be free
+     */
+    int getSlotCount() {
+        return this.slotCount;
+    }
+
+    /**
+     * @param triangle triangle slot
+     * @return <code>true</code> if the slot holds a live triangle
+     */
+    boolean isLive(int triangle) {
+        return (this.origins[3 * triangle] >= 0);
+    }
+
+    /**
+     * @param edge half-edge
+     * @return origin vertex of the half-edge
+     */
+    int getOrigin(int edge) {
+        return this.origins[edge];
+    }
+
+    /**
+     * @param edge half-edge
+     * @return twin half-edge, -1 if none
+     */
+    int getTwin(int edge) {
+        return this.twins[edge];
+    }
+
+    /**
+     * @param vertex vertex index
+     * @return X coordinate of the vertex
+     */
+    double getX(int vertex) {
+        return this.xs[vertex];
+    }
+
+    /**
+     * @param vertex vertex index
+     * @return Y coordinate of the vertex
+     */
+    double getY(int vertex) {
+        return this.ys[vertex];
+    }
+
+    /**
+     * @param vertex vertex index
+     * @return one outgoing half-edge of the vertex
+     */
+    int getVertexEdge(int vertex) {
+        return this.vertexEdges[vertex];
+    }
+
+    /**
+     * @param triangle triangle slot
+     * @return <code>true</code> if one of the triangle vertices belongs to
+     *         the super triangle
+     */
+    boolean isOuter(int triangle) {
+        int e = 3 * triangle;
+        return (this.origins[e] < SUPER_VERTEX_COUNT)
+                || (this.origins[e + 1] < SUPER_VERTEX_COUNT)
+                || (this.origins[e + 2] < SUPER_VERTEX_COUNT);
+    }
+
+    /**
+     * @param vertex vertex index
+     * @return <code>true</code> if the vertex is in the triangulation (it
+     *         was inserted and not removed)
+     */
+    boolean isVertexLive(int vertex) {
+        return (vertex >= 0) && (vertex < this.vertexCount)
+                && (this.vertexEdges[vertex] >= 0);
+    }
+
+    /**
+     * @return number of triangles removed by the last insertion or removal
+     */
+    int getRemovedCount() {
+        return this.removedCount;
+    }
+
+    /**
+     * @param index index in 0..getRemovedCount()-1 range
+     * @return slot of triangle removed by the last insertion or removal. The
+     *         slot may hold one of the created triangles
+     */
+    int getRemovedTriangle(int index) {
+        return this.removedTriangles[index];
+    }
+
+    /**
+     * @return number of triangles created by the last insertion or removal
+     */
+    int getCreatedCount() {
+        return this.createdCount;
+    }
+
+    /**
+     * @param index index in 0..getCreatedCount()-1 range
+     * @return slot of triangle created by the last insertion or removal
+     */
+    int getCreatedTriangle(int index) {
+        return this.createdTriangles[index];
+    }
+
+    /**
+     * Add vertex without connecting it to triangles, reusing free vertex
+     * indices first
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return index of the new vertex
+     */
+    private int addVertex(double x, double y) {
+        if (this.freeVertexCount > 0) {
+            int vertex = this.freeVertices[--this.freeVertexCount];
+            this.xs[vertex] = x;
+            this.ys[vertex] = y;
+            this.vertexEdges[vertex] = -1;
+            return vertex;
+        }
+        if (this.vertexCount == this.xs.length) {
+            int newCapacity = 2 * this.vertexCount;
+            double[] newXs = new double[newCapacity];
+            double[] newYs = new double[newCapacity];
+            int[] newVertexEdges = new int[newCapacity];
+            int[] newFanByVertex = new int[newCapacity];
+            System.arraycopy(this.xs, 0, newXs, 0, this.vertexCount);
+            System.arraycopy(this.ys, 0, newYs, 0, this.vertexCount);
+            System.arraycopy(this.vertexEdges, 0, newVertexEdges, 0,
+                    this.vertexCount);
+            this.xs = newXs;
+            this.ys = newYs;
+            this.vertexEdges = newVertexEdges;
+            this.fanByVertex = newFanByVertex;
+        }
+        this.xs[this.vertexCount] = x;
+        this.ys[this.vertexCount] = y;
+        this.vertexEdges[this.vertexCount] = -1;
+        return this.vertexCount++;
+    }
+
+    /**
+     * Allocate triangle slot, reusing free slots first
+     *
+     * @return triangle slot
+     */
+    private int allocateTriangle() {
+        if (this.freeCount > 0) {
+            return this.freeSlots[--this.freeCount];
+        }
+        if (3 * (this.slotCount + 1) > this.origins.length) {
+            int newCapacity = 2 * this.slotCount;
+            int[] newOrigins = new int[3 * newCapacity];
+            int[] newTwins = new int[3 * newCapacity];
+            int[] newMarks = new int[newCapacity];
+            System.arraycopy(this.origins, 0, newOrigins, 0,
+                    3 * this.slotCount);
+            System.arraycopy(this.twins, 0, newTwins, 0, 3 * this.slotCount);
+            System.arraycopy(this.marks, 0, newMarks, 0, this.slotCount);
+            this.origins = newOrigins;
+            this.twins = newTwins;
+            this.marks = newMarks;
+        }
+        return this.slotCount++;
+    }
+
+    /**
+     * Free triangle slot
+     *
+     * @param triangle triangle slot
+     */
+    private void freeTriangle(int triangle) {
+        if (this.freeCount == this.freeSlots.length) {
+            int[] newFreeSlots = new int[2 * this.freeCount];
+            System.arraycopy(this.freeSlots, 0, newFreeSlots, 0,
+                    this.freeCount);
+            this.freeSlots = newFreeSlots;
+        }
+        this.freeSlots[this.freeCount++] = triangle;
+        if (this.removedCount == this.removedTriangles.length) {
+            int[] newRemoved = new int[2 * this.removedCount];
+            System.arraycopy(this.removedTriangles, 0, newRemoved, 0,
+                    this.removedCount);
+            this.removedTriangles = newRemoved;
+        }
+        this.removedTriangles[this.removedCount++] = triangle;
+        this.origins[3 * triangle] = -1;
+        this.origins[3 * triangle + 1] = -1;
+        this.origins[3 * triangle + 2] = -1;
+    }
+
+    /**
+     * Allocate triangle slot and record it as created
+     *
+     * @return triangle slot
+     */
+    private int createTriangle() {
+        int triangle = this.allocateTriangle();
+        if (this.createdCount == this.createdTriangles.length) {
+            int[] newCreated = new int[2 * this.createdCount];
+            System.arraycopy(this.createdTriangles, 0, newCreated, 0,
+                    this.createdCount);
+            this.createdTriangles = newCreated;
+        }
+        this.createdTriangles[this.createdCount++] = triangle;
+        return triangle;
+    }
+
+    /**
+     * Set triangle vertices (in counter-clockwise order)
+     */
+    private void setTriangle(int triangle, int v0, int v1, int v2) {
+        int e = 3 * triangle;
+        this.origins[e] = v0;
+        this.origins[e + 1] = v1;
+        this.origins[e + 2] = v2;
+        this.vertexEdges[v0] = e;
+        this.vertexEdges[v1] = e + 1;
+        this.vertexEdges[v2] = e + 2;
+    }
+
+    /**
+     * Connect two half-edges as twins
+     */
+    private void link(int edge1, int edge2) {
+        this.twins[edge1] = edge2;
+        if (edge2 >= 0) {
+            this.twins[edge2] = edge1;
+        }
+    }
+
+    /**
+     * In-circle test of the specified point against a triangle
+     */
+    private double inCircle(int triangle, double px, double py) {
+        int e = 3 * triangle;
+        int a = this.origins[e];
+        int b = this.origins[e + 1];
+        int c = this.origins[e + 2];
+        return inCircle(this.xs[a], this.ys[a], this.xs[b], this.ys[b],
+                this.xs[c], this.ys[c], px, py);
+    }
+
+    /**
+     * Find the triangle that contains the specified point by walking from
+     * the last created triangle
+     *
+     * @param px X coordinate of the point
+     * @param py Y coordinate of the point
+     * @return triangle slot, -1 if the point is outside the super triangle
+     */
+    int locate(double px, double py) {
+        int t = this.lastTriangle;
+        if ((t >= this.slotCount) || !this.isLive(t)) {
+            t = this.findLiveTriangle();
+        }
+        int liveCount = this.slotCount - this.freeCount;
+        for (int step = 0; step <= liveCount; step++) {
+            // start from random edge so that the walk can not cycle
+            this.walkSeed ^= this.walkSeed << 13;
+            this.walkSeed ^= this.walkSeed >>> 17;
+            this.walkSeed ^= this.walkSeed << 5;
+            int offset = (this.walkSeed & 0x7FFFFFFF) % 3;
+            int nextTriangle = -1;
+            for (int i = 0; i < 3; i++) {
+                int e = 3 * t + (offset + i) % 3;
+                int a = this.origins[e];
+                int b = this.origins[next(e)];
+                if (orient(this.xs[a], this.ys[a], this.xs[b], this.ys[b], px,
+                        py) < 0.0) {
+                    int twin = this.twins[e];
+                    if (twin < 0) {
+                        return -1;
+                    }
+                    nextTriangle = twin / 3;
+                    break;
+                }
+            }
+            if (nextTriangle < 0) {
+                return t;
+            }
+            t = nextTriangle;
+        }
+        // numerical problems - fall back to linear search
+        return this.locateLinear(px, py);
+    }
+
+    /**
+     * Find the triangle that contains the specified point by checking all
+     * the triangles
+     *
+     * @param px X coordinate of the point
+     * @param py Y coordinate of the point
+     * @return triangle slot, -1 if not found
+     */
+    private int locateLinear(double px, double py) {
+        for (int t = 0; t < this.slotCount; t++) {
+            if (!this.isLive(t)) {
+                continue;
+            }
+            boolean isInside = true;
+            for (int e = 3 * t; e < 3 * t + 3; e++) {
+                int a = this.origins[e];
+                int b = this.origins[next(e)];
+                if (orient(this.xs[a], this.ys[a], this.xs[b], this.ys[b], px,
+                        py) < 0.0) {
+                    isInside = false;
+                    break;
+                }
+            }
+            if (isInside) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return any live triangle
+     */
+    private int findLiveTriangle() {
+        for (int t = 0; t < this.slotCount; t++) {
+            if (this.isLive(t)) {
+                return t;
+            }
+        }
+        throw new IllegalStateException("No triangles");
+    }
+
+    /**
+     * Insert vertex with Bowyer-Watson algorithm. All the triangles whose
+     * circumcircle contains the new vertex are removed, and the resulting
+     * star-shaped cavity is filled with a fan of triangles around the new
+     * vertex.
+     *
+     * @param px X coordinate of the new vertex
+     * @param py Y coordinate of the new vertex
+     * @return index of the new vertex, -1 if the vertex coincides with an
+     *         existing vertex or lies outside the super triangle
+     */
+    int insert(double px, double py) {
+        this.removedCount = 0;
+        this.createdCount = 0;
+        int start = this.locate(px, py);
+        if (start < 0) {
+            return -1;
+        }
+        for (int e = 3 * start; e < 3 * start + 3; e++) {
+            int v = this.origins[e];
+            if ((Math.abs(this.xs[v] - px) < EPS)
+                    && (Math.abs(this.ys[v] - py) < EPS)) {
+                return -1;
+            }
+        }
+
+        this.findCavity(start, px, py);
+        int vertex = this.addVertex(px, py);
+        this.fillCavity(vertex);
+        return vertex;
+    }
+
+    /**
+     * Remove vertex. The triangles around the vertex are removed, and the
+     * resulting star-shaped polygon is retriangulated by repeatedly cutting
+     * off an ear whose circumcircle contains no other polygon vertex.
+     *
+     * @param vertex vertex index
+     * @return <code>true</code> if the vertex was removed,
+     *         <code>false</code> if it is not in the triangulation or
+     *         belongs to the super triangle
+     */
+    boolean remove(int vertex) {
+        this.removedCount = 0;
+        this.createdCount = 0;
+        if ((vertex < SUPER_VERTEX_COUNT) || !this.isVertexLive(vertex)) {
+            return false;
+        }
+
+        // collect the polygon around the vertex in counter-clockwise order.
+        // For each polygon edge keep the half-edge on its outer side
+        int capacity = 8;
+        int[] polygon = new int[capacity];
+        int[] outerEdges = new int[capacity];
+        int count = 0;
+        int[] star = new int[capacity];
+        int first = this.vertexEdges[vertex];
+        int e = first;
+        do {
+            if (count == capacity) {
+                capacity *= 2;
+                polygon = Arrays.copyOf(polygon, capacity);
+                outerEdges = Arrays.copyOf(outerEdges, capacity);
+                star = Arrays.copyOf(star, capacity);
+            }
+            int linkEdge = next(e);
+            polygon[count] = this.origins[linkEdge];
+            outerEdges[count] = this.twins[linkEdge];
+            star[count] = e / 3;
+            count++;
+            e = this.twins[prev(e)];
+        }
+        while (e != first);
+        for (int i = 0; i < count; i++) {
+            this.freeTriangle(star[i]);
+        }
+        this.vertexEdges[vertex] = -1;
+        if (this.freeVertexCount == this.freeVertices.length) {
+            this.freeVertices = Arrays.copyOf(this.freeVertices,
+                    2 * this.freeVertexCount);
+        }
+        this.freeVertices[this.freeVertexCount++] = vertex;
+
+        int t = -1;
+        while (count > 3) {
+            int ear = this.findEar(polygon, count);
+            int i1 = (ear + 1) % count;
+            int i2 = (ear + 2) % count;
+            t = this.createTriangle();
+            this.setTriangle(t, polygon[ear], polygon[i1], polygon[i2]);
+            this.link(3 * t, outerEdges[ear]);
+            this.link(3 * t + 1, outerEdges[i1]);
+            // the cut edge is the outer side of the new polygon edge
+            outerEdges[ear] = 3 * t + 2;
+            System.arraycopy(polygon, i1 + 1, polygon, i1, count - i1 - 1);
+            System.arraycopy(outerEdges, i1 + 1, outerEdges, i1,
+                    count - i1 - 1);
+            count--;
+        }
+        t = this.createTriangle();
+        this.setTriangle(t, polygon[0], polygon[1], polygon[2]);
+        this.link(3 * t, outerEdges[0]);
+        this.link(3 * t + 1, outerEdges[1]);
+        this.link(3 * t + 2, outerEdges[2]);
+        this.lastTriangle = t;
+        return true;
+    }
+
+    /**
+     * Find an ear of the polygon whose circumcircle contains no other polygon
+     * vertex. If no such ear exists because of round-off errors, a convex
+     * ear is returned.
+     *
+     * @param polygon polygon vertices in counter-clockwise order
+     * @param count   number of polygon vertices
+     * @return index of the first vertex of the ear
+     */
+    private int findEar(int[] polygon, int count) {
+        int convexEar = -1;
+        for (int i = 0; i < count; i++) {
+            int a = polygon[i];
+            int b = polygon[(i + 1) % count];
+            int c = polygon[(i + 2) % count];
+            if (orient(this.xs[a], this.ys[a], this.xs[b], this.ys[b],
+                    this.xs[c], this.ys[c]) <= 0.0) {
+                continue;
+            }
+            if (convexEar < 0) {
+                convexEar = i;
+            }
+            boolean isEmpty = true;
+            for (int j = 3; j < count; j++) {
+                int d = polygon[(i + j) % count];
+                if (inCircle(this.xs[a], this.ys[a], this.xs[b], this.ys[b],
+                        this.xs[c], this.ys[c], this.xs[d], this.ys[d]) > 0.0) {
+                    isEmpty = false;
+                    break;
+                }
+            }
+            if (isEmpty) {
+                return i;
+            }
+        }
+        return (convexEar >= 0) ? convexEar : 0;
+    }
+
+    /**
+     * Find all the triangles whose circumcircle contains the point, starting
+     * from the containing triangle. The cavity is then extended until all its
+     * boundary edges are visible from the point, so that it is star-shaped
+     * even in presence of round-off errors.
+     */
+    private void findCavity(int start, double px, double py) {
+        this.markStamp++;
+        if (this.markStamp == Integer.MAX_VALUE) {
+            Arrays.fill(this.marks, 0);
+            this.markStamp = 1;
+        }
+        this.cavityCount = 0;
+        int stackSize = 0;
+        this.marks[start] = this.markStamp;
+        this.stack[stackSize++] = start;
+        while (true) {
+            while (stackSize > 0) {
+                int t = this.stack[--stackSize];
+                this.addToCavity(t);
+                for (int e = 3 * t; e < 3 * t + 3; e++) {
+                    int twin = this.twins[e];
+                    if (twin < 0) {
+                        continue;
+                    }
+                    int neighbour = twin / 3;
+                    if (this.marks[neighbour] == this.markStamp) {
+                        continue;
+                    }
+                    if (this.inCircle(neighbour, px, py) > 0.0) {
+                        this.marks[neighbour] = this.markStamp;
+                        if (stackSize == this.stack.length) {
+                            int[] newStack = new int[2 * stackSize];
+                            System.arraycopy(this.stack, 0, newStack, 0,
+                                    stackSize);
+                            this.stack = newStack;
+                        }
+                        this.stack[stackSize++] = neighbour;
+                    }
+                }
+            }
+
+            // collect boundary edges and check their visibility
+            this.boundaryCount = 0;
+            for (int i = 0; i < this.cavityCount; i++) {
+                int t = this.cavity[i];
+                for (int e = 3 * t; e < 3 * t + 3; e++) {
+                    int twin = this.twins[e];
+                    if ((twin >= 0) && (this.marks[twin / 3] == this.markStamp)) {
+                        continue;
+                    }
+                    int a = this.origins[e];
+                    int b = this.origins[next(e)];
+                    if ((twin >= 0) && (orient(this.xs[a], this.ys[a],
+                            this.xs[b], this.ys[b], px, py) <= 0.0)) {
+                        // not visible - add the triangle behind this edge
+                        this.marks[twin / 3] = this.markStamp;
+                        if (stackSize == this.stack.length) {
+                            int[] newStack = new int[2 * stackSize];
+                            System.arraycopy(this.stack, 0, newStack, 0,
+                                    stackSize);
+                            this.stack = newStack;
+                        }
+                        this.stack[stackSize++] = twin / 3;
+                        continue;
+                    }
+                    if (this.boundaryCount == this.boundaryEdges.length) {
+                        int[] newBoundary = new int[2 * this.boundaryCount];
+                        System.arraycopy(this.boundaryEdges, 0, newBoundary,
+                                0, this.boundaryCount);
+                        this.boundaryEdges = newBoundary;
+                    }
+                    this.boundaryEdges[this.boundaryCount++] = e;
+                }
+            }
+            if (stackSize == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add triangle to the cavity list
+     */
+    private void addToCavity(int triangle) {
+        if (this.cavityCount == this.cavity.length) {
+            int[] newCavity = new int[2 * this.cavityCount];
+            System.arraycopy(this.cavity, 0, newCavity, 0, this.cavityCount);
+            this.cavity = newCavity;
+        }
+        this.cavity[this.cavityCount++] = triangle;
+    }
+
+    /**
+     * Replace the triangles of the cavity with a fan of triangles around the
+     * new vertex
+     */
+    private void fillCavity(int vertex) {
+        // copy boundary (origin, destination, outer twin) before the cavity
+        // slots are reused
+        int count = this.boundaryCount;
+        int[] boundary = new int[3 * count];
+        for (int i = 0; i < count; i++) {
+            int e = this.boundaryEdges[i];
+            boundary[3 * i] = this.origins[e];
+            boundary[3 * i + 1] = this.origins[next(e)];
+            boundary[3 * i + 2] = this.twins[e];
+        }
+        for (int i = 0; i < this.cavityCount; i++) {
+            this.freeTriangle(this.cavity[i]);
+        }
+
+        int[] newTriangles = new int[count];
+        for (int i = 0; i < count; i++) {
+            int a = boundary[3 * i];
+            int b = boundary[3 * i + 1];
+            int t = this.createTriangle();
+            newTriangles[i] = t;
+            this.setTriangle(t, a, b, vertex);
+            this.link(3 * t, boundary[3 * i + 2]);
+            this.fanByVertex[a] = t;
+        }
+        // connect the fan triangles - the edge (b -> vertex) of triangle on
+        // (a, b) is the twin of the edge (vertex -> b) of triangle on (b, c)
+        for (int i = 0; i < count; i++) {
+            int t = newTriangles[i];
+            int b = this.origins[3 * t + 1];
+            int nextTriangle = this.fanByVertex[b];
+            this.link(3 * t + 1, 3 * nextTriangle + 2);
+        }
+        this.lastTriangle = newTriangles[count - 1];
+    }
+}
@@ -0,0 +1,49 @@
+package org.jvnet.ixent.algorithms.geometry.delaunay;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.jvnet.ixent.graphics.objects.Triangle;
+
+/**
+ * Local change of a dynamic Delaunay triangulation caused by inserting or
+ * removing a single vertex
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class TriangulationChange {
+    private List<Triangle> removedTriangles;
+
+    private List<Triangle> addedTriangles;
+
+    /**
+     * @param pRemovedTriangles triangles that are no longer in the
+     *                          triangulation
+     * @param pAddedTriangles   triangles that were added to the
+     *                          triangulation
+     * @throws IllegalArgumentException if one of the lists is null
+     */
+    public TriangulationChange(List<Triangle> pRemovedTriangles,
+                               List<Triangle> pAddedTriangles) {
+        if ((pRemovedTriangles == null) || (pAddedTriangles == null)) {
+            throw new IllegalArgumentException("Can't pass null lists");
+        }
+        this.removedTriangles = Collections.unmodifiableList(
+                pRemovedTriangles);
+        this.addedTriangles = Collections.unmodifiableList(pAddedTriangles);
+    }
+
+    /**
+     * @return triangles that are no longer in the triangulation
+     */
+    public List<Triangle> getRemovedTriangles() {
+        return this.removedTriangles;
+    }
+
+    /**
+     * @return triangles that were added to the triangulation
+     */
+    public List<Triangle> getAddedTriangles() {
+        return this.addedTriangles;
+    }
+}
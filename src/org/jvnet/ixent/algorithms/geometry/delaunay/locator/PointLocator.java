@@ -24,5 +24,9 @@ public interface PointLocator {
                                    List<Triangle> newTriangles);
 
     public void dumpInfo();
+
+    // order of vertex indices in which the vertices should be inserted,
+    // null for the original order
+    public int[] getInsertionOrder();
 }
 
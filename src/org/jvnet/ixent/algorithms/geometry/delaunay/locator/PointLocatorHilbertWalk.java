@@ -0,0 +1,156 @@
+package org.jvnet.ixent.algorithms.geometry.delaunay.locator;
+
+import java.util.*;
+
+import org.jvnet.ixent.algorithms.geometry.spacefilling.HilbertOrder;
+import org.jvnet.ixent.graphics.objects.Triangle;
+import org.jvnet.ixent.graphics.objects.TriangleEdge;
+import org.jvnet.ixent.math.coord.Rectangle2D;
+import org.jvnet.ixent.math.coord.Vertex2D;
+
+/**
+ * Point locator that needs no auxiliary structure beyond the triangle
+ * adjacency. The vertices are inserted in the order of the Hilbert curve, so
+ * that each new vertex lies close to the previous one, and each vertex is
+ * located by walking from the last created triangle towards it. The expected
+ * walk length (and location time) is constant.
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class PointLocatorHilbertWalk implements PointLocator {
+    private Vertex2D[] originalVertices;
+
+    private int[] insertionOrder;
+
+    // the triangle to start the next walk from
+    private Triangle lastTriangle;
+
+    private Random random;
+
+    public PointLocatorHilbertWalk() {
+    }
+
+    // isExact is ignored - the located triangle always contains the point
+    public void init(Rectangle2D boundingRectangle,
+                     Vertex2D[] originalVertices, Triangle superTriangle,
+                     boolean isExact) {
+
+        this.originalVertices = originalVertices;
+        this.lastTriangle = superTriangle;
+        // fixed seed - the walk result doesn't depend on it, only its length
+        this.random = new Random(0);
+
+        int count = originalVertices.length;
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        this.insertionOrder = new int[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = originalVertices[i].getX();
+            ys[i] = originalVertices[i].getY();
+            this.insertionOrder[i] = i;
+        }
+        HilbertOrder.sort(this.insertionOrder, 0, count, xs, ys,
+                boundingRectangle.getPointTL().getX(),
+                boundingRectangle.getPointTL().getY(),
+                boundingRectangle.getPointBR().getX(),
+                boundingRectangle.getPointBR().getY());
+    }
+
+    public Triangle locate(int vertexIndex) {
+        if (this.lastTriangle == null) {
+            return null;
+        }
+        Vertex2D vertex = this.originalVertices[vertexIndex];
+        Triangle currTriangle = this.lastTriangle;
+        int maxSteps = 4 * this.originalVertices.length + 16;
+        for (int step = 0; step < maxSteps; step++) {
+            TriangleEdge[] edges = new TriangleEdge[]{currTriangle.getEdge1(),
+                                                      currTriangle.getEdge2(),
+                                                      currTriangle.getEdge3()};
+            // check the edges starting from a random one so that the walk
+            // can't cycle
+            int offset = this.random.nextInt(3);
+            Triangle nextTriangle = null;
+            for (int i = 0; i < 3; i++) {
+                TriangleEdge currEdge = edges[(offset + i) % 3];
+                Vertex2D opposingVertex = currTriangle.getOpposingVertex(
+                        currEdge);
+                if (!currEdge.isOnTheSameSide(vertex, opposingVertex)) {
+                    nextTriangle = currEdge.getNeigbour(currTriangle.getID());
+                    if (nextTriangle != null) {
+                        break;
+                    }
+                }
+            }
+            if (nextTriangle == null) {
+                this.lastTriangle = currTriangle;
+                return currTriangle;
+            }
+            currTriangle = nextTriangle;
+        }
+        // numerical problems - search all the triangles reachable from here
+        Triangle result = this.search(currTriangle, vertex);
+        if (result != null) {
+            this.lastTriangle = result;
+        }
+        return result;
+    }
+
+    /**
+     * Breadth-first search for the triangle that contains the vertex
+     *
+     * @param startTriangle triangle to start from
+     * @param vertex        vertex
+     * @return triangle that contains the vertex, <code>null</code> if not
+     *         found
+     */
+    private Triangle search(Triangle startTriangle, Vertex2D vertex) {
+        Set<Long> visited = new HashSet<Long>();
+        LinkedList<Triangle> queue = new LinkedList<Triangle>();
+        queue.add(startTriangle);
+        visited.add(startTriangle.getID());
+        while (!queue.isEmpty()) {
+            Triangle currTriangle = queue.removeFirst();
+            if (currTriangle.isPointInside(vertex)) {
+                return currTriangle;
+            }
+            TriangleEdge[] edges = new TriangleEdge[]{currTriangle.getEdge1(),
+                                                      currTriangle.getEdge2(),
+                                                      currTriangle.getEdge3()};
+            for (TriangleEdge currEdge : edges) {
+                Triangle neighbour = currEdge.getNeigbour(currTriangle.getID());
+                if ((neighbour != null) && visited.add(neighbour.getID())) {
+                    queue.addLast(neighbour);
+                }
+            }
+        }
+        return null;
+    }
+
+    public void onDeleteTriangles(List<Triangle> triangles) {
+        for (Triangle currTriangle : triangles) {
+            if (currTriangle == this.lastTriangle) {
+                this.lastTriangle = null;
+            }
+        }
+    }
+
+    public void onInsertTriangle(Triangle triangle) {
+        this.lastTriangle = triangle;
+    }
+
+    public void onReplaceTriangles(List<Triangle> oldTriangles,
+                                   List<Triangle> newTriangles) {
+        this.onDeleteTriangles(oldTriangles);
+        for (Triangle currTriangle : newTriangles) {
+            this.onInsertTriangle(currTriangle);
+        }
+    }
+
+    public void dumpInfo() {
+    }
+
+    public int[] getInsertionOrder() {
+        return this.insertionOrder;
+    }
+}
@@ -107,5 +107,8 @@ public final class PointLocatorHistoryDAG implements PointLocator {
 
     public void dumpInfo() {
     }
-}
 
+    public int[] getInsertionOrder() {
+        return null;
+    }
+}
@@ -87,5 +87,8 @@ public final class PointLocatorLocalConflict implements PointLocator {
 
     public void dumpInfo() {
     }
-}
 
+    public int[] getInsertionOrder() {
+        return null;
+    }
+}
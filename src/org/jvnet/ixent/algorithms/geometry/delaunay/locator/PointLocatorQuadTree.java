@@ -5,18 +5,17 @@ import java.util.List;
 import org.jvnet.ixent.graphics.objects.Triangle;
 import org.jvnet.ixent.math.coord.Rectangle2D;
 import org.jvnet.ixent.math.coord.Vertex2D;
-import org.jvnet.ixent.util.QuadTree;
+import org.jvnet.ixent.util.LinearQuadTree;
 
 public final class PointLocatorQuadTree implements PointLocator {
     private Rectangle2D boundingRectangle;
     private Vertex2D[] originalVertices;
-    private QuadTree quadTree;
+    private LinearQuadTree quadTree;
 
     public PointLocatorQuadTree() {
     }
 
-    // locatorHelperObject1 points to a list of all triangles of the quad tree node
-    // locatorHelperObject2 points to a specific node in that list
+    // locatorHelperObject1 holds the slot of the triangle in the quad tree
 
     // isExact:
     //   true - locate triangle that contains the point
@@ -32,7 +31,8 @@ public final class PointLocatorQuadTree implements PointLocator {
         if (levels < 1) {
             levels = 1;
         }
-        this.quadTree = new QuadTree(boundingRectangle, levels, isExact);
+        this.quadTree = new LinearQuadTree(boundingRectangle, levels,
+                isExact);
         this.quadTree.insert(superTriangle);
     }
 
@@ -62,5 +62,8 @@ public final class PointLocatorQuadTree implements PointLocator {
     public void dumpInfo() {
         this.quadTree.dumpInfo();
     }
-}
 
+    public int[] getInsertionOrder() {
+        return null;
+    }
+}
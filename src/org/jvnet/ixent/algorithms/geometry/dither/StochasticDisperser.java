@@ -8,6 +8,8 @@ import org.jvnet.ixent.graphics.objects.Triangle;
 import org.jvnet.ixent.graphics.objects.TriangleEdge;
 import org.jvnet.ixent.math.coord.Polygon2D;
 import org.jvnet.ixent.math.coord.Vertex2D;
+import org.jvnet.ixent.util.BandExecutor;
+import org.jvnet.ixent.util.BandExecutor.BandTask;
 
 /**
  * A stochastic disperser as described in <i>"Stochastic clustered-dot
@@ -25,9 +27,23 @@ public final class StochasticDisperser {
     private LinkedList<Point2D>[] pointVortexes;
     private LinkedList<Point2D>[] pointVoronoi;
 
-    // ISO-intensity polygons
+    /**
+     * Default maximal number of dither dots kept in the cache
+     */
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    // relative distance of each ISO-intensity line from its vertex
+    private double[] proportionArray;
+
+    // ISO-intensity polygons of all vertices, null unless precomputed
     private Polygon2D[][] isoIntensityLines;
 
+    // recently used ISO-intensity polygons, keyed by vertex index and
+    // intensity level
+    private Map<Long, Polygon2D> ditherDotCache;
+
+    private int cacheSize;
+
     private Logger logger;
 
     /**
@@ -61,8 +77,14 @@ public final class StochasticDisperser {
             this.pointVoronoi[i] = new LinkedList<Point2D>();
         }
 
-        this.isoIntensityLines =
-                new Polygon2D[this.verticeCount][this.intensityLevelsCount];
+        this.cacheSize = DEFAULT_CACHE_SIZE;
+        this.ditherDotCache = new LinkedHashMap<Long, Polygon2D>(16, 0.75f,
+                true) {
+            protected boolean removeEldestEntry(
+                    Map.Entry<Long, Polygon2D> eldest) {
+                return this.size() > cacheSize;
+            }
+        };
 
         for (Triangle currTriangle : this.triangles) {
             currTriangle.computeMassCenter();
@@ -168,39 +190,37 @@ public final class StochasticDisperser {
     }
 
     /**
-     * Create ISO-intensity lines for a single vertex. The distance between each
-     * pair of consecutive intensity lines is based on an input array
+     * Create ISO-intensity line for a single vertex at given intensity level.
+     * The distance between each pair of consecutive intensity lines is based
+     * on the proportion array
      *
-     * @param vertexIndex     index of vertex
-     * @param proportionArray a proportion array. Each value is in 0..1 range,
-     *                        the values are monotonical. The distance between
-     *                        each pair of consecutive lines is proportional to
-     *                        the difference of the corresponding entries in
-     *                        this array
+     * @param vertexIndex    index of vertex
+     * @param intensityLevel intensity level
+     * @return ISO-intensity line
      */
-    private void createIsoIntensityLines(int vertexIndex,
-                                         double[] proportionArray) {
+    private Polygon2D createIsoIntensityLine(int vertexIndex,
+                                             int intensityLevel) {
         Vertex2D vertexSink = this.vertices[vertexIndex];
-
-        for (int i = 0; i < this.intensityLevelsCount; i++) {
-            // create intensity line for this vertex at given intensity level
-            int pointCount = this.pointVortexes[vertexIndex].size();
-            Point2D[] newPoints = new Point2D[pointCount];
-            int curr = 0;
-            for (Point2D currPoint : this.pointVortexes[vertexIndex]) {
-                double dx = currPoint.getX() - vertexSink.getX();
-                double dy = currPoint.getY() - vertexSink.getY();
-                newPoints[curr++] = new Point2D.Double(
-                        vertexSink.getX() + dx * proportionArray[i],
-                        vertexSink.getY() + dy * proportionArray[i]);
-            }
-            this.isoIntensityLines[vertexIndex][i] = new Polygon2D(newPoints);//.simplify(0.5, 4);
+        double proportion = this.proportionArray[intensityLevel];
+
+        int pointCount = this.pointVortexes[vertexIndex].size();
+        Point2D[] newPoints = new Point2D[pointCount];
+        int curr = 0;
+        for (Point2D currPoint : this.pointVortexes[vertexIndex]) {
+            double dx = currPoint.getX() - vertexSink.getX();
+            double dy = currPoint.getY() - vertexSink.getY();
+            newPoints[curr++] = new Point2D.Double(
+                    vertexSink.getX() + dx * proportion,
+                    vertexSink.getY() + dy * proportion);
         }
+        return new Polygon2D(newPoints);//.simplify(0.5, 4);
     }
 
     /**
-     * Compute the ISO-intensity lines for all the vertices. The outermost line
-     * for each vertex is an outline of the corresponding Voronoi cell
+     * Compute the vortexes of all the vertices. The ISO-intensity lines are
+     * created on demand by {@link #getDitherDot(int, int)}, or for all the
+     * vertices by {@link #precomputeDitherDots(int)}. The outermost line for
+     * each vertex is an outline of the corresponding Voronoi cell
      */
     public void compute() {
         long time0 = System.currentTimeMillis();
@@ -232,15 +252,16 @@ public final class StochasticDisperser {
             this.contourize(i);
         }
 
-        // create iso-intensity lines
-        double[] proportionArray = new double[this.intensityLevelsCount];
+        // distances of iso-intensity lines
+        this.proportionArray = new double[this.intensityLevelsCount];
         for (int i = 0; i < this.intensityLevelsCount; i++) {
-            proportionArray[i] =
+            this.proportionArray[i] =
                     Math.sqrt((double) (i + 1) /
                     (double) this.intensityLevelsCount);
         }
-        for (int i = 0; i < this.verticeCount; i++) {
-            this.createIsoIntensityLines(i, proportionArray);
+        this.isoIntensityLines = null;
+        synchronized (this.ditherDotCache) {
+            this.ditherDotCache.clear();
         }
 
         long time1 = System.currentTimeMillis();
@@ -248,6 +269,83 @@ public final class StochasticDisperser {
         this.logger.info("Dither: " + (time1 - time0));
     }
 
+    /**
+     * Set the maximal number of dither dots kept in the cache when the dither
+     * dots are not precomputed
+     *
+     * @param pCacheSize cache size
+     * @throws IllegalArgumentException if the cache size is negative
+     */
+    public void setCacheSize(int pCacheSize) {
+        if (pCacheSize < 0) {
+            throw new IllegalArgumentException(
+                    "Cache size must be non-negative");
+        }
+        synchronized (this.ditherDotCache) {
+            this.cacheSize = pCacheSize;
+            // evict the least recently used dots
+            Iterator<Long> it = this.ditherDotCache.keySet().iterator();
+            while (this.ditherDotCache.size() > this.cacheSize) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Create the ISO-intensity lines at all intensity levels for all the
+     * vertices. Should be used when most of the dither dots are needed. The
+     * vertices are partitioned into contiguous ranges that are processed
+     * concurrently
+     *
+     * @param threadCount number of threads
+     * @throws IllegalArgumentException if the number of threads is not
+     *                                  positive
+     * @throws IllegalStateException    if the vortexes are not computed
+     */
+    public void precomputeDitherDots(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive");
+        }
+        if (this.proportionArray == null) {
+            throw new IllegalStateException("Vortexes are not computed");
+        }
+        long time0 = System.currentTimeMillis();
+        final Polygon2D[][] lines =
+                new Polygon2D[this.verticeCount][this.intensityLevelsCount];
+        BandExecutor.processInBands(this.verticeCount, threadCount,
+                new BandTask() {
+                    public void process(int from, int to) {
+                        createIsoIntensityLines(lines, from, to);
+                    }
+                });
+        this.isoIntensityLines = lines;
+        synchronized (this.ditherDotCache) {
+            this.ditherDotCache.clear();
+        }
+
+        long time1 = System.currentTimeMillis();
+        this.logger.info("Dither dots: " + (time1 - time0));
+    }
+
+    /**
+     * Create the ISO-intensity lines at all intensity levels for a range of
+     * vertices
+     *
+     * @param lines      array to fill
+     * @param rangeStart index of the first vertex
+     * @param rangeEnd   index after the last vertex
+     */
+    private void createIsoIntensityLines(Polygon2D[][] lines, int rangeStart,
+                                         int rangeEnd) {
+        for (int i = rangeStart; i < rangeEnd; i++) {
+            for (int level = 0; level < this.intensityLevelsCount; level++) {
+                lines[i][level] = this.createIsoIntensityLine(i, level);
+            }
+        }
+    }
+
     /**
      * Return the outline of a dither dot situated at given vertice. The size of
      * the dither dot depends on given intensity level
@@ -261,6 +359,7 @@ public final class StochasticDisperser {
      * @return polygon outline of the corresponding dither dot
      * @throws IllegalArgumentException if intensity level is not in 0..255
      *                                  range
+     * @throws IllegalStateException    if the vortexes are not computed
      */
     public Polygon2D getDitherDot(int verticeIndex, int intensity) {
         if ((intensity < 0) || (intensity > 255)) {
@@ -275,7 +374,24 @@ public final class StochasticDisperser {
         if (intensityLevel >= this.intensityLevelsCount) {
             intensityLevel = this.intensityLevelsCount - 1;
         }
-        return this.isoIntensityLines[verticeIndex][intensityLevel];
+        if (this.proportionArray == null) {
+            throw new IllegalStateException("Vortexes are not computed");
+        }
+        if (this.isoIntensityLines != null) {
+            return this.isoIntensityLines[verticeIndex][intensityLevel];
+        }
+
+        Long key = (long) verticeIndex * this.intensityLevelsCount
+                + intensityLevel;
+        synchronized (this.ditherDotCache) {
+            Polygon2D result = this.ditherDotCache.get(key);
+            if (result == null) {
+                result = this.createIsoIntensityLine(verticeIndex,
+                        intensityLevel);
+                this.ditherDotCache.put(key, result);
+            }
+            return result;
+        }
     }
 
     /**
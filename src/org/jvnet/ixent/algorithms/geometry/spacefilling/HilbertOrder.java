@@ -0,0 +1,97 @@
+package org.jvnet.ixent.algorithms.geometry.spacefilling;
+
+import java.util.Arrays;
+
+/**
+ * Ordering of 2-D points along the Hilbert curve. Points that are close on
+ * the curve are close in the plane, so visiting the points in this order
+ * keeps the consecutive points near each other.
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class HilbertOrder {
+    /**
+     * Number of bits in each coordinate of the curve grid
+     */
+    public static final int ORDER = 16;
+
+    /**
+     * Number of bits for point index in the packed sort keys
+     */
+    private static final int INDEX_BITS = 31;
+
+    /**
+     * This constructor is private in order to prevent creating instances
+     */
+    private HilbertOrder() {
+    }
+
+    /**
+     * Returns the distance of the specified grid cell along the Hilbert curve
+     * that fills the 2<sup>ORDER</sup> x 2<sup>ORDER</sup> grid
+     *
+     * @param x cell column in 0..2<sup>ORDER</sup>-1 range
+     * @param y cell row in 0..2<sup>ORDER</sup>-1 range
+     * @return the distance of this cell along the curve
+     */
+    public static long getIndex(int x, int y) {
+        int side = 1 << ORDER;
+        long result = 0;
+        for (int s = side / 2; s > 0; s /= 2) {
+            int rx = ((x & s) != 0) ? 1 : 0;
+            int ry = ((y & s) != 0) ? 1 : 0;
+            result += (long) s * (long) s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int temp = x;
+                x = y;
+                y = temp;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sort a range of point indices along the Hilbert curve that covers the
+     * specified bounding rectangle
+     *
+     * @param indices indices of points to sort
+     * @param from    first index (inclusive) of the range to sort
+     * @param to      last index (exclusive) of the range to sort
+     * @param xs      X coordinates of all points
+     * @param ys      Y coordinates of all points
+     * @param minX    minimal X of bounding rectangle
+     * @param minY    minimal Y of bounding rectangle
+     * @param maxX    maximal X of bounding rectangle
+     * @param maxY    maximal Y of bounding rectangle
+     */
+    public static void sort(int[] indices, int from, int to, double[] xs,
+                            double[] ys, double minX, double minY, double maxX,
+                            double maxY) {
+        int count = to - from;
+        if (count < 2) {
+            return;
+        }
+        double maxCell = (1 << ORDER) - 1;
+        double scaleX = (maxX > minX) ? maxCell / (maxX - minX) : 0.0;
+        double scaleY = (maxY > minY) ? maxCell / (maxY - minY) : 0.0;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int index = indices[from + i];
+            int x = (int) ((xs[index] - minX) * scaleX);
+            int y = (int) ((ys[index] - minY) * scaleY);
+            x = Math.max(0, Math.min((int) maxCell, x));
+            y = Math.max(0, Math.min((int) maxCell, y));
+            keys[i] = (getIndex(x, y) << INDEX_BITS) | index;
+        }
+        Arrays.sort(keys);
+        long indexMask = (1L << INDEX_BITS) - 1;
+        for (int i = 0; i < count; i++) {
+            indices[from + i] = (int) (keys[i] & indexMask);
+        }
+    }
+}
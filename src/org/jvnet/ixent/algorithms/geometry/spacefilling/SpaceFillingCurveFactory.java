@@ -0,0 +1,68 @@
+package org.jvnet.ixent.algorithms.geometry.spacefilling;
+
+import java.util.Random;
+
+/**
+ * Factory for the space filling curves used by the tesselators
+ *
+ * @author Kirill Grouchnikov
+ */
+public class SpaceFillingCurveFactory {
+    /**
+     * Kind of space filling curve
+     */
+    public static enum Kind {
+        /**
+         * {@link SpaceFillingCurveStructure}
+         */
+        STRUCTURE,
+        /**
+         * {@link SpaceFillingCurvePoissonDisk}
+         */
+        POISSON_DISK
+    }
+
+    public static Kind kind = Kind.STRUCTURE;
+
+    /**
+     * Seed of the Poisson-disk sampling. If <code>null</code>, each curve gets
+     * a new random seed that can be read with {@link #getLastSeed()}
+     */
+    public static Long seed;
+
+    private static long lastSeed;
+
+    private static Random seedGenerator = new Random();
+
+    /**
+     * Return a new space filling curve of the current kind
+     *
+     * @param cellRadius          radius of a single cell
+     * @param toAllocateAlongEdges if <code>true</code>, additional points will
+     *                             be allocated along the edges of the image
+     * @return new space filling curve (not initialized)
+     */
+    public static synchronized SpaceFillingCurve getSpaceFillingCurve(
+            int cellRadius, boolean toAllocateAlongEdges) {
+        if (kind == Kind.POISSON_DISK) {
+            SpaceFillingCurvePoissonDisk result =
+                    new SpaceFillingCurvePoissonDisk(cellRadius,
+                            toAllocateAlongEdges);
+            lastSeed = (seed != null) ? seed.longValue() :
+                    seedGenerator.nextLong();
+            result.setSeed(lastSeed);
+            return result;
+        }
+        return new SpaceFillingCurveStructure(cellRadius,
+                toAllocateAlongEdges);
+    }
+
+    /**
+     * @return seed of the last Poisson-disk curve returned by {@link
+     *         #getSpaceFillingCurve(int, boolean)}. Setting {@link #seed} to
+     *         this value reproduces that curve
+     */
+    public static synchronized long getLastSeed() {
+        return lastSeed;
+    }
+}
@@ -0,0 +1,350 @@
+package org.jvnet.ixent.algorithms.geometry.spacefilling;
+
+import java.awt.image.BufferedImage;
+import java.util.*;
+
+import org.jvnet.ixent.graphics.IndexBitmapObject;
+import org.jvnet.ixent.math.coord.Vertex2D;
+
+/**
+ * Space filling curve based on Poisson-disk sampling as described in <i>"Fast
+ * Poisson disk sampling in arbitrary dimensions"</i> by Robert Bridson. The
+ * centers grow outwards from a random seed center: new candidates are tried
+ * in the annulus around a random active center, and a center with no
+ * accepted candidates becomes inactive. The background grid has cells small
+ * enough to hold at most one center, so each candidate is checked only
+ * against the centers in the nearby cells, and the sampling takes
+ * <i>O(N)</i> time where <i>N</i> is the number of centers.<br>
+ * <p/>
+ * As in {@link SpaceFillingCurveStructure}, the distance between any given
+ * pair of centers depends on how close they lie to some image feature: two
+ * centers are never closer than the larger of their structure vicinity
+ * values.
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class SpaceFillingCurvePoissonDisk extends SpaceFillingCurveBase {
+    /**
+     * Number of candidates to try around an active center before it becomes
+     * inactive
+     */
+    private static final int CANDIDATE_COUNT = 30;
+
+    private int width, height;
+    private int cellMaxRadius, cellMinRadius;
+    private boolean toAllocateAlongEdges;
+
+    private long seed;
+
+    /**
+     * Construct space filling curve
+     *
+     * @param cellMaxRadius         minimal distance between any two centers
+     *                              that lie far from image features
+     * @param pToAllocateAlongEdges if <code>true</code>, additional points will
+     *                              be allocated along the edges of the image
+     */
+    public SpaceFillingCurvePoissonDisk(int cellMaxRadius,
+                                        boolean pToAllocateAlongEdges) {
+        this.cellMaxRadius = Math.max(cellMaxRadius, 1);
+        this.cellMinRadius = (int) (Math.ceil(
+                (double) this.cellMaxRadius / 2.0));
+        this.minDistanceBetweenCenters = this.cellMinRadius;
+        this.toAllocateAlongEdges = pToAllocateAlongEdges;
+        this.seed = new Random().nextLong();
+    }
+
+    /**
+     * Set the seed of the random sampling. The same seed and input produce
+     * the same centers.
+     *
+     * @param pSeed seed
+     */
+    public void setSeed(long pSeed) {
+        this.seed = pSeed;
+    }
+
+    /**
+     * @return seed of the random sampling (random unless set with {@link
+     *         #setSeed(long)})
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Initialize this filling curve using given true-color bitmap. Throws an
+     * exception as this operation is not supported by this class
+     *
+     * @param bitmapObject the input image
+     * @throws UnsupportedOperationException
+     */
+    public void init(BufferedImage bitmapObject) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Initialize this filling curve using only width and height. All the
+     * centers are at least <code>cellMaxRadius</code> apart.
+     *
+     * @param width  image width
+     * @param height image height
+     */
+    public void init(int width, int height) {
+        IndexBitmapObject structureVicinityMap = new IndexBitmapObject(width,
+                height);
+        for (int col = 0; col < width; col++) {
+            for (int row = 0; row < height; row++) {
+                structureVicinityMap.setValue(col, row, this.cellMaxRadius);
+            }
+        }
+        this.init(structureVicinityMap);
+    }
+
+    /**
+     * Initialize this filling curve using given structure vicinity map.
+     * Throws an exception if the map is null or one of the entries in it is
+     * negative
+     *
+     * @param structureVicinityMap the structure vicinity map. Each pixel has an
+     *                             associated non-negative integer value
+     *                             specifying how far does it lie from some
+     *                             image feature (such as edge or segment
+     *                             boundary)
+     * @throws IllegalArgumentException if the map is null or one of the entries
+     *                                  in the map is negative
+     */
+    public void init(IndexBitmapObject structureVicinityMap) {
+        if (structureVicinityMap == null) {
+            throw new IllegalArgumentException("Can't pass null object");
+        }
+
+        this.width = structureVicinityMap.getWidth();
+        this.height = structureVicinityMap.getHeight();
+        int[][] vicinity = structureVicinityMap.getBitmap();
+        int maxRadius = this.cellMinRadius;
+        for (int col = 0; col < this.width; col++) {
+            for (int row = 0; row < this.height; row++) {
+                if (vicinity[col][row] < 0) {
+                    throw new IllegalArgumentException("Negative entry at [" +
+                            col + ", " + row + "]: " + vicinity[col][row]);
+                }
+                maxRadius = Math.max(maxRadius, vicinity[col][row]);
+            }
+        }
+
+        this.centerCount = 0;
+        this.centers = new Vertex2D[0];
+        if ((this.width == 0) || (this.height == 0)) {
+            return;
+        }
+
+        // the diagonal of a grid cell is the minimal radius, so a cell holds
+        // at most one center
+        double gridCellSize = this.cellMinRadius / Math.sqrt(2.0);
+        int gridWidth = (int) Math.ceil(this.width / gridCellSize);
+        int gridHeight = (int) Math.ceil(this.height / gridCellSize);
+        int[] grid = new int[gridWidth * gridHeight];
+        Arrays.fill(grid, -1);
+        int[] gridOffsets = getGridOffsets(
+                (int) Math.ceil(maxRadius / gridCellSize));
+
+        int capacity = Math.max(16, (int) (this.width * this.height
+                / (gridCellSize * gridCellSize) / 4));
+        double[] xs = new double[capacity];
+        double[] ys = new double[capacity];
+        int[] radii = new int[capacity];
+        int[] active = new int[capacity];
+        int activeCount = 0;
+        int count = 0;
+
+        Random random = new Random(this.seed);
+        double candidateX = random.nextDouble() * this.width;
+        double candidateY = random.nextDouble() * this.height;
+        while (true) {
+            if (candidateX >= 0.0) {
+                // accept candidate
+                if (count == xs.length) {
+                    xs = Arrays.copyOf(xs, 2 * count);
+                    ys = Arrays.copyOf(ys, 2 * count);
+                    radii = Arrays.copyOf(radii, 2 * count);
+                    active = Arrays.copyOf(active, 2 * count);
+                }
+                xs[count] = candidateX;
+                ys[count] = candidateY;
+                radii[count] = Math.max(this.cellMinRadius,
+                        vicinity[(int) candidateX][(int) candidateY]);
+                grid[(int) (candidateX / gridCellSize) * gridHeight
+                        + (int) (candidateY / gridCellSize)] = count;
+                active[activeCount++] = count;
+                count++;
+            }
+            if (activeCount == 0) {
+                break;
+            }
+
+            // try candidates around random active center
+            int activeIndex = random.nextInt(activeCount);
+            int current = active[activeIndex];
+            double radius = radii[current];
+            double radius2 = radius * radius;
+            candidateX = -1.0;
+            for (int i = 0; i < CANDIDATE_COUNT; i++) {
+                // uniform in the annulus between radius and twice radius
+                double offsetX, offsetY, distance2;
+                do {
+                    offsetX = (4.0 * random.nextDouble() - 2.0) * radius;
+                    offsetY = (4.0 * random.nextDouble() - 2.0) * radius;
+                    distance2 = offsetX * offsetX + offsetY * offsetY;
+                } while ((distance2 < radius2) || (distance2 > 4.0 * radius2));
+                double x = xs[current] + offsetX;
+                double y = ys[current] + offsetY;
+                if ((x < 0.0) || (x >= this.width) || (y < 0.0)
+                        || (y >= this.height)) {
+                    continue;
+                }
+                int candidateRadius = Math.max(this.cellMinRadius,
+                        vicinity[(int) x][(int) y]);
+                if (candidateRadius > radius) {
+                    // move the candidate to the annulus of its own radius,
+                    // otherwise the sampling can't grow from a dense area
+                    // into a sparse one
+                    double scale = candidateRadius / radius;
+                    x = xs[current] + scale * offsetX;
+                    y = ys[current] + scale * offsetY;
+                    if ((x < 0.0) || (x >= this.width) || (y < 0.0)
+                            || (y >= this.height)) {
+                        continue;
+                    }
+                    candidateRadius = Math.max(this.cellMinRadius,
+                            vicinity[(int) x][(int) y]);
+                }
+                int gridX = (int) (x / gridCellSize);
+                int gridY = (int) (y / gridCellSize);
+                boolean isFar = true;
+                for (int o = 0; o < gridOffsets.length; o += 2) {
+                    int gx = gridX + gridOffsets[o];
+                    int gy = gridY + gridOffsets[o + 1];
+                    if ((gx < 0) || (gx >= gridWidth) || (gy < 0)
+                            || (gy >= gridHeight)) {
+                        continue;
+                    }
+                    int neighbour = grid[gx * gridHeight + gy];
+                    if (neighbour < 0) {
+                        continue;
+                    }
+                    int minDistance = Math.max(candidateRadius,
+                            radii[neighbour]);
+                    double dx = xs[neighbour] - x;
+                    double dy = ys[neighbour] - y;
+                    if ((dx * dx + dy * dy) <= minDistance * minDistance) {
+                        isFar = false;
+                        break;
+                    }
+                }
+                if (isFar) {
+                    candidateX = x;
+                    candidateY = y;
+                    break;
+                }
+            }
+            if (candidateX < 0.0) {
+                // no room around this center
+                active[activeIndex] = active[--activeCount];
+            }
+        }
+
+        this.centerCount = count;
+        this.centers = new Vertex2D[count];
+        for (int i = 0; i < count; i++) {
+            this.centers[i] = new Vertex2D(xs[i], ys[i]);
+        }
+
+        if (this.toAllocateAlongEdges) {
+            // replicate centers in the vicinity of the edges
+            List<Vertex2D> replicatedCenters = new LinkedList<Vertex2D>();
+            int offset = 5 + 2 * this.getMinDistanceBetweenCenters();
+            int leftMarginX = offset;
+            int rightMarginX = this.width - offset;
+            int topMarginY = offset;
+            int bottomMarginY = this.height - offset;
+
+            for (int i = 0; i < this.centers.length; i++) {
+                double x = this.centers[i].getX();
+                double y = this.centers[i].getY();
+                // borders
+                if (x < leftMarginX) {
+                    replicatedCenters.add(new Vertex2D(this.width + x, y));
+                }
+                if (x > rightMarginX) {
+                    replicatedCenters.add(new Vertex2D(x - this.width, y));
+                }
+                if (y < topMarginY) {
+                    replicatedCenters.add(new Vertex2D(x, this.height + y));
+                }
+                if (y > bottomMarginY) {
+                    replicatedCenters.add(new Vertex2D(x, y - this.height));
+                }
+                // corners
+                if ((x < leftMarginX) && (y < topMarginY)) {
+                    replicatedCenters.add(
+                            new Vertex2D(this.width + x, this.height + y));
+                }
+                if ((x > rightMarginX) && (y < topMarginY)) {
+                    replicatedCenters.add(
+                            new Vertex2D(x - this.width, this.height + y));
+                }
+                if ((x < leftMarginX) && (y > bottomMarginY)) {
+                    replicatedCenters.add(
+                            new Vertex2D(this.width + x, y - this.height));
+                }
+                if ((x > rightMarginX) && (y > bottomMarginY)) {
+                    replicatedCenters.add(
+                            new Vertex2D(x - this.width, y - this.height));
+                }
+            }
+            Vertex2D[] newCenters = new Vertex2D[this.centers.length +
+                    replicatedCenters.size()];
+            int prevCount = this.centers.length;
+            System.arraycopy(this.centers, 0, newCenters, 0, prevCount);
+            for (Vertex2D currVertex : replicatedCenters) {
+                newCenters[prevCount++] = currVertex;
+            }
+            this.centers = newCenters;
+        }
+    }
+
+    /**
+     * Get offsets of the background grid cells that may hold a center lying
+     * at most <code>reach</code> cells away, sorted by the distance so that
+     * a rejected candidate is usually rejected by one of the first cells
+     *
+     * @param reach maximal distance in cells
+     * @return interleaved column and row offsets
+     */
+    private static int[] getGridOffsets(int reach) {
+        List<int[]> offsets = new ArrayList<int[]>();
+        for (int dx = -reach; dx <= reach; dx++) {
+            for (int dy = -reach; dy <= reach; dy++) {
+                // distance between the closest points of the two cells
+                int cx = Math.max(0, Math.abs(dx) - 1);
+                int cy = Math.max(0, Math.abs(dy) - 1);
+                if (cx * cx + cy * cy <= reach * reach) {
+                    offsets.add(new int[]{dx, dy, dx * dx + dy * dy});
+                }
+            }
+        }
+        Collections.sort(offsets, new Comparator<int[]>() {
+            public int compare(int[] o1, int[] o2) {
+                return o1[2] - o2[2];
+            }
+        });
+        int[] result = new int[2 * offsets.size()];
+        int count = 0;
+        for (int[] offset : offsets) {
+            result[count++] = offset[0];
+            result[count++] = offset[1];
+        }
+        return result;
+    }
+}
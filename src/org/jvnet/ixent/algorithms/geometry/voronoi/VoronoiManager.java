@@ -2,8 +2,7 @@ package org.jvnet.ixent.algorithms.geometry.voronoi;
 
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 import java.util.logging.Logger;
 
 import org.jvnet.ixent.algorithms.geometry.delaunay.DelaunayManager;
@@ -12,7 +11,12 @@ import org.jvnet.ixent.algorithms.geometry.dither.StochasticDisperser;
 import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurve;
 import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurveRandom;
 import org.jvnet.ixent.graphics.objects.Triangle;
+import org.jvnet.ixent.graphics.objects.TriangleEdge;
+import org.jvnet.ixent.math.MathConstants;
 import org.jvnet.ixent.math.coord.*;
+import org.jvnet.ixent.math.intersect.ClippingManager;
+import org.jvnet.ixent.util.BandExecutor;
+import org.jvnet.ixent.util.BandExecutor.BandTask;
 
 /**
  * A class implementing Voronoi tesselation. Exports exact and pixel-precision
@@ -196,7 +200,9 @@ public final class VoronoiManager {
 
     /**
      * Compute pixel-precision Voronoi diagram having given average distance
-     * between region (cell) centers
+     * between region (cell) centers. The diagram is computed by
+     * {@link #getVoronoiIndexDiagramExact(int, int, Point2D[], int)} on as
+     * many threads as there are available processors.
      *
      * @param width                         image width
      * @param height                        image height
@@ -239,8 +245,8 @@ public final class VoronoiManager {
         for (int i = 0; i < centersCount; i++) {
             realCenters[i] = centers[i];
         }
-        return VoronoiManager.getVoronoiIndexDiagram(width, height,
-                realCenters);
+        return VoronoiManager.getVoronoiIndexDiagramExact(width, height,
+                realCenters, Runtime.getRuntime().availableProcessors());
     }
 
     /**
@@ -249,7 +255,10 @@ public final class VoronoiManager {
      * by Kenneth Hoff, Tim Culver, John Keyser, Ming Lin and Dinesh
      * Manocha.<br> <p/> Here, however, the computations are performed in
      * software (in <i>O(N)</i> time where <i>N</i> is the number of pixels in
-     * the image)
+     * the image). The growing rings only approximate the Euclidean distance,
+     * so a pixel near a cell boundary may be assigned to a farther center.
+     * {@link #getVoronoiIndexDiagramExact(int, int, Point2D[], int)} is the
+     * exact alternative.
      *
      * @param width   image width
      * @param height  image height
@@ -353,6 +362,163 @@ public final class VoronoiManager {
         return resultStruct;
     }
 
+    /**
+     * Compute pixel-precision Voronoi diagram with exact Euclidean distances
+     * by separable distance transform (Felzenszwalb and Huttenlocher,
+     * <i>"Distance transforms of sampled functions"</i>). The first pass
+     * finds the nearest center in each column, and the second pass finds the
+     * lower envelope of the column parabolas in each row. Both passes take
+     * <i>O(N)</i> time where <i>N</i> is the number of pixels in the image,
+     * and are processed in concurrent bands of columns and rows. Each pixel
+     * is assigned to the nearest center (if there are a few, to one of them).
+     *
+     * @param width       image width
+     * @param height      image height
+     * @param centers     Voronoi cell centers
+     * @param threadCount number of threads
+     * @return an object holding the information on Voronoi diagram
+     * @throws IllegalArgumentException if the number of threads is not
+     *                                  positive
+     * @throws IllegalStateException    if some pixel is not assigned to any
+     *                                  cell
+     */
+    public static VoronoiIndexDiagramInfo getVoronoiIndexDiagramExact(
+            final int width, final int height, final Point2D[] centers,
+            int threadCount) {
+
+        if (threadCount < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive");
+        }
+        long time0 = System.currentTimeMillis();
+
+        final int centersCount = centers.length;
+        final int[] centerX = new int[centersCount];
+        final int[] centerY = new int[centersCount];
+        // center in each pixel - the last one if there are a few
+        final int[] columnNearest = new int[width * height];
+        Arrays.fill(columnNearest, -1);
+        for (int currCenter = 0; currCenter < centersCount; currCenter++) {
+            centerX[currCenter] = (int) centers[currCenter].getX();
+            centerY[currCenter] = (int) centers[currCenter].getY();
+            columnNearest[centerX[currCenter] * height
+                    + centerY[currCenter]] = currCenter;
+        }
+
+        // nearest center in each column - two sweeps along the column
+        BandExecutor.processInBands(width, threadCount, new BandTask() {
+            public void process(int from, int to) {
+                for (int col = from; col < to; col++) {
+                    int offset = col * height;
+                    int nearest = -1;
+                    for (int row = 0; row < height; row++) {
+                        if (columnNearest[offset + row] >= 0) {
+                            nearest = columnNearest[offset + row];
+                        }
+                        columnNearest[offset + row] = nearest;
+                    }
+                    nearest = -1;
+                    for (int row = height - 1; row >= 0; row--) {
+                        int current = columnNearest[offset + row];
+                        if ((current >= 0) && (centerY[current] == row)) {
+                            nearest = current;
+                            continue;
+                        }
+                        if ((nearest >= 0) && ((current < 0)
+                                || (centerY[nearest] - row < row
+                                - centerY[current]))) {
+                            columnNearest[offset + row] = nearest;
+                        }
+                    }
+                }
+            }
+        });
+
+        // lower envelope of the parabolas (x-col)^2 + dy(col)^2 in each row
+        final int[][] zBuffer = new int[width][height];
+        final int[] maxDistances2 = new int[height];
+        BandExecutor.processInBands(height, threadCount, new BandTask() {
+            public void process(int from, int to) {
+                int[] envelope = new int[width];
+                double[] bounds = new double[width + 1];
+                for (int row = from; row < to; row++) {
+                    int k = -1;
+                    for (int col = 0; col < width; col++) {
+                        int current = columnNearest[col * height + row];
+                        if (current < 0) {
+                            continue;
+                        }
+                        long dy = centerY[current] - row;
+                        long value = dy * dy + (long) col * col;
+                        double bound = Double.NEGATIVE_INFINITY;
+                        while (k >= 0) {
+                            int prevCol = envelope[k];
+                            long prevDy = centerY[columnNearest[prevCol
+                                    * height + row]] - row;
+                            long prevValue = prevDy * prevDy
+                                    + (long) prevCol * prevCol;
+                            bound = (double) (value - prevValue)
+                                    / (double) (2 * (col - prevCol));
+                            if (bound > bounds[k]) {
+                                break;
+                            }
+                            k--;
+                        }
+                        if (k < 0) {
+                            bound = Double.NEGATIVE_INFINITY;
+                        }
+                        k++;
+                        envelope[k] = col;
+                        bounds[k] = bound;
+                    }
+                    if (k < 0) {
+                        // no centers at all
+                        for (int col = 0; col < width; col++) {
+                            zBuffer[col][row] = -1;
+                        }
+                        continue;
+                    }
+                    int envelopeCount = k + 1;
+                    bounds[envelopeCount] = Double.POSITIVE_INFINITY;
+                    k = 0;
+                    int maxDistance2 = 0;
+                    for (int col = 0; col < width; col++) {
+                        while (bounds[k + 1] < col) {
+                            k++;
+                        }
+                        int nearest = columnNearest[envelope[k] * height
+                                + row];
+                        zBuffer[col][row] = nearest;
+                        int dx = centerX[nearest] - col;
+                        int dy = centerY[nearest] - row;
+                        maxDistance2 = Math.max(maxDistance2, dx * dx + dy
+                                * dy);
+                    }
+                    maxDistances2[row] = maxDistance2;
+                }
+            }
+        });
+
+        // sanity check
+        int maxDistance2 = 0;
+        for (int row = 0; row < height; row++) {
+            if ((width > 0) && (zBuffer[0][row] == -1)) {
+                throw new IllegalStateException(
+                        "Unexpected error in voronoi - unassigned pixel left");
+            }
+            maxDistance2 = Math.max(maxDistance2, maxDistances2[row]);
+        }
+        // the same as the number of iterations of the ring growing
+        int maxRadius = (int) Math.ceil(Math.sqrt(maxDistance2)) + 1;
+
+        long time1 = System.currentTimeMillis();
+        VoronoiManager.logger.info("Voronoi exact index: " + (time1 - time0)
+                + " (" + threadCount + " threads)");
+
+        return new VoronoiIndexDiagramInfo(width, height, zBuffer, centers,
+                maxRadius, centersCount);
+    }
+
     /**
      * Compute exact Voronoi diagram over given rectangle having roughly given
      * number of centers (regions, cells)
@@ -490,6 +656,274 @@ public final class VoronoiManager {
         return result;
     }
 
+    /**
+     * Points of the Voronoi cell being built, stored as a flat coordinate
+     * array (x0, y0, x1, y1, ...) that grows in both directions
+     */
+    private static final class CellPoints {
+        private double[] coordinates = new double[64];
+
+        /**
+         * Index of the first point
+         */
+        private int first;
+
+        /**
+         * Index after the last point
+         */
+        private int last;
+
+        private void clear() {
+            this.first = this.coordinates.length / 4;
+            this.last = this.first;
+        }
+
+        private int size() {
+            return this.last - this.first;
+        }
+
+        private void grow() {
+            int count = this.size();
+            double[] newCoordinates = new double[2 * this.coordinates.length];
+            int newFirst = (newCoordinates.length / 2 - count) / 2;
+            System.arraycopy(this.coordinates, 2 * this.first,
+                    newCoordinates, 2 * newFirst, 2 * count);
+            this.coordinates = newCoordinates;
+            this.first = newFirst;
+            this.last = newFirst + count;
+        }
+
+        private void addFirst(double x, double y) {
+            if (this.first == 0) {
+                this.grow();
+            }
+            this.first--;
+            this.coordinates[2 * this.first] = x;
+            this.coordinates[2 * this.first + 1] = y;
+        }
+
+        private void addLast(double x, double y) {
+            if (2 * this.last == this.coordinates.length) {
+                this.grow();
+            }
+            this.coordinates[2 * this.last] = x;
+            this.coordinates[2 * this.last + 1] = y;
+            this.last++;
+        }
+    }
+
+    /**
+     * Return the edges of the triangle that have the specified vertex
+     *
+     * @param triangle triangle
+     * @param vertexID vertex ID
+     * @return two edges of the triangle that have this vertex
+     */
+    private static TriangleEdge[] getEdgesByVertex(Triangle triangle,
+                                                   long vertexID) {
+        TriangleEdge[] result = new TriangleEdge[2];
+        int count = 0;
+        for (TriangleEdge edge : new TriangleEdge[]{triangle.getEdge1(),
+                                                    triangle.getEdge2(),
+                                                    triangle.getEdge3()}) {
+            if ((edge.getVertex1().getID() == vertexID)
+                    || (edge.getVertex2().getID() == vertexID)) {
+                result[count++] = edge;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Walk around the vertex from the triangle over the specified edge,
+     * adding the circumcenters of the visited triangles to the cell
+     *
+     * @param startTriangle triangle to start from
+     * @param startEdge     edge to cross first
+     * @param vertexID      vertex ID
+     * @param cell          points of the cell
+     * @param toAddLast     if <code>true</code>, the circumcenters are added
+     *                      at the end of the cell, otherwise at the beginning
+     * @return the last triangle and its outer (boundary) edge if the walk
+     *         has reached the convex hull, <code>null</code> if it has
+     *         returned to the start triangle
+     */
+    private static Object[] walkAround(Triangle startTriangle,
+                                       TriangleEdge startEdge, long vertexID,
+                                       CellPoints cell, boolean toAddLast) {
+        Triangle currTriangle = startTriangle;
+        TriangleEdge currEdge = startEdge;
+        while (true) {
+            Triangle nextTriangle = currEdge.getNeigbour(currTriangle.getID());
+            if (nextTriangle == null) {
+                return new Object[]{currTriangle, currEdge};
+            }
+            if (nextTriangle == startTriangle) {
+                return null;
+            }
+            if (nextTriangle.isCircExists()) {
+                Point2D circCenter = nextTriangle.getCircCenter();
+                if (toAddLast) {
+                    cell.addLast(circCenter.getX(), circCenter.getY());
+                }
+                else {
+                    cell.addFirst(circCenter.getX(), circCenter.getY());
+                }
+            }
+            currEdge = nextTriangle.getAdjacentEdgeByVertex(vertexID,
+                    currEdge.getID());
+            currTriangle = nextTriangle;
+        }
+    }
+
+    /**
+     * Return the direction of the Voronoi ray of the convex hull edge. The
+     * ray goes from the circumcenter of the triangle in the direction
+     * perpendicular to the edge and away from the triangle.
+     *
+     * @param triangle triangle
+     * @param edge     convex hull edge of the triangle
+     * @return unit direction of the ray
+     */
+    private static Point2D getRayDirection(Triangle triangle,
+                                           TriangleEdge edge) {
+        double ex = edge.getVertex2().getX() - edge.getVertex1().getX();
+        double ey = edge.getVertex2().getY() - edge.getVertex1().getY();
+        double length = Math.sqrt(ex * ex + ey * ey);
+        double nx = -ey / length;
+        double ny = ex / length;
+        Vertex2D opposing = triangle.getOpposingVertex(edge);
+        if (nx * (opposing.getX() - edge.getVertex1().getX())
+                + ny * (opposing.getY() - edge.getVertex1().getY()) > 0.0) {
+            nx = -nx;
+            ny = -ny;
+        }
+        return new Point2D.Double(nx, ny);
+    }
+
+    /**
+     * Compute exact Voronoi cells of the given centers from the circumcenters
+     * and the adjacency of a single Delaunay triangulation. The cells of the
+     * convex hull centers are closed by their two Voronoi rays. All the cells
+     * are built in a flat coordinate array, and clipped to the rectangle
+     * directly into one flat buffer.
+     *
+     * @param centers       region (cell) centers
+     * @param clipRectangle the rectangle to clip the cells to
+     * @return buffer with one polygon for each center, in the order of the
+     *         centers. The polygon of a cell that lies outside the rectangle
+     *         has no points. <code>null</code> if the triangulation failed
+     * @throws IllegalArgumentException if the rectangle is null
+     */
+    public static PolygonBuffer getVoronoiCells(Vertex2D[] centers,
+                                                Rectangle2D clipRectangle) {
+        if (clipRectangle == null) {
+            throw new IllegalArgumentException(
+                    "Can't pass null clip rectangle");
+        }
+        long time0 = System.currentTimeMillis();
+        DelaunayManager dm = DelaunayManagerFactory.getDelaunayManager(centers);
+        List<Triangle> triangles = dm.getTriangulation();
+        if (triangles == null) {
+            return null;
+        }
+
+        // one triangle of each center
+        Map<Integer, Integer> indices = new HashMap<Integer, Integer>();
+        for (int i = 0; i < centers.length; i++) {
+            indices.put(centers[i].getID(), i);
+        }
+        Triangle[] centerTriangles = new Triangle[centers.length];
+        for (Triangle currTriangle : triangles) {
+            for (Vertex2D currVertex : new Vertex2D[]{
+                    currTriangle.getVertex12(), currTriangle.getVertex13(),
+                    currTriangle.getVertex23()}) {
+                Integer index = indices.get(currVertex.getID());
+                if (index != null) {
+                    centerTriangles[index] = currTriangle;
+                }
+            }
+        }
+
+        // the Voronoi rays are cut far enough to lie outside the rectangle
+        Point2D pointTL = clipRectangle.getPointTL();
+        Point2D pointBR = clipRectangle.getPointBR();
+        double rayLength = 0.0;
+        for (Vertex2D center : centers) {
+            rayLength = Math.max(rayLength, center.getPoint().distance(pointTL));
+            rayLength = Math.max(rayLength, center.getPoint().distance(pointBR));
+        }
+        rayLength = 4.0 * (rayLength + pointTL.distance(pointBR)) + 1.0;
+
+        PolygonBuffer result = new PolygonBuffer(centers.length,
+                6 * centers.length);
+        CellPoints cell = new CellPoints();
+        for (int i = 0; i < centers.length; i++) {
+            Triangle startTriangle = centerTriangles[i];
+            if (startTriangle == null) {
+                // duplicate center
+                result.endPolygon();
+                continue;
+            }
+            long vertexID = centers[i].getID();
+            cell.clear();
+            if (startTriangle.isCircExists()) {
+                Point2D circCenter = startTriangle.getCircCenter();
+                cell.addLast(circCenter.getX(), circCenter.getY());
+            }
+            TriangleEdge[] startEdges = getEdgesByVertex(startTriangle,
+                    vertexID);
+            Object[] lastEnd = walkAround(startTriangle, startEdges[0],
+                    vertexID, cell, true);
+            if (lastEnd != null) {
+                // convex hull center - walk in the other direction and close
+                // the cell with the two rays
+                Object[] firstEnd = walkAround(startTriangle, startEdges[1],
+                        vertexID, cell, false);
+                Triangle lastTriangle = (Triangle) lastEnd[0];
+                Triangle firstTriangle = (Triangle) firstEnd[0];
+                if (!lastTriangle.isCircExists()
+                        || !firstTriangle.isCircExists()) {
+                    result.endPolygon();
+                    continue;
+                }
+                Point2D lastDirection = getRayDirection(lastTriangle,
+                        (TriangleEdge) lastEnd[1]);
+                Point2D firstDirection = getRayDirection(firstTriangle,
+                        (TriangleEdge) firstEnd[1]);
+                Point2D lastCenter = lastTriangle.getCircCenter();
+                Point2D firstCenter = firstTriangle.getCircCenter();
+                cell.addLast(lastCenter.getX() + rayLength
+                        * lastDirection.getX(), lastCenter.getY() + rayLength
+                        * lastDirection.getY());
+                // point between the rays so that the closing segment stays
+                // away from the rectangle
+                double midX = lastDirection.getX() + firstDirection.getX();
+                double midY = lastDirection.getY() + firstDirection.getY();
+                double midLength = Math.sqrt(midX * midX + midY * midY);
+                if (midLength > MathConstants.EPS) {
+                    cell.addLast(centers[i].getX() + 2.0 * rayLength * midX
+                            / midLength, centers[i].getY() + 2.0 * rayLength
+                            * midY / midLength);
+                }
+                cell.addLast(firstCenter.getX() + rayLength
+                        * firstDirection.getX(), firstCenter.getY() + rayLength
+                        * firstDirection.getY());
+            }
+            if (cell.size() < 3) {
+                result.endPolygon();
+                continue;
+            }
+            ClippingManager.clipPolygon(cell.coordinates, cell.first, cell
+                    .size(), pointTL, pointBR, result);
+        }
+
+        long time1 = System.currentTimeMillis();
+        VoronoiManager.logger.info("Voronoi cells: " + (time1 - time0) + " ("
+                + centers.length + " centers)");
+        return result;
+    }
+
     /**
      * Compute exact Voronoi-based dither vortexes diagram having given region
      * (cell) centers
@@ -33,6 +33,19 @@ public class CannyEdgeDetector implements EdgeDetector {
     private int[][] magnitudes;
     private double[][] theta;
 
+    /**
+     * Input channel of the cached gradient, null if there is none
+     */
+    private int[][] analyzedChannel;
+
+    /**
+     * Cached gradient magnitudes and orientations of the analyzed channel.
+     * They don't depend on the thresholds, so the edge maps of all the
+     * strengths share them
+     */
+    private int[][] analyzedMagnitudes;
+    private double[][] analyzedTheta;
+
 
     /**
      * Constructor. 
@@ -69,6 +82,7 @@ public class CannyEdgeDetector implements EdgeDetector {
                 this.bwImPixels[col][row] = (int) bw;
             }
         }
+        this.analyzedChannel = null;
     }
 
     /**
@@ -85,6 +99,7 @@ public class CannyEdgeDetector implements EdgeDetector {
                         (int) indexObject.getValue(col, row);
             }
         }
+        this.analyzedChannel = null;
     }
 
     /**
@@ -311,7 +326,30 @@ public class CannyEdgeDetector implements EdgeDetector {
     }
 
     /**
-     * Apply Canny edge detection algorithm to the whole image
+     * Set the gradient magnitudes and orientations of the input channel,
+     * computing them only if the channel differs from the previous one. The
+     * magnitudes are a copy that can be suppressed in place
+     *
+     * @param inputChannelMap input channel
+     */
+    private void analyze(int[][] inputChannelMap) {
+        if (inputChannelMap != this.analyzedChannel) {
+            this.computeMagnitudeAndTheta(inputChannelMap);
+            this.analyzedChannel = inputChannelMap;
+            this.analyzedMagnitudes = this.magnitudes;
+            this.analyzedTheta = this.theta;
+        }
+        this.magnitudes = new int[this.width][];
+        for (int col = 0; col < this.width; col++) {
+            this.magnitudes[col] = this.analyzedMagnitudes[col].clone();
+        }
+        this.theta = this.analyzedTheta;
+    }
+
+    /**
+     * Apply Canny edge detection algorithm to the whole image. The gradient
+     * of the input channel is computed once and shared by the subsequent
+     * calls with different thresholds
      *
      * @param fuzzyness  fuzzyness type (soft or exact)
      * @param highThresh higher threshold
@@ -330,7 +368,7 @@ public class CannyEdgeDetector implements EdgeDetector {
             }
         }
 
-        this.computeMagnitudeAndTheta(inputChannelMap);
+        this.analyze(inputChannelMap);
 
         // Non maxima suppression
         suppressNonMaxima(magnitudes, theta, lowThresh);
@@ -0,0 +1,586 @@
+package org.jvnet.ixent.algorithms.graphics.edgedetection;
+
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jvnet.ixent.graphics.IndexBitmapObject;
+import org.jvnet.ixent.math.filters.GaussConvolution;
+import org.jvnet.ixent.util.BandExecutor;
+import org.jvnet.ixent.util.BandExecutor.BandTask;
+
+/**
+ * Canny edge detector that processes the image in horizontal bands of rows
+ * concurrently. Each band of the smoothing, gradient and non-maxima
+ * suppression stages reads the rows of the neighbouring bands it needs from
+ * the shared result of the previous stage, so no band waits for another
+ * within a stage.<br>
+ * <p/>
+ * All the intermediate planes are flat column-major arrays, and the gradient
+ * orientation is kept as the <code>byte</code> non-maxima suppression
+ * sector. The hysteresis thresholding labels the connected components of the
+ * pixels above the lower threshold with union-find over an <code>int</code>
+ * array, first inside each band and then across the band seams, and keeps
+ * the components that have a pixel above the higher threshold.<br>
+ * <p/>
+ * Unlike {@link CannyEdgeDetector} that suppresses the magnitudes in place,
+ * this detector compares each pixel with the unsuppressed magnitudes of its
+ * neighbours, so that the result doesn't depend on the band partitioning.
+ * This also makes the suppression independent of the thresholds: it is
+ * computed once for the input image, as are the components for each lower
+ * threshold, and a repeated request for an edge map of the same strength is
+ * a single thresholding pass.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class CannyEdgeDetectorParallel implements EdgeDetector {
+    /**
+     * Tangent of 22.5 degrees - the boundary between two sectors
+     */
+    private static final double TAN_22_5 = Math.tan(Math.PI / 8.0);
+
+    /**
+     * Input image width
+     */
+    protected int width;
+
+    /**
+     * Input image height
+     */
+    protected int height;
+
+    /**
+     * Input image pixels in black and white (brightness) scale
+     */
+    private int[][] bwImPixels;
+
+    private int threadCount;
+
+    /**
+     * Non-maxima suppression result of the input image regardless of the
+     * thresholds, null until the first edge map is requested
+     */
+    private int[] maxima;
+
+    /**
+     * Connected components of the pixels above the lower threshold
+     */
+    private static final class Components {
+        /**
+         * Component root of each pixel above the lower threshold, -1 for the
+         * other pixels
+         */
+        private int[] roots;
+
+        /**
+         * Maximal magnitude in each component, kept at the component root
+         */
+        private int[] strengths;
+    }
+
+    /**
+     * Components of the input image by their lower threshold
+     */
+    private Map<Integer, Components> components;
+
+    /**
+     * Constructor. Uses as many threads as there are available processors.
+     */
+    public CannyEdgeDetectorParallel() {
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+        this.resetAnalysis();
+    }
+
+    /**
+     * Set number of threads
+     *
+     * @param pThreadCount number of threads
+     * @throws IllegalArgumentException if the number of threads is not
+     *                                  positive
+     */
+    public void setThreadCount(int pThreadCount) {
+        if (pThreadCount < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive");
+        }
+        this.threadCount = pThreadCount;
+    }
+
+    /**
+     * @param im input image
+     */
+    public void init(BufferedImage im) {
+        this.width = im.getWidth();
+        this.height = im.getHeight();
+
+        int[] rgbs = im.getRGB(0, 0, this.width, this.height, null, 0,
+                this.width);
+        this.bwImPixels = new int[this.width][this.height];
+        for (int row = 0; row < this.height; row++) {
+            for (int col = 0; col < this.width; col++) {
+                int currRGB = rgbs[row * this.width + col];
+                int red = (currRGB & 0x00FF0000) >>> 16;
+                int green = (currRGB & 0x0000FF00) >>> 8;
+                int blue = currRGB & 0x000000FF;
+                // compute perceived brightness of the pixel
+                this.bwImPixels[col][row] =
+                        (222 * red + 707 * green + 71 * blue) / 1000;
+            }
+        }
+
+        this.resetAnalysis();
+    }
+
+    /**
+     * @param indexObject input image as index bitmap object
+     */
+    public void init(IndexBitmapObject indexObject) {
+        this.width = indexObject.getWidth();
+        this.height = indexObject.getHeight();
+
+        this.bwImPixels = new int[this.width][this.height];
+        int[][] bitmap = indexObject.getBitmap();
+        for (int col = 0; col < this.width; col++) {
+            System.arraycopy(bitmap[col], 0, this.bwImPixels[col], 0,
+                    this.height);
+        }
+
+        this.resetAnalysis();
+    }
+
+    /**
+     * Discard the analysis of the previous input image
+     */
+    protected void resetAnalysis() {
+        this.maxima = null;
+        this.components = new HashMap<Integer, Components>();
+    }
+
+    /**
+     * Run the task on all the bands of rows and wait for its completion
+     *
+     * @param executor executor, null to run in the calling thread
+     * @param task     task
+     */
+    protected void processInBands(ExecutorService executor,
+                                  BandTask task) {
+        BandExecutor.processInBands(executor, this.height, this.threadCount,
+                task);
+    }
+
+    /**
+     * Compute non-maxima suppression sector of the gradient direction. The
+     * sectors are the same as in {@link CannyEdgeDetector}: 0 for the
+     * vertical gradient, 2 for the horizontal gradient, 1 and 3 for the
+     * diagonal ones
+     *
+     * @param p horizontal component
+     * @param q vertical component
+     * @return sector
+     */
+    protected static byte getSector(double p, double q) {
+        double absP = Math.abs(p);
+        double absQ = Math.abs(q);
+        if (absP < TAN_22_5 * absQ) {
+            return 0;
+        }
+        if (absQ < TAN_22_5 * absP) {
+            return 2;
+        }
+        if ((absP == 0) && (absQ == 0)) {
+            return 2;
+        }
+        return (byte) (((p > 0) == (q > 0)) ? 3 : 1);
+    }
+
+    /**
+     * Find the root of the pixel component
+     *
+     * @param parents parent of each pixel
+     * @param index   pixel index
+     * @return root index
+     */
+    private static int findRoot(int[] parents, int index) {
+        while (parents[index] != index) {
+            index = parents[index];
+        }
+        return index;
+    }
+
+    /**
+     * Find the root of the pixel component, halving the path to it
+     *
+     * @param parents parent of each pixel
+     * @param index   pixel index
+     * @return root index
+     */
+    private static int findRootHalving(int[] parents, int index) {
+        while (parents[index] != index) {
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    /**
+     * Merge the components of two pixels. The root with the smaller index
+     * becomes the root of the merged component
+     *
+     * @param parents parent of each pixel
+     * @param index1  the first pixel index
+     * @param index2  the second pixel index
+     */
+    private static void union(int[] parents, int index1, int index2) {
+        int root1 = findRootHalving(parents, index1);
+        int root2 = findRootHalving(parents, index2);
+        if (root1 < root2) {
+            parents[root2] = root1;
+        }
+        else if (root2 < root1) {
+            parents[root1] = root2;
+        }
+    }
+
+    /**
+     * Create executor for one edge map request
+     *
+     * @return executor, null if this detector is single-threaded
+     */
+    private ExecutorService createExecutor() {
+        if (this.threadCount <= 1) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(
+                Math.min(this.threadCount, this.height));
+    }
+
+    /**
+     * Compute the gradient magnitude and the non-maxima suppression sector of
+     * each pixel of the input image after Gaussian smoothing. The last
+     * column and the last row have zero magnitude
+     *
+     * @param executor   executor, null to run in the calling thread
+     * @param magnitudes array to fill with the gradient magnitudes
+     * @param sectors    array to fill with the suppression sectors
+     */
+    protected void computeGradient(ExecutorService executor,
+                                   final int[] magnitudes,
+                                   final byte[] sectors) {
+        final int w = this.width;
+        final int h = this.height;
+        final int[][] inputChannelMap = this.bwImPixels;
+
+        // 1. Gaussian smoothing
+        final GaussConvolution gaussConvolution = new GaussConvolution(1.0,
+                2);
+        final int[] smoothed = new int[w * h];
+        this.processInBands(executor, new BandTask() {
+            public void process(int rowStart, int rowEnd) {
+                for (int col = 0; col < w; col++) {
+                    for (int row = rowStart; row < rowEnd; row++) {
+                        smoothed[col * h + row] =
+                                gaussConvolution.pixelConvolution(
+                                        inputChannelMap, w, h, col, row);
+                    }
+                }
+            }
+        });
+
+        // 2. Gradient magnitude and orientation sector
+        this.processInBands(executor, new BandTask() {
+            public void process(int rowStart, int rowEnd) {
+                int lastRow = Math.min(rowEnd, h - 1);
+                for (int col = 0; col < (w - 1); col++) {
+                    int index = col * h;
+                    for (int row = rowStart; row < lastRow; row++) {
+                        int s00 = smoothed[index + row];
+                        int s01 = smoothed[index + row + 1];
+                        int s10 = smoothed[index + h + row];
+                        int s11 = smoothed[index + h + row + 1];
+                        int p = s01 - s00 + s11 - s10;
+                        int q = s00 - s10 + s01 - s11;
+                        magnitudes[index + row] = (int) Math.sqrt(
+                                (p * p + q * q) / 4.0);
+                        sectors[index + row] = getSector(p, q);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Compute the analysis of the input image that doesn't depend on the
+     * thresholds: Gaussian smoothing, gradient and non-maxima suppression
+     *
+     * @param executor executor, null to run in the calling thread
+     * @return gradient magnitude of the pixels that are local maxima along
+     *         the gradient, zero for the other pixels
+     */
+    private int[] suppressNonMaxima(ExecutorService executor) {
+        final int w = this.width;
+        final int h = this.height;
+
+        final int[] magnitudes = new int[w * h];
+        final byte[] sectors = new byte[w * h];
+        this.computeGradient(executor, magnitudes, sectors);
+
+        // 3. Non-maxima suppression. The border pixels are suppressed
+        final int[] result = new int[w * h];
+        this.processInBands(executor, new BandTask() {
+            public void process(int rowStart, int rowEnd) {
+                int firstRow = Math.max(rowStart, 1);
+                int lastRow = Math.min(rowEnd, h - 1);
+                for (int col = 1; col < (w - 1); col++) {
+                    for (int row = firstRow; row < lastRow; row++) {
+                        int index = col * h + row;
+                        int curr = magnitudes[index];
+                        if (curr == 0) {
+                            continue;
+                        }
+                        // offset of the two neighbours along the gradient
+                        int offset;
+                        switch (sectors[index]) {
+                            case 0:
+                                offset = h;
+                                break;
+                            case 1:
+                                offset = h + 1;
+                                break;
+                            case 2:
+                                offset = 1;
+                                break;
+                            default:
+                                offset = h - 1;
+                                break;
+                        }
+                        if ((magnitudes[index + offset] < curr)
+                                && (magnitudes[index - offset] <= curr)) {
+                            result[index] = curr;
+                        }
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Label the connected components of the pixels above the lower threshold
+     * with union-find: first inside each band, and then across the seams
+     * between the bands. Computes the component root of each pixel and the
+     * strength (maximal magnitude) of each component
+     *
+     * @param executor  executor, null to run in the calling thread
+     * @param lowThresh lower threshold
+     * @return components
+     */
+    private Components labelComponents(ExecutorService executor,
+                                 final int lowThresh) {
+        final int w = this.width;
+        final int h = this.height;
+        final int[] maxima = this.maxima;
+        // parent of each candidate pixel, -1 for the other pixels
+        final int[] parents = new int[w * h];
+
+        // label the components inside each band. Each pixel is merged with
+        // its already visited neighbours (left column and the row above)
+        this.processInBands(executor, new BandTask() {
+            public void process(int rowStart, int rowEnd) {
+                for (int col = 0; col < w; col++) {
+                    for (int row = rowStart; row < rowEnd; row++) {
+                        int index = col * h + row;
+                        if (maxima[index] <= lowThresh) {
+                            parents[index] = -1;
+                            continue;
+                        }
+                        parents[index] = index;
+                        if ((row > rowStart) && (parents[index - 1] >= 0)) {
+                            union(parents, index, index - 1);
+                        }
+                        if (col > 0) {
+                            for (int dy = -1; dy <= 1; dy++) {
+                                int nRow = row + dy;
+                                if ((nRow < rowStart) || (nRow >= rowEnd)) {
+                                    continue;
+                                }
+                                if (parents[index - h + dy] >= 0) {
+                                    union(parents, index, index - h + dy);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+
+        // merge the components across the seams
+        int bandCount = Math.min(this.threadCount, h);
+        if (executor != null) {
+            for (int band = 1; band < bandCount; band++) {
+                int row = h * band / bandCount;
+                for (int col = 0; col < w; col++) {
+                    int index = col * h + row;
+                    if (parents[index] < 0) {
+                        continue;
+                    }
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nCol = col + dx;
+                        if ((nCol < 0) || (nCol >= w)) {
+                            continue;
+                        }
+                        int neighbour = nCol * h + row - 1;
+                        if (parents[neighbour] >= 0) {
+                            union(parents, index, neighbour);
+                        }
+                    }
+                }
+            }
+        }
+
+        // find the root of each pixel
+        final int[] roots = new int[w * h];
+        this.processInBands(executor, new BandTask() {
+            public void process(int rowStart, int rowEnd) {
+                for (int col = 0; col < w; col++) {
+                    for (int row = rowStart; row < rowEnd; row++) {
+                        int index = col * h + row;
+                        roots[index] = (parents[index] < 0) ? -1 : findRoot(
+                                parents, index);
+                    }
+                }
+            }
+        });
+
+        // the strength of a component is kept at its root
+        int[] strengths = new int[w * h];
+        for (int index = 0; index < roots.length; index++) {
+            int root = roots[index];
+            if ((root >= 0) && (strengths[root] < maxima[index])) {
+                strengths[root] = maxima[index];
+            }
+        }
+
+        Components result = new Components();
+        result.roots = roots;
+        result.strengths = strengths;
+        return result;
+    }
+
+    /**
+     * Apply Canny edge detection algorithm to the whole image. The
+     * non-maxima suppression is computed on the first request, and the
+     * components on the first request for each lower threshold. Both are
+     * reused by the subsequent requests
+     *
+     * @param fuzzyness  fuzzyness type (soft or exact)
+     * @param highThresh higher threshold
+     * @param lowThresh  lower threshold
+     * @return 2-D array of values. The value at each pixel specifies the
+     *         probability of an edge passing through this point
+     */
+    private int[][] applyCannyAlgorithm(final EdgeFuzzyness fuzzyness,
+                                        final int highThresh,
+                                        final int lowThresh) {
+        final int w = this.width;
+        final int h = this.height;
+        final int[][] valueMap = new int[w][h];
+        if ((w < 3) || (h < 3)) {
+            return valueMap;
+        }
+
+        ExecutorService executor = this.createExecutor();
+        try {
+            if (this.maxima == null) {
+                this.maxima = this.suppressNonMaxima(executor);
+            }
+            final boolean isExact = (fuzzyness == EdgeFuzzyness.exact);
+            Components exactComponents = null;
+            if (isExact) {
+                exactComponents = this.components.get(lowThresh);
+                if (exactComponents == null) {
+                    exactComponents = this.labelComponents(executor,
+                            lowThresh);
+                    this.components.put(lowThresh, exactComponents);
+                }
+            }
+
+            // thresholding
+            final int[] maxima = this.maxima;
+            final int[] roots = isExact ? exactComponents.roots : null;
+            final int[] strengths = isExact ? exactComponents.strengths
+                    : null;
+            this.processInBands(executor, new BandTask() {
+                public void process(int rowStart, int rowEnd) {
+                    for (int col = 0; col < w; col++) {
+                        for (int row = rowStart; row < rowEnd; row++) {
+                            int index = col * h + row;
+                            int value = maxima[index];
+                            if (isExact) {
+                                // hysteresis - keep the pixels of the
+                                // components above the higher threshold
+                                int root = roots[index];
+                                if ((root < 0)
+                                        || (strengths[root] < highThresh)) {
+                                    value = 0;
+                                }
+                            }
+                            else if (value < lowThresh) {
+                                value = 0;
+                            }
+                            if (value > 0) {
+                                value = Math.min(255, 100 + 3 * value);
+                            }
+                            valueMap[col][row] = value;
+                        }
+                    }
+                }
+            });
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        return valueMap;
+    }
+
+
+    /**
+     * Return edge map.
+     *
+     * @param fuzzyness edge fuzzyness (soft or exact)
+     * @param strength  edge strength (soft - many edges, very string - few
+     *                  edges)
+     * @return 2-D array of values. The value at each pixel specifies the
+     *         probability of an edge passing through this point
+     */
+    private int[][] getValueMap(EdgeFuzzyness fuzzyness,
+                                EdgeStrength strength) {
+        switch (strength) {
+            case veryStrong:
+                return applyCannyAlgorithm(fuzzyness, 80, 40);
+            case strong:
+                return applyCannyAlgorithm(fuzzyness, 60, 30);
+            case medium:
+                return applyCannyAlgorithm(fuzzyness, 50, 25);
+            case soft:
+                return applyCannyAlgorithm(fuzzyness, 30, 15);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Return edge map.
+     *
+     * @param fuzzyness edge fuzzyness (soft or exact)
+     * @param strength  edge strength (soft - many edges, very string - few
+     *                  edges)
+     * @return 2-D array of values. The value at each pixel specifies the
+     *         probability of an edge passing through this point
+     */
+    public IndexBitmapObject getValueMap2D(EdgeFuzzyness fuzzyness,
+                                           EdgeStrength strength) {
+        return new IndexBitmapObject(getValueMap(fuzzyness, strength),
+                this.width, this.height);
+    }
+}
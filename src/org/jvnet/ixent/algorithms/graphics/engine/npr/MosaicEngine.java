@@ -6,10 +6,13 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.jvnet.ixent.algorithms.graphics.engine.NprEngineBase;
 import org.jvnet.ixent.algorithms.graphics.engine.linkinfo.WeightedWrapper;
+import org.jvnet.ixent.algorithms.graphics.engine.npr.mosaic.SquareIndex;
 import org.jvnet.ixent.algorithms.graphics.segmentation.SegmentationInfo;
 import org.jvnet.ixent.algorithms.graphics.turbulence.DisplacementMatrix;
 import org.jvnet.ixent.graphics.IndexBitmapObject;
@@ -62,6 +65,44 @@ public class MosaicEngine extends NprEngineBase {
 	 */
 	private Square2D[][] allocatedSquares;
 
+	/**
+	 * spatial index of all allocated mosaic squares
+	 */
+	private SquareIndex squareIndex;
+
+	/**
+	 * maximal side of mosaic tile
+	 */
+	private static final double MAX_SIDE = 5;
+
+	/**
+	 * side of blocks (in grid cells of square index) for parallel tile
+	 * placement
+	 */
+	private static final int BLOCK_CELLS = 8;
+
+	/**
+	 * seed for shuffling the pixels
+	 */
+	private long seed = new Random().nextLong();
+
+	/**
+	 * number of threads for tile placement
+	 */
+	private int threadCount = 1;
+
+	/**
+	 * seconds that an idle thread of the placement pool is kept alive
+	 */
+	private static final int POOL_KEEP_ALIVE = 10;
+
+	/**
+	 * pool for parallel tile placement, shared by subsequent renders. Its
+	 * threads are daemons and exit when idle, so it doesn't need to be shut
+	 * down
+	 */
+	private ThreadPoolExecutor executor;
+
 	/**
 	 * an array for finding mosaic sqaures centers
 	 */
@@ -74,6 +115,66 @@ public class MosaicEngine extends NprEngineBase {
 		super();
 	}
 
+	/**
+	 * Set seed for shuffling the pixels. Renders of the same input with the
+	 * same seed produce the same result in sequential mode, and the same
+	 * result for any number of threads in parallel mode. If not set, a random
+	 * seed is used.
+	 * 
+	 * @param pSeed
+	 *            seed
+	 */
+	public void setSeed(long pSeed) {
+		this.seed = pSeed;
+	}
+
+	/**
+	 * Set number of threads for tile placement. With more than one thread,
+	 * the image is partitioned into checkerboard blocks wider than the
+	 * largest tile, and the blocks of the same color are processed
+	 * concurrently.
+	 * 
+	 * @param pThreadCount
+	 *            number of threads
+	 * @throws IllegalArgumentException
+	 *             if the number of threads is not positive
+	 */
+	public void setThreadCount(int pThreadCount) {
+		if (pThreadCount < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be positive");
+		}
+		if ((this.executor != null) && (this.threadCount != pThreadCount)) {
+			this.executor.shutdown();
+			this.executor = null;
+		}
+		this.threadCount = pThreadCount;
+	}
+
+	/**
+	 * Return the pool for parallel tile placement, creating it on first use
+	 * 
+	 * @return pool with {@link #threadCount} threads
+	 */
+	private ExecutorService getExecutor() {
+		if (this.executor == null) {
+			this.executor = new ThreadPoolExecutor(this.threadCount,
+					this.threadCount, POOL_KEEP_ALIVE, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private ThreadFactory defaultFactory = Executors
+								.defaultThreadFactory();
+
+						public Thread newThread(Runnable r) {
+							Thread result = this.defaultFactory.newThread(r);
+							result.setDaemon(true);
+							return result;
+						}
+					});
+			this.executor.allowCoreThreadTimeOut(true);
+		}
+		return this.executor;
+	}
+
 	/**
 	 * Initialize this engine with all the input information
 	 * 
@@ -110,59 +211,81 @@ public class MosaicEngine extends NprEngineBase {
 
 	/**
 	 * Order all the pixels by degree of vicinity to some image feature. The
-	 * result is a collection of lists of pixels. Each list holds all the pixels
-	 * lying at the same distance from some image feature. The entries in the
-	 * list are shuffled randomly to prevent artifacts around top-left corner of
-	 * the resulting image
+	 * result is an array of pixel lists, one for each distance from image
+	 * features. Each list holds all the pixels lying at this distance, packed
+	 * by {@link #getPixelIndex(int, int)}. The entries in the list are
+	 * shuffled randomly to prevent artifacts around top-left corner of the
+	 * resulting image
 	 * 
-	 * @return A collection of lists of pixels. Each list holds all the pixels
-	 *         lying at the same distance from some image feature. The entries
-	 *         in the list are shuffled randomly to prevent artifacts around
-	 *         top-left corner of the resulting image
+	 * @param region
+	 *            image region to take the pixels from
+	 * @param random
+	 *            random generator for shuffling the pixels
+	 * @return An array of pixel lists indexed by distance from image features.
+	 *         The entries in each list are shuffled randomly to prevent
+	 *         artifacts around top-left corner of the resulting image
 	 */
-	private Map<Integer, List<DoubleHolder<Integer>>> orderPixelsByStructureVicinity() {
-		// find minimum and maximum distance
+	private int[][] orderPixelsByStructureVicinity(Rectangle region,
+			Random random) {
+		// find maximum distance
 		IndexBitmapObject distanceObject = this.structureVicinityLinkInfo
 				.getLinkObject();
-		int minimalDist = distanceObject.getValue(0, 0);
-		int maximalDist = minimalDist;
-		for (int col = 0; col < this.imageWidth; col++) {
-			for (int row = 0; row < this.imageHeight; row++) {
-				int currDist = distanceObject.getValue(col, row);
-				if (currDist < minimalDist) {
-					minimalDist = currDist;
-				}
-				if (currDist > maximalDist) {
-					maximalDist = currDist;
-				}
+		int maximalDist = 0;
+		for (int col = region.x; col < region.x + region.width; col++) {
+			for (int row = region.y; row < region.y + region.height; row++) {
+				maximalDist = Math.max(maximalDist, distanceObject.getValue(
+						col, row));
 			}
 		}
 
-		List<DoubleHolder<Integer>>[] temporary = new List[maximalDist + 1];
-		for (int i = 0; i <= maximalDist; i++) {
-			temporary[i] = new LinkedList<DoubleHolder<Integer>>();
-		}
-
-		for (int col = 0; col < this.imageWidth; col++) {
-			for (int row = 0; row < this.imageHeight; row++) {
-				int currDist = distanceObject.getValue(col, row);
-				temporary[currDist].add(new DoubleHolder<Integer>(col, row));
+		// count pixels at each distance
+		int[] counts = new int[maximalDist + 1];
+		for (int col = region.x; col < region.x + region.width; col++) {
+			for (int row = region.y; row < region.y + region.height; row++) {
+				counts[distanceObject.getValue(col, row)]++;
 			}
 		}
 
-		// shuffle them
+		int[][] result = new int[maximalDist + 1][];
 		for (int i = 0; i <= maximalDist; i++) {
-			Collections.shuffle(temporary[i]);
+			result[i] = new int[counts[i]];
+			counts[i] = 0;
+		}
+		for (int col = region.x; col < region.x + region.width; col++) {
+			for (int row = region.y; row < region.y + region.height; row++) {
+				int currDist = distanceObject.getValue(col, row);
+				result[currDist][counts[currDist]++] = this.getPixelIndex(col,
+						row);
+			}
 		}
 
-		Map<Integer, List<DoubleHolder<Integer>>> result = new HashMap<Integer, List<DoubleHolder<Integer>>>();
+		// shuffle them (Fisher-Yates)
 		for (int i = 0; i <= maximalDist; i++) {
-			result.put(i, temporary[i]);
+			int[] pixels = result[i];
+			for (int j = pixels.length - 1; j > 0; j--) {
+				int k = random.nextInt(j + 1);
+				int temp = pixels[j];
+				pixels[j] = pixels[k];
+				pixels[k] = temp;
+			}
 		}
 
 		return result;
 	}
 
+	/**
+	 * Pack pixel coordinates into a single index
+	 * 
+	 * @param column
+	 *            pixel column
+	 * @param row
+	 *            pixel row
+	 * @return packed index of the pixel
+	 */
+	private int getPixelIndex(int column, int row) {
+		return column * this.imageHeight + row;
+	}
+
 	/**
 	 * Compute side of mosaic tile based on the distance to image feature
 	 * 
@@ -180,7 +303,7 @@ public class MosaicEngine extends NprEngineBase {
 		case 4:
 			return 4;
 		default:
-			return 5;
+			return MAX_SIDE;
 		}
 	}
 
@@ -192,35 +315,27 @@ public class MosaicEngine extends NprEngineBase {
 	 *            pixel column
 	 * @param row
 	 *            pixel row
+	 * @param neighbourhood
+	 *            buffer for neighbouring squares
 	 * @return <code>Square2D</code> if succeeded to allocate such a square,
 	 *         <code>null</code> if failed
 	 */
-	private Square2D fitSquare(int column, int row) {
+	private Square2D fitSquare(int column, int row,
+			SquareIndex.Neighbourhood neighbourhood) {
 		// compute side of this square
 		double side = this.getSide(this.structureVicinityLinkInfo
 				.getLinkObject().getValue(column, row));
-		int radius = (int) (Math
-				.ceil(2.0 * Math.sqrt(0.25 + side * side / 2.0)));
 		double angle = this.structureGradientLinkInfo.getLinkObject().getValue(
 				column, row);
 
-		// compute all neighbouring squares that can intersect with this square
-		List<Square2D> neighbouringSquares = new LinkedList<Square2D>();
-		int colStart = Math.max(0, column - radius);
-		int colEnd = Math.min(this.imageWidth - 1, column + radius);
-		int rowStart = Math.max(0, row - radius);
-		int rowEnd = Math.min(this.imageHeight - 1, row + radius);
-		for (int currCol = colStart; currCol <= colEnd; currCol++) {
-			for (int currRow = rowStart; currRow <= rowEnd; currRow++) {
-				if (this.allocatedSquares[currCol][currRow] != null) {
-					neighbouringSquares
-							.add(this.allocatedSquares[currCol][currRow]);
-				}
-			}
-		}
+		// collect all allocated squares that can intersect with this square
+		// centered anywhere inside this pixel
+		double extent = side / Math.sqrt(2.0);
+		this.squareIndex.getNeighbourhood(column - extent, row - extent,
+				column + 1 + extent, row + 1 + extent, neighbourhood);
 
 		// if no neighbours with squares - just create a new square
-		if (neighbouringSquares.size() == 0) {
+		if (neighbourhood.isEmpty()) {
 			return new Square2D(new Point2D.Double(column + 0.5, row + 0.5),
 					side, angle);
 		}
@@ -234,7 +349,7 @@ public class MosaicEngine extends NprEngineBase {
 				double currY = startingY + this.delta[j];
 				Square2D currSquare = new Square2D(new Point2D.Double(currX,
 						currY), side, angle);
-				if (!currSquare.intersects(neighbouringSquares, false)) {
+				if (!neighbourhood.intersects(currSquare)) {
 					return currSquare;
 				}
 			}
@@ -253,42 +368,38 @@ public class MosaicEngine extends NprEngineBase {
 	 *            pixel column
 	 * @param row
 	 *            pixel row
+	 * @param maxAllowedPercentageOfArea
+	 *            maximal allowed overlap (fraction of area)
+	 * @param neighbourhood
+	 *            buffer for neighbouring squares
 	 * @return <code>Square2D</code> if succeeded to allocate such a square,
 	 *         <code>null</code> if failed
 	 */
 	private Square2D fitSquare(int column, int row,
-			double maxAllowedPercentageOfArea) {
+			double maxAllowedPercentageOfArea,
+			SquareIndex.Neighbourhood neighbourhood) {
 		// compute side of this square
 		double side = this.getSide(this.structureVicinityLinkInfo
 				.getLinkObject().getValue(column, row) / 2);
-		int radius = (int) (Math
-				.ceil(2.0 * Math.sqrt(0.25 + side * side / 2.0)));
 		double angle = this.structureGradientLinkInfo.getLinkObject().getValue(
 				column, row);
 
-		// compute all neighbouring squares that can intersect with this square
-		List<Square2D> neighbouringSquares = new LinkedList<Square2D>();
-		int colStart = Math.max(0, column - radius);
-		int colEnd = Math.min(this.imageWidth - 1, column + radius);
-		int rowStart = Math.max(0, row - radius);
-		int rowEnd = Math.min(this.imageHeight - 1, row + radius);
-		for (int currCol = colStart; currCol <= colEnd; currCol++) {
-			for (int currRow = rowStart; currRow <= rowEnd; currRow++) {
-				if (this.allocatedSquares[currCol][currRow] != null) {
-					neighbouringSquares
-							.add(this.allocatedSquares[currCol][currRow]);
-				}
-			}
-		}
+		// collect all allocated squares that can intersect with this square
+		// centered anywhere inside this pixel
+		double extent = side / Math.sqrt(2.0);
+		this.squareIndex.getNeighbourhood(column - extent, row - extent,
+				column + 1 + extent, row + 1 + extent, neighbourhood);
 
 		// if no neighbours with squares - just create a new square
-		if (neighbouringSquares.size() == 0) {
+		if (neighbourhood.isEmpty()) {
 			return new Square2D(new Point2D.Double(column + 0.5, row + 0.5),
 					side, angle);
 		}
 
 		Square2D currSquare = new Square2D(new Point2D.Double(column + 0.5,
 				row + 0.5), side, angle);
+		List<Square2D> neighbouringSquares = new ArrayList<Square2D>();
+		neighbourhood.getCandidates(currSquare, neighbouringSquares);
 		if (!currSquare.partlyOverlaps(neighbouringSquares,
 				maxAllowedPercentageOfArea)) {
 			return currSquare;
@@ -330,17 +441,27 @@ public class MosaicEngine extends NprEngineBase {
 	 *            pixel column to start from
 	 * @param rowToStart
 	 *            pixel row to start from
+	 * @param region
+	 *            image region to allocate the mosaic squares in
+	 * @param neighbourhood
+	 *            buffer for neighbouring squares
+	 * @param pixels
+	 *            (empty) work queue for packed pixel indices
 	 */
-	private void processSinglePixel(int columnToStart, int rowToStart) {
-		List<DoubleHolder<Integer>> pixels = new LinkedList<DoubleHolder<Integer>>();
-		pixels.add(new DoubleHolder<Integer>(columnToStart, rowToStart));
+	private void processSinglePixel(int columnToStart, int rowToStart,
+			Rectangle region, SquareIndex.Neighbourhood neighbourhood,
+			IntQueue pixels) {
+		pixels.add(this.getPixelIndex(columnToStart, rowToStart));
 
-		while (pixels.size() > 0) {
+		while (!pixels.isEmpty()) {
 			// get the first pixel
-			DoubleHolder<Integer> firstPixel = pixels.remove(0);
-			int column = firstPixel.getValue1();
-			int row = firstPixel.getValue2();
-			this.logger.finest("Process pixel [" + column + ", " + row + "]");
+			int firstPixel = pixels.remove();
+			int column = firstPixel / this.imageHeight;
+			int row = firstPixel % this.imageHeight;
+			if (this.logger.isLoggable(Level.FINEST)) {
+				this.logger.finest("Process pixel [" + column + ", " + row
+						+ "]");
+			}
 			PixelStatus currStatus = this.pixelStatus[column][row];
 			if ((currStatus == PixelStatus.marked)
 					|| (currStatus == PixelStatus.notCandidate)) {
@@ -351,7 +472,7 @@ public class MosaicEngine extends NprEngineBase {
 			}
 
 			// try fitting a square
-			Square2D squareToFit = this.fitSquare(column, row);
+			Square2D squareToFit = this.fitSquare(column, row, neighbourhood);
 			double minDistance, maxDistance;
 			if (squareToFit == null) {
 				this.logger.finest("No square fit");
@@ -363,9 +484,12 @@ public class MosaicEngine extends NprEngineBase {
 				maxDistance = 1.5;
 			} else {
 				// mark this pixel as taken
-				this.logger.finest("Square fit: " + squareToFit.toString());
+				if (this.logger.isLoggable(Level.FINEST)) {
+					this.logger.finest("Square fit: " + squareToFit.toString());
+				}
 				this.pixelStatus[column][row] = PixelStatus.marked;
 				this.allocatedSquares[column][row] = squareToFit;
+				this.squareIndex.add(squareToFit);
 				// mark all the pixels that are completely covered by this
 				// square as
 				// not candidates
@@ -394,13 +518,14 @@ public class MosaicEngine extends NprEngineBase {
 				maxDistance = minDistance + 1.5;
 			}
 
-			int startColumn = Math.max(0, (int) (Math.floor(column
+			int startColumn = Math.max(region.x, (int) (Math.floor(column
 					- maxDistance)));
-			int endColumn = Math.min(this.imageWidth - 1, (int) (Math
+			int endColumn = Math.min(region.x + region.width - 1, (int) (Math
 					.floor(column + maxDistance)));
-			int startRow = Math.max(0, (int) (Math.floor(row - maxDistance)));
-			int endRow = Math.min(this.imageHeight - 1, (int) (Math.floor(row
-					+ maxDistance)));
+			int startRow = Math.max(region.y, (int) (Math.floor(row
+					- maxDistance)));
+			int endRow = Math.min(region.y + region.height - 1, (int) (Math
+					.floor(row + maxDistance)));
 
 			IndexBitmapObject distMatrix = this.structureVicinityLinkInfo
 					.getLinkObject();
@@ -419,7 +544,7 @@ public class MosaicEngine extends NprEngineBase {
 							.getValue(column, row)) {
 						continue;
 					}
-					pixels.add(new DoubleHolder<Integer>(currCol, currRow));
+					pixels.add(this.getPixelIndex(currCol, currRow));
 					this.pixelStatus[currCol][currRow] = PixelStatus.queued;
 				}
 			}
@@ -427,21 +552,121 @@ public class MosaicEngine extends NprEngineBase {
 	}
 
 	/**
-	 * Return resulting image
+	 * Allocate the mosaic squares in the specified image region. The pixels
+	 * of the region are processed in the order of increasing distance from
+	 * image features, and all the allocated squares are centered in the
+	 * region.
 	 * 
-	 * @return the resulting image
+	 * @param region
+	 *            image region
+	 * @param regionSeed
+	 *            seed for shuffling the pixels of the region
 	 */
-	public BufferedImage getResultingImage() {
-		long time0 = System.currentTimeMillis();
+	private void placeSquares(Rectangle region, long regionSeed) {
 		// create the following data structure:
 		// each element in it contains a list of all pixels that lie at the
 		// same distance from some image feature
 		// the pixels in each list are shuffled randomly
 		// the elements in the data structure are sorted by the distance
 		// that is common to all the pixels in each element
-		Map<Integer, List<DoubleHolder<Integer>>> distanceBins = this
-				.orderPixelsByStructureVicinity();
+		int[][] distanceBins = this.orderPixelsByStructureVicinity(region,
+				new Random(regionSeed));
+
+		SquareIndex.Neighbourhood neighbourhood = new SquareIndex.Neighbourhood();
+		IntQueue pixels = new IntQueue(256);
+
+		for (int currDist = 0; currDist < distanceBins.length; currDist++) {
+			this.logger.finer("Checking all pixels at distance " + currDist);
+			for (int currPixel : distanceBins[currDist]) {
+				int column = currPixel / this.imageHeight;
+				int row = currPixel % this.imageHeight;
 
+				if (this.pixelStatus[column][row] == PixelStatus.notMarked) {
+					if (this.logger.isLoggable(Level.FINEST)) {
+						this.logger.finest("Start from pixel [" + column + ", "
+								+ row + "]");
+					}
+					this.processSinglePixel(column, row, region,
+							neighbourhood, pixels);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Allocate the mosaic squares in parallel. The image is partitioned into
+	 * square blocks that are wider than the reach of a single mosaic square
+	 * (including the cells of square index that are checked when it is
+	 * fitted). The blocks are colored in four colors so that blocks of the
+	 * same color are never adjacent (not even diagonally), and the blocks of
+	 * each color are processed concurrently. The squares are allocated
+	 * without crossing the block boundaries, so the blocks of each subsequent
+	 * color act as seams that are fitted around the squares of the already
+	 * processed neighbouring blocks.<br>
+	 * <p/>
+	 * Each block is shuffled with its own seed derived from the engine seed,
+	 * and no two concurrently processed blocks share any state, so the result
+	 * does not depend on the thread scheduling.
+	 */
+	private void placeSquaresInParallel() {
+		final int blockSize = BLOCK_CELLS
+				* (int) this.squareIndex.getCellSize();
+		int blockColumns = (this.imageWidth + blockSize - 1) / blockSize;
+		int blockRows = (this.imageHeight + blockSize - 1) / blockSize;
+		this.logger.fine("Placing squares in " + blockColumns + "x"
+				+ blockRows + " blocks of " + blockSize + " pixels");
+		ExecutorService executor = this.getExecutor();
+		for (int color = 0; color < 4; color++) {
+			List<Future<?>> futures = new LinkedList<Future<?>>();
+			for (int blockCol = color % 2; blockCol < blockColumns; blockCol += 2) {
+				for (int blockRow = color / 2; blockRow < blockRows; blockRow += 2) {
+					final Rectangle block = new Rectangle(blockCol
+							* blockSize, blockRow * blockSize, Math.min(
+							blockSize, this.imageWidth - blockCol
+									* blockSize), Math.min(blockSize,
+							this.imageHeight - blockRow * blockSize));
+					final long blockSeed = this.seed
+							+ (blockCol * (long) blockRows + blockRow)
+							* 0x9E3779B97F4A7C15L;
+					futures.add(executor.submit(new Runnable() {
+						public void run() {
+							placeSquares(block, blockSeed);
+						}
+					}));
+				}
+			}
+			BandExecutor.waitFor(futures);
+		}
+	}
+
+	/**
+	 * Return status of each pixel after the last call to
+	 * {@link #getResultingImage()}
+	 * 
+	 * @return status of each pixel, indexed by column and row
+	 */
+	public PixelStatus[][] getPixelStatus() {
+		return this.pixelStatus;
+	}
+
+	/**
+	 * Return the mosaic squares allocated by the last call to
+	 * {@link #getResultingImage()}
+	 * 
+	 * @return the square centered in each pixel marked as having one,
+	 *         <code>null</code> for other pixels
+	 */
+	public Square2D[][] getAllocatedSquares() {
+		return this.allocatedSquares;
+	}
+
+	/**
+	 * Return resulting image
+	 * 
+	 * @return the resulting image
+	 */
+	public BufferedImage getResultingImage() {
+		long time0 = System.currentTimeMillis();
 		// initialize pixel status matrix
 		this.pixelStatus = new PixelStatus[this.imageWidth][this.imageHeight];
 		for (int col = 0; col < this.imageWidth; col++) {
@@ -451,43 +676,29 @@ public class MosaicEngine extends NprEngineBase {
 		}
 
 		this.allocatedSquares = new Square2D[this.imageWidth][this.imageHeight];
-
-		Set<Integer> distanceSet = distanceBins.keySet();
-		List<Integer> orderedDistances = new ArrayList<Integer>();
-		for (int currDist : distanceSet) {
-			orderedDistances.add(currDist);
-		}
-		Collections.sort(orderedDistances);
-		for (int currDist : orderedDistances) {
-			this.logger.finer("Checking all pixels at distance " + currDist);
-			List<DoubleHolder<Integer>> pixelsAtThisDistance = distanceBins
-					.get(currDist);
-
-			// take the first pixel from the corresponding list
-			while (pixelsAtThisDistance.size() > 0) {
-				DoubleHolder<Integer> currPixel = pixelsAtThisDistance
-						.remove(0);
-				int column = currPixel.getValue1();
-				int row = currPixel.getValue2();
-
-				if (this.pixelStatus[column][row] == PixelStatus.notMarked) {
-					this.logger.finest("Start from pixel [" + column + ", "
-							+ row + "]");
-					this.processSinglePixel(column, row);
-				}
-			}
+		this.squareIndex = new SquareIndex(this.imageWidth, this.imageHeight,
+				MAX_SIDE);
+
+		if (this.threadCount > 1) {
+			this.placeSquaresInParallel();
+		} else {
+			this.placeSquares(new Rectangle(0, 0, this.imageWidth,
+					this.imageHeight), this.seed);
 		}
 
+		SquareIndex.Neighbourhood neighbourhood = new SquareIndex.Neighbourhood();
 		for (int col = 0; col < this.imageWidth; col++) {
 			for (int row = 0; row < this.imageHeight; row++) {
 				assert this.pixelStatus[col][row] != PixelStatus.notMarked : "Pixel ["
 						+ col + ", " + row + "] is notMarked";
 				if (this.pixelStatus[col][row] == PixelStatus.notCandidate) {
 					// try to fit overlapping square
-					Square2D overlappingSquare = this.fitSquare(col, row, 0.1);
+					Square2D overlappingSquare = this.fitSquare(col, row, 0.1,
+							neighbourhood);
 					if (overlappingSquare != null) {
 						this.pixelStatus[col][row] = PixelStatus.markedOverlapping;
 						this.allocatedSquares[col][row] = overlappingSquare;
+						this.squareIndex.add(overlappingSquare);
 					}
 				}
 			}
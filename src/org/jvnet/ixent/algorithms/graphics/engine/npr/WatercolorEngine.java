@@ -3,6 +3,8 @@ package org.jvnet.ixent.algorithms.graphics.engine.npr;
 import java.awt.*;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.List;
 import java.util.logging.Logger;
@@ -14,7 +16,6 @@ import org.jvnet.ixent.algorithms.graphics.engine.linkinfo.WeightedWrapper;
 import org.jvnet.ixent.algorithms.graphics.engine.npr.watercolor.*;
 import org.jvnet.ixent.algorithms.graphics.segmentation.SegmentationInfo;
 import org.jvnet.ixent.algorithms.graphics.turbulence.DisplacementMatrix;
-import org.jvnet.ixent.algorithms.graphics.turbulence.PerlinNoiseGenerator;
 import org.jvnet.ixent.graphics.IndexBitmapObject;
 import org.jvnet.ixent.math.MathConstants;
 import org.jvnet.ixent.math.coord.Polygon2D;
@@ -36,8 +37,7 @@ import org.jvnet.ixent.util.WeightedPixel;
  * @author Kirill Grouchnikov
  */
 public class WatercolorEngine extends NprEngineBase {
-	private static final double MIN_FLUID_CAPACITY = 0.2;
-	private static final double MAX_FLUID_CAPACITY = 0.8;
+	private static final long DEFAULT_PAPER_SEED = 0x1CE27L;
 	private static final int MAIN_LOOP_ITERATIONS = 10;
 	private static final double WATERCOLOR_VISCOSITY = 0.1;
 	private static final double WATERCOLOR_VISCOUS_DRAG = 0.01;
@@ -53,34 +53,38 @@ public class WatercolorEngine extends NprEngineBase {
 
 	private Logger logger;
 
-	private PaperCellProperties[][] paperProperties;
+	private PaperTexture paperTexture;
 
-	private Glaze[] glazes;
+	private PigmentList[][] paperPigmentConcentrations;
+
+	private long paperSeed;
+
+	private int paperTileWidth;
+
+	private int paperTileHeight;
 
-	private double[][] tempVelocityX;
-	private double[][] tempVelocityY;
-	private double[][] tempConcentration;
-	private double[][] tempConcentration2;
+	private File paperCacheDirectory;
+
+	private File checkpointFile;
+
+	private int checkpointInterval;
+
+	private CheckpointCallback checkpointCallback;
+
+	private Glaze[] glazes;
 
 	/**
-	 * A class for holding information on single cell of watercolor paper
-	 * medium.
+	 * Fingerprint of the input and the configuration of the current render
 	 */
-	private static class PaperCellProperties {
-		public double paperHeight;
-		public double slopeX;
-		public double slopeY;
-		public double fluidCapacity;
-		public PigmentList pigmentConcentrations;
-
-		public PaperCellProperties() {
-			this.paperHeight = 0.0;
-			this.slopeX = 0.0;
-			this.slopeY = 0.0;
-			this.fluidCapacity = 0.0;
-			this.pigmentConcentrations = new PigmentList();
-		}
-	}
+	private long fingerprint;
+
+	private SimulationPrecision precision;
+
+	// temporary per-pixel state is stored column by column
+	private ScalarField tempVelocityX;
+	private ScalarField tempVelocityY;
+	private ScalarField tempConcentration;
+	private ScalarField tempConcentration2;
 
 	/**
 	 * Construct watercolor engine
@@ -89,6 +93,97 @@ public class WatercolorEngine extends NprEngineBase {
 		super();
 		this.logger = Logger.getLogger(WatercolorEngine.class.getPackage()
 				.getName());
+		this.paperSeed = DEFAULT_PAPER_SEED;
+		this.paperTileWidth = 0;
+		this.paperTileHeight = 0;
+		this.paperCacheDirectory = null;
+		this.precision = SimulationPrecision.doublePrecision;
+		this.checkpointFile = null;
+		this.checkpointInterval = 0;
+	}
+
+	/**
+	 * Set the checkpoint file of the simulation. If the file exists when the
+	 * resulting image is computed, the simulation is resumed from the state
+	 * stored in it. During the simulation the state is written to this file
+	 * every <code>pCheckpointInterval</code> iterations of the main loop. The
+	 * file is deleted once the simulation is complete.
+	 * 
+	 * @param pCheckpointFile
+	 *            checkpoint file. If <code>null</code>, no checkpoints are
+	 *            written or resumed
+	 * @param pCheckpointInterval
+	 *            number of main loop iterations between checkpoints.
+	 *            Non-positive value - only resume, never write checkpoints
+	 * @see WatercolorCheckpoint
+	 */
+	public void setCheckpoint(File pCheckpointFile, int pCheckpointInterval) {
+		this.checkpointFile = pCheckpointFile;
+		this.checkpointInterval = pCheckpointInterval;
+	}
+
+	/**
+	 * Set the callback that is invoked after each checkpoint is written
+	 * 
+	 * @param pCheckpointCallback
+	 *            callback, <code>null</code> for none
+	 * @see #setCheckpoint(File, int)
+	 */
+	public void setCheckpointCallback(CheckpointCallback pCheckpointCallback) {
+		this.checkpointCallback = pCheckpointCallback;
+	}
+
+	/**
+	 * Set the precision of the simulation state (water velocities, pressure,
+	 * saturation and paper properties). The pigment concentrations are not
+	 * affected.
+	 * 
+	 * @param pPrecision
+	 *            precision of the simulation state
+	 */
+	public void setPrecision(SimulationPrecision pPrecision) {
+		if (pPrecision == null) {
+			throw new IllegalArgumentException("Can't pass null precision");
+		}
+		this.precision = pPrecision;
+	}
+
+	/**
+	 * Set the seed of the paper texture. Renders with the same seed (and paper
+	 * dimensions) share the same paper texture.
+	 * 
+	 * @param pPaperSeed
+	 *            seed of the paper texture
+	 */
+	public void setPaperSeed(long pPaperSeed) {
+		this.paperSeed = pPaperSeed;
+	}
+
+	/**
+	 * Set the dimensions of the paper texture tile. The tile is repeated to
+	 * cover the whole image, which allows sharing a single paper texture
+	 * between images of different sizes.
+	 * 
+	 * @param pPaperTileWidth
+	 *            tile width. Non-positive value - the width of the image
+	 * @param pPaperTileHeight
+	 *            tile height. Non-positive value - the height of the image
+	 */
+	public void setPaperTileSize(int pPaperTileWidth, int pPaperTileHeight) {
+		this.paperTileWidth = pPaperTileWidth;
+		this.paperTileHeight = pPaperTileHeight;
+	}
+
+	/**
+	 * Set the directory for persisting generated paper textures.
+	 * 
+	 * @param pPaperCacheDirectory
+	 *            directory for persisted paper textures. If <code>null</code>,
+	 *            the paper textures are kept only in memory
+	 * @see PaperTextureCache
+	 */
+	public void setPaperCacheDirectory(File pPaperCacheDirectory) {
+		this.paperCacheDirectory = pPaperCacheDirectory;
 	}
 
 	/**
@@ -124,71 +219,37 @@ public class WatercolorEngine extends NprEngineBase {
 	}
 
 	/**
-	 * Generate various paper parameters (height, slope, ...)
+	 * Get the paper texture (height, slope, ...) from the shared cache and
+	 * allocate the pigment deposition layer
 	 */
 	private void generatePaper() {
-		this.paperProperties = new PaperCellProperties[this.imageWidth][this.imageHeight];
-		for (int col = 0; col < this.imageWidth; col++) {
-			for (int row = 0; row < this.imageHeight; row++) {
-				this.paperProperties[col][row] = new PaperCellProperties();
-			}
-		}
-		// compute paper height field
-		PerlinNoiseGenerator noiseGenerator = new PerlinNoiseGenerator();
-		double[][] noise = noiseGenerator.getDenseNormalizedNoise(
-				this.imageWidth, this.imageHeight);
-		IndexBitmapObject ibo = new IndexBitmapObject(this.imageWidth,
-				this.imageHeight);
-		for (int col = 0; col < this.imageWidth; col++) {
-			for (int row = 0; row < this.imageHeight; row++) {
-				ibo.setValue(col, row, (int) (255 * noise[col][row]));
-			}
-		}
-		GaussConvolution gc = new GaussConvolution(2.0, 2);
-		IndexBitmapObject smoothed1 = gc.getSmoothedBitmap(ibo);
-		GaussConvolution gc2 = new GaussConvolution(2.0, 2);
-		IndexBitmapObject smoothed2 = gc2.getSmoothedBitmap(smoothed1);
-
-		double[][] paperHeightField = new double[this.imageWidth][this.imageHeight];
+		int tileWidth = (this.paperTileWidth > 0) ? this.paperTileWidth
+				: this.imageWidth;
+		int tileHeight = (this.paperTileHeight > 0) ? this.paperTileHeight
+				: this.imageHeight;
+		this.paperTexture = PaperTextureCache.getPaperTexture(tileWidth,
+				tileHeight, this.paperSeed, this.precision,
+				this.paperCacheDirectory);
+		this.paperPigmentConcentrations = new PigmentList[this.imageWidth][this.imageHeight];
 		for (int col = 0; col < this.imageWidth; col++) {
 			for (int row = 0; row < this.imageHeight; row++) {
-				double alpha = Math.abs(smoothed1.getValue(col, row)
-						- smoothed2.getValue(col, row));
-				alpha /= 255.0;
-				double mmin = 0.0;
-				double mmax = 0.9;
-				alpha = mmin + alpha * (mmax - mmin);
-				paperHeightField[col][row] = alpha;
-			}
-		}
-		for (int col = 0; col < this.imageWidth; col++) {
-			for (int row = 0; row < this.imageHeight; row++) {
-				this.paperProperties[col][row].paperHeight = paperHeightField[col][row];
-			}
-		}
-
-		// compute horizontal slope
-		for (int col = 0; col < (this.imageWidth - 1); col++) {
-			for (int row = 0; row < this.imageHeight; row++) {
-				this.paperProperties[col][row].slopeX = 0.4 * (this.paperProperties[col + 1][row].paperHeight - this.paperProperties[col][row].paperHeight);
-			}
-		}
-
-		// compute vertical slope
-		for (int col = 0; col < this.imageWidth; col++) {
-			for (int row = 0; row < (this.imageHeight - 1); row++) {
-				this.paperProperties[col][row].slopeY = 0.4 * (this.paperProperties[col][row + 1].paperHeight - this.paperProperties[col][row].paperHeight);
+				this.paperPigmentConcentrations[col][row] = new PigmentList();
 			}
 		}
+	}
 
-		// compute fluid capacity
-		for (int col = 0; col < this.imageWidth; col++) {
-			for (int row = 0; row < this.imageHeight; row++) {
-				this.paperProperties[col][row].fluidCapacity = MIN_FLUID_CAPACITY
-						+ this.paperProperties[col][row].paperHeight
-						* (MAX_FLUID_CAPACITY - MIN_FLUID_CAPACITY);
-			}
-		}
+	/**
+	 * Returns the index of the specified location in the temporary per-pixel
+	 * state
+	 * 
+	 * @param column
+	 *            column of interest
+	 * @param row
+	 *            row of interest
+	 * @return index in the temporary per-pixel state
+	 */
+	private int getIndex(int column, int row) {
+		return column * this.imageHeight + row;
 	}
 
 	/**
@@ -239,14 +300,15 @@ public class WatercolorEngine extends NprEngineBase {
 		double maxAbsoluteVelocity = 0.0;
 		for (int col = 0; col < this.imageWidth; col++) {
 			for (int row = 0; row < this.imageHeight; row++) {
-				PaperCellProperties currCellProperties = this.paperProperties[col][row];
 				double prevVelocityX = currGlaze.getWaterVelocityX(col, row);
-				double newVelocityX = prevVelocityX + currCellProperties.slopeX;
+				double newVelocityX = prevVelocityX
+						+ this.paperTexture.getSlopeX(col, row);
 				currGlaze.setWaterVelocityX(col, row, newVelocityX);
 				maxAbsoluteVelocity = Math.max(maxAbsoluteVelocity, Math
 						.abs(newVelocityX));
 				double prevVelocityY = currGlaze.getWaterVelocityY(col, row);
-				double newVelocityY = prevVelocityY + currCellProperties.slopeY;
+				double newVelocityY = prevVelocityY
+						+ this.paperTexture.getSlopeY(col, row);
 				currGlaze.setWaterVelocityY(col, row, newVelocityY);
 				maxAbsoluteVelocity = Math.max(maxAbsoluteVelocity, Math
 						.abs(newVelocityY));
@@ -296,27 +358,35 @@ public class WatercolorEngine extends NprEngineBase {
 					double a = uij * uij - uip2j * uip2j + uip1j * vijm1
 							- uip1j * vijp1;
 					double b = uip3j + uim1j + uip1jp2 + uip1jm2 - 4.0 * uip1j;
-					tempVelocityX[col][row] = uip1j
+					double tempVelX = uip1j
 							+ dt
 							* (a - WATERCOLOR_VISCOSITY * b + pij - pip2j - WATERCOLOR_VISCOUS_DRAG
 									* uip1j);
-					assert tempVelocityX[col][row] < 1000 : "not good";
+					assert tempVelX < 1000 : "not good";
 					a = vij * vij - vijp2 * vijp2 + uim1j * vijp1 - uip1j
 							* vijp1;
 					b = vip2jp1 + vim2jp1 + vijp3 + vijm1 - 4.0 * vijp1;
-					tempVelocityY[col][row] = vijp1
+					double tempVelY = vijp1
 							+ dt
 							* (a - WATERCOLOR_VISCOSITY * b + pij - pijp2 - WATERCOLOR_VISCOUS_DRAG
 									* vijp1);
-					assert tempVelocityY[col][row] < 1000 : "not good";
+					assert tempVelY < 1000 : "not good";
+					int index = this.getIndex(col, row);
+					this.tempVelocityX.set(index, tempVelX);
+					this.tempVelocityY.set(index, tempVelY);
 				}
 			}
 			for (int col = 1; col < this.imageWidth; col++) {
 				for (int row = 1; row < this.imageHeight; row++) {
-					double newVelocityX = 0.5 * (tempVelocityX[col - 1][row] + tempVelocityX[col][row]);
+					int index = this.getIndex(col, row);
+					double newVelocityX = 0.5 * (this.tempVelocityX
+							.get(this.getIndex(col - 1, row)) + this.tempVelocityX
+							.get(index));
 					assert newVelocityX < 1000 : "not good";
 					currGlaze.setWaterVelocityX(col, row, newVelocityX);
-					double newVelocityY = 0.5 * (tempVelocityY[col][row - 1] + tempVelocityY[col][row]);
+					double newVelocityY = 0.5 * (this.tempVelocityY
+							.get(this.getIndex(col, row - 1)) + this.tempVelocityY
+							.get(index));
 					currGlaze.setWaterVelocityY(col, row, newVelocityY);
 					assert newVelocityY < 1000 : "not good";
 				}
@@ -341,10 +411,11 @@ public class WatercolorEngine extends NprEngineBase {
 		do {
 			for (int col = 0; col < this.imageWidth; col++) {
 				for (int row = 0; row < this.imageHeight; row++) {
-					this.tempVelocityX[col][row] = currGlaze.getWaterVelocityX(
-							col, row);
-					this.tempVelocityY[col][row] = currGlaze.getWaterVelocityY(
-							col, row);
+					int index = this.getIndex(col, row);
+					this.tempVelocityX.set(index, currGlaze.getWaterVelocityX(
+							col, row));
+					this.tempVelocityY.set(index, currGlaze.getWaterVelocityY(
+							col, row));
 				}
 			}
 			deltaMax = 0.0;
@@ -358,23 +429,31 @@ public class WatercolorEngine extends NprEngineBase {
 							row - 1);
 					double delta = RELAXATION_FLUID_DISTRIBUTION
 							* (uip1j - uim1j + vijp1 - vijm1);
+					int index = this.getIndex(col, row);
 					if (col != 0) {
-						this.tempVelocityX[col - 1][row] += delta;
+						this.tempVelocityX.add(this.getIndex(col - 1, row),
+								delta);
 					}
-					this.tempVelocityX[col][row] -= delta;
+					this.tempVelocityX.add(index, -delta);
 					if (row != 0) {
-						this.tempVelocityY[col][row - 1] += delta;
+						this.tempVelocityY.add(this.getIndex(col, row - 1),
+								delta);
 					}
-					this.tempVelocityY[col][row] -= delta;
+					this.tempVelocityY.add(index, -delta);
 					deltaMax = Math.max(deltaMax, delta);
 				}
 			}
 			for (int col = 1; col < this.imageWidth; col++) {
 				for (int row = 1; row < this.imageHeight; row++) {
-					double newVelocityX = 0.5 * (tempVelocityX[col - 1][row] + tempVelocityX[col][row]);
+					int index = this.getIndex(col, row);
+					double newVelocityX = 0.5 * (this.tempVelocityX
+							.get(this.getIndex(col - 1, row)) + this.tempVelocityX
+							.get(index));
 					assert newVelocityX < 1000 : "not good";
 					currGlaze.setWaterVelocityX(col, row, newVelocityX);
-					double newVelocityY = 0.5 * (tempVelocityY[col][row - 1] + tempVelocityY[col][row]);
+					double newVelocityY = 0.5 * (this.tempVelocityY
+							.get(this.getIndex(col, row - 1)) + this.tempVelocityY
+							.get(index));
 					currGlaze.setWaterVelocityY(col, row, newVelocityY);
 					assert newVelocityY < 1000 : "not good";
 				}
@@ -456,45 +535,54 @@ public class WatercolorEngine extends NprEngineBase {
 			for (double t = 0.0; t <= 1.0; t += dt) {
 				for (int col = 0; col < this.imageWidth; col++) {
 					for (int row = 0; row < this.imageHeight; row++) {
-						this.tempConcentration[col][row] = currGlaze
-								.getPigmentConcentration(col, row, currPigment);
-						this.tempConcentration2[col][row] = this.tempConcentration[col][row];
+						this.tempConcentration.set(this.getIndex(col, row),
+								currGlaze.getPigmentConcentration(col, row,
+										currPigment));
 					}
 				}
+				this.tempConcentration2.copyFrom(this.tempConcentration);
 				for (int col = 0; col < this.imageWidth; col++) {
 					for (int row = 0; row < this.imageHeight; row++) {
+						int index = this.getIndex(col, row);
+						double currConcentration = this.tempConcentration2
+								.get(index);
 						double val1 = Math.max(0.0, this.getMidVelocityX(
 								glazeIndex, col, row)
-								* this.tempConcentration2[col][row]);
+								* currConcentration);
 						if (col != (this.imageWidth - 1)) {
-							this.tempConcentration[col + 1][row] += val1;
+							this.tempConcentration.add(this.getIndex(col + 1,
+									row), val1);
 						}
 						double val2 = Math.max(0.0, -this.getMidVelocityX(
 								glazeIndex, col - 1, row)
-								* this.tempConcentration2[col][row]);
+								* currConcentration);
 						if (col != 0) {
-							this.tempConcentration[col - 1][row] += val2;
+							this.tempConcentration.add(this.getIndex(col - 1,
+									row), val2);
 						}
 						double val3 = Math.max(0.0, this.getMidVelocityY(
 								glazeIndex, col, row)
-								* this.tempConcentration2[col][row]);
+								* currConcentration);
 						if (row != (this.imageHeight - 1)) {
-							this.tempConcentration[col][row + 1] += val3;
+							this.tempConcentration.add(this.getIndex(col,
+									row + 1), val3);
 						}
 						double val4 = Math.max(0.0, -this.getMidVelocityY(
 								glazeIndex, col, row - 1)
-								* this.tempConcentration2[col][row]);
+								* currConcentration);
 						if (row != 0) {
-							this.tempConcentration[col][row - 1] += val4;
+							this.tempConcentration.add(this.getIndex(col,
+									row - 1), val4);
 						}
-						this.tempConcentration[col][row] -= (val1 + val2 + val3 + val4);
+						this.tempConcentration.add(index,
+								-(val1 + val2 + val3 + val4));
 
 					}
 				}
 				for (int col = 0; col < this.imageWidth; col++) {
 					for (int row = 0; row < this.imageHeight; row++) {
 						currGlaze.setPigmentConcentration(col, row,
-								currPigment, this.tempConcentration[col][row]);
+								currPigment, this.tempConcentration.get(this.getIndex(col, row)));
 					}
 				}
 			}
@@ -520,13 +608,14 @@ public class WatercolorEngine extends NprEngineBase {
 					if (!currGlaze.isInWetMask(col, row)) {
 						continue;
 					}
-					double paperHeight = this.paperProperties[col][row].paperHeight;
+					double paperHeight = this.paperTexture.getPaperHeight(col,
+							row);
 					double concentrationInWater = currGlaze
 							.getPigmentConcentration(col, row, currPigment);
 					double deltaDown = concentrationInWater
 							* (1.0 - paperHeight * pigmGranulation)
 							* pigmDensity;
-					double concentrationOnPaper = this.paperProperties[col][row].pigmentConcentrations
+					double concentrationOnPaper = this.paperPigmentConcentrations[col][row]
 							.getPigmentConcentration(currPigment);
 					double deltaUp = concentrationOnPaper
 							* (1.0 + (paperHeight - 1.0) * pigmGranulation)
@@ -539,7 +628,7 @@ public class WatercolorEngine extends NprEngineBase {
 					}
 					double deltaDiff = deltaDown - deltaUp;
 					if (Math.abs(deltaDiff) >= MathConstants.EPS_BIG) {
-						this.paperProperties[col][row].pigmentConcentrations
+						this.paperPigmentConcentrations[col][row]
 								.setPigment(currPigment, concentrationOnPaper
 										+ deltaDiff);
 						currGlaze.setPigmentConcentration(col, row,
@@ -565,10 +654,11 @@ public class WatercolorEngine extends NprEngineBase {
 				double oldSaturation = currGlaze.getPaperSaturation(col, row);
 				double newSaturation = oldSaturation
 						+ Math.max(0.0, Math.min(CAPILLARY_ABSORPTION_RATE,
-								this.paperProperties[col][row].fluidCapacity
+								this.paperTexture.getFluidCapacity(col, row)
 										- oldSaturation));
 				currGlaze.setPaperSaturation(col, row, newSaturation);
-				this.tempConcentration[col][row] = newSaturation;
+				this.tempConcentration.set(this.getIndex(col, row),
+						newSaturation);
 			}
 		}
 		for (int col = 0; col < this.imageWidth; col++) {
@@ -590,12 +680,15 @@ public class WatercolorEngine extends NprEngineBase {
 								&& (currSaturation > neighbourSaturation)
 								&& (neighbourSaturation > CAPILLARY_RECEIVE_SATURATION)) {
 							double val1 = currSaturation - neighbourSaturation;
-							double val2 = this.paperProperties[neighbourCol][neighbourRow].fluidCapacity
+							double val2 = this.paperTexture.getFluidCapacity(
+									neighbourCol, neighbourRow)
 									- neighbourSaturation;
 							double deltaS = Math.max(0.0, 0.25 * Math.min(val1,
 									val2));
-							this.tempConcentration[col][row] -= deltaS;
-							this.tempConcentration[neighbourCol][neighbourRow] += deltaS;
+							this.tempConcentration.add(this.getIndex(col, row),
+									-deltaS);
+							this.tempConcentration.add(this.getIndex(
+									neighbourCol, neighbourRow), deltaS);
 						}
 					}
 				}
@@ -603,11 +696,12 @@ public class WatercolorEngine extends NprEngineBase {
 		}
 		for (int col = 0; col < this.imageWidth; col++) {
 			for (int row = 0; row < this.imageHeight; row++) {
-				if (tempConcentration[col][row] > CAPILLARY_SATURATION_THRESHOLD) {
+				double newSaturation = this.tempConcentration.get(this
+						.getIndex(col, row));
+				if (newSaturation > CAPILLARY_SATURATION_THRESHOLD) {
 					currGlaze.setInWetMask(col, row, true);
 				}
-				currGlaze.setPaperSaturation(col, row,
-						tempConcentration[col][row]);
+				currGlaze.setPaperSaturation(col, row, newSaturation);
 			}
 		}
 
@@ -619,81 +713,200 @@ public class WatercolorEngine extends NprEngineBase {
 	 * 
 	 * @param glazeIndex
 	 *            the index of the specified glaze
+	 * @param startIteration
+	 *            the iteration to start from (non-zero when resuming from a
+	 *            checkpoint)
 	 */
-	private void runMainLoop(int glazeIndex) {
-		this.tempVelocityX = new double[this.imageWidth][this.imageHeight];
-		this.tempVelocityY = new double[this.imageWidth][this.imageHeight];
-		this.tempConcentration = new double[this.imageWidth][this.imageHeight];
-		this.tempConcentration2 = new double[this.imageWidth][this.imageHeight];
-		for (int iteration = 0; iteration < MAIN_LOOP_ITERATIONS; iteration++) {
+	private void runMainLoop(int glazeIndex, int startIteration) {
+		int size = this.imageWidth * this.imageHeight;
+		this.tempVelocityX = ScalarField.create(this.precision, size);
+		this.tempVelocityY = ScalarField.create(this.precision, size);
+		this.tempConcentration = ScalarField.create(this.precision, size);
+		this.tempConcentration2 = ScalarField.create(this.precision, size);
+		for (int iteration = startIteration; iteration < MAIN_LOOP_ITERATIONS; iteration++) {
 			this.moveWater(glazeIndex);
 			this.movePigment(glazeIndex);
 			this.transferPigment(glazeIndex);
 			this.simulateCapillaryFlow(glazeIndex);
+			if ((this.checkpointFile != null) && (this.checkpointInterval > 0)
+					&& (((iteration + 1) % this.checkpointInterval) == 0)) {
+				if (iteration == (MAIN_LOOP_ITERATIONS - 1)) {
+					this.saveCheckpoint(glazeIndex + 1, 0);
+				} else {
+					this.saveCheckpoint(glazeIndex, iteration + 1);
+				}
+			}
 		}
 	}
 
 	/**
-	 * Return resulting image. Following is the list of influences of various
-	 * coefficients (of type <code>WeightKind</code>)
-	 * 
-	 * <ul>
-	 * 
-	 * <li><code>weightEdgeDetectionForNPR</code> (taken from
-	 * <code>pEdgeDetectionLinkInfo</code> parameter in the constructor) -
-	 * influences the strength of "ink" strikes in the resulting image (that
-	 * correspond to the edges in the original image). Value 0.0 - no ink
-	 * strikes will be present, value 1.0 - full strength ink strikes will be
-	 * present.</li>
-	 * 
-	 * <li><code>weightTesselationForNPR</code> (taken from
-	 * <code>pEdgeDetectionLinkInfo</code> parameter in the constructor) -
-	 * influences the preprocessing stage of the algorithm. The input image is
-	 * first convoluted with Gaussian filter (to remove high frequency image
-	 * features) and then tesselated. Average color is then computed for each
-	 * tesselation cell. The pigments initially associated with each pixel are
-	 * determined based on the original color of this pixel and on the average
-	 * color of the tesselation cells it belongs to. The closer a pixel lies to
-	 * a cell center, the more it is affected by the average color of this cell.
-	 * In addition, if a pixel is covered by more than one tesselation cell,
-	 * each cell contributes to the resulting color proportionally. The
-	 * abovementioned weight controls the influence of cell average color. Value
-	 * 0.0 - only pixel's initial color is accounted for, value 1.0 - full
-	 * influence of cell average color (in the center of the cell).</li>
+	 * Write the current simulation state to the checkpoint file and notify
+	 * the checkpoint callback. Failure to write the checkpoint is logged and
+	 * doesn't stop the simulation.
 	 * 
-	 * <li><code>weightSegmentationForNPR</code> (taken from
-	 * <code>pSegmentationLinkInfo</code> parameter in the constructor) -
-	 * influences the partition of the input image into glazes. Value 0.0 - the
-	 * whole image is represented by a single glaze, any other value - each
-	 * segment will produce a distinct glaze (that will be composited using
-	 * Kubelka-Munk model).</li>
-	 * 
-	 * <li><code>weightDisplacementForNPR</code> (taken from
-	 * <code>pSegmentationLinkInfo</code> parameter in the constructor) - not
-	 * used.</li>
+	 * @param glazeIndex
+	 *            index of the glaze to resume from
+	 * @param iteration
+	 *            main loop iteration to resume from
+	 */
+	private void saveCheckpoint(int glazeIndex, int iteration) {
+		try {
+			new WatercolorCheckpoint(this.paperTexture,
+					this.paperPigmentConcentrations, this.glazes, glazeIndex,
+					iteration, this.fingerprint).save(this.checkpointFile);
+			this.logger.fine("Saved checkpoint at glaze " + glazeIndex
+					+ ", iteration " + iteration);
+			if (this.checkpointCallback != null) {
+				this.checkpointCallback.checkpointSaved(glazeIndex, iteration);
+			}
+		} catch (IOException ioe) {
+			this.logger.warning("Can't save checkpoint to "
+					+ this.checkpointFile + ": " + ioe.getMessage());
+		}
+	}
+
+	/**
+	 * Add value to the fingerprint (64-bit FNV-1a over the value bytes)
 	 * 
-	 * <li><code>weightStructureVicinityForNPR</code> (taken from
-	 * <code>pStructureVicinityLinkInfo</code> parameter in the constructor) -
-	 * not used.</li>
+	 * @param hash
+	 *            current fingerprint
+	 * @param value
+	 *            value
+	 * @return updated fingerprint
+	 */
+	private static long addToFingerprint(long hash, long value) {
+		for (int shift = 0; shift < 64; shift += 8) {
+			hash ^= (value >>> shift) & 0xFF;
+			hash *= 0x100000001B3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Add bitmap to the fingerprint
 	 * 
-	 * <li><code>weightStructureGradientForNPR</code> (taken from
-	 * <code>pStructureGradientLinkInfo</code> parameter in the constructor) -
-	 * not used.</li>
+	 * @param hash
+	 *            current fingerprint
+	 * @param bitmap
+	 *            bitmap (may be <code>null</code>)
+	 * @return updated fingerprint
+	 */
+	private static long addToFingerprint(long hash, IndexBitmapObject bitmap) {
+		if (bitmap == null) {
+			return addToFingerprint(hash, -1);
+		}
+		hash = addToFingerprint(hash, bitmap.getWidth());
+		hash = addToFingerprint(hash, bitmap.getHeight());
+		for (int[] column : bitmap.getBitmap()) {
+			for (int value : column) {
+				hash = addToFingerprint(hash, value);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Compute the fingerprint of everything the simulation depends on: the
+	 * input image, the link information, the color reductor and the
+	 * simulation configuration. A checkpoint is resumed only by a render with
+	 * the same fingerprint.
 	 * 
-	 * </ul>
+	 * @return fingerprint
+	 */
+	private long computeFingerprint() {
+		long hash = 0xCBF29CE484222325L;
+		hash = addToFingerprint(hash, this.imageWidth);
+		hash = addToFingerprint(hash, this.imageHeight);
+		int[] rgbs = this.inputImage.getRGB(0, 0, this.imageWidth,
+				this.imageHeight, null, 0, this.imageWidth);
+		for (int rgb : rgbs) {
+			hash = addToFingerprint(hash, rgb);
+		}
+
+		WeightedWrapper<?>[] linkInfos = new WeightedWrapper<?>[] {
+				this.segmentationLinkInfo, this.edgeDetectionLinkInfo,
+				this.inputImageTesselationLinkInfo,
+				this.structureVicinityLinkInfo, this.structureGradientLinkInfo,
+				this.displacementMapLinkInfo };
+		for (WeightedWrapper<?> linkInfo : linkInfos) {
+			hash = addToFingerprint(hash, Double.doubleToLongBits(linkInfo
+					.getWeight()));
+		}
+		SegmentationInfo segmentationInfo = this.segmentationLinkInfo
+				.getLinkObject();
+		if (segmentationInfo != null) {
+			hash = addToFingerprint(hash, segmentationInfo
+					.getNumberOfSegments());
+			hash = addToFingerprint(hash, segmentationInfo.getAreasBitmap());
+		}
+		hash = addToFingerprint(hash, this.edgeDetectionLinkInfo
+				.getLinkObject());
+		List<Polygon2D> tesselation = this.inputImageTesselationLinkInfo
+				.getLinkObject();
+		if (tesselation != null) {
+			for (Polygon2D currPolygon : tesselation) {
+				hash = addToFingerprint(hash, currPolygon.getPointsCount());
+				for (Point2D currPoint : currPolygon.getPoints()) {
+					hash = addToFingerprint(hash, Double
+							.doubleToLongBits(currPoint.getX()));
+					hash = addToFingerprint(hash, Double
+							.doubleToLongBits(currPoint.getY()));
+				}
+			}
+		}
+		if (ColorReductorFactory.instance != null) {
+			hash = addToFingerprint(hash, ColorReductorFactory.instance
+					.getClass().getName().hashCode());
+		}
+
+		hash = addToFingerprint(hash, this.precision.ordinal());
+		hash = addToFingerprint(hash, this.paperSeed);
+		hash = addToFingerprint(hash, this.paperTileWidth);
+		hash = addToFingerprint(hash, this.paperTileHeight);
+		hash = addToFingerprint(hash, MAIN_LOOP_ITERATIONS);
+		return hash;
+	}
+
+	/**
+	 * Read the simulation state from the checkpoint file
 	 * 
-	 * @return the resulting image
+	 * @return simulation state or <code>null</code> if there is no checkpoint
+	 *         file or it was written for another input or configuration
 	 */
-	public BufferedImage getResultingImage() {
-		long time0 = System.currentTimeMillis();
-		BufferedImage result = new BufferedImage(this.imageWidth,
-				this.imageHeight, BufferedImage.TYPE_INT_ARGB);
-		Graphics2D g = (Graphics2D) result.createGraphics();
-		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-				RenderingHints.VALUE_ANTIALIAS_ON);
-		g.setColor(Color.black);
-		g.fillRect(0, 0, this.imageWidth, this.imageHeight);
+	private WatercolorCheckpoint loadCheckpoint() {
+		if ((this.checkpointFile == null) || !this.checkpointFile.isFile()) {
+			return null;
+		}
+		try {
+			WatercolorCheckpoint checkpoint = WatercolorCheckpoint
+					.load(this.checkpointFile);
+			if ((checkpoint.getFingerprint() != this.fingerprint)
+					|| (checkpoint.getWidth() != this.imageWidth)
+					|| (checkpoint.getHeight() != this.imageHeight)) {
+				this.logger.warning("Checkpoint " + this.checkpointFile
+						+ " doesn't match the input image or configuration");
+				return null;
+			}
+			return checkpoint;
+		} catch (IOException ioe) {
+			this.logger.warning("Can't load checkpoint from "
+					+ this.checkpointFile + ": " + ioe.getMessage());
+			return null;
+		}
+	}
 
+	/**
+	 * Create glazes from the input image. The input image is smoothed and its
+	 * tesselation cells are painted with their average colors. The result is
+	 * quantized and each quantization color is approximated by pigments that
+	 * are put into the glazes.
+	 * 
+	 * @param canvas
+	 *            image to paint the tesselated input image on
+	 * @param g
+	 *            graphics context of the canvas
+	 */
+	private void initializeGlazes(BufferedImage canvas, Graphics2D g) {
 		this.logger.info("Smoothing the input image");
 		GaussConvolution gaussConvolution = new GaussConvolution(2.0, 3);
 		BufferedImage smoothedImage = gaussConvolution
@@ -783,7 +996,7 @@ public class WatercolorEngine extends NprEngineBase {
 		// quantize the input image
 		this.logger.info("Quantizing the tesselated image");
 		ColorReductor colorReductor = ColorReductorFactory
-				.getColorReductor(result);
+				.getColorReductor(canvas);
 		colorReductor.process(256);
 		IndexBitmapObject quantizedBitmap = colorReductor.getValueMap2D();
 		Color[] quantizationColors = colorReductor.getQuantizationColors();
@@ -815,7 +1028,7 @@ public class WatercolorEngine extends NprEngineBase {
 			glazeCount = 1;
 			this.glazes = new Glaze[1];
 			this.glazes[0] = new Glaze(quantizedBitmap,
-					quantizationColorsApproximation, 0.3);
+					quantizationColorsApproximation, 0.3, this.precision);
 		} else {
 			IndexBitmapObject segmentationAreasBitmap = this.segmentationLinkInfo
 					.getLinkObject().getAreasBitmap();
@@ -825,14 +1038,102 @@ public class WatercolorEngine extends NprEngineBase {
 			this.glazes = new Glaze[glazeCount];
 			for (int glIndex = 0; glIndex < glazeCount; glIndex++) {
 				glazes[glIndex] = new Glaze(segmentationAreasBitmap, glIndex,
-						quantizedBitmap, quantizationColorsApproximation, 0.3);
+						quantizedBitmap, quantizationColorsApproximation, 0.3,
+						this.precision);
 			}
 		}
+	}
+
+	/**
+	 * Return resulting image. Following is the list of influences of various
+	 * coefficients (of type <code>WeightKind</code>)
+	 * 
+	 * <ul>
+	 * 
+	 * <li><code>weightEdgeDetectionForNPR</code> (taken from
+	 * <code>pEdgeDetectionLinkInfo</code> parameter in the constructor) -
+	 * influences the strength of "ink" strikes in the resulting image (that
+	 * correspond to the edges in the original image). Value 0.0 - no ink
+	 * strikes will be present, value 1.0 - full strength ink strikes will be
+	 * present.</li>
+	 * 
+	 * <li><code>weightTesselationForNPR</code> (taken from
+	 * <code>pEdgeDetectionLinkInfo</code> parameter in the constructor) -
+	 * influences the preprocessing stage of the algorithm. The input image is
+	 * first convoluted with Gaussian filter (to remove high frequency image
+	 * features) and then tesselated. Average color is then computed for each
+	 * tesselation cell. The pigments initially associated with each pixel are
+	 * determined based on the original color of this pixel and on the average
+	 * color of the tesselation cells it belongs to. The closer a pixel lies to
+	 * a cell center, the more it is affected by the average color of this cell.
+	 * In addition, if a pixel is covered by more than one tesselation cell,
+	 * each cell contributes to the resulting color proportionally. The
+	 * abovementioned weight controls the influence of cell average color. Value
+	 * 0.0 - only pixel's initial color is accounted for, value 1.0 - full
+	 * influence of cell average color (in the center of the cell).</li>
+	 * 
+	 * <li><code>weightSegmentationForNPR</code> (taken from
+	 * <code>pSegmentationLinkInfo</code> parameter in the constructor) -
+	 * influences the partition of the input image into glazes. Value 0.0 - the
+	 * whole image is represented by a single glaze, any other value - each
+	 * segment will produce a distinct glaze (that will be composited using
+	 * Kubelka-Munk model).</li>
+	 * 
+	 * <li><code>weightDisplacementForNPR</code> (taken from
+	 * <code>pSegmentationLinkInfo</code> parameter in the constructor) - not
+	 * used.</li>
+	 * 
+	 * <li><code>weightStructureVicinityForNPR</code> (taken from
+	 * <code>pStructureVicinityLinkInfo</code> parameter in the constructor) -
+	 * not used.</li>
+	 * 
+	 * <li><code>weightStructureGradientForNPR</code> (taken from
+	 * <code>pStructureGradientLinkInfo</code> parameter in the constructor) -
+	 * not used.</li>
+	 * 
+	 * </ul>
+	 * 
+	 * @return the resulting image
+	 */
+	public BufferedImage getResultingImage() {
+		long time0 = System.currentTimeMillis();
+		BufferedImage result = new BufferedImage(this.imageWidth,
+				this.imageHeight, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = (Graphics2D) result.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setColor(Color.black);
+		g.fillRect(0, 0, this.imageWidth, this.imageHeight);
+
+		this.fingerprint = this.computeFingerprint();
+		WatercolorCheckpoint checkpoint = this.loadCheckpoint();
+		int startGlazeIndex = 0;
+		int startIteration = 0;
+		if (checkpoint != null) {
+			this.logger.info("Resuming simulation from glaze "
+					+ checkpoint.getGlazeIndex() + ", iteration "
+					+ checkpoint.getIteration());
+			this.precision = checkpoint.getPrecision();
+			this.paperTexture = checkpoint
+					.getPaperTexture(this.paperCacheDirectory);
+			this.paperPigmentConcentrations = checkpoint
+					.getPaperPigmentConcentrations();
+			this.glazes = checkpoint.getGlazes();
+			startGlazeIndex = checkpoint.getGlazeIndex();
+			startIteration = checkpoint.getIteration();
+		} else {
+			this.initializeGlazes(result, g);
+		}
 
 		// run simulation for each glaze
 		this.logger.info("Running simulation");
-		for (int glIndex = 0; glIndex < glazeCount; glIndex++) {
-			this.runMainLoop(glIndex);
+		for (int glIndex = startGlazeIndex; glIndex < this.glazes.length; glIndex++) {
+			this.runMainLoop(glIndex,
+					(glIndex == startGlazeIndex) ? startIteration : 0);
+		}
+		if ((this.checkpointFile != null) && this.checkpointFile.exists()) {
+			// the simulation is complete - the checkpoint is no longer needed
+			this.checkpointFile.delete();
 		}
 
 		// perform Kubelka-Munk model to compose the glazes
@@ -847,7 +1148,7 @@ public class WatercolorEngine extends NprEngineBase {
 				}
 				// and from the shallow-water layer
 				allPigments
-						.combine(this.paperProperties[col][row].pigmentConcentrations);
+						.combine(this.paperPigmentConcentrations[col][row]);
 				List<WeightedWrapper<Pigment>> pigmentList = new LinkedList<WeightedWrapper<Pigment>>();
 				double totalPigmentConcentration = 0.0;
 				for (Pigment currPigment : Pigment.values()) {
@@ -933,7 +1234,7 @@ public class WatercolorEngine extends NprEngineBase {
 		// g.setComposite(AlphaComposite.getInstance(
 		// AlphaComposite.SRC_OVER, paperHeight/256.0f));
 		// tcbmFinal.blendPixel(col, row, 0xFF000000,
-		// this.paperProperties[col][row].paperHeight);
+		// this.paperTexture.getPaperHeight(col, row));
 		// }
 		// }
 
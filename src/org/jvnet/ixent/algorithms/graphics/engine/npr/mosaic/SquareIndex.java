@@ -0,0 +1,347 @@
+package org.jvnet.ixent.algorithms.graphics.engine.npr.mosaic;
+
+import static org.jvnet.ixent.math.MathConstants.EPS;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+
+import org.jvnet.ixent.math.coord.Square2D;
+
+/**
+ * Uniform-grid spatial index of placed mosaic tiles. Each tile is stored in
+ * the grid cell that holds its center, together with its precomputed corner
+ * coordinates, bounding box and axes. The tiles that may intersect a
+ * candidate tile are collected once in a {@link Neighbourhood}, and then all
+ * the candidate positions are tested against this (small) set, first with a
+ * bounding box rejection and then with the exact separating axis test.<br>
+ * <p/>
+ * Different cells may be modified concurrently as long as no thread reads
+ * the cells modified by another thread.
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class SquareIndex {
+    /**
+     * Number of values stored for each tile: 4 corners, bounding box and the
+     * unit direction of the first side
+     */
+    private static final int STRIDE = 14;
+
+    private static final int OFFSET_MIN_X = 8;
+    private static final int OFFSET_MIN_Y = 9;
+    private static final int OFFSET_MAX_X = 10;
+    private static final int OFFSET_MAX_Y = 11;
+    private static final int OFFSET_AXIS_X = 12;
+    private static final int OFFSET_AXIS_Y = 13;
+
+    /**
+     * Grid cell - holds all the tiles centered in it
+     */
+    private static final class Cell {
+        private int count;
+
+        private double[] data = new double[4 * STRIDE];
+
+        private Square2D[] squares = new Square2D[4];
+    }
+
+    private double cellSize;
+
+    private double maxSide;
+
+    /**
+     * Maximal distance from tile center to its corner
+     */
+    private double maxExtent;
+
+    private int columns, rows;
+
+    // cells are stored column by column and are created on first insertion
+    private Cell[] cells;
+
+    /**
+     * Construct empty index
+     *
+     * @param pWidth   width of indexed area
+     * @param pHeight  height of indexed area
+     * @param pMaxSide maximal side of indexed tiles
+     * @throws IllegalArgumentException if one of the parameters is not positive
+     */
+    public SquareIndex(int pWidth, int pHeight, double pMaxSide) {
+        if ((pWidth <= 0) || (pHeight <= 0) || (pMaxSide <= 0.0)) {
+            throw new IllegalArgumentException("Non-positive parameters");
+        }
+        this.maxSide = pMaxSide;
+        this.maxExtent = pMaxSide / Math.sqrt(2.0);
+        // each tile may intersect only tiles in its own and adjacent cells
+        this.cellSize = Math.ceil(2.0 * this.maxExtent);
+        this.columns = 1 + (int) (pWidth / this.cellSize);
+        this.rows = 1 + (int) (pHeight / this.cellSize);
+        this.cells = new Cell[this.columns * this.rows];
+    }
+
+    /**
+     * Returns the side of grid cells
+     *
+     * @return the side of grid cells
+     */
+    public double getCellSize() {
+        return this.cellSize;
+    }
+
+    /**
+     * Returns grid column of the specified coordinate
+     *
+     * @param x coordinate
+     * @return grid column clamped to grid dimensions
+     */
+    private int getColumn(double x) {
+        int result = (int) Math.floor(x / this.cellSize);
+        return Math.max(0, Math.min(this.columns - 1, result));
+    }
+
+    /**
+     * Returns grid row of the specified coordinate
+     *
+     * @param y coordinate
+     * @return grid row clamped to grid dimensions
+     */
+    private int getRow(double y) {
+        int result = (int) Math.floor(y / this.cellSize);
+        return Math.max(0, Math.min(this.rows - 1, result));
+    }
+
+    /**
+     * Compute corners, bounding box and axis of a square
+     *
+     * @param square square
+     * @param data   array to store the values in
+     * @param offset offset of the first value
+     */
+    private static void fill(Square2D square, double[] data, int offset) {
+        for (int i = 0; i < 4; i++) {
+            Point2D point = square.getPoint(i);
+            data[offset + 2 * i] = point.getX();
+            data[offset + 2 * i + 1] = point.getY();
+        }
+        data[offset + OFFSET_MIN_X] = square.getMinX();
+        data[offset + OFFSET_MIN_Y] = square.getMinY();
+        data[offset + OFFSET_MAX_X] = square.getMaxX();
+        data[offset + OFFSET_MAX_Y] = square.getMaxY();
+        double angle = Math.PI * square.getAngleInDegrees() / 180.0;
+        data[offset + OFFSET_AXIS_X] = Math.cos(angle);
+        data[offset + OFFSET_AXIS_Y] = Math.sin(angle);
+    }
+
+    /**
+     * Add tile to this index
+     *
+     * @param square tile
+     * @throws IllegalArgumentException if the tile is <code>null</code> or
+     *                                  is larger than allowed by this index
+     */
+    public void add(Square2D square) {
+        if (square == null) {
+            throw new IllegalArgumentException("Can't pass null square");
+        }
+        if (square.getSide() > this.maxSide) {
+            throw new IllegalArgumentException("Square side "
+                    + square.getSide() + " exceeds " + this.maxSide);
+        }
+        int index = this.getColumn(square.getCenter().getX()) * this.rows
+                + this.getRow(square.getCenter().getY());
+        Cell cell = this.cells[index];
+        if (cell == null) {
+            cell = new Cell();
+            this.cells[index] = cell;
+        }
+        if (cell.count == cell.squares.length) {
+            Square2D[] newSquares = new Square2D[2 * cell.count];
+            System.arraycopy(cell.squares, 0, newSquares, 0, cell.count);
+            cell.squares = newSquares;
+            double[] newData = new double[2 * cell.count * STRIDE];
+            System.arraycopy(cell.data, 0, newData, 0, cell.count * STRIDE);
+            cell.data = newData;
+        }
+        fill(square, cell.data, cell.count * STRIDE);
+        cell.squares[cell.count] = square;
+        cell.count++;
+    }
+
+    /**
+     * Collect all the tiles that may intersect a tile lying inside the
+     * specified area
+     *
+     * @param minX   minimal X of the area
+     * @param minY   minimal Y of the area
+     * @param maxX   maximal X of the area
+     * @param maxY   maximal Y of the area
+     * @param result neighbourhood to reuse. If <code>null</code>, a new one is
+     *               created
+     * @return neighbourhood of the area
+     */
+    public Neighbourhood getNeighbourhood(double minX, double minY,
+                                          double maxX, double maxY,
+                                          Neighbourhood result) {
+        if (result == null) {
+            result = new Neighbourhood();
+        }
+        result.cellCount = 0;
+        result.squareCount = 0;
+        int colStart = this.getColumn(minX - this.maxExtent);
+        int colEnd = this.getColumn(maxX + this.maxExtent);
+        int rowStart = this.getRow(minY - this.maxExtent);
+        int rowEnd = this.getRow(maxY + this.maxExtent);
+        for (int col = colStart; col <= colEnd; col++) {
+            for (int row = rowStart; row <= rowEnd; row++) {
+                Cell cell = this.cells[col * this.rows + row];
+                if ((cell == null) || (cell.count == 0)) {
+                    continue;
+                }
+                if (result.cellCount == result.cells.length) {
+                    Cell[] newCells = new Cell[2 * result.cellCount];
+                    System.arraycopy(result.cells, 0, newCells, 0,
+                            result.cellCount);
+                    result.cells = newCells;
+                }
+                result.cells[result.cellCount++] = cell;
+                result.squareCount += cell.count;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Set of tiles collected from the index for testing candidate tiles
+     * around some location. Holds its own buffers and may be reused for
+     * subsequent queries.
+     */
+    public static final class Neighbourhood {
+        private Cell[] cells = new Cell[9];
+
+        private int cellCount;
+
+        private int squareCount;
+
+        // corners, bounding box and axis of the tested candidate
+        private double[] candidate = new double[STRIDE];
+
+        /**
+         * Returns <code>true</code> if this neighbourhood has no tiles
+         *
+         * @return <code>true</code> if this neighbourhood has no tiles
+         */
+        public boolean isEmpty() {
+            return (this.squareCount == 0);
+        }
+
+        /**
+         * Checks whether the specified tile intersects (or touches) any of the
+         * tiles in this neighbourhood
+         *
+         * @param square candidate tile
+         * @return <code>true</code> if the candidate intersects some tile
+         */
+        public boolean intersects(Square2D square) {
+            if (this.squareCount == 0) {
+                return false;
+            }
+            double[] cand = this.candidate;
+            fill(square, cand, 0);
+            for (int c = 0; c < this.cellCount; c++) {
+                Cell cell = this.cells[c];
+                double[] data = cell.data;
+                for (int i = 0; i < cell.count; i++) {
+                    int offset = i * STRIDE;
+                    // bounding box rejection
+                    if ((data[offset + OFFSET_MIN_X] > cand[OFFSET_MAX_X] + EPS)
+                            || (data[offset + OFFSET_MAX_X] < cand[OFFSET_MIN_X] - EPS)
+                            || (data[offset + OFFSET_MIN_Y] > cand[OFFSET_MAX_Y] + EPS)
+                            || (data[offset + OFFSET_MAX_Y] < cand[OFFSET_MIN_Y] - EPS)) {
+                        continue;
+                    }
+                    if (overlap(cand, 0, data, offset)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Fill the specified list with all the tiles whose bounding boxes
+         * intersect the bounding box of the specified tile
+         *
+         * @param square candidate tile
+         * @param result list to fill
+         */
+        public void getCandidates(Square2D square, List<Square2D> result) {
+            for (int c = 0; c < this.cellCount; c++) {
+                Cell cell = this.cells[c];
+                double[] data = cell.data;
+                for (int i = 0; i < cell.count; i++) {
+                    int offset = i * STRIDE;
+                    if ((data[offset + OFFSET_MIN_X] > square.getMaxX())
+                            || (data[offset + OFFSET_MAX_X] < square.getMinX())
+                            || (data[offset + OFFSET_MIN_Y] > square.getMaxY())
+                            || (data[offset + OFFSET_MAX_Y] < square.getMinY())) {
+                        continue;
+                    }
+                    result.add(cell.squares[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Separating axis test of two squares. The squares that touch are
+     * considered overlapping.
+     *
+     * @param data1   values of the first square
+     * @param offset1 offset of the first square values
+     * @param data2   values of the second square
+     * @param offset2 offset of the second square values
+     * @return <code>true</code> if there is no separating axis
+     */
+    private static boolean overlap(double[] data1, int offset1,
+                                   double[] data2, int offset2) {
+        return !separates(data1[offset1 + OFFSET_AXIS_X],
+                data1[offset1 + OFFSET_AXIS_Y], data1, offset1, data2, offset2)
+                && !separates(-data1[offset1 + OFFSET_AXIS_Y],
+                data1[offset1 + OFFSET_AXIS_X], data1, offset1, data2, offset2)
+                && !separates(data2[offset2 + OFFSET_AXIS_X],
+                data2[offset2 + OFFSET_AXIS_Y], data1, offset1, data2, offset2)
+                && !separates(-data2[offset2 + OFFSET_AXIS_Y],
+                data2[offset2 + OFFSET_AXIS_X], data1, offset1, data2, offset2);
+    }
+
+    /**
+     * Checks whether the specified axis separates two squares
+     *
+     * @param axisX   X component of the unit axis
+     * @param axisY   Y component of the unit axis
+     * @param data1   values of the first square
+     * @param offset1 offset of the first square values
+     * @param data2   values of the second square
+     * @param offset2 offset of the second square values
+     * @return <code>true</code> if the projections of the squares on the axis
+     *         are disjoint
+     */
+    private static boolean separates(double axisX, double axisY,
+                                     double[] data1, int offset1,
+                                     double[] data2, int offset2) {
+        double min1 = Double.MAX_VALUE, max1 = -Double.MAX_VALUE;
+        double min2 = Double.MAX_VALUE, max2 = -Double.MAX_VALUE;
+        for (int i = 0; i < 8; i += 2) {
+            double proj1 = axisX * data1[offset1 + i] + axisY
+                    * data1[offset1 + i + 1];
+            min1 = Math.min(min1, proj1);
+            max1 = Math.max(max1, proj1);
+            double proj2 = axisX * data2[offset2 + i] + axisY
+                    * data2[offset2 + i + 1];
+            min2 = Math.min(min2, proj2);
+            max2 = Math.max(max2, proj2);
+        }
+        return (max1 < min2 - EPS) || (max2 < min1 - EPS);
+    }
+}
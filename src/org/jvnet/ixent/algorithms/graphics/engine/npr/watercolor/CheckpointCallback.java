@@ -0,0 +1,18 @@
+package org.jvnet.ixent.algorithms.graphics.engine.npr.watercolor;
+
+/**
+ * Callback of the watercolor simulation, invoked each time a checkpoint has
+ * been written. An unchecked exception thrown by the callback stops the
+ * simulation; the checkpoint file is left in place, and the next render with
+ * the same checkpoint file resumes from it.
+ *
+ * @author Kirill Grouchnikov
+ * @see WatercolorCheckpoint
+ */
+public interface CheckpointCallback {
+    /**
+     * @param glazeIndex index of the glaze the checkpoint resumes from
+     * @param iteration  main loop iteration the checkpoint resumes from
+     */
+    public void checkpointSaved(int glazeIndex, int iteration);
+}
@@ -1,5 +1,6 @@
 package org.jvnet.ixent.algorithms.graphics.engine.npr.watercolor;
 
+import java.io.IOException;
 import java.util.List;
 
 import org.jvnet.ixent.algorithms.graphics.engine.linkinfo.WeightedWrapper;
@@ -14,32 +15,42 @@ import org.jvnet.ixent.graphics.IndexBitmapObject;
  * @see org.jvnet.ixent.algorithms.graphics.engine.npr.WatercolorEngine
  */
 public class Glaze {
-    private GlazePixelInfo[][] pixelInfo;
     private int width, height;
     private double maxVelocity;
+    private SimulationPrecision precision;
+
+    // all per-pixel information is stored column by column
+    private boolean[] isInWetMask;
+    private ScalarField distanceToWetMaskBoundary;
+    private ScalarField waterVelocityX;
+    private ScalarField waterVelocityY;
+    private ScalarField waterPressure;
+    private ScalarField paperSaturation;
+    private PigmentList[] pigmentConcentrations;
 
     /**
-     * Information on a single pixel in this glaze
+     * Constructs a single glaze for the whole image.
+     *
+     * @param quantizedColorIndexes 2D array of indexes of quantization colors.
+     *                              Entries with the same value are approximated
+     *                              by the same discrete quantizing color
+     * @param quantizationColorsApproximation
+     *                              1D array of pigment approximation of each
+     *                              discrete quantizing color
+     * @param pMaxVelocity          maximal velocity of water in horizontal and
+     *                              vertical directions
+     * @throws IllegalArgumentException if some parameter is null, no pigment
+     *                                  approximation is given for some
+     *                                  quantizing color, or there is some entry
+     *                                  in quantization color 2D array that has
+     *                                  no mapping in pigment approximation
+     *                                  array
      */
-    private static class GlazePixelInfo {
-        public boolean isInWetMask;
-        public double distanceToWetMaskBoundary;
-        public double waterVelocityX;
-        public double waterVelocityY;
-        public double waterPressure;
-        public double paperSaturation;
-        public PigmentList pigmentConcentrations;
-
-        public GlazePixelInfo() {
-            this.isInWetMask = false;
-            this.distanceToWetMaskBoundary = 1.0;
-            this.waterVelocityX = 0.0;
-            this.waterVelocityY = 0.0;
-            this.waterPressure = 1.0;
-            this.paperSaturation = 0.0;
-            this.pigmentConcentrations = new PigmentList();
-        }
-
+    public Glaze(IndexBitmapObject quantizedColorIndexes,
+                 List<WeightedWrapper<Pigment>>[] quantizationColorsApproximation,
+                 double pMaxVelocity) {
+        this(quantizedColorIndexes, quantizationColorsApproximation,
+                pMaxVelocity, SimulationPrecision.doublePrecision);
     }
 
     /**
@@ -53,6 +64,7 @@ public class Glaze {
      *                              discrete quantizing color
      * @param pMaxVelocity          maximal velocity of water in horizontal and
      *                              vertical directions
+     * @param precision             precision of per-pixel water state
      * @throws IllegalArgumentException if some parameter is null, no pigment
      *                                  approximation is given for some
      *                                  quantizing color, or there is some entry
@@ -62,7 +74,7 @@ public class Glaze {
      */
     public Glaze(IndexBitmapObject quantizedColorIndexes,
                  List<WeightedWrapper<Pigment>>[] quantizationColorsApproximation,
-                 double pMaxVelocity) {
+                 double pMaxVelocity, SimulationPrecision precision) {
 
         if ((quantizedColorIndexes == null) ||
                 (quantizationColorsApproximation == null)) {
@@ -96,18 +108,18 @@ public class Glaze {
         }
 
         this.maxVelocity = pMaxVelocity;
-        this.pixelInfo = new GlazePixelInfo[this.width][this.height];
+        this.allocate(precision);
         for (int col = 0; col < this.width; col++) {
             for (int row = 0; row < this.height; row++) {
-                this.pixelInfo[col][row] = new GlazePixelInfo();
+                int index = this.getIndex(col, row);
                 // set wet mask flag
-                this.pixelInfo[col][row].isInWetMask = true;
+                this.isInWetMask[index] = true;
                 // set initial pigment concentrations
                 int colorIndex = quantizedColorIndexes.getValue(col, row);
                 List<WeightedWrapper<Pigment>> pigmentList =
                         quantizationColorsApproximation[colorIndex];
                 for (WeightedWrapper<Pigment> currPigment : pigmentList) {
-                    this.pixelInfo[col][row].pigmentConcentrations.setPigment(
+                    this.pigmentConcentrations[index].setPigment(
                             currPigment.getLinkObject(),
                             currPigment.getWeight());
                 }
@@ -140,6 +152,37 @@ public class Glaze {
                  IndexBitmapObject quantizedColorIndexes,
                  List<WeightedWrapper<Pigment>>[] quantizationColorsApproximation,
                  double pMaxVelocity) {
+        this(segmentationAreas, areaIndex, quantizedColorIndexes,
+                quantizationColorsApproximation, pMaxVelocity,
+                SimulationPrecision.doublePrecision);
+    }
+
+    /**
+     * Constructs a glaze for one segment of the image.
+     *
+     * @param segmentationAreas     2D array of image segments. Entries with the
+     *                              same value belong to the same image segment
+     * @param areaIndex             Image segment index to create a glaze for.
+     * @param quantizedColorIndexes 2D array of indexes of quantization colors.
+     *                              Entries with the same value are approximated
+     *                              by the same discrete quantizing color
+     * @param quantizationColorsApproximation
+     *                              1D array of pigment approximation of each
+     *                              discrete quantizing color
+     * @param pMaxVelocity          maximal velocity of water in horizontal and
+     *                              vertical directions
+     * @param precision             precision of per-pixel water state
+     * @throws IllegalArgumentException if some parameter is null, no pigment
+     *                                  approximation is given for some
+     *                                  quantizing color, or there is some entry
+     *                                  in quantization color 2D array that has
+     *                                  no mapping in pigment approximation
+     *                                  array
+     */
+    public Glaze(IndexBitmapObject segmentationAreas, int areaIndex,
+                 IndexBitmapObject quantizedColorIndexes,
+                 List<WeightedWrapper<Pigment>>[] quantizationColorsApproximation,
+                 double pMaxVelocity, SimulationPrecision precision) {
         if ((quantizedColorIndexes == null) ||
                 (quantizationColorsApproximation == null)) {
             throw new IllegalArgumentException("Can't pass null parameters");
@@ -172,19 +215,19 @@ public class Glaze {
         }
 
         this.maxVelocity = pMaxVelocity;
-        this.pixelInfo = new GlazePixelInfo[this.width][this.height];
+        this.allocate(precision);
         for (int col = 0; col < this.width; col++) {
             for (int row = 0; row < this.height; row++) {
-                this.pixelInfo[col][row] = new GlazePixelInfo();
                 if (segmentationAreas.getValue(col, row) == areaIndex) {
+                    int index = this.getIndex(col, row);
                     // set wet mask flag
-                    this.pixelInfo[col][row].isInWetMask = true;
+                    this.isInWetMask[index] = true;
                     // set initial pigment concentrations
                     int colorIndex = quantizedColorIndexes.getValue(col, row);
                     List<WeightedWrapper<Pigment>> pigmentList =
                             quantizationColorsApproximation[colorIndex];
                     for (WeightedWrapper<Pigment> currPigment : pigmentList) {
-                        this.pixelInfo[col][row].pigmentConcentrations.setPigment(
+                        this.pigmentConcentrations[index].setPigment(
                                 currPigment.getLinkObject(),
                                 currPigment.getWeight());
                     }
@@ -193,6 +236,114 @@ public class Glaze {
         }
     }
 
+    /**
+     * Constructs an empty (dry) glaze. Used when restoring glaze from a
+     * checkpoint.
+     *
+     * @param pWidth       width of the embedding image
+     * @param pHeight      height of the embedding image
+     * @param pMaxVelocity maximal velocity of water in horizontal and vertical
+     *                     directions
+     * @param precision    precision of per-pixel water state
+     */
+    private Glaze(int pWidth, int pHeight, double pMaxVelocity,
+                  SimulationPrecision precision) {
+        this.width = pWidth;
+        this.height = pHeight;
+        this.maxVelocity = pMaxVelocity;
+        this.allocate(precision);
+    }
+
+    /**
+     * Writes the complete state of this glaze
+     *
+     * @param out checkpoint output
+     * @throws IOException if the state can not be written
+     */
+    void writeState(WatercolorCheckpoint.Output out) throws IOException {
+        out.putInt(this.width);
+        out.putInt(this.height);
+        out.putDouble(this.maxVelocity);
+        out.putInt(this.precision.ordinal());
+        int size = this.width * this.height;
+        for (int index = 0; index < size; index++) {
+            out.putByte(this.isInWetMask[index] ? (byte) 1 : (byte) 0);
+        }
+        out.putField(this.distanceToWetMaskBoundary, this.precision);
+        out.putField(this.waterVelocityX, this.precision);
+        out.putField(this.waterVelocityY, this.precision);
+        out.putField(this.waterPressure, this.precision);
+        out.putField(this.paperSaturation, this.precision);
+        for (int index = 0; index < size; index++) {
+            out.putPigmentList(this.pigmentConcentrations[index]);
+        }
+    }
+
+    /**
+     * Reads glaze state written by {@link #writeState}
+     *
+     * @param in checkpoint input
+     * @return restored glaze
+     * @throws IOException if the state can not be read
+     */
+    static Glaze readState(WatercolorCheckpoint.Input in) throws IOException {
+        int width = in.getInt();
+        int height = in.getInt();
+        double maxVelocity = in.getDouble();
+        SimulationPrecision precision = in.getPrecision();
+        if ((width < 0) || (height < 0)) {
+            throw new IOException("Corrupted glaze state");
+        }
+        Glaze result = new Glaze(width, height, maxVelocity, precision);
+        int size = width * height;
+        for (int index = 0; index < size; index++) {
+            result.isInWetMask[index] = (in.getByte() != 0);
+        }
+        in.getField(result.distanceToWetMaskBoundary, precision);
+        in.getField(result.waterVelocityX, precision);
+        in.getField(result.waterVelocityY, precision);
+        in.getField(result.waterPressure, precision);
+        in.getField(result.paperSaturation, precision);
+        for (int index = 0; index < size; index++) {
+            result.pigmentConcentrations[index] = in.getPigmentList();
+        }
+        return result;
+    }
+
+    /**
+     * Allocates per-pixel information and sets it to initial values (dry
+     * pixels with no velocity, unit pressure and no pigments)
+     *
+     * @param precision precision of per-pixel water state
+     */
+    private void allocate(SimulationPrecision precision) {
+        this.precision = precision;
+        int size = this.width * this.height;
+        this.isInWetMask = new boolean[size];
+        this.distanceToWetMaskBoundary = ScalarField.create(precision, size);
+        this.distanceToWetMaskBoundary.fill(1.0);
+        this.waterVelocityX = ScalarField.create(precision, size);
+        this.waterVelocityY = ScalarField.create(precision, size);
+        this.waterPressure = ScalarField.create(precision, size);
+        this.waterPressure.fill(1.0);
+        this.paperSaturation = ScalarField.create(precision, size);
+        this.pigmentConcentrations = new PigmentList[size];
+        for (int i = 0; i < size; i++) {
+            this.pigmentConcentrations[i] = new PigmentList();
+        }
+    }
+
+    /**
+     * Returns the index of the specified location in the per-pixel arrays
+     *
+     * @param column column of interest
+     * @param row    row of interest
+     * @return index in the per-pixel arrays
+     */
+    private int getIndex(int column, int row) {
+        return column * this.height + row;
+    }
+
     /**
      * Returns the width of the embedding image
      *
@@ -225,7 +376,7 @@ public class Glaze {
         if ((row < 0) || (row >= this.height)) {
             return 0.0;
         }
-        return this.pixelInfo[column][row].waterVelocityX;
+        return this.waterVelocityX.get(this.getIndex(column, row));
     }
 
     /**
@@ -242,7 +393,7 @@ public class Glaze {
         if ((row < 0) || (row >= this.height)) {
             return 0.0;
         }
-        return this.pixelInfo[column][row].waterVelocityY;
+        return this.waterVelocityY.get(this.getIndex(column, row));
     }
 
     /**
@@ -259,7 +410,7 @@ public class Glaze {
         if (newValue < -this.maxVelocity) {
             newValue = -this.maxVelocity;
         }
-        this.pixelInfo[column][row].waterVelocityX = newValue;
+        this.waterVelocityX.set(this.getIndex(column, row), newValue);
     }
 
     /**
@@ -276,7 +427,7 @@ public class Glaze {
         if (newValue < -this.maxVelocity) {
             newValue = -this.maxVelocity;
         }
-        this.pixelInfo[column][row].waterVelocityY = newValue;
+        this.waterVelocityY.set(this.getIndex(column, row), newValue);
     }
 
     /**
@@ -293,7 +444,7 @@ public class Glaze {
         if ((row < 0) || (row >= this.height)) {
             return 0.0;
         }
-        return this.pixelInfo[column][row].waterPressure;
+        return this.waterPressure.get(this.getIndex(column, row));
     }
 
     /**
@@ -304,7 +455,7 @@ public class Glaze {
      * @param newValue new pressure at this location
      */
     public void setWaterPressure(int column, int row, double newValue) {
-        this.pixelInfo[column][row].waterPressure = newValue;
+        this.waterPressure.set(this.getIndex(column, row), newValue);
     }
 
     /**
@@ -321,7 +472,7 @@ public class Glaze {
         if ((row < 0) || (row >= this.height)) {
             return 0.0;
         }
-        return this.pixelInfo[column][row].paperSaturation;
+        return this.paperSaturation.get(this.getIndex(column, row));
     }
 
     /**
@@ -332,7 +483,7 @@ public class Glaze {
      * @param newValue paper saturation at this location
      */
     public void setPaperSaturation(int column, int row, double newValue) {
-        this.pixelInfo[column][row].paperSaturation = newValue;
+        this.paperSaturation.set(this.getIndex(column, row), newValue);
     }
 
     /**
@@ -343,7 +494,7 @@ public class Glaze {
      * @return the distance to wet mask boundary at this location
      */
     public double getDistanceToWetMaskBoundary(int column, int row) {
-        return this.pixelInfo[column][row].distanceToWetMaskBoundary;
+        return this.distanceToWetMaskBoundary.get(this.getIndex(column, row));
     }
 
     /**
@@ -355,7 +506,7 @@ public class Glaze {
      *         wet mask and <code>false</code> otherwise
      */
     public boolean isInWetMask(int column, int row) {
-        return this.pixelInfo[column][row].isInWetMask;
+        return this.isInWetMask[this.getIndex(column, row)];
     }
 
     /**
@@ -368,7 +519,7 @@ public class Glaze {
      *                 location
      */
     public void setInWetMask(int column, int row, boolean newValue) {
-        this.pixelInfo[column][row].isInWetMask = newValue;
+        this.isInWetMask[this.getIndex(column, row)] = newValue;
     }
 
     /**
@@ -380,8 +531,8 @@ public class Glaze {
      * @return the water the concentration of this pigment at this location
      */
     public double getPigmentConcentration(int column, int row, Pigment pigment) {
-        return this.pixelInfo[column][row].pigmentConcentrations.getPigmentConcentration(
-                pigment);
+        return this.pigmentConcentrations[this.getIndex(column, row)]
+                .getPigmentConcentration(pigment);
     }
 
     /**
@@ -394,8 +545,8 @@ public class Glaze {
      */
     public void setPigmentConcentration(int column, int row, Pigment pigment,
                                         double concentration) {
-        this.pixelInfo[column][row].pigmentConcentrations.setPigment(pigment,
-                concentration);
+        this.pigmentConcentrations[this.getIndex(column, row)].setPigment(
+                pigment, concentration);
     }
 
     /**
@@ -406,20 +557,18 @@ public class Glaze {
      * @return collection of all pigment concentrations at this location
      */
     public PigmentList getAllPigmentConcentrations(int column, int row) {
-        return this.pixelInfo[column][row].pigmentConcentrations;
+        return this.pigmentConcentrations[this.getIndex(column, row)];
     }
 
     /**
      * Enforces boundary conditions for this glaze (section 4.3.1)
      */
     public void enforceBoundaryConditions() {
-        for (int col = 0; col < this.width; col++) {
-            for (int row = 0; row < this.height; row++) {
-                GlazePixelInfo currPixel = this.pixelInfo[col][row];
-                if (!currPixel.isInWetMask) {
-                    currPixel.waterVelocityX = 0.0;
-                    currPixel.waterVelocityY = 0.0;
-                }
+        int size = this.width * this.height;
+        for (int index = 0; index < size; index++) {
+            if (!this.isInWetMask[index]) {
+                this.waterVelocityX.set(index, 0.0);
+                this.waterVelocityY.set(index, 0.0);
             }
         }
     }
@@ -459,8 +608,8 @@ public class Glaze {
                         if ((newRow < 0) || (newRow == this.height)) {
                             continue;
                         }
-                        if (this.pixelInfo[col][row].isInWetMask !=
-                                this.pixelInfo[newCol][newRow].isInWetMask) {
+                        if (this.isInWetMask[this.getIndex(col, row)] !=
+                                this.isInWetMask[this.getIndex(newCol, newRow)]) {
                             thickBoundaries[col][row] = true;
                             break;
                         }
@@ -471,11 +620,7 @@ public class Glaze {
 
 
         // update boundary distance array
-        for (int col = 0; col < this.width; col++) {
-            for (int row = 0; row < this.height; row++) {
-                this.pixelInfo[col][row].distanceToWetMaskBoundary = 1.0;
-            }
-        }
+        this.distanceToWetMaskBoundary.fill(1.0);
 
         for (int col = 0; col < this.width; col++) {
             for (int row = 0; row < this.height; row++) {
@@ -492,10 +637,10 @@ public class Glaze {
                         if ((ny < 0) || (ny >= this.height)) {
                             continue;
                         }
-                        this.pixelInfo[nx][ny].distanceToWetMaskBoundary =
-                                Math.min(1.0,
+                        this.distanceToWetMaskBoundary.set(
+                                this.getIndex(nx, ny), Math.min(1.0,
                                         Math.sqrt(dx * dx + dy * dy) /
-                                maxDistance);
+                                                maxDistance));
                     }
                 }
             }
@@ -0,0 +1,394 @@
+package org.jvnet.ixent.algorithms.graphics.engine.npr.watercolor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.jvnet.ixent.algorithms.graphics.turbulence.PerlinNoiseGenerator;
+import org.jvnet.ixent.graphics.IndexBitmapObject;
+import org.jvnet.ixent.math.filters.GaussConvolution;
+
+/**
+ * The paper medium as specified in section 4.1 of <i>"Computer-Generated
+ * Watercolor"</i> by Cassidy Curtis, Sean Anderson, Joshua Seims, Kurt
+ * Fleischery and David Salesin in 1997 paper.<br>
+ * <p/>
+ * The texture depends only on its dimensions and the seed of the underlying
+ * noise, and is immutable once created. It is tileable - all the lookups wrap
+ * around its dimensions, so a single texture can cover image of any size and
+ * can be shared between concurrent renders.
+ *
+ * @author Kirill Grouchnikov
+ * @see PaperTextureCache
+ */
+public class PaperTexture {
+    private static final double MIN_FLUID_CAPACITY = 0.2;
+    private static final double MAX_FLUID_CAPACITY = 0.8;
+    private static final double MAX_PAPER_HEIGHT = 0.9;
+    private static final double SLOPE_FACTOR = 0.4;
+
+    /**
+     * Sigma of each of the two smoothing passes applied to the noise
+     */
+    private static final double SMOOTHING_SIGMA = 2.0;
+
+    /**
+     * Size of each of the two smoothing passes applied to the noise
+     */
+    private static final int SMOOTHING_SIZE = 2;
+
+    /**
+     * Magic number at the beginning of persisted textures
+     */
+    private static final int FILE_MAGIC = 0x50415052;
+
+    /**
+     * Version of the persisted texture format. Files of other versions are
+     * rejected (and regenerated by the cache)
+     */
+    private static final int FILE_VERSION = 2;
+
+    /**
+     * Size of persisted texture header (magic, version, width, height, seed,
+     * precision)
+     */
+    private static final int FILE_HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 4;
+
+    private int width, height;
+    private long seed;
+    private SimulationPrecision precision;
+
+    // all per-cell properties are stored column by column
+    private ScalarField paperHeight;
+    private ScalarField slopeX;
+    private ScalarField slopeY;
+    private ScalarField fluidCapacity;
+
+    /**
+     * Construct empty texture of specified dimensions
+     *
+     * @param pWidth     texture width
+     * @param pHeight    texture height
+     * @param pSeed      seed of the noise this texture is generated from
+     * @param pPrecision precision of stored properties
+     */
+    private PaperTexture(int pWidth, int pHeight, long pSeed,
+                         SimulationPrecision pPrecision) {
+        this.width = pWidth;
+        this.height = pHeight;
+        this.seed = pSeed;
+        this.precision = pPrecision;
+        int size = pWidth * pHeight;
+        this.paperHeight = ScalarField.create(pPrecision, size);
+        this.slopeX = ScalarField.create(pPrecision, size);
+        this.slopeY = ScalarField.create(pPrecision, size);
+        this.fluidCapacity = ScalarField.create(pPrecision, size);
+    }
+
+    /**
+     * Generate paper texture (height, slope, fluid capacity) of specified
+     * dimensions. The texture is periodic in both directions: the noise is
+     * periodic over the texture dimensions, and both the smoothing and the
+     * slopes wrap around them.
+     *
+     * @param width     texture width
+     * @param height    texture height
+     * @param seed      seed of the noise this texture is generated from
+     * @param precision precision of stored properties
+     * @return generated texture
+     * @throws IllegalArgumentException if one of dimensions is not positive
+     */
+    public static PaperTexture generate(int width, int height, long seed,
+                                        SimulationPrecision precision) {
+        if ((width <= 0) || (height <= 0)) {
+            throw new IllegalArgumentException("Non-positive dimensions");
+        }
+        PaperTexture result = new PaperTexture(width, height, seed, precision);
+
+        // compute paper height field
+        PerlinNoiseGenerator noiseGenerator = new PerlinNoiseGenerator(seed);
+        double[][] noise = noiseGenerator.getPeriodicNormalizedNoise(width,
+                height);
+        // wrap the noise around the borders so that both smoothing passes
+        // see periodic neighbourhood on the cropped area
+        int pad = 2 * SMOOTHING_SIZE;
+        int paddedWidth = width + 2 * pad;
+        int paddedHeight = height + 2 * pad;
+        IndexBitmapObject ibo = new IndexBitmapObject(paddedWidth,
+                paddedHeight);
+        for (int col = 0; col < paddedWidth; col++) {
+            int noiseCol = wrap(col - pad, width);
+            for (int row = 0; row < paddedHeight; row++) {
+                int noiseRow = wrap(row - pad, height);
+                ibo.setValue(col, row, (int) (255 * noise[noiseCol][noiseRow]));
+            }
+        }
+        GaussConvolution gc = new GaussConvolution(SMOOTHING_SIGMA,
+                SMOOTHING_SIZE);
+        IndexBitmapObject smoothed1 = gc.getSmoothedBitmap(ibo);
+        IndexBitmapObject smoothed2 = gc.getSmoothedBitmap(smoothed1);
+
+        for (int col = 0; col < width; col++) {
+            for (int row = 0; row < height; row++) {
+                double alpha = Math.abs(smoothed1.getValue(col + pad, row + pad)
+                        - smoothed2.getValue(col + pad, row + pad));
+                alpha /= 255.0;
+                result.paperHeight.set(col * height + row, alpha
+                        * MAX_PAPER_HEIGHT);
+            }
+        }
+
+        for (int col = 0; col < width; col++) {
+            int nextCol = wrap(col + 1, width);
+            for (int row = 0; row < height; row++) {
+                int nextRow = wrap(row + 1, height);
+                int index = col * height + row;
+                double currHeight = result.paperHeight.get(index);
+                // compute horizontal and vertical slope
+                result.slopeX.set(index, SLOPE_FACTOR
+                        * (result.paperHeight.get(nextCol * height + row)
+                        - currHeight));
+                result.slopeY.set(index, SLOPE_FACTOR
+                        * (result.paperHeight.get(col * height + nextRow)
+                        - currHeight));
+                // compute fluid capacity
+                result.fluidCapacity.set(index, MIN_FLUID_CAPACITY
+                        + currHeight
+                        * (MAX_FLUID_CAPACITY - MIN_FLUID_CAPACITY));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Load paper texture previously persisted with {@link #save(File)}. The
+     * file is memory-mapped for reading.
+     *
+     * @param file      texture file
+     * @param width     expected texture width
+     * @param height    expected texture height
+     * @param seed      expected seed of the noise
+     * @param precision expected precision of stored properties
+     * @return loaded texture
+     * @throws IOException if the file can not be read, has invalid format or
+     *                     holds a texture of other dimensions, seed or
+     *                     precision
+     */
+    public static PaperTexture load(File file, int width, int height,
+                                    long seed, SimulationPrecision precision)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            if ((buffer.remaining() < FILE_HEADER_SIZE)
+                    || (buffer.getInt() != FILE_MAGIC)) {
+                throw new IOException("Not a paper texture file: " + file);
+            }
+            if (buffer.getInt() != FILE_VERSION) {
+                throw new IOException("Unsupported paper texture version: "
+                        + file);
+            }
+            int fileWidth = buffer.getInt();
+            int fileHeight = buffer.getInt();
+            long fileSeed = buffer.getLong();
+            int precisionOrdinal = buffer.getInt();
+            if ((fileWidth != width) || (fileHeight != height)
+                    || (fileSeed != seed)
+                    || (precisionOrdinal != precision.ordinal())) {
+                throw new IOException("Paper texture file " + file
+                        + " doesn't match the requested texture");
+            }
+            if (buffer.remaining() != getDataSize(width, height, precision)) {
+                throw new IOException("Corrupted paper texture file: " + file);
+            }
+            PaperTexture result = new PaperTexture(width, height, seed,
+                    precision);
+            ScalarField[] fields = result.getFields();
+            for (ScalarField field : fields) {
+                for (int i = 0; i < field.getSize(); i++) {
+                    if (precision == SimulationPrecision.floatPrecision) {
+                        field.set(i, buffer.getFloat());
+                    }
+                    else {
+                        field.set(i, buffer.getDouble());
+                    }
+                }
+            }
+            return result;
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Persist this texture to the specified file. The file is memory-mapped
+     * for writing.
+     *
+     * @param file texture file
+     * @throws IOException if the file can not be written
+     */
+    public void save(File file) throws IOException {
+        long size = FILE_HEADER_SIZE
+                + getDataSize(this.width, this.height, this.precision);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(FILE_MAGIC);
+            buffer.putInt(FILE_VERSION);
+            buffer.putInt(this.width);
+            buffer.putInt(this.height);
+            buffer.putLong(this.seed);
+            buffer.putInt(this.precision.ordinal());
+            for (ScalarField field : this.getFields()) {
+                for (int i = 0; i < field.getSize(); i++) {
+                    if (this.precision == SimulationPrecision.floatPrecision) {
+                        buffer.putFloat((float) field.get(i));
+                    }
+                    else {
+                        buffer.putDouble(field.get(i));
+                    }
+                }
+            }
+            buffer.force();
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the size of persisted per-cell properties
+     *
+     * @param width     texture width
+     * @param height    texture height
+     * @param precision precision of stored properties
+     * @return size (in bytes) of persisted per-cell properties
+     */
+    private static long getDataSize(int width, int height,
+                                    SimulationPrecision precision) {
+        int valueSize = (precision == SimulationPrecision.floatPrecision) ? 4
+                : 8;
+        return 4L * valueSize * width * height;
+    }
+
+    /**
+     * Returns all per-cell properties in the order they are persisted
+     *
+     * @return all per-cell properties
+     */
+    private ScalarField[] getFields() {
+        return new ScalarField[]{this.paperHeight, this.slopeX, this.slopeY,
+                this.fluidCapacity};
+    }
+
+    /**
+     * Wrap coordinate around texture dimension
+     *
+     * @param coord     coordinate (may be negative)
+     * @param dimension texture dimension
+     * @return wrapped coordinate in 0..dimension-1 range
+     */
+    private static int wrap(int coord, int dimension) {
+        int result = coord % dimension;
+        return (result < 0) ? result + dimension : result;
+    }
+
+    /**
+     * Returns the index of the specified location in the per-cell arrays
+     *
+     * @param column column of interest (wrapped around texture width)
+     * @param row    row of interest (wrapped around texture height)
+     * @return index in per-cell arrays
+     */
+    private int getIndex(int column, int row) {
+        return wrap(column, this.width) * this.height + wrap(row, this.height);
+    }
+
+    /**
+     * Returns the width of this texture tile
+     *
+     * @return the width of this texture tile
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of this texture tile
+     *
+     * @return the height of this texture tile
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Returns the seed of the noise this texture was generated from
+     *
+     * @return the seed of the noise this texture was generated from
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Returns the precision of stored properties
+     *
+     * @return the precision of stored properties
+     */
+    public SimulationPrecision getPrecision() {
+        return this.precision;
+    }
+
+    /**
+     * Returns the paper height at specified location
+     *
+     * @param column column of interest
+     * @param row    row of interest
+     * @return the paper height at this location
+     */
+    public double getPaperHeight(int column, int row) {
+        return this.paperHeight.get(this.getIndex(column, row));
+    }
+
+    /**
+     * Returns the horizontal paper slope at specified location
+     *
+     * @param column column of interest
+     * @param row    row of interest
+     * @return the horizontal paper slope at this location
+     */
+    public double getSlopeX(int column, int row) {
+        return this.slopeX.get(this.getIndex(column, row));
+    }
+
+    /**
+     * Returns the vertical paper slope at specified location
+     *
+     * @param column column of interest
+     * @param row    row of interest
+     * @return the vertical paper slope at this location
+     */
+    public double getSlopeY(int column, int row) {
+        return this.slopeY.get(this.getIndex(column, row));
+    }
+
+    /**
+     * Returns the paper fluid capacity at specified location
+     *
+     * @param column column of interest
+     * @param row    row of interest
+     * @return the paper fluid capacity at this location
+     */
+    public double getFluidCapacity(int column, int row) {
+        return this.fluidCapacity.get(this.getIndex(column, row));
+    }
+}
@@ -0,0 +1,134 @@
+package org.jvnet.ixent.algorithms.graphics.engine.npr.watercolor;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Cache of generated paper textures. A texture is generated once for each
+ * combination of dimensions and seed and is then shared (read-only) by all
+ * renders that ask for it. Optionally, the textures are persisted to (and
+ * loaded from) memory-mapped files in the specified directory, so that the
+ * generation is skipped in subsequent runs as well. A persisted texture
+ * that doesn't match the requested one is regenerated and overwritten.<br>
+ * <p/>
+ * The textures are held by soft references and may be reclaimed under memory
+ * pressure.
+ *
+ * @author Kirill Grouchnikov
+ * @see PaperTexture
+ */
+public final class PaperTextureCache {
+    private static Map<String, SoftReference<PaperTexture>> textures =
+            new HashMap<String, SoftReference<PaperTexture>>();
+
+    private static Logger logger = Logger.getLogger(
+            PaperTextureCache.class.getPackage().getName());
+
+    /**
+     * This constructor is private in order to prevent creating instances
+     */
+    private PaperTextureCache() {
+    }
+
+    /**
+     * Returns the key of a texture
+     *
+     * @param width     texture width
+     * @param height    texture height
+     * @param seed      seed of the noise
+     * @param precision precision of stored properties
+     * @return cache key
+     */
+    private static String getKey(int width, int height, long seed,
+                                 SimulationPrecision precision) {
+        return "paper-" + width + "x" + height + "-" + seed + "-"
+                + precision.name();
+    }
+
+    /**
+     * Returns the paper texture of specified dimensions and seed. The texture
+     * is generated if it is not in the cache.
+     *
+     * @param width  texture width
+     * @param height texture height
+     * @param seed   seed of the noise
+     * @return paper texture
+     */
+    public static PaperTexture getPaperTexture(int width, int height,
+                                               long seed) {
+        return getPaperTexture(width, height, seed,
+                SimulationPrecision.doublePrecision, null);
+    }
+
+    /**
+     * Returns the paper texture of specified dimensions and seed. If the
+     * texture is not in the cache, it is loaded from the specified directory
+     * or generated (and then persisted to this directory).
+     *
+     * @param width          texture width
+     * @param height         texture height
+     * @param seed           seed of the noise
+     * @param precision      precision of stored properties
+     * @param cacheDirectory directory for persisted textures. If
+     *                       <code>null</code>, the textures are not
+     *                       persisted
+     * @return paper texture
+     */
+    public static synchronized PaperTexture getPaperTexture(int width,
+                                                            int height,
+                                                            long seed,
+                                                            SimulationPrecision precision,
+                                                            File cacheDirectory) {
+        String key = getKey(width, height, seed, precision);
+        SoftReference<PaperTexture> ref = textures.get(key);
+        PaperTexture result = (ref == null) ? null : ref.get();
+        if (result != null) {
+            return result;
+        }
+
+        File textureFile = null;
+        if (cacheDirectory != null) {
+            textureFile = new File(cacheDirectory, key + ".bin");
+            if (textureFile.isFile()) {
+                try {
+                    result = PaperTexture.load(textureFile, width, height,
+                            seed, precision);
+                    logger.fine("Loaded paper texture from " + textureFile);
+                }
+                catch (IOException ioe) {
+                    logger.warning("Can't load paper texture from "
+                            + textureFile + ": " + ioe.getMessage());
+                }
+            }
+        }
+
+        if (result == null) {
+            logger.fine("Generating paper texture " + key);
+            result = PaperTexture.generate(width, height, seed, precision);
+            if (textureFile != null) {
+                try {
+                    result.save(textureFile);
+                }
+                catch (IOException ioe) {
+                    logger.warning("Can't save paper texture to "
+                            + textureFile + ": " + ioe.getMessage());
+                }
+            }
+        }
+
+        textures.put(key, new SoftReference<PaperTexture>(result));
+        return result;
+    }
+
+    /**
+     * Removes all textures from the in-memory cache. The persisted textures
+     * are not affected.
+     */
+    public static synchronized void clear() {
+        textures.clear();
+    }
+}
@@ -0,0 +1,167 @@
+package org.jvnet.ixent.algorithms.graphics.engine.npr.watercolor;
+
+import java.util.Arrays;
+
+/**
+ * A flat field of scalar values stored in the specified precision. The values
+ * are accessed by a linear index. All values are initially zero.
+ *
+ * @author Kirill Grouchnikov
+ * @see SimulationPrecision
+ */
+public abstract class ScalarField {
+    /**
+     * Number of values in this field
+     */
+    protected int size;
+
+    /**
+     * Construct field of specified size
+     *
+     * @param pSize number of values
+     */
+    protected ScalarField(int pSize) {
+        this.size = pSize;
+    }
+
+    /**
+     * Create field of specified precision and size
+     *
+     * @param precision precision of values
+     * @param size      number of values
+     * @return new field
+     */
+    public static ScalarField create(SimulationPrecision precision, int size) {
+        switch (precision) {
+            case floatPrecision:
+                return new FloatField(size);
+            default:
+                return new DoubleField(size);
+        }
+    }
+
+    /**
+     * Returns the number of values in this field
+     *
+     * @return the number of values in this field
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Returns the value at the specified index
+     *
+     * @param index index of interest
+     * @return the value at this index
+     */
+    public abstract double get(int index);
+
+    /**
+     * Sets the value at the specified index
+     *
+     * @param index    index of interest
+     * @param newValue new value at this index
+     */
+    public abstract void set(int index, double newValue);
+
+    /**
+     * Adds the specified amount to the value at the specified index
+     *
+     * @param index index of interest
+     * @param delta amount to add
+     */
+    public abstract void add(int index, double delta);
+
+    /**
+     * Sets all values to the specified value
+     *
+     * @param value new value
+     */
+    public abstract void fill(double value);
+
+    /**
+     * Copies all values from the specified field of the same size
+     *
+     * @param source the field to copy from
+     */
+    public void copyFrom(ScalarField source) {
+        for (int i = 0; i < this.size; i++) {
+            this.set(i, source.get(i));
+        }
+    }
+
+    /**
+     * Field stored in <code>double</code> array
+     */
+    private static class DoubleField extends ScalarField {
+        private double[] values;
+
+        public DoubleField(int pSize) {
+            super(pSize);
+            this.values = new double[pSize];
+        }
+
+        public double get(int index) {
+            return this.values[index];
+        }
+
+        public void set(int index, double newValue) {
+            this.values[index] = newValue;
+        }
+
+        public void add(int index, double delta) {
+            this.values[index] += delta;
+        }
+
+        public void fill(double value) {
+            Arrays.fill(this.values, value);
+        }
+
+        public void copyFrom(ScalarField source) {
+            if (source instanceof DoubleField) {
+                System.arraycopy(((DoubleField) source).values, 0,
+                        this.values, 0, this.size);
+                return;
+            }
+            super.copyFrom(source);
+        }
+    }
+
+    /**
+     * Field stored in <code>float</code> array
+     */
+    private static class FloatField extends ScalarField {
+        private float[] values;
+
+        public FloatField(int pSize) {
+            super(pSize);
+            this.values = new float[pSize];
+        }
+
+        public double get(int index) {
+            return this.values[index];
+        }
+
+        public void set(int index, double newValue) {
+            this.values[index] = (float) newValue;
+        }
+
+        public void add(int index, double delta) {
+            this.values[index] += (float) delta;
+        }
+
+        public void fill(double value) {
+            Arrays.fill(this.values, (float) value);
+        }
+
+        public void copyFrom(ScalarField source) {
+            if (source instanceof FloatField) {
+                System.arraycopy(((FloatField) source).values, 0,
+                        this.values, 0, this.size);
+                return;
+            }
+            super.copyFrom(source);
+        }
+    }
+}
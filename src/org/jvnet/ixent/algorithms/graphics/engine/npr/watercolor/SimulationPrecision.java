@@ -0,0 +1,14 @@
+package org.jvnet.ixent.algorithms.graphics.engine.npr.watercolor;
+
+/**
+ * Precision of the numeric state of watercolor simulation (water velocities,
+ * pressure, saturation and paper properties). The single precision stores
+ * four bytes per value instead of eight, while the visual output is quantized
+ * to 8 bits per channel anyway.
+ *
+ * @author Kirill Grouchnikov
+ * @see ScalarField
+ */
+public enum SimulationPrecision {
+    floatPrecision, doublePrecision
+}
@@ -0,0 +1,479 @@
+package org.jvnet.ixent.algorithms.graphics.engine.npr.watercolor;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Snapshot of watercolor simulation state. Holds all the glazes (water
+ * velocities, pressure, paper saturation, wet mask and pigment
+ * concentrations), the pigment deposition layer of the paper, the identity of
+ * the paper texture, the position of the simulation (glaze index and main
+ * loop iteration) and the fingerprint of the simulation input and
+ * configuration. The snapshot is written to a compact binary file via NIO
+ * channels and can be resumed in a different process.<br>
+ * <p/>
+ * The paper texture itself is not stored - it is fully determined by its
+ * dimensions, seed and precision and is restored from {@link
+ * PaperTextureCache}.
+ *
+ * @author Kirill Grouchnikov
+ * @see org.jvnet.ixent.algorithms.graphics.engine.npr.WatercolorEngine
+ */
+public final class WatercolorCheckpoint {
+    /**
+     * Magic number at the beginning of checkpoint files
+     */
+    private static final int FILE_MAGIC = 0x57434B50;
+
+    /**
+     * Version of checkpoint file format
+     */
+    private static final int FILE_VERSION = 2;
+
+    /**
+     * Size of buffer used for channel I/O
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private int width, height;
+    private SimulationPrecision precision;
+    private long paperSeed;
+    private int paperTileWidth, paperTileHeight;
+    private Glaze[] glazes;
+    private PigmentList[][] paperPigmentConcentrations;
+    private int glazeIndex;
+    private int iteration;
+    private long fingerprint;
+
+    /**
+     * Construct simulation snapshot
+     *
+     * @param pPaperTexture               paper texture
+     * @param pPaperPigmentConcentrations pigment deposition layer of the paper
+     * @param pGlazes                     all glazes
+     * @param pGlazeIndex                 index of the glaze to resume from
+     * @param pIteration                  main loop iteration to resume from
+     * @param pFingerprint                fingerprint of the simulation input
+     *                                    and configuration
+     * @throws IllegalArgumentException if some parameter is null or the glazes
+     *                                  do not match the pigment deposition
+     *                                  layer
+     */
+    public WatercolorCheckpoint(PaperTexture pPaperTexture,
+                                PigmentList[][] pPaperPigmentConcentrations,
+                                Glaze[] pGlazes, int pGlazeIndex,
+                                int pIteration, long pFingerprint) {
+        if ((pPaperTexture == null) || (pPaperPigmentConcentrations == null)
+                || (pGlazes == null)) {
+            throw new IllegalArgumentException("Can't pass null parameters");
+        }
+        this.width = pPaperPigmentConcentrations.length;
+        this.height = (this.width == 0) ? 0
+                : pPaperPigmentConcentrations[0].length;
+        for (Glaze currGlaze : pGlazes) {
+            if ((currGlaze.getWidth() != this.width)
+                    || (currGlaze.getHeight() != this.height)) {
+                throw new IllegalArgumentException(
+                        "Glaze dimensions don't match the paper");
+            }
+        }
+        this.precision = pPaperTexture.getPrecision();
+        this.paperSeed = pPaperTexture.getSeed();
+        this.paperTileWidth = pPaperTexture.getWidth();
+        this.paperTileHeight = pPaperTexture.getHeight();
+        this.paperPigmentConcentrations = pPaperPigmentConcentrations;
+        this.glazes = pGlazes;
+        this.glazeIndex = pGlazeIndex;
+        this.iteration = pIteration;
+        this.fingerprint = pFingerprint;
+    }
+
+    /**
+     * This constructor is private in order to prevent creating empty object
+     */
+    private WatercolorCheckpoint() {
+    }
+
+    /**
+     * Write this snapshot to the specified file. The snapshot is first written
+     * to a temporary file which then replaces the specified file, so that a
+     * crash during writing leaves the previous snapshot intact.
+     *
+     * @param file checkpoint file
+     * @throws IOException if the file can not be written
+     */
+    public void save(File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tempFile);
+        try {
+            FileChannel channel = fos.getChannel();
+            Output out = new Output(channel);
+            out.putInt(FILE_MAGIC);
+            out.putInt(FILE_VERSION);
+            out.putLong(this.fingerprint);
+            out.putInt(this.width);
+            out.putInt(this.height);
+            out.putInt(this.precision.ordinal());
+            out.putLong(this.paperSeed);
+            out.putInt(this.paperTileWidth);
+            out.putInt(this.paperTileHeight);
+            out.putInt(this.glazeIndex);
+            out.putInt(this.iteration);
+            for (int col = 0; col < this.width; col++) {
+                for (int row = 0; row < this.height; row++) {
+                    out.putPigmentList(this.paperPigmentConcentrations[col][row]);
+                }
+            }
+            out.putInt(this.glazes.length);
+            for (Glaze currGlaze : this.glazes) {
+                currGlaze.writeState(out);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        finally {
+            fos.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Can't replace checkpoint " + file);
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Can't rename " + tempFile + " to " + file);
+        }
+    }
+
+    /**
+     * Read snapshot from the specified file
+     *
+     * @param file checkpoint file
+     * @return simulation snapshot
+     * @throws IOException if the file can not be read or has invalid format
+     */
+    public static WatercolorCheckpoint load(File file) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            Input in = new Input(fis.getChannel());
+            if ((in.getInt() != FILE_MAGIC) || (in.getInt() != FILE_VERSION)) {
+                throw new IOException("Not a watercolor checkpoint: " + file);
+            }
+            WatercolorCheckpoint result = new WatercolorCheckpoint();
+            result.fingerprint = in.getLong();
+            result.width = in.getInt();
+            result.height = in.getInt();
+            result.precision = in.getPrecision();
+            result.paperSeed = in.getLong();
+            result.paperTileWidth = in.getInt();
+            result.paperTileHeight = in.getInt();
+            result.glazeIndex = in.getInt();
+            result.iteration = in.getInt();
+            if ((result.width < 0) || (result.height < 0)
+                    || (result.paperTileWidth <= 0)
+                    || (result.paperTileHeight <= 0)) {
+                throw new IOException("Corrupted watercolor checkpoint: "
+                        + file);
+            }
+            result.paperPigmentConcentrations =
+                    new PigmentList[result.width][result.height];
+            for (int col = 0; col < result.width; col++) {
+                for (int row = 0; row < result.height; row++) {
+                    result.paperPigmentConcentrations[col][row] =
+                            in.getPigmentList();
+                }
+            }
+            int glazeCount = in.getInt();
+            if (glazeCount < 0) {
+                throw new IOException("Corrupted watercolor checkpoint: "
+                        + file);
+            }
+            result.glazes = new Glaze[glazeCount];
+            for (int i = 0; i < glazeCount; i++) {
+                result.glazes[i] = Glaze.readState(in);
+                if ((result.glazes[i].getWidth() != result.width)
+                        || (result.glazes[i].getHeight() != result.height)) {
+                    throw new IOException("Corrupted watercolor checkpoint: "
+                            + file);
+                }
+            }
+            return result;
+        }
+        finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the simulation input and configuration
+     *
+     * @return the fingerprint of the simulation input and configuration
+     */
+    public long getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * Returns the width of the simulated image
+     *
+     * @return the width of the simulated image
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the simulated image
+     *
+     * @return the height of the simulated image
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Returns the precision of the simulation state
+     *
+     * @return the precision of the simulation state
+     */
+    public SimulationPrecision getPrecision() {
+        return this.precision;
+    }
+
+    /**
+     * Returns the paper texture of the simulation
+     *
+     * @param cacheDirectory directory for persisted paper textures (may be
+     *                       <code>null</code>)
+     * @return the paper texture of the simulation
+     */
+    public PaperTexture getPaperTexture(File cacheDirectory) {
+        return PaperTextureCache.getPaperTexture(this.paperTileWidth,
+                this.paperTileHeight, this.paperSeed, this.precision,
+                cacheDirectory);
+    }
+
+    /**
+     * Returns the pigment deposition layer of the paper
+     *
+     * @return the pigment deposition layer of the paper
+     */
+    public PigmentList[][] getPaperPigmentConcentrations() {
+        return this.paperPigmentConcentrations;
+    }
+
+    /**
+     * Returns all glazes
+     *
+     * @return all glazes
+     */
+    public Glaze[] getGlazes() {
+        return this.glazes;
+    }
+
+    /**
+     * Returns the index of the glaze to resume the simulation from
+     *
+     * @return the index of the glaze to resume the simulation from
+     */
+    public int getGlazeIndex() {
+        return this.glazeIndex;
+    }
+
+    /**
+     * Returns the main loop iteration to resume the simulation from
+     *
+     * @return the main loop iteration to resume the simulation from
+     */
+    public int getIteration() {
+        return this.iteration;
+    }
+
+    /**
+     * Buffered writer of primitive values to a channel
+     */
+    static final class Output {
+        private FileChannel channel;
+        private ByteBuffer buffer;
+
+        Output(FileChannel pChannel) {
+            this.channel = pChannel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        private void ensure(int size) throws IOException {
+            if (this.buffer.remaining() < size) {
+                this.flush();
+            }
+        }
+
+        void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+
+        void putByte(byte value) throws IOException {
+            this.ensure(1);
+            this.buffer.put(value);
+        }
+
+        void putInt(int value) throws IOException {
+            this.ensure(4);
+            this.buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            this.ensure(8);
+            this.buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            this.ensure(8);
+            this.buffer.putDouble(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            this.ensure(4);
+            this.buffer.putFloat(value);
+        }
+
+        /**
+         * Writes all values of the field in the specified precision
+         */
+        void putField(ScalarField field, SimulationPrecision precision)
+                throws IOException {
+            int size = field.getSize();
+            for (int i = 0; i < size; i++) {
+                if (precision == SimulationPrecision.floatPrecision) {
+                    this.putFloat((float) field.get(i));
+                }
+                else {
+                    this.putDouble(field.get(i));
+                }
+            }
+        }
+
+        /**
+         * Writes the number of present pigments followed by (ordinal,
+         * concentration) pairs
+         */
+        void putPigmentList(PigmentList pigmentList) throws IOException {
+            Pigment[] pigments = Pigment.values();
+            int count = 0;
+            for (Pigment currPigment : pigments) {
+                if (pigmentList.getPigmentConcentration(currPigment) > 0.0) {
+                    count++;
+                }
+            }
+            this.putByte((byte) count);
+            for (Pigment currPigment : pigments) {
+                double concentration = pigmentList
+                        .getPigmentConcentration(currPigment);
+                if (concentration > 0.0) {
+                    this.putByte((byte) currPigment.ordinal());
+                    this.putDouble(concentration);
+                }
+            }
+        }
+    }
+
+    /**
+     * Buffered reader of primitive values from a channel
+     */
+    static final class Input {
+        private FileChannel channel;
+        private ByteBuffer buffer;
+
+        Input(FileChannel pChannel) {
+            this.channel = pChannel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.buffer.flip();
+        }
+
+        private void ensure(int size) throws IOException {
+            if (this.buffer.remaining() >= size) {
+                return;
+            }
+            this.buffer.compact();
+            while (this.buffer.position() < size) {
+                if (this.channel.read(this.buffer) < 0) {
+                    throw new EOFException("Truncated watercolor checkpoint");
+                }
+            }
+            this.buffer.flip();
+        }
+
+        byte getByte() throws IOException {
+            this.ensure(1);
+            return this.buffer.get();
+        }
+
+        int getInt() throws IOException {
+            this.ensure(4);
+            return this.buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            this.ensure(8);
+            return this.buffer.getLong();
+        }
+
+        double getDouble() throws IOException {
+            this.ensure(8);
+            return this.buffer.getDouble();
+        }
+
+        float getFloat() throws IOException {
+            this.ensure(4);
+            return this.buffer.getFloat();
+        }
+
+        SimulationPrecision getPrecision() throws IOException {
+            int ordinal = this.getInt();
+            SimulationPrecision[] precisions = SimulationPrecision.values();
+            if ((ordinal < 0) || (ordinal >= precisions.length)) {
+                throw new IOException("Unknown precision " + ordinal);
+            }
+            return precisions[ordinal];
+        }
+
+        /**
+         * Reads all values of the field in the specified precision
+         */
+        void getField(ScalarField field, SimulationPrecision precision)
+                throws IOException {
+            int size = field.getSize();
+            for (int i = 0; i < size; i++) {
+                if (precision == SimulationPrecision.floatPrecision) {
+                    field.set(i, this.getFloat());
+                }
+                else {
+                    field.set(i, this.getDouble());
+                }
+            }
+        }
+
+        /**
+         * Reads pigment list written by {@link Output#putPigmentList}
+         */
+        PigmentList getPigmentList() throws IOException {
+            Pigment[] pigments = Pigment.values();
+            PigmentList result = new PigmentList();
+            int count = this.getByte();
+            for (int i = 0; i < count; i++) {
+                int ordinal = this.getByte();
+                double concentration = this.getDouble();
+                if ((ordinal < 0) || (ordinal >= pigments.length)) {
+                    throw new IOException("Unknown pigment " + ordinal);
+                }
+                result.setPigment(pigments[ordinal], concentration);
+            }
+            return result;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.jvnet.ixent.algorithms.graphics.general;
 import java.util.logging.Logger;
 
 import org.jvnet.ixent.math.coord.PointND;
+import org.jvnet.ixent.math.matrix.FeatureMatrix;
 
 /**
  * A class for performing K-Means iterative technique for finding K points that
@@ -12,7 +13,7 @@ import org.jvnet.ixent.math.coord.PointND;
  */
 public final class KMeans {
     // input points
-    private PointND[] samplePoints;
+    private FeatureMatrix samplePoints;
 
     // input points count
     private int sampleSize;
@@ -24,7 +25,7 @@ public final class KMeans {
     private int K;
 
     // current centers (for current iteration)
-    private PointND[] currCenters;
+    private double[][] currCenters;
 
     // index of closest center
     private int[] closestCenters;
@@ -32,6 +33,9 @@ public final class KMeans {
     private Logger logger;
 
     /**
+     * The points are packed into a {@link FeatureMatrix} (in single
+     * precision)
+     *
      * @param samplePoints   an array of N-dimensional input points (non-null)
      * @param dimensionality the N - dimensionality of each input point
      * @param K              desired number of centers (<b>K</b> in K-Means)
@@ -40,6 +44,39 @@ public final class KMeans {
      *                                  <b>dimensionality</b> parameter
      */
     public KMeans(PointND[] samplePoints, int dimensionality, int K) {
+        this(KMeans.getFeatureMatrix(samplePoints, dimensionality), K);
+    }
+
+    /**
+     * @param samplePoints input points, each row is a single point (non-null)
+     * @param K            desired number of centers (<b>K</b> in K-Means)
+     * @throws IllegalArgumentException if the input matrix is null
+     */
+    public KMeans(FeatureMatrix samplePoints, int K) {
+        if (samplePoints == null) {
+            throw new IllegalArgumentException("Can't pass null matrix");
+        }
+        this.samplePoints = samplePoints;
+        this.sampleSize = samplePoints.getSampleCount();
+        this.sampleDimensionality = samplePoints.getDimensionality();
+        this.K = K;
+        this.currCenters = new double[K][];
+        this.closestCenters = new int[this.sampleSize];
+        this.logger = Logger.getLogger(KMeans.class.getPackage().getName());
+    }
+
+    /**
+     * Pack input points into a feature matrix
+     *
+     * @param samplePoints   an array of N-dimensional input points (non-null)
+     * @param dimensionality the N - dimensionality of each input point
+     * @return feature matrix of the points
+     * @throws IllegalArgumentException if have null point in array or point
+     *                                  with dimensionality different from
+     *                                  <b>dimensionality</b> parameter
+     */
+    private static FeatureMatrix getFeatureMatrix(PointND[] samplePoints,
+                                                  int dimensionality) {
         // check point dimensionality
         for (int i = 0; i < samplePoints.length; i++) {
             if (samplePoints[i] == null) {
@@ -50,13 +87,29 @@ public final class KMeans {
                         "Point of unexpected dimensionality in input array");
             }
         }
-        this.samplePoints = samplePoints;
-        this.sampleSize = this.samplePoints.length;
-        this.sampleDimensionality = dimensionality;
-        this.K = K;
-        this.currCenters = new PointND[K];
-        this.closestCenters = new int[this.sampleSize];
-        this.logger = Logger.getLogger(KMeans.class.getPackage().getName());
+        FeatureMatrix result = new FeatureMatrix(samplePoints.length,
+                dimensionality, FeatureMatrix.Layout.INTERLEAVED);
+        for (int i = 0; i < samplePoints.length; i++) {
+            for (int coord = 0; coord < dimensionality; coord++) {
+                result.set(i, coord,
+                        (float) samplePoints[i].getComponent(coord));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param point1 the first point
+     * @param point2 the second point
+     * @return squared distance between two points
+     */
+    private static double dist2(double[] point1, double[] point2) {
+        double result = 0.0;
+        for (int i = 0; i < point1.length; i++) {
+            double diff = point1[i] - point2[i];
+            result += diff * diff;
+        }
+        return result;
     }
 
     /**
@@ -78,11 +131,12 @@ public final class KMeans {
     private double singleIteration() {
         // for each point find the centroid closest to it
         for (int point = 0; point < this.sampleSize; point++) {
-            PointND currPoint = this.samplePoints[point];
-            double minDist2 = currPoint.dist2(this.currCenters[0]);
+            double minDist2 = this.samplePoints.dist2(point,
+                    this.currCenters[0]);
             int minIndex = 0;
             for (int cent = 1; cent < this.K; cent++) {
-                double currDist2 = currPoint.dist2(this.currCenters[cent]);
+                double currDist2 = this.samplePoints.dist2(point,
+                        this.currCenters[cent]);
                 if (currDist2 < minDist2) {
                     minDist2 = currDist2;
                     minIndex = cent;
@@ -105,16 +159,16 @@ public final class KMeans {
         }
 
         for (int point = 0; point < this.sampleSize; point++) {
-            PointND currPoint = this.samplePoints[point];
             int closest = this.closestCenters[point];
             clusterSizes[closest]++;
             for (int coord = 0; coord < this.sampleDimensionality; coord++) {
-                sumCoords[closest][coord] += currPoint.getComponent(coord);
+                sumCoords[closest][coord] += this.samplePoints.get(point,
+                        coord);
             }
         }
 
         // compute new centers as centroids of the clusters
-        PointND[] newCenters = new PointND[this.K];
+        double[][] newCenters = new double[this.K][];
         for (int center = 0; center < this.K; center++) {
             if (clusterSizes[center] > 0) {
                 // have points in this cluster
@@ -122,7 +176,7 @@ public final class KMeans {
                      coord < this.sampleDimensionality; coord++) {
                     sumCoords[center][coord] /= clusterSizes[center];
                 }
-                newCenters[center] = new PointND(sumCoords[center]);
+                newCenters[center] = sumCoords[center];
             }
             else {
                 newCenters[center] = this.currCenters[center];
@@ -137,8 +191,8 @@ public final class KMeans {
         double[][] costMatrix = new double[this.K][this.K];
         for (int newC = 0; newC < this.K; newC++) {
             for (int oldC = 0; oldC < this.K; oldC++) {
-                costMatrix[newC][oldC] = newCenters[newC]
-                        .dist2(this.currCenters[oldC]);
+                costMatrix[newC][oldC] = KMeans.dist2(newCenters[newC],
+                        this.currCenters[oldC]);
             }
         }
         Hungarian hung = new Hungarian(this.K, costMatrix);
@@ -175,9 +229,8 @@ public final class KMeans {
             max[i] = Double.MIN_VALUE;
         }
         for (int point = 0; point < this.sampleSize; point++) {
-            PointND currPoint = this.samplePoints[point];
             for (int coord = 0; coord < this.sampleDimensionality; coord++) {
-                double c = currPoint.getComponent(coord);
+                double c = this.samplePoints.get(point, coord);
                 if (c < min[coord]) {
                     min[coord] = c;
                 }
@@ -188,13 +241,13 @@ public final class KMeans {
         }
 
         // perform [0..1] -> [min..max] transform
-        PointND[] startingCenters = new PointND[this.K];
+        double[][] startingCenters = new double[this.K][];
         for (int cent = 0; cent < this.K; cent++) {
             double[] coords = new double[this.sampleDimensionality];
             for (int coo = 0; coo < this.sampleDimensionality; coo++) {
                 coords[coo] = min[coo] + (max[coo] - min[coo]) * Math.random();
             }
-            startingCenters[cent] = new PointND(coords);
+            startingCenters[cent] = coords;
         }
 
         this.currCenters = startingCenters;
@@ -212,7 +265,11 @@ public final class KMeans {
             itCount++;
         }
 
-        return this.currCenters;
+        PointND[] result = new PointND[this.K];
+        for (int cent = 0; cent < this.K; cent++) {
+            result[cent] = new PointND(this.currCenters[cent].clone());
+        }
+        return result;
     }
 
     /**
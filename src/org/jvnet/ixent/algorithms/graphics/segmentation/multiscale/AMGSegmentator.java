@@ -9,6 +9,9 @@ import org.jvnet.ixent.algorithms.graphics.segmentation.Segmentator;
 import org.jvnet.ixent.algorithms.graphics.segmentation.multiscale.structure.*;
 import org.jvnet.ixent.graphics.IndexBitmapObject;
 import org.jvnet.ixent.math.matrix.Matrix;
+import org.jvnet.ixent.math.matrix.SparseMatrix;
+import org.jvnet.ixent.util.BandExecutor;
+import org.jvnet.ixent.util.BandExecutor.BandTask;
 
 /**
  * A class that implements the AMG segmentation as outlined in <i>"Fast
@@ -26,6 +29,27 @@ public class AMGSegmentator implements Segmentator {
 
 	private SegmentationInfo segmentationInfo;
 
+	private int threadCount;
+
+	/**
+	 * State vectors of all salient segments at a single level of the
+	 * pyramid, stored sparsely. The non-zero values of node <code>i</code>
+	 * are at <code>offsets[i]</code> (inclusive) to
+	 * <code>offsets[i+1]</code> (exclusive) of <code>segments</code> (the
+	 * segment numbers) and <code>values</code>
+	 */
+	private static class StateBlock {
+		public int[] offsets;
+		public int[] segments;
+		public double[] values;
+
+		public StateBlock(int[] _offsets, int[] _segments, double[] _values) {
+			this.offsets = _offsets;
+			this.segments = _segments;
+			this.values = _values;
+		}
+	}
+
 	/**
 	 * Private class used for sorting salient segments throughout the image
 	 * multi-scale pyramid
@@ -60,6 +84,25 @@ public class AMGSegmentator implements Segmentator {
 	public AMGSegmentator() {
 		this.logger = Logger.getLogger(AMGSegmentator.class.getPackage()
 				.getName());
+		this.threadCount = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Set number of threads for coarsening the graphs and computing the
+	 * segment support. By default, as many threads as there are available
+	 * processors are used.
+	 * 
+	 * @param pThreadCount
+	 *            number of threads
+	 * @throws IllegalArgumentException
+	 *             if the number of threads is not positive
+	 */
+	public void setThreadCount(int pThreadCount) {
+		if (pThreadCount < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be positive");
+		}
+		this.threadCount = pThreadCount;
 	}
 
 	/**
@@ -87,46 +130,62 @@ public class AMGSegmentator implements Segmentator {
 
 		int nodeCount = this.width * this.height;
 		NodeInfo[] nodes = new NodeInfo[nodeCount];
+		// edges of each pixel - to the right, left, bottom and top neighbours
+		int[] neighbourOffsets = new int[nodeCount + 1];
+		for (int nodeIndex = 0; nodeIndex < nodeCount; nodeIndex++) {
+			int col = nodeIndex % this.width;
+			int row = nodeIndex / this.width;
+			int neighbourCount = 0;
+			if (col < (this.width - 1)) {
+				neighbourCount++;
+			}
+			if (col > 0) {
+				neighbourCount++;
+			}
+			if (row < (this.height - 1)) {
+				neighbourCount++;
+			}
+			if (row > 0) {
+				neighbourCount++;
+			}
+			neighbourOffsets[nodeIndex + 1] = neighbourOffsets[nodeIndex]
+					+ neighbourCount;
+		}
+		int[] neighbourIndices = new int[neighbourOffsets[nodeCount]];
+		double[] neighbourWeights = new double[neighbourOffsets[nodeCount]];
 		for (int col = 0; col < this.width; col++) {
 			for (int row = 0; row < this.height; row++) {
 				int nodeIndex = row * this.width + col;
-				NodeInfo newNode = new NodeInfo(nodeIndex, 1.0);
-				nodes[nodeIndex] = newNode;
+				nodes[nodeIndex] = new NodeInfo(nodeIndex, 1.0);
+				int edge = neighbourOffsets[nodeIndex];
 				// right
 				if (col < (this.width - 1)) {
-					int rightIndex = nodeIndex + 1;
 					int diff = Math.abs(greys[col][row] - greys[col + 1][row]);
-					EdgeInfo edge = new EdgeInfo(nodeIndex, rightIndex,
-							1.0 - (double) diff / 256.0);
-					newNode.addEdge(edge);
+					neighbourIndices[edge] = nodeIndex + 1;
+					neighbourWeights[edge++] = 1.0 - (double) diff / 256.0;
 				}
 				// left
 				if (col > 0) {
-					int leftIndex = nodeIndex - 1;
 					int diff = Math.abs(greys[col][row] - greys[col - 1][row]);
-					EdgeInfo edge = new EdgeInfo(nodeIndex, leftIndex,
-							1.0 - (double) diff / 256.0);
-					newNode.addEdge(edge);
+					neighbourIndices[edge] = nodeIndex - 1;
+					neighbourWeights[edge++] = 1.0 - (double) diff / 256.0;
 				}
 				// bottom
 				if (row < (this.height - 1)) {
-					int bottomIndex = nodeIndex + this.width;
 					int diff = Math.abs(greys[col][row] - greys[col][row + 1]);
-					EdgeInfo edge = new EdgeInfo(nodeIndex, bottomIndex,
-							1.0 - (double) diff / 256.0);
-					newNode.addEdge(edge);
+					neighbourIndices[edge] = nodeIndex + this.width;
+					neighbourWeights[edge++] = 1.0 - (double) diff / 256.0;
 				}
 				// top
 				if (row > 0) {
-					int topIndex = nodeIndex - this.width;
 					int diff = Math.abs(greys[col][row] - greys[col][row - 1]);
-					EdgeInfo edge = new EdgeInfo(nodeIndex, topIndex,
-							1.0 - (double) diff / 256.0);
-					newNode.addEdge(edge);
+					neighbourIndices[edge] = nodeIndex - this.width;
+					neighbourWeights[edge++] = 1.0 - (double) diff / 256.0;
 				}
 			}
 		}
-		GraphInfo gi = new GraphInfo(0, nodes);
+		GraphInfo gi = new GraphInfo(0, nodes, neighbourOffsets,
+				neighbourIndices, neighbourWeights);
 		Coarsener coarsener = CoarsenerFactory
 				.getCoarsener(this.inputImage, gi);
 		coarsener.fillAdditionalInformation();
@@ -144,6 +203,7 @@ public class AMGSegmentator implements Segmentator {
 	private GraphInfo getNextGraph(GraphInfo currGraph) {
 		Coarsener coarsener = CoarsenerFactory.getCoarsener(this.inputImage,
 				currGraph);
+		coarsener.setThreadCount(this.threadCount);
 		return coarsener.getNextGraph(this.height * this.width);
 	}
 
@@ -201,6 +261,295 @@ public class AMGSegmentator implements Segmentator {
 		return saliencyList;
 	}
 
+	/**
+	 * Add one-hot state vectors of segments to the block
+	 * 
+	 * @param block
+	 *            current block, null if empty
+	 * @param nodeCount
+	 *            number of graph nodes
+	 * @param nodes
+	 *            nodes of the added segments
+	 * @param segments
+	 *            numbers of the added segments
+	 * @return new block
+	 */
+	private static StateBlock addSegments(StateBlock block, int nodeCount,
+			List<Integer> nodes, List<Integer> segments) {
+		int[] offsets = new int[nodeCount + 1];
+		if (block != null) {
+			for (int i = 0; i < nodeCount; i++) {
+				offsets[i + 1] = block.offsets[i + 1] - block.offsets[i];
+			}
+		}
+		for (int node : nodes) {
+			offsets[node + 1]++;
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		int[] newSegments = new int[offsets[nodeCount]];
+		double[] newValues = new double[offsets[nodeCount]];
+		int[] fill = new int[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			fill[i] = offsets[i];
+			if (block != null) {
+				for (int k = block.offsets[i]; k < block.offsets[i + 1]; k++) {
+					newSegments[fill[i]] = block.segments[k];
+					newValues[fill[i]] = block.values[k];
+					fill[i]++;
+				}
+			}
+		}
+		for (int k = 0; k < nodes.size(); k++) {
+			int node = nodes.get(k);
+			newSegments[fill[node]] = segments.get(k);
+			newValues[fill[node]] = 1.0;
+			fill[node]++;
+		}
+		return new StateBlock(offsets, newSegments, newValues);
+	}
+
+	/**
+	 * Multiply all the state vectors in the block by the interpolation
+	 * matrix. Each row of the result is computed by accumulating the rows of
+	 * the block in the order of the matrix columns, so the values are the
+	 * same as of multiplying each state vector separately.
+	 * 
+	 * @param block
+	 *            current block
+	 * @param matrix
+	 *            interpolation matrix
+	 * @param segmentCount
+	 *            number of segments
+	 * @return block at the finer level
+	 */
+	private StateBlock interpolate(final StateBlock block,
+			final SparseMatrix matrix, final int segmentCount) {
+		final int rowCount = matrix.getRowCount();
+		final int bandCount = Math.max(1, Math.min(this.threadCount,
+				rowCount));
+		final int[] counts = new int[rowCount];
+		final int[][] bandSegments = new int[bandCount][];
+		final double[][] bandValues = new double[bandCount][];
+		// each band of rows collects its values separately, and the bands
+		// are then copied to the result in order
+		BandExecutor.processInBands(bandCount, this.threadCount,
+				new BandTask() {
+			public void process(int bandFrom, int bandTo) {
+				double[] sums = new double[segmentCount];
+				boolean[] isTouched = new boolean[segmentCount];
+				int[] touched = new int[segmentCount];
+				for (int band = bandFrom; band < bandTo; band++) {
+					int from = (int) ((long) rowCount * band / bandCount);
+					int to = (int) ((long) rowCount * (band + 1) / bandCount);
+					int[] outSegments = new int[16];
+					double[] outValues = new double[16];
+					int outCount = 0;
+					for (int row = from; row < to; row++) {
+						int touchedCount = 0;
+						int nzCount = matrix.getNzCountInRow(row);
+						for (int nz = 0; nz < nzCount; nz++) {
+							int column = matrix.getColumnByIndex(row, nz);
+							double weight = matrix.getValueByIndex(row, nz);
+							for (int k = block.offsets[column]; k < block.offsets[column + 1]; k++) {
+								int segment = block.segments[k];
+								if (!isTouched[segment]) {
+									isTouched[segment] = true;
+									touched[touchedCount++] = segment;
+								}
+								sums[segment] += weight * block.values[k];
+							}
+						}
+						if (outCount + touchedCount > outSegments.length) {
+							int newLength = Math.max(2 * outSegments.length,
+									outCount + touchedCount);
+							outSegments = Arrays.copyOf(outSegments, newLength);
+							outValues = Arrays.copyOf(outValues, newLength);
+						}
+						for (int t = 0; t < touchedCount; t++) {
+							int segment = touched[t];
+							outSegments[outCount] = segment;
+							outValues[outCount] = sums[segment];
+							outCount++;
+							sums[segment] = 0.0;
+							isTouched[segment] = false;
+						}
+						counts[row] = touchedCount;
+					}
+					bandSegments[band] = Arrays.copyOf(outSegments, outCount);
+					bandValues[band] = Arrays.copyOf(outValues, outCount);
+				}
+			}
+		});
+
+		int[] offsets = new int[rowCount + 1];
+		for (int row = 0; row < rowCount; row++) {
+			offsets[row + 1] = offsets[row] + counts[row];
+		}
+		int[] segments = new int[offsets[rowCount]];
+		double[] values = new double[offsets[rowCount]];
+		for (int band = 0; band < bandCount; band++) {
+			int from = (int) ((long) rowCount * band / bandCount);
+			System.arraycopy(bandSegments[band], 0, segments, offsets[from],
+					bandSegments[band].length);
+			System.arraycopy(bandValues[band], 0, values, offsets[from],
+					bandValues[band].length);
+		}
+		return new StateBlock(offsets, segments, values);
+	}
+
+	/**
+	 * Multiply all the state vectors in the block by an interpolation matrix
+	 * that is not a sparse matrix, one state vector at a time
+	 * 
+	 * @param block
+	 *            current block
+	 * @param matrix
+	 *            interpolation matrix
+	 * @param segmentCount
+	 *            number of segments
+	 * @return block at the finer level
+	 */
+	private static StateBlock interpolate(StateBlock block, Matrix matrix,
+			int segmentCount) {
+		int columnCount = matrix.getColumnCount();
+		int rowCount = matrix.getRowCount();
+		double[][] rowValues = new double[segmentCount][];
+		for (int segment = 0; segment < segmentCount; segment++) {
+			double[] vector = new double[columnCount];
+			boolean isEmpty = true;
+			for (int column = 0; column < columnCount; column++) {
+				for (int k = block.offsets[column]; k < block.offsets[column + 1]; k++) {
+					if (block.segments[k] == segment) {
+						vector[column] = block.values[k];
+						isEmpty = false;
+					}
+				}
+			}
+			if (!isEmpty) {
+				rowValues[segment] = matrix.multiply(vector);
+			}
+		}
+		int[] offsets = new int[rowCount + 1];
+		for (int row = 0; row < rowCount; row++) {
+			offsets[row + 1] = offsets[row];
+			for (int segment = 0; segment < segmentCount; segment++) {
+				if ((rowValues[segment] != null)
+						&& (rowValues[segment][row] != 0.0)) {
+					offsets[row + 1]++;
+				}
+			}
+		}
+		int[] segments = new int[offsets[rowCount]];
+		double[] values = new double[offsets[rowCount]];
+		int count = 0;
+		for (int row = 0; row < rowCount; row++) {
+			for (int segment = 0; segment < segmentCount; segment++) {
+				if ((rowValues[segment] != null)
+						&& (rowValues[segment][row] != 0.0)) {
+					segments[count] = segment;
+					values[count] = rowValues[segment][row];
+					count++;
+				}
+			}
+		}
+		return new StateBlock(offsets, segments, values);
+	}
+
+	/**
+	 * Compute the support of all salient segments. The state vectors of all
+	 * segments are propagated together from the coarsest level to the
+	 * pixels as a sparse block, and each pixel is assigned to the segment
+	 * with the largest value in a single pass. The interpolation weights are
+	 * non-negative, so a pixel where all the values are zero goes to the
+	 * first segment, and ties go to the segment that comes first in the list
+	 * 
+	 * @param graphList
+	 *            image segmentation pyramid, the coarsest graph first
+	 * @param saliencyList
+	 *            salient segments, the segment number is the index in this
+	 *            list
+	 * @return segment number of each pixel
+	 */
+	private int[][] getSegmentIndexMap(LinkedList<GraphInfo> graphList,
+			List<NodeAndGraphInfo> saliencyList) {
+		final int segmentCount = saliencyList.size();
+
+		// segments that start at each level
+		Map<GraphInfo, List<Integer>> startNodes = new HashMap<GraphInfo, List<Integer>>();
+		Map<GraphInfo, List<Integer>> startSegments = new HashMap<GraphInfo, List<Integer>>();
+		for (int segment = 0; segment < segmentCount; segment++) {
+			NodeAndGraphInfo currSaliencyNode = saliencyList.get(segment);
+			GraphInfo graph = currSaliencyNode.graphInfo;
+			if (!startNodes.containsKey(graph)) {
+				startNodes.put(graph, new ArrayList<Integer>());
+				startSegments.put(graph, new ArrayList<Integer>());
+			}
+			startNodes.get(graph).add(currSaliencyNode.nodeInfo.getIndex());
+			startSegments.get(graph).add(segment);
+		}
+
+		// go down the pyramid
+		StateBlock block = null;
+		for (GraphInfo graph : graphList) {
+			if (startNodes.containsKey(graph)) {
+				block = addSegments(block, graph.getNodeCount(), startNodes
+						.get(graph), startSegments.get(graph));
+			}
+			Matrix interpolationMatrix = graph.getInterpolationMatrix();
+			if (interpolationMatrix == null) {
+				break;
+			}
+			if (block != null) {
+				if (interpolationMatrix instanceof SparseMatrix) {
+					block = this.interpolate(block,
+							(SparseMatrix) interpolationMatrix, segmentCount);
+				} else {
+					block = interpolate(block, interpolationMatrix,
+							segmentCount);
+				}
+			}
+		}
+
+		// assign each pixel to the segment with the largest value
+		final int[][] segmentIndexMap = new int[this.width][this.height];
+		final int width = this.width;
+		final StateBlock finalBlock = block;
+		final int pixelCount = this.width * this.height;
+		BandExecutor.processInBands(pixelCount, this.threadCount,
+				new BandTask() {
+			public void process(int from, int to) {
+				for (int pos = from; pos < to; pos++) {
+					int bestSegment = (segmentCount > 0) ? 0 : -1;
+					double bestValue = 0.0;
+					if ((finalBlock != null) && (pos < nodeCountOf(finalBlock))) {
+						for (int k = finalBlock.offsets[pos]; k < finalBlock.offsets[pos + 1]; k++) {
+							int segment = finalBlock.segments[k];
+							double value = finalBlock.values[k];
+							if ((value > bestValue)
+									|| ((value == bestValue) && (segment < bestSegment))) {
+								bestValue = value;
+								bestSegment = segment;
+							}
+						}
+					}
+					segmentIndexMap[pos % width][pos / width] = bestSegment;
+				}
+			}
+		});
+		return segmentIndexMap;
+	}
+
+	/**
+	 * @param block
+	 *            state block
+	 * @return number of nodes in the block
+	 */
+	private static int nodeCountOf(StateBlock block) {
+		return block.offsets.length - 1;
+	}
+
 	/**
 	 * Computes image segmentation
 	 * 
@@ -261,61 +610,11 @@ public class AMGSegmentator implements Segmentator {
 		this.logger.info("Creating multi-scale image pyramid : "
 				+ (time1 - time0));
 
-		// Allocate and initialize the array for segments
-		int[][] segmentIndexMap = new int[this.width][this.height];
-		double[][] bestStateVector = new double[this.width][this.height];
-		for (int col = 0; col < this.width; col++) {
-			for (int row = 0; row < this.height; row++) {
-				segmentIndexMap[col][row] = -1;
-				bestStateVector[col][row] = -1.0;
-			}
-		}
-
 		List<NodeAndGraphInfo> saliencyList = getAllSalientSegments(graphList,
 				segmentsAtLastLevel);
-
-		int segmentNumber = 0;
-		// go over all salient segments
-		for (NodeAndGraphInfo currSaliencyNode : saliencyList) {
-			NodeInfo currNode = currSaliencyNode.nodeInfo;
-			GraphInfo currGraph = currSaliencyNode.graphInfo;
-			this.logger.finest("Computing support for " + currNode.getIndex()
-					+ " with saliency " + currNode.getSaliency() + " at level "
-					+ currGraph.getIndex());
-			int graphSize = currGraph.getNodeCount();
-			double[] prevU = new double[graphSize];
-			for (int i = 0; i < graphSize; i++) {
-				prevU[i] = 0.0;
-			}
-			prevU[currNode.getIndex()] = 1.0;
-
-			int graphPositionInList = graphList.indexOf(currGraph);
-			ListIterator<GraphInfo> iterator = graphList
-					.listIterator(graphPositionInList);
-			while (iterator.hasNext()) {
-				GraphInfo graph = iterator.next();
-				// get interpolation matrix
-				Matrix currInterpolationMatrix = graph.getInterpolationMatrix();
-				if (currInterpolationMatrix == null) {
-					break;
-				}
-				double[] nextU = currInterpolationMatrix.multiply(prevU);
-				prevU = nextU;
-			}
-			// at this point the 'prevU' vector holds values that will allow
-			// to associate pixels with this segment
-			for (int col = 0; col < this.width; col++) {
-				for (int row = 0; row < this.height; row++) {
-					int pos = row * this.width + col;
-					// compare previous best with this
-					if (bestStateVector[col][row] < prevU[pos]) {
-						bestStateVector[col][row] = prevU[pos];
-						segmentIndexMap[col][row] = segmentNumber;
-					}
-				}
-			}
-			segmentNumber++;
-		}
+		int segmentNumber = saliencyList.size();
+		int[][] segmentIndexMap = this.getSegmentIndexMap(graphList,
+				saliencyList);
 		long time2 = System.currentTimeMillis();
 
 		this.logger
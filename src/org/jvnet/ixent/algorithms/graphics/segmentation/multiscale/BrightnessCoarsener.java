@@ -164,14 +164,15 @@ public class BrightnessCoarsener extends AggregateCoarsener {
 		} else {
 			// for big graphs - there's an edge in coarsened graph between
 			// each capturer of a node and the capturers of its neighbours
-			for (NodeInfo currNode : this.prevGraphInfo.getNodes()) {
-				int currNodeIndex = currNode.getIndex();
+			int[] neighbourOffsets = this.prevGraphInfo.getNeighbourOffsets();
+			int[] neighbourIndices = this.prevGraphInfo.getNeighbourIndices();
+			int nodeCount = this.prevGraphInfo.getNodeCount();
+			for (int currNodeIndex = 0; currNodeIndex < nodeCount; currNodeIndex++) {
 				int currCapturerIndex = capturersArray[currNodeIndex]
 						.getIndex();
-				for (EdgeInfo currEdge : currNode.getEdges()) {
-					int neighbourIndex = currEdge
-							.getOtherNodeIndex(currNodeIndex);
-					int currNeighbourCapturerIndex = capturersArray[neighbourIndex]
+				int end = neighbourOffsets[currNodeIndex + 1];
+				for (int k = neighbourOffsets[currNodeIndex]; k < end; k++) {
+					int currNeighbourCapturerIndex = capturersArray[neighbourIndices[k]]
 							.getIndex();
 					if (currCapturerIndex != currNeighbourCapturerIndex) {
 						processSingleEdge(newWeightMatrix, currCapturerIndex,
@@ -182,70 +183,20 @@ public class BrightnessCoarsener extends AggregateCoarsener {
 		}
 
 		// compute new node array - copy from selected nodes
-		NodeInfo[] newNodes = new NodeInfo[selectedNodes.size()];
-		int count = 0;
-		for (NodeInfo node : selectedNodes) {
-			newNodes[count++] = node;
-		}
-
-		// compute all edges. Each edge corresponds to a non-zero value
-		// in the weight matrix
-		for (int row = 0; row < newMatrixSize; row++) {
-			// compute how many non-zero values there are in the corresponding
-			// column
-			int nzCount = newWeightMatrix.getNzCountInRow(row);
-			if (nzCount == 0) {
-				continue;
-			}
-
-			for (int colIndex = 0; colIndex < nzCount; colIndex++) {
-				int column = newWeightMatrix.getColumnByIndex(row, colIndex);
-				double value = newWeightMatrix.getValueByIndex(row, colIndex);
-
-				// this edge connects node number 'row' and node number 'column'
-				EdgeInfo newEdge = new EdgeInfo(row, column, value);
-				newNodes[row].addEdge(newEdge);
-			}
-		}
+		NodeInfo[] newNodes = selectedNodes
+				.toArray(new NodeInfo[newMatrixSize]);
 
 		// compute volume for each new node
-		double[] newVolumes = new double[newMatrixSize];
-		for (int i = 0; i < newMatrixSize; i++) {
-			newVolumes[i] = newNodes[i].getVolume();
-		}
-
-		int nodeCount = this.prevGraphInfo.getNodeCount();
-		for (int nodeIndex = 0; nodeIndex < nodeCount; nodeIndex++) {
-			// who's the capturer?
-			NodeInfo capturer = capturersArray[nodeIndex];
-			int capturerIndex = capturer.getIndex();
-
-			// go over all neighbours of the current node and sum up the
-			// weights on edges that connect this node and nodes that were
-			// captures by the same capturer
-			NodeInfo currNode = this.prevGraphInfo.getNode(nodeIndex);
-			double weightToCapturer = 0.0;
-			for (EdgeInfo currNeighbourEdge : currNode.getEdges()) {
-				int currNeighbourIndex = currNeighbourEdge
-						.getOtherNodeIndex(nodeIndex);
-
-				// check if this neighbour is captured
-				assert capturersArray[currNeighbourIndex] != null : "No capturer for the current neighbour";
-
-				if (capturersArray[currNeighbourIndex].getIndex() == capturerIndex) {
-					weightToCapturer += currNeighbourEdge.getWeight();
-				}
-			}
-			newVolumes[capturerIndex] += currNode.getVolume()
-					* weightToCapturer;
-		}
+		double[] newVolumes = this.computeNewVolumes(newNodes,
+				getCapturerIndices(capturersArray));
 
 		// compute saliency for each new node
 		double factor = (double) origSize / newMatrixSize;
 		double[] newSaliencies = new double[newMatrixSize];
 		for (NodeInfo currNewNode : newNodes) {
 			int index = currNewNode.getIndex();
-			double totalConnectivity = currNewNode.getTotalConnectivityWeight();
+			// each edge corresponds to a non-zero value in the weight matrix
+			double totalConnectivity = newWeightMatrix.getSum(index);
 			newSaliencies[index] = factor * totalConnectivity
 					/ newVolumes[index];
 		}
@@ -1,8 +1,15 @@
 package org.jvnet.ixent.algorithms.graphics.segmentation.multiscale;
 
 import java.awt.image.BufferedImage;
+import java.util.*;
 
 import org.jvnet.ixent.algorithms.graphics.segmentation.multiscale.structure.GraphInfo;
+import org.jvnet.ixent.algorithms.graphics.segmentation.multiscale.structure.NodeInfo;
+import org.jvnet.ixent.math.MathConstants;
+import org.jvnet.ixent.math.matrix.SparseAccessibleMatrix;
+import org.jvnet.ixent.math.matrix.SparseMatrix;
+import org.jvnet.ixent.util.BandExecutor;
+import org.jvnet.ixent.util.BandExecutor.BandTask;
 
 /**
  * The root of hierarchy of all coarseners for multi-scale segmentation using
@@ -14,7 +21,10 @@ public abstract class Coarsener {
 	protected BufferedImage originalImage;
 	protected GraphInfo prevGraphInfo;
 
+	private int threadCount;
+
 	public Coarsener() {
+		this.threadCount = Runtime.getRuntime().availableProcessors();
 	}
 
 	/**
@@ -26,6 +36,24 @@ public abstract class Coarsener {
 		this.prevGraphInfo = _prevGraphInfo;
 	}
 
+	/**
+	 * Set number of threads for computing the interpolation matrix and the
+	 * weights of the next graph. By default, as many threads as there are
+	 * available processors are used.
+	 * 
+	 * @param pThreadCount
+	 *            number of threads
+	 * @throws IllegalArgumentException
+	 *             if the number of threads is not positive
+	 */
+	public void setThreadCount(int pThreadCount) {
+		if (pThreadCount < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be positive");
+		}
+		this.threadCount = pThreadCount;
+	}
+
 	/**
 	 * @return the graph at next stage
 	 */
@@ -36,4 +64,309 @@ public abstract class Coarsener {
 	 * called once for the initial graph
 	 */
 	public abstract void fillAdditionalInformation();
+
+	/**
+	 * @param capturersArray
+	 *            capturer of each node of the previous graph
+	 * @return index of the capturer of each node of the previous graph
+	 */
+	protected static int[] getCapturerIndices(NodeInfo[] capturersArray) {
+		int[] result = new int[capturersArray.length];
+		for (int i = 0; i < capturersArray.length; i++) {
+			result[i] = capturersArray[i].getIndex();
+		}
+		return result;
+	}
+
+	/**
+	 * Compute the interpolation matrix from the previous graph to the new
+	 * graph. A selected node is interpolated only from its capturer. An
+	 * unselected node is interpolated from the capturers of its neighbours,
+	 * proportionally to the weights of the edges to the neighbours. The rows
+	 * are computed concurrently.
+	 * 
+	 * @param newNodeCount
+	 *            number of nodes in the new graph
+	 * @param isSelected
+	 *            <code>true</code> for the selected nodes of the previous
+	 *            graph
+	 * @param capturerIndices
+	 *            index of the capturer of each node of the previous graph
+	 * @return interpolation matrix - row per node of the previous graph,
+	 *         column per node of the new graph
+	 */
+	protected SparseMatrix computeInterpolationMatrix(final int newNodeCount,
+			final boolean[] isSelected, final int[] capturerIndices) {
+		final int nodeCount = this.prevGraphInfo.getNodeCount();
+		final int[] offsets = this.prevGraphInfo.getNeighbourOffsets();
+		final int[] neighbours = this.prevGraphInfo.getNeighbourIndices();
+		final double[] weights = this.prevGraphInfo.getNeighbourWeights();
+		final SparseMatrix interpolationMatrix = new SparseMatrix(
+				newNodeCount, nodeCount);
+
+		BandExecutor.processInBands(nodeCount, this.threadCount,
+				new BandTask() {
+			public void process(int from, int to) {
+				// weight to each capturer and the list of capturers
+				double[] capturerWeights = new double[newNodeCount];
+				boolean[] isCapturer = new boolean[newNodeCount];
+				int[] capturers = new int[newNodeCount];
+				for (int i = from; i < to; i++) {
+					if (isSelected[i]) {
+						interpolationMatrix.setRow(i,
+								new int[] { capturerIndices[i] },
+								new double[] { 1.0 }, 1);
+						continue;
+					}
+
+					// go over all neighbours, keeping track of the selected
+					// nodes that have captured them
+					int capturerCount = 0;
+					double totalWeight = 0.0;
+					for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+						totalWeight += weights[k];
+						int capturerIndex = capturerIndices[neighbours[k]];
+						if (isCapturer[capturerIndex]) {
+							capturerWeights[capturerIndex] += weights[k];
+						} else {
+							isCapturer[capturerIndex] = true;
+							capturerWeights[capturerIndex] = weights[k];
+							capturers[capturerCount++] = capturerIndex;
+						}
+					}
+
+					// set new weights proportionally to previous weights
+					double[] values = new double[capturerCount];
+					for (int c = 0; c < capturerCount; c++) {
+						int capturerIndex = capturers[c];
+						values[c] = capturerWeights[capturerIndex]
+								/ totalWeight;
+						isCapturer[capturerIndex] = false;
+					}
+					interpolationMatrix.setRow(i, capturers, values,
+							capturerCount);
+				}
+			}
+		});
+		return interpolationMatrix;
+	}
+
+	/**
+	 * Compute the weight matrix of the new graph:
+	 * 
+	 * <pre>
+	 * res[k,l] = SUM(p[i,k]*w[i,j]*p[j,l])
+	 * </pre>
+	 * 
+	 * for <code>k != l</code>, where <code>p</code> is the interpolation
+	 * matrix (row per node of the previous graph) and <code>w</code> is the
+	 * weight matrix of the previous graph. Only the values bigger than
+	 * {@link MathConstants#EPS_BIG} are kept. The terms are summed in the
+	 * increasing order of <code>i</code> and then <code>j</code>, and the
+	 * rows of the new graph are computed concurrently.
+	 * 
+	 * @param interpolationMatrix
+	 *            interpolation matrix
+	 * @return weight matrix of the new graph
+	 */
+	protected SparseAccessibleMatrix computeCoarseWeightMatrix(
+			final SparseMatrix interpolationMatrix) {
+		final int nodeCount = this.prevGraphInfo.getNodeCount();
+		final int newNodeCount = interpolationMatrix.getColumnCount();
+
+		// columns of the interpolation matrix
+		final int[] pOffsets = new int[newNodeCount + 1];
+		for (int i = 0; i < nodeCount; i++) {
+			int nzCount = interpolationMatrix.getNzCountInRow(i);
+			for (int nz = 0; nz < nzCount; nz++) {
+				pOffsets[interpolationMatrix.getColumnByIndex(i, nz) + 1]++;
+			}
+		}
+		for (int k = 0; k < newNodeCount; k++) {
+			pOffsets[k + 1] += pOffsets[k];
+		}
+		final int[] pRows = new int[pOffsets[newNodeCount]];
+		final double[] pValues = new double[pOffsets[newNodeCount]];
+		int[] fill = new int[newNodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			int nzCount = interpolationMatrix.getNzCountInRow(i);
+			for (int nz = 0; nz < nzCount; nz++) {
+				int k = interpolationMatrix.getColumnByIndex(i, nz);
+				int place = pOffsets[k] + fill[k]++;
+				pRows[place] = i;
+				pValues[place] = interpolationMatrix.getValueByIndex(i, nz);
+			}
+		}
+
+		// columns of the previous weight matrix
+		SparseMatrix weightMatrix = this.prevGraphInfo.getWeightMatrix();
+		final int[] wOffsets = new int[nodeCount + 1];
+		for (int j = 0; j < nodeCount; j++) {
+			int nzCount = weightMatrix.getNzCountInRow(j);
+			for (int nz = 0; nz < nzCount; nz++) {
+				wOffsets[weightMatrix.getColumnByIndex(j, nz) + 1]++;
+			}
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			wOffsets[i + 1] += wOffsets[i];
+		}
+		final int[] wRows = new int[wOffsets[nodeCount]];
+		final double[] wValues = new double[wOffsets[nodeCount]];
+		fill = new int[nodeCount];
+		for (int j = 0; j < nodeCount; j++) {
+			int nzCount = weightMatrix.getNzCountInRow(j);
+			for (int nz = 0; nz < nzCount; nz++) {
+				int i = weightMatrix.getColumnByIndex(j, nz);
+				int place = wOffsets[i] + fill[i]++;
+				wRows[place] = j;
+				wValues[place] = weightMatrix.getValueByIndex(j, nz);
+			}
+		}
+
+		// the values with k < l of each row k
+		final int[][] upperColumns = new int[newNodeCount][];
+		final double[][] upperValues = new double[newNodeCount][];
+		BandExecutor.processInBands(newNodeCount, this.threadCount,
+				new BandTask() {
+			public void process(int from, int to) {
+				double[] sums = new double[newNodeCount];
+				boolean[] isTouched = new boolean[newNodeCount];
+				int[] touched = new int[newNodeCount];
+				for (int k = from; k < to; k++) {
+					int touchedCount = 0;
+					for (int ki = pOffsets[k]; ki < pOffsets[k + 1]; ki++) {
+						int i = pRows[ki];
+						for (int ij = wOffsets[i]; ij < wOffsets[i + 1]; ij++) {
+							int j = wRows[ij];
+							double toAdd = pValues[ki] * wValues[ij];
+							int nzCount = interpolationMatrix
+									.getNzCountInRow(j);
+							for (int nz = 0; nz < nzCount; nz++) {
+								int l = interpolationMatrix.getColumnByIndex(j,
+										nz);
+								if (l <= k) {
+									continue;
+								}
+								if (!isTouched[l]) {
+									isTouched[l] = true;
+									sums[l] = 0.0;
+									touched[touchedCount++] = l;
+								}
+								sums[l] += toAdd
+										* interpolationMatrix
+												.getValueByIndex(j, nz);
+							}
+						}
+					}
+
+					Arrays.sort(touched, 0, touchedCount);
+					int count = 0;
+					for (int t = 0; t < touchedCount; t++) {
+						int l = touched[t];
+						isTouched[l] = false;
+						if (Math.abs(sums[l]) > MathConstants.EPS_BIG) {
+							count++;
+						}
+					}
+					upperColumns[k] = new int[count];
+					upperValues[k] = new double[count];
+					count = 0;
+					for (int t = 0; t < touchedCount; t++) {
+						int l = touched[t];
+						if (Math.abs(sums[l]) > MathConstants.EPS_BIG) {
+							upperColumns[k][count] = l;
+							upperValues[k][count++] = sums[l];
+						}
+					}
+				}
+			}
+		});
+
+		// each row gets the values of the upper part and the mirrored values
+		// of the previous rows, in the increasing order of columns
+		int[] rowCounts = new int[newNodeCount];
+		for (int k = 0; k < newNodeCount; k++) {
+			rowCounts[k] += upperColumns[k].length;
+			for (int l : upperColumns[k]) {
+				rowCounts[l]++;
+			}
+		}
+		int[][] rowColumns = new int[newNodeCount][];
+		double[][] rowValues = new double[newNodeCount][];
+		fill = new int[newNodeCount];
+		for (int k = 0; k < newNodeCount; k++) {
+			rowColumns[k] = new int[rowCounts[k]];
+			rowValues[k] = new double[rowCounts[k]];
+		}
+		for (int k = 0; k < newNodeCount; k++) {
+			for (int t = 0; t < upperColumns[k].length; t++) {
+				int l = upperColumns[k][t];
+				rowColumns[l][fill[l]] = k;
+				rowValues[l][fill[l]++] = upperValues[k][t];
+			}
+		}
+		SparseAccessibleMatrix result = new SparseAccessibleMatrix(
+				newNodeCount, newNodeCount);
+		for (int k = 0; k < newNodeCount; k++) {
+			System.arraycopy(upperColumns[k], 0, rowColumns[k], fill[k],
+					upperColumns[k].length);
+			System.arraycopy(upperValues[k], 0, rowValues[k], fill[k],
+					upperValues[k].length);
+			result.setRow(k, rowColumns[k], rowValues[k], rowCounts[k]);
+		}
+		return result;
+	}
+
+	/**
+	 * Compute the volumes of the nodes of the new graph. The volume of each
+	 * node of the previous graph times the weight of its edges to the nodes
+	 * with the same capturer is added to the volume of the capturer. The
+	 * contributions are computed concurrently and added in the order of the
+	 * nodes.
+	 * 
+	 * @param newNodes
+	 *            nodes of the new graph
+	 * @param capturerIndices
+	 *            index of the capturer of each node of the previous graph
+	 * @return volumes of the nodes of the new graph
+	 */
+	protected double[] computeNewVolumes(NodeInfo[] newNodes,
+			final int[] capturerIndices) {
+		int newSize = newNodes.length;
+		double[] newVolumes = new double[newSize];
+		for (int i = 0; i < newSize; i++) {
+			newVolumes[i] = newNodes[i].getVolume();
+		}
+
+		int nodeCount = this.prevGraphInfo.getNodeCount();
+		final int[] offsets = this.prevGraphInfo.getNeighbourOffsets();
+		final int[] neighbours = this.prevGraphInfo.getNeighbourIndices();
+		final double[] weights = this.prevGraphInfo.getNeighbourWeights();
+		final double[] volumes = this.prevGraphInfo.getVolumes();
+		final double[] contributions = new double[nodeCount];
+		BandExecutor.processInBands(nodeCount, this.threadCount,
+				new BandTask() {
+			public void process(int from, int to) {
+				for (int nodeIndex = from; nodeIndex < to; nodeIndex++) {
+					// go over all neighbours of the current node and sum up
+					// the weights on edges that connect this node and nodes
+					// that were captured by the same capturer
+					int capturerIndex = capturerIndices[nodeIndex];
+					double weightToCapturer = 0.0;
+					int end = offsets[nodeIndex + 1];
+					for (int k = offsets[nodeIndex]; k < end; k++) {
+						if (capturerIndices[neighbours[k]] == capturerIndex) {
+							weightToCapturer += weights[k];
+						}
+					}
+					contributions[nodeIndex] = volumes[nodeIndex]
+							* weightToCapturer;
+				}
+			}
+		});
+		for (int nodeIndex = 0; nodeIndex < nodeCount; nodeIndex++) {
+			newVolumes[capturerIndices[nodeIndex]] += contributions[nodeIndex];
+		}
+		return newVolumes;
+	}
 }
@@ -114,8 +114,8 @@ public class SimpleCoarsener extends Coarsener {
             isSelected[i] = false;
         }
 
-        // a linked list of all selected nodes (nodes in the new graph)
-        List<NodeInfo> selectedNodes = new LinkedList<NodeInfo>();
+        // a list of all selected nodes (nodes in the new graph)
+        List<NodeInfo> selectedNodes = new ArrayList<NodeInfo>();
 
         // Each entry in this array will hold a link to the selected node
         // that 'captured' this old node. The link will point to entry in
@@ -123,6 +123,10 @@ public class SimpleCoarsener extends Coarsener {
         // is still not captured
         NodeInfo[] capturers = new NodeInfo[nodeCount];
 
+        int[] neighbourOffsets = this.prevGraphInfo.getNeighbourOffsets();
+        int[] neighbourIndices = this.prevGraphInfo.getNeighbourIndices();
+        double[] neighbourWeights = this.prevGraphInfo.getNeighbourWeights();
+
         // 2. select biggest segment
         int biggestSegmentIndex = orderedNodes[0];
         isSelected[biggestSegmentIndex] = true;
@@ -140,19 +144,17 @@ public class SimpleCoarsener extends Coarsener {
             NodeInfo currNode = this.prevGraphInfo.getNode(currNodeIndex);
             assert currNode != null : "Current node is null";
 
-            // get the node neigbours
-            int[] currNodeNeigbours = currNode.getAllNeighboursIndexes();
-            int currNeighbourCount = currNodeNeigbours.length;
-
             // compute the total weight of all its edges
-            double totalWeight = currNode.getTotalConnectivityWeight();
+            double totalWeight = this.prevGraphInfo.getTotalConnectivityWeight(
+                    currNodeIndex);
 
             // compute maximal weight to selected nodes
             double maximalWeightToSelected = 0.0;
             NodeInfo capturer = null;
-            for (int neighIndex = 0;
-                 neighIndex < currNeighbourCount; neighIndex++) {
-                int currNeighbourIndex = currNodeNeigbours[neighIndex];
+            for (int neighIndex = neighbourOffsets[currNodeIndex];
+                 neighIndex < neighbourOffsets[currNodeIndex + 1];
+                 neighIndex++) {
+                int currNeighbourIndex = neighbourIndices[neighIndex];
 
                 // check if this neighbour is captured
                 if (!isSelected[currNeighbourIndex]) {
@@ -160,8 +162,7 @@ public class SimpleCoarsener extends Coarsener {
                 }
 
                 // get weight to this neighbour
-                double currWeight = currNode.getWeightToNode(
-                        currNeighbourIndex);
+                double currWeight = neighbourWeights[neighIndex];
                 if (currWeight > maximalWeightToSelected) {
                     maximalWeightToSelected = currWeight;
                     capturer = capturers[currNeighbourIndex];
@@ -190,64 +191,11 @@ public class SimpleCoarsener extends Coarsener {
 
         // 4. compute sparse interpolation matrix
 
-        int newNodeCount = selectedNodes.size();
-        // column count - size of old graph
-        // row count - size of new graph
-        SparseMatrix interpolationMatrix = new SparseMatrix(newNodeCount,
-                nodeCount);
-
-        // setLocation all weights for selected nodes
-        for (int i = 0; i < nodeCount; i++) {
-            if (isSelected[i]) {
-                interpolationMatrix.set(capturers[i].getIndex(), i, 1.0);
-            }
-        }
-
-        // setLocation all weights for unselected nodes
-        for (int i = 0; i < nodeCount; i++) {
-            if (isSelected[i]) {
-                continue;
-            }
-            NodeInfo currNode = this.prevGraphInfo.getNode(i);
-
-            // go over all neighbours, keeping track of the selected nodes that
-            // have captured them
-            Map<Integer, Double> capturerWeights = new HashMap<Integer, Double>();
-
-            // compute the total weight of all its edges
-            double totalWeight = currNode.getTotalConnectivityWeight();
-
-            for (EdgeInfo currNeighbourEdge : currNode.getEdges()) {
-                int currNeighbourIndex = currNeighbourEdge.getOtherNodeIndex(
-                        currNode.getIndex());
-
-                // check if this neighbour is captured
-                assert capturers[currNeighbourIndex] != null: "No capturer for the current neighbour";
-
-                // update weight map
-                double prevWeight = currNeighbourEdge.getWeight();
-
-                int capturerIndex = capturers[currNeighbourIndex].getIndex();
-
-                if (capturerWeights.containsKey(capturerIndex)) {
-                    double currWeight = capturerWeights.get(capturerIndex);
-                    double newWeight = currWeight + prevWeight;
-                    capturerWeights.put(capturerIndex, newWeight);
-                }
-                else {
-                    // insert new pair
-                    capturerWeights.put(capturerIndex, prevWeight);
-                }
-            }
-
-            // setLocation new weights proportionally to previous weights
-            for (int capturerIndex : capturerWeights.keySet()) {
-                double oldWeight = capturerWeights.get(capturerIndex);
-                double newWeight = oldWeight / totalWeight;
-                interpolationMatrix.set(capturerIndex, currNode.getIndex(),
-                        newWeight);
-            }
-        }
+        // column count - size of new graph
+        // row count - size of old graph
+        SparseMatrix interpolationMatrix = this.computeInterpolationMatrix(
+                selectedNodes.size(), isSelected,
+                getCapturerIndices(capturers));
 
         // 5. compute new graph
 
@@ -272,83 +220,27 @@ public class SimpleCoarsener extends Coarsener {
                                        NodeInfo[] capturersArray,
                                        SparseMatrix interpolationMatrix) {
 
-        // convert interpolation matrix from row-wise to column-wise
-        SparseColumnMatrix interpolationColumnMatrix =
-                interpolationMatrix.getAsColumnMatrix();
-
         SparseAccessibleMatrix newWeightMatrix =
-                interpolationColumnMatrix.computeConvolution(
-                        this.prevGraphInfo.getWeightMatrix());
+                this.computeCoarseWeightMatrix(interpolationMatrix);
 
         newWeightMatrix.normalize();
 
         // compute new node array - copy from selected nodes
-        NodeInfo[] newNodes = new NodeInfo[selectedNodes.size()];
-        int count = 0;
-        for (NodeInfo node : selectedNodes) {
-            newNodes[count++] = node;
-        }
-
-        // compute all edges. Each edge corresponds to a non-zero value
-        // in the weight matrix
+        NodeInfo[] newNodes = selectedNodes.toArray(
+                new NodeInfo[selectedNodes.size()]);
         int newSize = newNodes.length;
-        for (int row = 0; row < newSize; row++) {
-            // compute how many non-zero values there are in the corresponding column
-            int nzCount = newWeightMatrix.getNzCountInRow(row);
-            if (nzCount == 0) {
-                continue;
-            }
-
-            for (int colIndex = 0; colIndex < nzCount; colIndex++) {
-                int column = newWeightMatrix.getColumnByIndex(row, colIndex);
-                double value = newWeightMatrix.getValueByIndex(row, colIndex);
-
-                // this edge connects node number 'row' and node number 'column'
-                EdgeInfo newEdge = new EdgeInfo(row, column, value);
-                newNodes[row].addEdge(newEdge);
-            }
-        }
 
         // compute volume for each new node
-        double[] newVolumes = new double[newSize];
-        for (int i = 0; i < newSize; i++) {
-            newVolumes[i] = newNodes[i].getVolume();
-        }
-
-        int nodeCount = this.prevGraphInfo.getNodeCount();
-        for (int nodeIndex = 0; nodeIndex < nodeCount; nodeIndex++) {
-            // who's the capturer?
-            NodeInfo capturer = capturersArray[nodeIndex];
-            int capturerIndex = capturer.getIndex();
-
-            // go over all neighbours of the current node and sum up the
-            // weights on edges that connect this node and nodes that were
-            // captures by the same capturer
-            NodeInfo currNode = this.prevGraphInfo.getNode(nodeIndex);
-            double weightToCapturer = 0.0;
-            for (EdgeInfo currNeighbourEdge : currNode.getEdges()) {
-                int currNeighbourIndex =
-                        currNeighbourEdge.getOtherNodeIndex(nodeIndex);
-
-                // check if this neighbour is captured
-                assert capturersArray[currNeighbourIndex] != null:
-                        "No capturer for the current neighbour";
-
-                if (capturersArray[currNeighbourIndex].getIndex() ==
-                        capturerIndex) {
-                    weightToCapturer += currNeighbourEdge.getWeight();
-                }
-            }
-            newVolumes[capturerIndex] += currNode.getVolume() *
-                    weightToCapturer;
-        }
+        double[] newVolumes = this.computeNewVolumes(newNodes,
+                getCapturerIndices(capturersArray));
 
         // compute saliency for each new node
         double factor = (double) origSize / newSize;
         double[] newSaliencies = new double[newSize];
         for (NodeInfo currNewNode : newNodes) {
             int index = currNewNode.getIndex();
-            double totalConnectivity = currNewNode.getTotalConnectivityWeight();
+            // each edge corresponds to a non-zero value in the weight matrix
+            double totalConnectivity = newWeightMatrix.getSum(index);
             newSaliencies[index] = factor * totalConnectivity /
                     newVolumes[index];
         }
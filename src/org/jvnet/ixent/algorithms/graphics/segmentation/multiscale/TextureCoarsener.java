@@ -5,9 +5,9 @@ import java.util.logging.Logger;
 import org.jvnet.ixent.algorithms.graphics.general.KMeans;
 import org.jvnet.ixent.algorithms.graphics.segmentation.multiscale.structure.*;
 import org.jvnet.ixent.graphics.IndexBitmapObject;
-import org.jvnet.ixent.math.coord.PointND;
 import org.jvnet.ixent.math.coord.Vertex2D;
 import org.jvnet.ixent.math.filters.*;
+import org.jvnet.ixent.math.matrix.FeatureMatrix;
 import org.jvnet.ixent.math.matrix.SparseAccessibleMatrix;
 
 /**
@@ -37,11 +37,32 @@ public class TextureCoarsener extends BrightnessCoarsener {
 
 	private Logger logger;
 
+	/**
+	 * If <code>true</code>, the oriented responses are steered from the
+	 * basis responses of {@link SteerableFilterBank}
+	 */
+	private boolean isSteerable;
+
 	public TextureCoarsener() {
 		this.logger = Logger.getLogger(TextureCoarsener.class.getPackage()
 				.getName());
 	}
 
+	/**
+	 * Set whether the texture features are computed with
+	 * {@link SteerableFilterBank} instead of {@link FilterBank}. The steerable
+	 * bank computes its derivative basis with {@link RecursiveGaussian}, at
+	 * the same cost for any number of orientations and any scale, but its
+	 * oriented filters are isotropic Gaussian derivatives, so the features
+	 * (and the resulting segmentation) are different. Off by default.
+	 * 
+	 * @param pIsSteerable
+	 *            if <code>true</code>, the steerable bank is used
+	 */
+	public void setSteerable(boolean pIsSteerable) {
+		this.isSteerable = pIsSteerable;
+	}
+
 	/**
 	 * Fill additional information on single pixel
 	 * 
@@ -80,20 +101,27 @@ public class TextureCoarsener extends BrightnessCoarsener {
 		Convolver convolver = new Convolver(ibo);
 
 		long time0 = System.currentTimeMillis();
-		Filter[] filters = FilterBank.getFilters(2.0, 1.0, 1, 2, 2, 2);
-		PointND[][] responses = convolver.convolve(filters);
+		int filterCount;
+		FeatureMatrix responses;
+		if (this.isSteerable) {
+			SteerableFilterBank bank = new SteerableFilterBank(2.0, 1.0, 1, 2,
+					2, 2);
+			bank.setRecursive(true);
+			filterCount = bank.getBasisFilters().length;
+			responses = bank.getFeatureMatrix(convolver,
+					FeatureMatrix.Layout.INTERLEAVED);
+		} else {
+			Filter[] filters = FilterBank.getFilters(2.0, 1.0, 1, 2, 2, 2);
+			filterCount = filters.length;
+			responses = convolver.getFeatureMatrix(filters,
+					FeatureMatrix.Layout.INTERLEAVED);
+		}
 		long time1 = System.currentTimeMillis();
-		this.logger.info("Creating and convolving " + filters.length
+		this.logger.info("Creating and convolving " + filterCount
 				+ " filters : " + (time1 - time0));
-		PointND[] responseVector = new PointND[width * height];
-		for (int col = 0; col < width; col++) {
-			for (int row = 0; row < height; row++) {
-				responseVector[row * width + col] = responses[col][row];
-			}
-		}
 
 		long time2 = System.currentTimeMillis();
-		this.kmeans = new KMeans(responseVector, filters.length, 12);
+		this.kmeans = new KMeans(responses, 12);
 
 		// invoke k-means and ignore the resulting centers
 		this.kmeans.getCenters(0.1, 50);
@@ -5,10 +5,12 @@ import org.jvnet.ixent.math.matrix.SparseMatrix;
 import org.jvnet.ixent.util.DoubleHolder;
 
 /**
- * This class holds a collection of nodes (in array), accessed by index, a
- * virtual collection of edges, where each edge points to two nodes and each
- * node holds a linked list of all its edges and a virtual weight matrix where
- * each weight is associated with the corresponding edge
+ * This class holds a collection of nodes (in array), accessed by index, the
+ * edges of all nodes in compressed adjacency arrays and a weight matrix where
+ * each weight is associated with the corresponding edge. The neighbours of
+ * node <code>i</code> are at positions <code>neighbourOffsets[i]</code>
+ * (inclusive) to <code>neighbourOffsets[i+1]</code> (exclusive) of the
+ * neighbour index and neighbour weight arrays
  *
  * @author Kirill Grouchnikov
  */
@@ -17,11 +19,26 @@ public class GraphInfo {
 
     private int index;
 
+    /**
+     * Start of the edges of each node (and the total edge count at the end)
+     */
+    private int[] neighbourOffsets;
+
+    /**
+     * Index of the other node of each edge
+     */
+    private int[] neighbourIndices;
+
+    /**
+     * Weight of each edge
+     */
+    private double[] neighbourWeights;
+
     /**
      * This (sparse) matrix holds all the weights (it might be considered as
-     * double storage as all the weights are stored in edges)
+     * double storage as all the weights are stored in the adjacency arrays)
      */
-    private Matrix weightMatrix;
+    private SparseMatrix weightMatrix;
 
     /**
      * This (sparse) matrix holds info on how to compute state vector
@@ -31,42 +48,98 @@ public class GraphInfo {
     /**
      * Constructor
      *
-     * @param _index graph index (level)
-     * @param _nodes array of nodes
+     * @param _index            graph index (level)
+     * @param _nodes            array of nodes
+     * @param _neighbourOffsets start of the edges of each node, the last entry
+     *                          is the total edge count
+     * @param _neighbourIndices index of the other node of each edge
+     * @param _neighbourWeights weight of each edge
      */
-    public GraphInfo(int _index, NodeInfo[] _nodes) {
+    public GraphInfo(int _index, NodeInfo[] _nodes, int[] _neighbourOffsets,
+                     int[] _neighbourIndices, double[] _neighbourWeights) {
         this.index = _index;
         this.nodes = _nodes;
-        // compute weight matrix
+        this.neighbourOffsets = _neighbourOffsets;
+        this.neighbourIndices = _neighbourIndices;
+        this.neighbourWeights = _neighbourWeights;
+
+        // compute weight matrix - the weight of edge from node i to node j
+        // is in column i of row j. The rows are filled in the increasing
+        // order of columns
         int nodeCount = this.nodes.length;
-        this.weightMatrix = new SparseMatrix(nodeCount, nodeCount);
+        int edgeCount = this.neighbourOffsets[nodeCount];
+        int[] rowOffsets = new int[nodeCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            rowOffsets[this.neighbourIndices[i] + 1]++;
+        }
+        for (int row = 0; row < nodeCount; row++) {
+            rowOffsets[row + 1] += rowOffsets[row];
+        }
+        int[] rowColumns = new int[edgeCount];
+        double[] rowValues = new double[edgeCount];
+        int[] rowFill = new int[nodeCount];
         for (int i = 0; i < nodeCount; i++) {
-            NodeInfo currNode = this.nodes[i];
-            int currNodeIndex = currNode.getIndex();
-            for (EdgeInfo currEdge : currNode.getEdges()) {
-                int anotherNodeIndex = currEdge.getOtherNodeIndex(
-                        currNodeIndex);
-                this.weightMatrix.set(currNodeIndex, anotherNodeIndex,
-                        currEdge.getWeight());
+            for (int k = this.neighbourOffsets[i];
+                 k < this.neighbourOffsets[i + 1]; k++) {
+                int row = this.neighbourIndices[k];
+                int place = rowOffsets[row] + rowFill[row]++;
+                rowColumns[place] = i;
+                rowValues[place] = this.neighbourWeights[k];
+            }
+        }
+        this.weightMatrix = new SparseMatrix(nodeCount, nodeCount);
+        int[] columns = new int[0];
+        double[] values = new double[0];
+        for (int row = 0; row < nodeCount; row++) {
+            int count = rowFill[row];
+            if (count > columns.length) {
+                columns = new int[count];
+                values = new double[count];
             }
+            System.arraycopy(rowColumns, rowOffsets[row], columns, 0, count);
+            System.arraycopy(rowValues, rowOffsets[row], values, 0, count);
+            this.weightMatrix.setRow(row, columns, values, count);
         }
 
         this.interpolationMatrix = null;
     }
 
     /**
-     * Constructor
+     * Constructor. Each non-zero value in row <code>i</code> of the weight
+     * matrix is an edge of node <code>i</code>
      *
-     * @param _index        graph index (level)
-     * @param _nodes        array of nodes
-     * @param _weightMatrix weight matrix
+     * @param _index               graph index (level)
+     * @param _nodes               array of nodes
+     * @param _weightMatrix        weight matrix
+     * @param _interpolationMatrix interpolation matrix for computing the state
+     *                             vector
      */
-    public GraphInfo(int _index, NodeInfo[] _nodes, Matrix _weightMatrix,
+    public GraphInfo(int _index, NodeInfo[] _nodes, SparseMatrix _weightMatrix,
                      Matrix _interpolationMatrix) {
         this.index = _index;
         this.nodes = _nodes;
         this.weightMatrix = _weightMatrix;
         this.interpolationMatrix = _interpolationMatrix;
+
+        int nodeCount = this.nodes.length;
+        this.neighbourOffsets = new int[nodeCount + 1];
+        for (int row = 0; row < nodeCount; row++) {
+            this.neighbourOffsets[row + 1] = this.neighbourOffsets[row] +
+                    this.weightMatrix.getNzCountInRow(row);
+        }
+        int edgeCount = this.neighbourOffsets[nodeCount];
+        this.neighbourIndices = new int[edgeCount];
+        this.neighbourWeights = new double[edgeCount];
+        for (int row = 0; row < nodeCount; row++) {
+            int start = this.neighbourOffsets[row];
+            int nzCount = this.neighbourOffsets[row + 1] - start;
+            for (int nz = 0; nz < nzCount; nz++) {
+                this.neighbourIndices[start + nz] =
+                        this.weightMatrix.getColumnByIndex(row, nz);
+                this.neighbourWeights[start + nz] =
+                        this.weightMatrix.getValueByIndex(row, nz);
+            }
+        }
     }
 
     /**
@@ -105,10 +178,71 @@ public class GraphInfo {
         return this.nodes;
     }
 
+    /**
+     * @return start of the edges of each node, the last entry is the total
+     *         edge count (the underlying array, not a copy)
+     */
+    public int[] getNeighbourOffsets() {
+        return this.neighbourOffsets;
+    }
+
+    /**
+     * @return index of the other node of each edge (the underlying array, not
+     *         a copy)
+     */
+    public int[] getNeighbourIndices() {
+        return this.neighbourIndices;
+    }
+
+    /**
+     * @return weight of each edge (the underlying array, not a copy)
+     */
+    public double[] getNeighbourWeights() {
+        return this.neighbourWeights;
+    }
+
+    /**
+     * Return the number of neighbours of a node
+     *
+     * @param nodeIndex node index
+     * @return neighbours number
+     */
+    public int getNeighbourCount(int nodeIndex) {
+        return this.neighbourOffsets[nodeIndex + 1] -
+                this.neighbourOffsets[nodeIndex];
+    }
+
+    /**
+     * Compute the weight on all edges coming out of a node
+     *
+     * @param nodeIndex node index
+     * @return the total weight
+     */
+    public double getTotalConnectivityWeight(int nodeIndex) {
+        double result = 0.0;
+        for (int k = this.neighbourOffsets[nodeIndex];
+             k < this.neighbourOffsets[nodeIndex + 1]; k++) {
+            result += this.neighbourWeights[k];
+        }
+        return result;
+    }
+
+    /**
+     * @return current volumes of all nodes
+     */
+    public double[] getVolumes() {
+        int len = this.nodes.length;
+        double[] result = new double[len];
+        for (int i = 0; i < len; i++) {
+            result[i] = this.nodes[i].getVolume();
+        }
+        return result;
+    }
+
     /**
      * @return graph weight matrix
      */
-    public Matrix getWeightMatrix() {
+    public SparseMatrix getWeightMatrix() {
         return this.weightMatrix;
     }
 
@@ -153,10 +287,10 @@ public class GraphInfo {
                     currNode.getVolume() + ", s " +
                     currNode.getSaliency() +
                     "):");
-            for (EdgeInfo currEdge : currNode.getEdges()) {
-                System.out.print(" to " +
-                        currEdge.getOtherNodeIndex(currNode.getIndex()) +
-                        " (" + currEdge.getWeight() + "), ");
+            for (int k = this.neighbourOffsets[i];
+                 k < this.neighbourOffsets[i + 1]; k++) {
+                System.out.print(" to " + this.neighbourIndices[k] + " (" +
+                        this.neighbourWeights[k] + "), ");
             }
             System.out.println();
         }
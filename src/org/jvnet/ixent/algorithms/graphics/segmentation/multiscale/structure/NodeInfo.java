@@ -1,11 +1,9 @@
 package org.jvnet.ixent.algorithms.graphics.segmentation.multiscale.structure;
 
-import java.util.*;
-
 /**
  * This class holds info on a single node. Each node has additional information
- * associated with it (like volume). Each node has an unordered list of its
- * edges.
+ * associated with it (like volume). The edges of the node are held by its
+ * graph.
  *
  * @author Kirill Grouchnikov
  * @see GraphInfo
@@ -15,7 +13,6 @@ public class NodeInfo implements Comparable<NodeInfo> {
     private int index;
     private double volume;
     private double saliency;
-    private List<EdgeInfo> edges;
     private AdditionalNodeInfo additionalInfo;
 
     /**
@@ -25,36 +22,9 @@ public class NodeInfo implements Comparable<NodeInfo> {
     public NodeInfo(int _index, double _volume) {
         this.index = _index;
         this.volume = _volume;
-        this.edges = new LinkedList<EdgeInfo>();
         this.saliency = -1.0;
     }
 
-    /**
-     * Add this edge to a list of all edges of this node. No check is performed
-     * that this node actually belongs to the edge
-     *
-     * @param edge edge structure
-     */
-    public void addEdge(EdgeInfo edge) {
-        this.edges.add(edge);
-    }
-
-    /**
-     * Get an iterator over this node's edges
-     *
-     * @return iterator
-     */
-    public Iterator<EdgeInfo> getEdgeIterator() {
-        return this.edges.iterator();
-    }
-
-    /**
-     * @return edge list
-     */
-    public List<EdgeInfo> getEdges() {
-        return edges;
-    }
-
     /**
      * @return node index
      */
@@ -76,48 +46,6 @@ public class NodeInfo implements Comparable<NodeInfo> {
         this.volume = volume;
     }
 
-    /**
-     * Get index array of all neighbours of this node
-     *
-     * @return index array
-     */
-    public int[] getAllNeighboursIndexes() {
-        int count = 0;
-        int[] result = new int[this.edges.size()];
-        for (EdgeInfo currEdge : this.edges) {
-            result[count++] = currEdge.getOtherNodeIndex(this.index);
-        }
-        return result;
-    }
-
-    /**
-     * Compute the volume on all edges coming out of this node
-     *
-     * @return the total volume
-     */
-    public double getTotalConnectivityWeight() {
-        double result = 0.0;
-        for (EdgeInfo currEdge : this.edges) {
-            result += currEdge.getWeight();
-        }
-        return result;
-    }
-
-    /**
-     * Returns the volume of edge connecting this node to a given node
-     *
-     * @param nodeIndex second node index
-     * @return volume on the corresponding edge
-     */
-    public double getWeightToNode(int nodeIndex) {
-        for (EdgeInfo currEdge : this.edges) {
-            if (currEdge.getOtherNodeIndex(this.index) == nodeIndex) {
-                return currEdge.getWeight();
-            }
-        }
-        return 0.0;
-    }
-
     /**
      * Increment node volume by delta
      *
@@ -174,23 +102,12 @@ public class NodeInfo implements Comparable<NodeInfo> {
         this.additionalInfo = additionalInfo;
     }
 
-    /**
-     * Return the number of neighbours
-     *
-     * @return neighbours number
-     */
-    public int getNeighbourCount() {
-        return this.edges.size();
-    }
-
     /**
      * Returns the <code>String</code> representation of this object
      *
      * @return a <code>String</code> representing this object
      */
     public String toString() {
-        return "node " + this.index + " (" + this.edges.size() +
-                " edges), vol " +
-                this.volume;
+        return "node " + this.index + ", vol " + this.volume;
     }
 }
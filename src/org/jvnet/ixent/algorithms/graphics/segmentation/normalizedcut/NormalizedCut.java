@@ -11,6 +11,7 @@ import org.jvnet.ixent.graphics.IndexBitmapObject;
 import org.jvnet.ixent.math.MathConstants;
 import org.jvnet.ixent.math.coord.PointND;
 import org.jvnet.ixent.math.filters.*;
+import org.jvnet.ixent.math.matrix.FeatureMatrix;
 import org.jvnet.ixent.math.matrix.Matrix;
 import org.jvnet.ixent.math.matrix.SparseMatrix;
 
@@ -33,6 +34,8 @@ public class NormalizedCut implements EigenChecker {
 
 	private NCWeightMatrix weightMatrix;
 
+	private boolean isSteerable;
+
 	public NormalizedCut(Applet app, BufferedImage image, int width, int height) {
 		this.app = app;
 		this.width = width;
@@ -40,24 +43,52 @@ public class NormalizedCut implements EigenChecker {
 		this.inputImage = image;
 	}
 
-	private SparseMatrix getWeightMap() {
+	/**
+	 * Set whether the texture features are computed with
+	 * {@link SteerableFilterBank} (with the derivative basis computed by
+	 * {@link RecursiveGaussian}) instead of {@link FilterBank}. The
+	 * oriented filters of the steerable bank are isotropic Gaussian
+	 * derivatives, so the features are different. Off by default.
+	 * 
+	 * @param pIsSteerable
+	 *            if <code>true</code>, the steerable bank is used
+	 */
+	public void setSteerable(boolean pIsSteerable) {
+		this.isSteerable = pIsSteerable;
+	}
+
+	/**
+	 * Convolve the greyscale image with the filter bank of the specified
+	 * parameters (see
+	 * {@link FilterBank#getFilters(double, double, int, int, int, int)})
+	 */
+	private FeatureMatrix getResponses(double sigmaStart, double sigmaDelta,
+			int countRegular, int countDifference, int countOrientations,
+			int countScales) {
 		Convolver convolver = new Convolver(IndexBitmapObject
 				.getAsGreyscale(this.inputImage));
+		if (this.isSteerable) {
+			SteerableFilterBank bank = new SteerableFilterBank(sigmaStart,
+					sigmaDelta, countRegular, countDifference,
+					countOrientations, countScales);
+			bank.setRecursive(true);
+			return bank.getFeatureMatrix(convolver,
+					FeatureMatrix.Layout.INTERLEAVED);
+		}
+		return convolver.getFeatureMatrix(FilterBank.getFilters(sigmaStart,
+				sigmaDelta, countRegular, countDifference, countOrientations,
+				countScales), FeatureMatrix.Layout.INTERLEAVED);
+	}
 
+	private SparseMatrix getWeightMap() {
 		long time0 = System.currentTimeMillis();
-		Filter[] filters = FilterBank.getFilters(1.0, 1.0, 0, 0, 1, 1);
-		PointND[][] responses = convolver.convolve(filters);
+		FeatureMatrix responses = this.getResponses(1.0, 1.0, 0, 0, 1, 1);
+		int filterCount = responses.getDimensionality();
 		long time1 = System.currentTimeMillis();
-		System.out.println("Creating and convolving " + filters.length
+		System.out.println("Creating and convolving " + filterCount
 				+ " filters : " + (time1 - time0));
-		PointND[] responseVector = new PointND[this.width * this.height];
-		for (int i = 0; i < this.width; i++) {
-			for (int j = 0; j < this.height; j++) {
-				responseVector[j * this.width + i] = responses[i][j];
-			}
-		}
-		KMeans km = new KMeans(responseVector, filters.length, 12);
-		PointND[] centers = km.getCenters(filters.length, 100);
+		KMeans km = new KMeans(responses, 12);
+		PointND[] centers = km.getCenters(filterCount, 100);
 
 		Color[] colors = new Color[] { Color.red, Color.blue, Color.green,
 				Color.yellow, Color.black, Color.cyan, Color.darkGray,
@@ -439,21 +470,12 @@ public class NormalizedCut implements EigenChecker {
 		long time0 = System.currentTimeMillis();
 		int n = this.height * this.width;
 		NCWeightMatrix smmBig = new NCWeightMatrix(n, n);
-		Convolver convolver = new Convolver(IndexBitmapObject
-				.getAsGreyscale(this.inputImage));
-
-		Filter[] filters = FilterBank.getFilters(2.0, 1.0, 1, 2, 2, 2);
-		PointND[][] responses = convolver.convolve(filters);
+		FeatureMatrix responses = this.getResponses(2.0, 1.0, 1, 2, 2, 2);
 		long time1 = System.currentTimeMillis();
-		System.out.println("Creating and convolving " + filters.length
-				+ " filters : " + (time1 - time0));
-		PointND[] responseVector = new PointND[this.width * this.height];
-		for (int i = 0; i < this.width; i++) {
-			for (int j = 0; j < this.height; j++) {
-				responseVector[j * this.width + i] = responses[i][j];
-			}
-		}
-		KMeans km = new KMeans(responseVector, filters.length, 12);
+		System.out.println("Creating and convolving "
+				+ responses.getDimensionality() + " filters : "
+				+ (time1 - time0));
+		KMeans km = new KMeans(responses, 12);
 		PointND[] centers = km.getCenters(0.1, 50);
 
 		for (int i = 0; i < n; i++) {
@@ -6,7 +6,7 @@ import java.util.List;
 import org.jvnet.ixent.algorithms.geometry.delaunay.DelaunayManager;
 import org.jvnet.ixent.algorithms.geometry.delaunay.DelaunayManagerFactory;
 import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurve;
-import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurveStructure;
+import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurveFactory;
 import org.jvnet.ixent.graphics.IndexBitmapObject;
 import org.jvnet.ixent.graphics.objects.Triangle;
 import org.jvnet.ixent.math.coord.Polygon2D;
@@ -35,8 +35,8 @@ public class DelaunayTesselator implements Tesselator {
                                           IndexBitmapObject structureVicinityMap) {
 
         // create space filling curve that takes structure vicinity into account
-        SpaceFillingCurve sfc = new SpaceFillingCurveStructure(cellRadius,
-                true);
+        SpaceFillingCurve sfc = SpaceFillingCurveFactory.getSpaceFillingCurve(
+                cellRadius, true);
         // initialize it with structure vicinity map
         sfc.init(structureVicinityMap);
         // get centers of the space filling curve
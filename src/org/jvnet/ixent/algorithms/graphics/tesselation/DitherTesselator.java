@@ -3,7 +3,7 @@ package org.jvnet.ixent.algorithms.graphics.tesselation;
 import java.util.List;
 
 import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurve;
-import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurveStructure;
+import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurveFactory;
 import org.jvnet.ixent.algorithms.geometry.voronoi.VoronoiManager;
 import org.jvnet.ixent.graphics.IndexBitmapObject;
 import org.jvnet.ixent.math.coord.Polygon2D;
@@ -32,8 +32,8 @@ public class DitherTesselator implements Tesselator {
                                           IndexBitmapObject structureVicinityMap) {
 
         // create space filling curve that takes structure vicinity into account
-        SpaceFillingCurve sfc = new SpaceFillingCurveStructure(cellRadius,
-                true);
+        SpaceFillingCurve sfc = SpaceFillingCurveFactory.getSpaceFillingCurve(
+                cellRadius, true);
         // initialize it with structure vicinity map
         sfc.init(structureVicinityMap);
         // get centers of the space filling curve
@@ -3,11 +3,10 @@ package org.jvnet.ixent.algorithms.graphics.tesselation;
 import java.util.List;
 
 import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurve;
-import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurveStructure;
+import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurveFactory;
 import org.jvnet.ixent.algorithms.geometry.voronoi.VoronoiManager;
 import org.jvnet.ixent.graphics.IndexBitmapObject;
-import org.jvnet.ixent.math.coord.Polygon2D;
-import org.jvnet.ixent.math.coord.Vertex2D;
+import org.jvnet.ixent.math.coord.*;
 
 /**
  * A tesselator based on Voronoi tesselation
@@ -32,15 +31,20 @@ public class VoronoiTesselator implements Tesselator {
                                           IndexBitmapObject structureVicinityMap) {
 
         // create space filling curve that takes structure vicinity into account
-        SpaceFillingCurve sfc = new SpaceFillingCurveStructure(cellRadius,
-                true);
+        SpaceFillingCurve sfc = SpaceFillingCurveFactory.getSpaceFillingCurve(
+                cellRadius, true);
         // initialize it with structure vicinity map
         sfc.init(structureVicinityMap);
         // get centers of the space filling curve
         Vertex2D[] centers = sfc.getCenters();
-        // compute Voronoi tesselation
-        List<Polygon2D> result = VoronoiManager.getVoronoiPolygons(centers);
-
-        return result;
+        // compute Voronoi tesselation clipped to the image
+        PolygonBuffer cells = VoronoiManager.getVoronoiCells(centers,
+                new Rectangle2D(0, 0, structureVicinityMap.getWidth(),
+                        structureVicinityMap.getHeight()));
+        if (cells == null) {
+            return null;
+        }
+        // the cells that lie outside the image are dropped
+        return cells.getPolygons();
     }
 }
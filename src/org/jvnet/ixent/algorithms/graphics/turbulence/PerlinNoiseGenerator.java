@@ -1,5 +1,7 @@
 package org.jvnet.ixent.algorithms.graphics.turbulence;
 
+import java.util.Random;
+
 /**
  * A class for producing Perlin-inspired noise. The main idea is borrowed from
  * Ken Perlin's noise generator: for each point sum up noise functions at
@@ -12,6 +14,27 @@ package org.jvnet.ixent.algorithms.graphics.turbulence;
  * @author Kirill Grouchnikov
  */
 public class PerlinNoiseGenerator {
+    /**
+     * Source of random numbers for octave phases
+     */
+    private Random random;
+
+    /**
+     * Construct noise generator that produces different noise on each run
+     */
+    public PerlinNoiseGenerator() {
+        this.random = new Random();
+    }
+
+    /**
+     * Construct noise generator that produces reproducible noise
+     *
+     * @param seed seed for the random number sequence
+     */
+    public PerlinNoiseGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
     /**
      * Compute single-octave noise at given point.
      *
@@ -50,7 +73,7 @@ public class PerlinNoiseGenerator {
 
         int frequency = 1;
         for (int i = 0; i < n; i++) {
-            total = total + this.noise(Math.random(), frequency, x, y);
+            total = total + this.noise(this.random.nextDouble(), frequency, x, y);
             frequency *= 2.0;
         }
         return total;
@@ -65,7 +88,7 @@ public class PerlinNoiseGenerator {
      */
     public double[][] getSparseNormalizedNoise(int width, int height) {
         double[][] res = new double[width][height];
-        double r = Math.random();
+        double r = this.random.nextDouble();
         double minNoise = 0.0, maxNoise = 0.0;
         for (int col = 0; col < width; col++) {
             for (int row = 0; row < height; row++) {
@@ -108,7 +131,7 @@ public class PerlinNoiseGenerator {
      */
     public double[][] getDenseNormalizedNoise(int width, int height) {
         double[][] res = new double[width][height];
-        double r = Math.random()*0.4+0.4;
+        double r = this.random.nextDouble()*0.4+0.4;
         double minNoise = 0.0, maxNoise = 0.0;
         for (int col = 0; col < width; col++) {
             for (int row = 0; row < height; row++) {
@@ -140,5 +163,73 @@ public class PerlinNoiseGenerator {
         return res;
     }
 
+    /**
+     * Compute normalized noise map for given dimensions (width and height)
+     * that is periodic in both directions - the map can be tiled without
+     * seams. Each octave interpolates random values on a lattice that wraps
+     * around the map dimensions, and the lattice frequency is doubled in each
+     * octave up to the map dimensions.
+     *
+     * @param width  noise map width
+     * @param height noise map height
+     * @return noise map. Each entry is in 0..1 range
+     */
+    public double[][] getPeriodicNormalizedNoise(int width, int height) {
+        double[][] res = new double[width][height];
+        for (int freq = 1; (freq <= width) || (freq <= height); freq *= 2) {
+            int freqX = Math.min(freq, width);
+            int freqY = Math.min(freq, height);
+            double[][] lattice = new double[freqX][freqY];
+            for (int i = 0; i < freqX; i++) {
+                for (int j = 0; j < freqY; j++) {
+                    lattice[i][j] = this.random.nextDouble();
+                }
+            }
+            for (int col = 0; col < width; col++) {
+                double u = (double) col * freqX / width;
+                int i0 = (int) u;
+                int i1 = (i0 + 1) % freqX;
+                double fu = smoothStep(u - i0);
+                for (int row = 0; row < height; row++) {
+                    double v = (double) row * freqY / height;
+                    int j0 = (int) v;
+                    int j1 = (j0 + 1) % freqY;
+                    double fv = smoothStep(v - j0);
+                    double top = lattice[i0][j0]
+                            + fu * (lattice[i1][j0] - lattice[i0][j0]);
+                    double bottom = lattice[i0][j1]
+                            + fu * (lattice[i1][j1] - lattice[i0][j1]);
+                    res[col][row] += top + fv * (bottom - top);
+                }
+            }
+        }
+
+        // normalize to 0..1 range
+        double minNoise = res[0][0], maxNoise = res[0][0];
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                minNoise = Math.min(minNoise, res[i][j]);
+                maxNoise = Math.max(maxNoise, res[i][j]);
+            }
+        }
+        double denom = (maxNoise > minNoise) ? 1.0 / (maxNoise - minNoise)
+                : 0.0;
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                res[i][j] = (res[i][j] - minNoise) * denom;
+            }
+        }
+
+        return res;
+    }
 
+    /**
+     * Smooth interpolation weight with zero derivative at both ends
+     *
+     * @param t linear weight in 0..1 range
+     * @return smoothed weight in 0..1 range
+     */
+    private static double smoothStep(double t) {
+        return t * t * (3.0 - 2.0 * t);
+    }
 }
@@ -0,0 +1,137 @@
+package org.jvnet.ixent.math.coord;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact storage of a sequence of polygons. The coordinates of all the
+ * polygons are kept in one flat array (<i>x0, y0, x1, y1, ...</i>), and the
+ * polygons are added one point at a time.
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class PolygonBuffer {
+    private double[] coordinates;
+
+    private int pointCount;
+
+    /**
+     * Index of the first point of each polygon. The entry after the last
+     * polygon is the index of the first point of the polygon being added.
+     */
+    private int[] polygonStarts;
+
+    private int polygonCount;
+
+    /**
+     * Construct empty buffer
+     *
+     * @param expectedPolygonCount expected number of polygons
+     * @param expectedPointCount   expected total number of points
+     */
+    public PolygonBuffer(int expectedPolygonCount, int expectedPointCount) {
+        this.coordinates = new double[2 * Math.max(expectedPointCount, 4)];
+        this.polygonStarts = new int[Math.max(expectedPolygonCount, 1) + 1];
+        this.pointCount = 0;
+        this.polygonCount = 0;
+    }
+
+    /**
+     * Add point to the polygon being added
+     *
+     * @param x X coordinate
+     * @param y Y coordinate
+     */
+    public void addPoint(double x, double y) {
+        if (2 * this.pointCount == this.coordinates.length) {
+            double[] newCoordinates = new double[2 * this.coordinates.length];
+            System.arraycopy(this.coordinates, 0, newCoordinates, 0,
+                    2 * this.pointCount);
+            this.coordinates = newCoordinates;
+        }
+        this.coordinates[2 * this.pointCount] = x;
+        this.coordinates[2 * this.pointCount + 1] = y;
+        this.pointCount++;
+    }
+
+    /**
+     * Complete the polygon being added. The polygon may have no points.
+     */
+    public void endPolygon() {
+        if (this.polygonCount + 2 > this.polygonStarts.length) {
+            int[] newStarts = new int[2 * this.polygonStarts.length];
+            System.arraycopy(this.polygonStarts, 0, newStarts, 0,
+                    this.polygonCount + 1);
+            this.polygonStarts = newStarts;
+        }
+        this.polygonCount++;
+        this.polygonStarts[this.polygonCount] = this.pointCount;
+    }
+
+    /**
+     * @return number of complete polygons
+     */
+    public int getPolygonCount() {
+        return this.polygonCount;
+    }
+
+    /**
+     * @param polygon polygon index
+     * @return number of points in the polygon
+     */
+    public int getPointCount(int polygon) {
+        return this.polygonStarts[polygon + 1] - this.polygonStarts[polygon];
+    }
+
+    /**
+     * @param polygon polygon index
+     * @param point   point index in the polygon
+     * @return X coordinate of the point
+     */
+    public double getX(int polygon, int point) {
+        return this.coordinates[2 * (this.polygonStarts[polygon] + point)];
+    }
+
+    /**
+     * @param polygon polygon index
+     * @param point   point index in the polygon
+     * @return Y coordinate of the point
+     */
+    public double getY(int polygon, int point) {
+        return this.coordinates[2 * (this.polygonStarts[polygon] + point) + 1];
+    }
+
+    /**
+     * @param polygon polygon index
+     * @return the polygon as <code>Polygon2D</code>, <code>null</code> if it
+     *         has no points
+     */
+    public Polygon2D getPolygon(int polygon) {
+        int count = this.getPointCount(polygon);
+        if (count == 0) {
+            return null;
+        }
+        Point2D[] points = new Point2D[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = new Point2D.Double(this.getX(polygon, i),
+                    this.getY(polygon, i));
+        }
+        return new Polygon2D(points);
+    }
+
+    /**
+     * @return all the polygons that have points as <code>Polygon2D</code>s,
+     *         in the order of the buffer
+     */
+    public List<Polygon2D> getPolygons() {
+        List<Polygon2D> result = new ArrayList<Polygon2D>(this.polygonCount);
+        for (int i = 0; i < this.polygonCount; i++) {
+            Polygon2D polygon = this.getPolygon(i);
+            if (polygon != null) {
+                result.add(polygon);
+            }
+        }
+        return result;
+    }
+}
@@ -1,20 +1,66 @@
 package org.jvnet.ixent.math.filters;
 
+import java.util.*;
+import java.util.concurrent.*;
+
 import org.jvnet.ixent.graphics.IndexBitmapObject;
 import org.jvnet.ixent.math.coord.PointND;
+import org.jvnet.ixent.math.matrix.FeatureMatrix;
+import org.jvnet.ixent.util.BandExecutor;
 
 public class Convolver {
+    // FFT size for big images (the tiles are smaller by the filter span)
+    public static final int FFT_SIZE = 256;
+
+    // maximal number of cached filter spectra
+    public static final int SPECTRUM_CACHE_SIZE = 32;
+
+    // filter spectra by filter key and FFT size
+    private static final Map<String, double[][]> spectrumCache =
+            new LinkedHashMap<String, double[][]>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, double[][]> eldest) {
+                    return this.size() > SPECTRUM_CACHE_SIZE;
+                }
+            };
+
     // greyscale bitmap
     private IndexBitmapObject gsImage;
     private int[][] gsBitmap;
 
     private int bitmapWidth, bitmapHeight;
 
+    private int threadCount;
+
     public Convolver(IndexBitmapObject gsImage) {
         this.bitmapHeight = gsImage.getHeight();
         this.bitmapWidth = gsImage.getWidth();
         this.gsImage = gsImage;
         this.gsBitmap = this.gsImage.getBitmap();
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return greyscale image of this convolver
+     */
+    public IndexBitmapObject getImage() {
+        return this.gsImage;
+    }
+
+    /**
+     * Set number of threads for convolving the whole image. By default, as
+     * many threads as there are available processors are used.
+     *
+     * @param pThreadCount number of threads
+     * @throws IllegalArgumentException if the number of threads is not
+     *                                  positive
+     */
+    public void setThreadCount(int pThreadCount) {
+        if (pThreadCount < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be positive");
+        }
+        this.threadCount = pThreadCount;
     }
 
     // convolves a single pixel using a filter
@@ -59,13 +105,239 @@ public class Convolver {
 
     // convolves the whole image using the filter bank
     public PointND[][] convolve(Filter[] filters) {
+        FeatureMatrix responses = this.getFeatureMatrix(filters,
+                FeatureMatrix.Layout.INTERLEAVED);
         PointND[][] result = new PointND[this.bitmapWidth][this.bitmapHeight];
         for (int col = 0; col < this.bitmapWidth; col++) {
             for (int row = 0; row < this.bitmapHeight; row++) {
-                result[col][row] =
-                        new PointND(this.convolve(col, row, filters));
+                int sample = row * this.bitmapWidth + col;
+                double[] coords = new double[filters.length];
+                for (int f = 0; f < filters.length; f++) {
+                    coords[f] = responses.get(sample, f);
+                }
+                result[col][row] = new PointND(coords);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Discard all the cached filter spectra
+     */
+    public static void clearSpectrumCache() {
+        synchronized (spectrumCache) {
+            spectrumCache.clear();
+        }
+    }
+
+    /**
+     * Get spectrum of the filter flipped around its center and shifted so
+     * that its bounding rectangle starts at (0, 0). The spectrum is cached if
+     * the filter has a key.
+     *
+     * @param filter filter
+     * @param fft    transform
+     * @return real (index 0) and imaginary (index 1) parts of the spectrum
+     */
+    private static double[][] getSpectrum(Filter filter, FFT fft) {
+        int n = fft.getSize();
+        String key = null;
+        if (filter.getKey() != null) {
+            key = filter.getKey() + "@" + n;
+            synchronized (spectrumCache) {
+                double[][] cached = spectrumCache.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+        double[] re = new double[n * n];
+        double[] im = new double[n * n];
+        for (int dx = filter.getBoundL(); dx <= filter.getBoundR(); dx++) {
+            for (int dy = filter.getBoundT(); dy <= filter.getBoundB(); dy++) {
+                re[(filter.getBoundR() - dx) * n + filter.getBoundB() - dy] =
+                        filter.getUnchecked(dx, dy);
+            }
+        }
+        fft.transform2D(re, im, false);
+        double[][] result = new double[][]{re, im};
+        if (key != null) {
+            synchronized (spectrumCache) {
+                spectrumCache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convolve the whole image with each filter of the filter bank. The
+     * responses are the same as of {@link #convolve(int, int, Filter)} on
+     * each pixel. The image is split into tiles; each tile is transformed
+     * once, multiplied by the spectra of all filters and transformed back,
+     * and the results are added to the responses (overlap-add). The filters
+     * are processed concurrently. The responses are accumulated in planar
+     * layout, so that each group of filters writes its own contiguous
+     * planes, and are interleaved once at the end if requested.
+     *
+     * @param filters filter bank
+     * @param layout  layout of the result
+     * @return responses - the sample of pixel <code>(col, row)</code> is
+     *         <code>row*width+col</code>, and its feature <code>f</code> is
+     *         the response of filter <code>f</code>
+     */
+    public FeatureMatrix getFeatureMatrix(final Filter[] filters,
+                                          FeatureMatrix.Layout layout) {
+        final int width = this.bitmapWidth;
+        final int height = this.bitmapHeight;
+        final FeatureMatrix result = new FeatureMatrix(width * height,
+                filters.length, FeatureMatrix.Layout.PLANAR);
+        if ((filters.length == 0) || (width == 0) || (height == 0)) {
+            return result.toLayout(layout);
+        }
+        final float[] responses = result.getData();
+
+        // FFT size - at least twice the largest filter span and at most
+        // FFT_SIZE (unless the filters are bigger), with the least estimated
+        // cost of transforming all the tiles
+        int span = 1;
+        for (Filter filter : filters) {
+            span = Math.max(span, filter.getBoundR() - filter.getBoundL() + 1);
+            span = Math.max(span, filter.getBoundB() - filter.getBoundT() + 1);
+        }
+        int n = 1;
+        while (n < 2 * span) {
+            n *= 2;
+        }
+        double bestCost = Double.MAX_VALUE;
+        for (int size = n; ; size *= 2) {
+            int tile = size - span + 1;
+            double tiles = Math.ceil((double) width / tile)
+                    * Math.ceil((double) height / tile);
+            double cost = tiles * size * size
+                    * Integer.numberOfTrailingZeros(size);
+            if (cost < bestCost) {
+                bestCost = cost;
+                n = size;
+            }
+            if ((size >= FFT_SIZE) || (tiles == 1.0)) {
+                break;
+            }
+        }
+        final int fftSize = n;
+        final int tileSize = n - span + 1;
+        final FFT fft = new FFT(n);
+        final double[][][] spectra = new double[filters.length][][];
+        for (int f = 0; f < filters.length; f++) {
+            spectra[f] = getSpectrum(filters[f], fft);
+        }
+
+        int groupCount = Math.min(this.threadCount, filters.length);
+        ExecutorService executor = (groupCount > 1) ? Executors
+                .newFixedThreadPool(groupCount) : null;
+        try {
+            final double[] tileRe = new double[n * n];
+            final double[] tileIm = new double[n * n];
+            final double[][] workRe = new double[groupCount][n * n];
+            final double[][] workIm = new double[groupCount][n * n];
+            final double scale = 1.0 / (n * n);
+            for (int tileX = 0; tileX < width; tileX += tileSize) {
+                for (int tileY = 0; tileY < height; tileY += tileSize) {
+                    // transform the tile
+                    Arrays.fill(tileRe, 0.0);
+                    Arrays.fill(tileIm, 0.0);
+                    final int startX = tileX;
+                    final int startY = tileY;
+                    int endX = Math.min(width, tileX + tileSize);
+                    int endY = Math.min(height, tileY + tileSize);
+                    for (int col = startX; col < endX; col++) {
+                        for (int row = startY; row < endY; row++) {
+                            tileRe[(col - startX) * fftSize + row - startY] =
+                                    this.gsBitmap[col][row];
+                        }
+                    }
+                    fft.transform2D(tileRe, tileIm, false);
+
+                    // multiply by the filter spectra and add the results
+                    List<Future<?>> futures = new LinkedList<Future<?>>();
+                    for (int group = 0; group < groupCount; group++) {
+                        final int from = filters.length * group / groupCount;
+                        final int to = filters.length * (group + 1)
+                                / groupCount;
+                        final double[] re = workRe[group];
+                        final double[] im = workIm[group];
+                        Runnable task = new Runnable() {
+                            public void run() {
+                                for (int f = from; f < to; f++) {
+                                    double[] fRe = spectra[f][0];
+                                    double[] fIm = spectra[f][1];
+                                    for (int i = 0; i < re.length; i++) {
+                                        re[i] = tileRe[i] * fRe[i]
+                                                - tileIm[i] * fIm[i];
+                                        im[i] = tileRe[i] * fIm[i]
+                                                + tileIm[i] * fRe[i];
+                                    }
+                                    fft.transform2D(re, im, true);
+                                    int shiftX = filters[f].getBoundR();
+                                    int shiftY = filters[f].getBoundB();
+                                    for (int x = 0; x < fftSize; x++) {
+                                        int col = startX + x - shiftX;
+                                        if ((col < 0) || (col >= width)) {
+                                            continue;
+                                        }
+                                        for (int y = 0; y < fftSize; y++) {
+                                            int row = startY + y - shiftY;
+                                            if ((row < 0) || (row >= height)) {
+                                                continue;
+                                            }
+                                            responses[result.getIndex(row
+                                                    * width + col, f)] +=
+                                                    re[x * fftSize + y] * scale;
+                                        }
+                                    }
+                                }
+                            }
+                        };
+                        if (executor == null) {
+                            task.run();
+                        }
+                        else {
+                            futures.add(executor.submit(task));
+                        }
+                    }
+                    BandExecutor.waitFor(futures);
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        return result.toLayout(layout);
+    }
+
+    /**
+     * Convolve the whole image with each filter of the filter bank. Same as
+     * {@link #getFeatureMatrix(Filter[], FeatureMatrix.Layout)} with the
+     * responses copied into one array per filter.
+     *
+     * @param filters filter bank
+     * @return responses of each filter, the response of filter
+     *         <code>f</code> at <code>(col, row)</code> is at
+     *         <code>[f][col*height+row]</code>
+     */
+    public double[][] getResponses(Filter[] filters) {
+        FeatureMatrix responses = this.getFeatureMatrix(filters,
+                FeatureMatrix.Layout.PLANAR);
+        double[][] result = new double[filters.length][this.bitmapWidth
+                * this.bitmapHeight];
+        for (int f = 0; f < filters.length; f++) {
+            for (int col = 0; col < this.bitmapWidth; col++) {
+                for (int row = 0; row < this.bitmapHeight; row++) {
+                    result[f][col * this.bitmapHeight + row] = responses.get(
+                            row * this.bitmapWidth + col, f);
+                }
             }
         }
         return result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+package org.jvnet.ixent.math.filters;
+
+/**
+ * Radix-2 complex fast Fourier transform of square two-dimensional arrays.
+ * The arrays are stored column by column - the value at <code>(x, y)</code>
+ * is at <code>x*size+y</code>. The tables are computed once, and the same
+ * object may be used from several threads.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class FFT {
+    private int size;
+
+    private double[] cosTable;
+
+    private double[] sinTable;
+
+    private int[] bitReversed;
+
+    /**
+     * @param size transform size in each dimension
+     * @throws IllegalArgumentException if the size is not a power of two
+     */
+    public FFT(int size) {
+        if ((size < 1) || ((size & (size - 1)) != 0)) {
+            throw new IllegalArgumentException("Size " + size
+                    + " is not a power of two");
+        }
+        this.size = size;
+        this.cosTable = new double[size / 2];
+        this.sinTable = new double[size / 2];
+        for (int i = 0; i < (size / 2); i++) {
+            this.cosTable[i] = Math.cos(2.0 * Math.PI * i / size);
+            this.sinTable[i] = Math.sin(2.0 * Math.PI * i / size);
+        }
+        int bits = Integer.numberOfTrailingZeros(size);
+        this.bitReversed = new int[size];
+        for (int i = 0; i < size; i++) {
+            this.bitReversed[i] = (bits == 0) ? 0 :
+                    (Integer.reverse(i) >>> (32 - bits));
+        }
+    }
+
+    /**
+     * @return transform size in each dimension
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Transform a single line in place
+     *
+     * @param re      real parts
+     * @param im      imaginary parts
+     * @param start   index of the first line element
+     * @param step    distance between two consecutive line elements
+     * @param inverse if <code>true</code>, the inverse transform is computed
+     *                (without scaling)
+     */
+    private void transform(double[] re, double[] im, int start, int step,
+                           boolean inverse) {
+        int n = this.size;
+        for (int i = 0; i < n; i++) {
+            int j = this.bitReversed[i];
+            if (j > i) {
+                int ii = start + i * step;
+                int jj = start + j * step;
+                double tr = re[ii];
+                re[ii] = re[jj];
+                re[jj] = tr;
+                double ti = im[ii];
+                im[ii] = im[jj];
+                im[jj] = ti;
+            }
+        }
+        double sign = inverse ? 1.0 : -1.0;
+        for (int half = 1; half < n; half *= 2) {
+            int tableStep = n / (2 * half);
+            for (int block = 0; block < n; block += 2 * half) {
+                for (int k = 0; k < half; k++) {
+                    double wr = this.cosTable[k * tableStep];
+                    double wi = sign * this.sinTable[k * tableStep];
+                    int a = start + (block + k) * step;
+                    int b = a + half * step;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+    /**
+     * Transform a square array in place
+     *
+     * @param re      real parts, <code>size*size</code> elements
+     * @param im      imaginary parts, <code>size*size</code> elements
+     * @param inverse if <code>true</code>, the inverse transform is computed.
+     *                The inverse transform is not scaled - the values are
+     *                <code>size*size</code> times the original values
+     */
+    public void transform2D(double[] re, double[] im, boolean inverse) {
+        int n = this.size;
+        for (int x = 0; x < n; x++) {
+            this.transform(re, im, x * n, 1, inverse);
+        }
+        for (int y = 0; y < n; y++) {
+            this.transform(re, im, y, n, inverse);
+        }
+    }
+}
@@ -17,6 +17,11 @@ public class Filter {
 
     private int minX, maxX, minY, maxY;
 
+    // parameters of the factory method that created this filter, null if
+    // unknown. Filters with the same key have the same values, so any change
+    // of the values or the bounds discards the key
+    private String key;
+
     public Filter(int filterSize) {
         this.filterSize = filterSize;
         this.filterSpan = 2 * this.filterSize + 1;
@@ -32,6 +37,24 @@ public class Filter {
         return this.filterSize;
     }
 
+    public String getKey() {
+        return this.key;
+    }
+
+    void setKey(String key) {
+        this.key = key;
+    }
+
+    // use the whole filter matrix - for filters that can't be normalized
+    // (such as derivative filters that sum up to zero)
+    void setFullBounds() {
+        this.key = null;
+        this.minX = -this.filterSize;
+        this.maxX = this.filterSize;
+        this.minY = -this.filterSize;
+        this.maxY = this.filterSize;
+    }
+
     public int getBoundL() {
         return this.minX;
     }
@@ -56,6 +79,7 @@ public class Filter {
         if ((!this.isValidIndex(indexX)) || (!this.isValidIndex(indexY))) {
             return;
         }
+        this.key = null;
         this.filterValues[indexX + this.filterSize][indexY + this.filterSize] =
                 value;
     }
@@ -86,6 +110,7 @@ public class Filter {
     }
 
     public void normalize() {
+        this.key = null;
         // sum up
         double sum = 0.0;
         for (int i = 0; i < this.filterSpan; i++) {
@@ -32,6 +32,109 @@ public class FilterFactory {
                 result.set(-i, -j, value);
             }
         }
+        result.setKey("gaussian(" + sigma + ")");
+        return result;
+    }
+
+    /**
+     * Get sampled partial derivative of an isotropic Gaussian. The first
+     * derivatives are taken with the positive sign (<code>x*g</code> and
+     * <code>y*g</code> scaled by 1/sigma^2), so that the derivative in
+     * direction theta is <code>cos(theta)*Gx + sin(theta)*Gy</code>. The
+     * filter is not normalized and its bounds span the whole filter.
+     *
+     * @param sigma  standard deviation
+     * @param orderX derivative order in X
+     * @param orderY derivative order in Y
+     * @return derivative filter
+     * @throws IllegalArgumentException if the total order is not 1 or 2
+     */
+    public static Filter getGaussianDerivative(double sigma, int orderX,
+                                               int orderY) {
+        if ((orderX < 0) || (orderY < 0) || ((orderX + orderY) < 1)
+                || ((orderX + orderY) > 2)) {
+            throw new IllegalArgumentException("Derivative order (" + orderX
+                    + ", " + orderY + ") is not supported");
+        }
+        int size = FilterFactory.getSize(sigma);
+        Filter result = new Filter(size);
+        double sigsig = sigma * sigma;
+        double coef = 1.0 / (2.0 * Math.PI * sigsig);
+        for (int x = -size; x <= size; x++) {
+            for (int y = -size; y <= size; y++) {
+                double g = coef * Math.exp(-(x * x + y * y) / (2.0 * sigsig));
+                double value;
+                if (orderX == 2) {
+                    value = (x * x / sigsig - 1.0) / sigsig * g;
+                }
+                else if (orderY == 2) {
+                    value = (y * y / sigsig - 1.0) / sigsig * g;
+                }
+                else if (orderX == 1) {
+                    value = ((orderY == 1) ? (x * y / (sigsig * sigsig)) :
+                            (x / sigsig)) * g;
+                }
+                else {
+                    value = y / sigsig * g;
+                }
+                result.set(x, y, value);
+            }
+        }
+        result.setFullBounds();
+        result.setKey("gaussianDerivative(" + sigma + ", " + orderX + ", "
+                + orderY + ")");
+        return result;
+    }
+
+    /**
+     * Get sampled derivative of an isotropic Gaussian in direction theta,
+     * with the same sign convention as
+     * {@link #getGaussianDerivative(double, int, int)}. The filter is not
+     * normalized and its bounds span the whole filter.
+     *
+     * @param sigma standard deviation
+     * @param order derivative order (1 or 2)
+     * @param theta direction in degrees
+     * @return derivative filter
+     * @throws IllegalArgumentException if the order is not 1 or 2
+     */
+    public static Filter getOrientedGaussianDerivative(double sigma,
+                                                       int order,
+                                                       double theta) {
+        if ((order < 1) || (order > 2)) {
+            throw new IllegalArgumentException("Derivative order " + order
+                    + " is not supported");
+        }
+        // normalize theta
+        while (theta < 0.0) {
+            theta += 360.0;
+        }
+        while (theta >= 360.0) {
+            theta -= 360.0;
+        }
+        int size = FilterFactory.getSize(sigma);
+        Filter result = new Filter(size);
+        double sigsig = sigma * sigma;
+        double coef = 1.0 / (2.0 * Math.PI * sigsig);
+        double ct = Math.cos(theta * Math.PI / 180.0);
+        double st = Math.sin(theta * Math.PI / 180.0);
+        for (int x = -size; x <= size; x++) {
+            for (int y = -size; y <= size; y++) {
+                double g = coef * Math.exp(-(x * x + y * y) / (2.0 * sigsig));
+                double xt = x * ct + y * st;
+                double value;
+                if (order == 1) {
+                    value = xt / sigsig * g;
+                }
+                else {
+                    value = (xt * xt / sigsig - 1.0) / sigsig * g;
+                }
+                result.set(x, y, value);
+            }
+        }
+        result.setFullBounds();
+        result.setKey("orientedGaussianDerivative(" + sigma + ", " + order
+                + ", " + theta + ")");
         return result;
     }
 
@@ -52,6 +155,7 @@ public class FilterFactory {
                         - gaussianSmall.get(i, j));
             }
         }
+        result.setKey("doog(" + sigma + ", " + factor + ")");
         return result;
     }
 
@@ -111,6 +215,7 @@ public class FilterFactory {
             }
         }
         result.normalize();
+        result.setKey("g1(" + sigma + ", " + factor + ", " + theta + ")");
         return result;
     }
 
@@ -146,6 +251,7 @@ public class FilterFactory {
             }
         }
         result.normalize();
+        result.setKey("g2(" + sigma + ", " + factor + ", " + theta + ")");
         return result;
     }
 
@@ -184,6 +290,7 @@ public class FilterFactory {
             }
         }
         result.normalize();
+        result.setKey("h2(" + sigma + ", " + factor + ", " + theta + ")");
         return result;
     }
 }
\ No newline at end of file
@@ -1,24 +1,46 @@
 package org.jvnet.ixent.math.filters;
 
 import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.jvnet.ixent.algorithms.graphics.engine.npr.watercolor.Pigment;
 import org.jvnet.ixent.graphics.IndexBitmapObject;
+import org.jvnet.ixent.util.BandExecutor;
+import org.jvnet.ixent.util.BandExecutor.BandTask;
 
+/**
+ * Gaussian smoothing. The <code>int[][]</code> methods approximate the kernel
+ * with power-of-two weights (note that the weights don't add up to one - for
+ * example, they add up to 1.25 for sigma 1 and size 2), and the edge
+ * detectors are tuned to this approximation. The RGB and image methods
+ * convolve with the exact normalized kernel as two separable 1-D passes in
+ * <code>float</code>, processing bands of rows concurrently, so that the
+ * smoothed image keeps the brightness of the input image. Near the image
+ * borders the kernel is normalized over the pixels inside the image.
+ *
+ * @author Kirill Grouchnikov
+ */
 public class GaussConvolution {
 
 	private double[][] kernel;
 	private int[][] kernel_shift;
-	private double[] kernel_1d;
 	private int size;
 
+	/**
+	 * Normalized 1-D kernel. Each weight is the integral of the Gaussian over
+	 * the corresponding pixel
+	 */
+	private float[] kernel1D;
+
+	private int threadCount;
+
 	public GaussConvolution(double sigma, int size) {
 		this.size = size;
+		this.threadCount = Runtime.getRuntime().availableProcessors();
 		// compute the kernel
 		kernel = new double[2 * size + 1][2 * size + 1];
 		kernel_shift = new int[2 * size + 1][2 * size + 1];
-		int width = 2 * size + 1;
-		kernel_1d = new double[width * width];
 		double sigsig = sigma * sigma;
 		for (int x = -size; x <= size; x++) {
 			for (int y = -size; y <= size; y++) {
@@ -41,9 +63,53 @@ public class GaussConvolution {
 				kernel[x + size][y + size] = val;
 				kernel_shift[x + size][y + size] = (int) (Math.log(1.0 / val) / Math
 						.log(2.0));
-				kernel_1d[(y + size) * width + x + size] = val;
 			}
 		}
+
+		// compute the 1-D kernel with the same sampling over a pixel
+		this.kernel1D = new float[2 * size + 1];
+		double sum = 0.0;
+		double[] values = new double[2 * size + 1];
+		for (int x = -size; x <= size; x++) {
+			int count = 0;
+			double val = 0.0;
+			for (double subX = x - 0.5; subX < x + 0.51; subX += 0.1) {
+				val += Math.exp(-subX * subX / (2.0 * sigsig));
+				count++;
+			}
+			values[x + size] = val / count;
+			sum += values[x + size];
+		}
+		for (int i = 0; i < values.length; i++) {
+			this.kernel1D[i] = (float) (values[i] / sum);
+		}
+	}
+
+	/**
+	 * Get the normalized 1-D kernel of the exact smoothing. The 2-D kernel is
+	 * its outer product with itself
+	 * 
+	 * @return copy of the kernel, its center is at index <code>size</code>
+	 */
+	public float[] getKernel1D() {
+		return this.kernel1D.clone();
+	}
+
+	/**
+	 * Set number of threads for the RGB and image methods. By default, as many
+	 * threads as there are available processors are used.
+	 * 
+	 * @param pThreadCount
+	 *            number of threads
+	 * @throws IllegalArgumentException
+	 *             if the number of threads is not positive
+	 */
+	public void setThreadCount(int pThreadCount) {
+		if (pThreadCount < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be positive");
+		}
+		this.threadCount = pThreadCount;
 	}
 
 	public int pixelConvolution(int[][] bitmap, int width, int height, int x,
@@ -65,20 +131,65 @@ public class GaussConvolution {
 			endY = height - 1;
 		}
 		short val = 0;
-		int kernelIndex = 0;
 		for (int col = startX; col <= endX; col++) {
 			for (int row = startY; row <= endY; row++) {
 				int shift = kernel_shift[size + col - x][size + row - y];
 				if ((shift >= 0) && (shift < 8)) {
 					val += (bitmap[col][row] >>> shift);
 				}
-				// vald += (bitmap[col][row]*kernel_1d[kernelIndex]);
-				kernelIndex++;
 			}
 		}
 		return val;
 	}
 
+	/**
+	 * Convolve the red, green and blue channels of a packed RGB pixel with
+	 * the same approximated kernel as
+	 * {@link #pixelConvolution(int[][], int, int, int, int)}, in one pass
+	 * over the neighbourhood
+	 *
+	 * @param rgbs
+	 *            input pixels, row by row as returned by
+	 *            <code>BufferedImage.getRGB</code>
+	 * @param width
+	 *            raster width
+	 * @param height
+	 *            raster height
+	 * @param x
+	 *            pixel column
+	 * @param y
+	 *            pixel row
+	 * @param result
+	 *            array to store the smoothed red, green and blue values
+	 * @param offset
+	 *            index of the smoothed red value in the result array
+	 */
+	public void pixelConvolutionRGB(int[] rgbs, int width, int height, int x,
+			int y, int[] result, int offset) {
+		int startX = Math.max(0, x - this.size);
+		int endX = Math.min(width - 1, x + this.size);
+		int startY = Math.max(0, y - this.size);
+		int endY = Math.min(height - 1, y + this.size);
+		int red = 0;
+		int green = 0;
+		int blue = 0;
+		for (int row = startY; row <= endY; row++) {
+			int rowOffset = row * width;
+			for (int col = startX; col <= endX; col++) {
+				int shift = kernel_shift[size + col - x][size + row - y];
+				if ((shift >= 0) && (shift < 8)) {
+					int currRGB = rgbs[rowOffset + col];
+					red += ((currRGB & 0x00FF0000) >>> 16) >>> shift;
+					green += ((currRGB & 0x0000FF00) >>> 8) >>> shift;
+					blue += (currRGB & 0x000000FF) >>> shift;
+				}
+			}
+		}
+		result[offset] = red;
+		result[offset + 1] = green;
+		result[offset + 2] = blue;
+	}
+
 	public int[][] getSmoothedBitmap(int[][] bitmap, int width, int height) {
 		int[][] result = new int[width][height];
 		for (int x = 0; x < width; x++) {
@@ -95,6 +206,136 @@ public class GaussConvolution {
 				inputImage.getWidth(), inputImage.getHeight());
 	}
 
+	/**
+	 * Convolve a raster of interleaved channels with the exact kernel: first
+	 * along the rows, then along the columns
+	 * 
+	 * @param source
+	 *            source raster, row by row
+	 * @param width
+	 *            raster width
+	 * @param height
+	 *            raster height
+	 * @param channels
+	 *            number of interleaved channels
+	 * @return smoothed raster
+	 */
+	private float[] convolveSeparable(final float[] source, final int width,
+			final int height, final int channels) {
+		final float[] kernel = this.kernel1D;
+		final int radius = this.size;
+		final int rowLength = width * channels;
+		final float[] horizontal = new float[height * rowLength];
+		final float[] result = new float[height * rowLength];
+
+		// both passes share the thread pool
+		final int bandCount = Math.min(this.threadCount, height);
+		ExecutorService executor = (bandCount > 1) ? Executors
+				.newFixedThreadPool(bandCount) : null;
+		try {
+			// horizontal pass
+			BandExecutor.processInBands(executor, height, bandCount,
+					new BandTask() {
+				public void process(int rowStart, int rowEnd) {
+					for (int row = rowStart; row < rowEnd; row++) {
+						int rowOffset = row * rowLength;
+						for (int col = 0; col < width; col++) {
+							int start = Math.max(0, col - radius);
+							int end = Math.min(width - 1, col + radius);
+							float norm = 0.0f;
+							for (int x = start; x <= end; x++) {
+								norm += kernel[x - col + radius];
+							}
+							for (int channel = 0; channel < channels; channel++) {
+								float sum = 0.0f;
+								int index = rowOffset + start * channels + channel;
+								for (int x = start; x <= end; x++) {
+									sum += kernel[x - col + radius] * source[index];
+									index += channels;
+								}
+								horizontal[rowOffset + col * channels + channel] = sum
+										/ norm;
+							}
+						}
+					}
+				}
+			});
+
+			// vertical pass - accumulate whole rows
+			BandExecutor.processInBands(executor, height, bandCount,
+					new BandTask() {
+				public void process(int rowStart, int rowEnd) {
+					for (int row = rowStart; row < rowEnd; row++) {
+						int rowOffset = row * rowLength;
+						int start = Math.max(0, row - radius);
+						int end = Math.min(height - 1, row + radius);
+						float norm = 0.0f;
+						for (int y = start; y <= end; y++) {
+							float weight = kernel[y - row + radius];
+							norm += weight;
+							int offset = y * rowLength;
+							for (int i = 0; i < rowLength; i++) {
+								result[rowOffset + i] += weight
+										* horizontal[offset + i];
+							}
+						}
+						float scale = 1.0f / norm;
+						for (int i = 0; i < rowLength; i++) {
+							result[rowOffset + i] *= scale;
+						}
+					}
+				}
+			});
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Smooth the red, green and blue channels of a packed RGB raster with the
+	 * exact kernel. The alpha channel of the result is opaque
+	 * 
+	 * @param rgbs
+	 *            input pixels, row by row as returned by
+	 *            <code>BufferedImage.getRGB</code>
+	 * @param width
+	 *            raster width
+	 * @param height
+	 *            raster height
+	 * @return smoothed pixels, row by row
+	 * @throws IllegalArgumentException
+	 *             if the raster is null or its size doesn't match the
+	 *             dimensions
+	 */
+	public int[] getSmoothedRGB(int[] rgbs, int width, int height) {
+		if (rgbs == null) {
+			throw new IllegalArgumentException("Can't pass null raster");
+		}
+		if (rgbs.length != width * height) {
+			throw new IllegalArgumentException("Raster size " + rgbs.length
+					+ " doesn't match " + width + "x" + height);
+		}
+		float[] channels = new float[3 * rgbs.length];
+		for (int i = 0; i < rgbs.length; i++) {
+			int currColor = rgbs[i];
+			channels[3 * i] = (currColor & 0x00FF0000) >> 16;
+			channels[3 * i + 1] = (currColor & 0x0000FF00) >> 8;
+			channels[3 * i + 2] = currColor & 0x000000FF;
+		}
+		float[] smoothed = this.convolveSeparable(channels, width, height, 3);
+		int[] result = new int[rgbs.length];
+		for (int i = 0; i < rgbs.length; i++) {
+			int red = Math.min(255, Math.round(smoothed[3 * i]));
+			int green = Math.min(255, Math.round(smoothed[3 * i + 1]));
+			int blue = Math.min(255, Math.round(smoothed[3 * i + 2]));
+			result[i] = (255 << 24) | (red << 16) | (green << 8) | blue;
+		}
+		return result;
+	}
+
 	public IndexBitmapObject getChannel(BufferedImage bImage,
 			Pigment.Component component) {
 		int width = bImage.getWidth();
@@ -150,11 +391,24 @@ public class GaussConvolution {
 		return result;
 	}
 
+	/**
+	 * Smooth the image with the exact kernel. Unlike the channels smoothed by
+	 * {@link #getSmoothedBitmap(int[][], int, int)}, the result is not
+	 * brightened by the gain of the approximated kernel (about 1.22 for sigma
+	 * 2 and size 3), so a uniform area keeps its color
+	 * 
+	 * @param inputImage
+	 *            input image
+	 * @return smoothed opaque image
+	 */
 	public BufferedImage getSmoothedImage(BufferedImage inputImage) {
-		return this.getBufferedImage(this.getSmoothedBitmap(getChannel(
-				inputImage, Pigment.Component.red)), this
-				.getSmoothedBitmap(this.getChannel(inputImage,
-						Pigment.Component.green)), this.getSmoothedBitmap(this
-				.getChannel(inputImage, Pigment.Component.blue)));
+		int width = inputImage.getWidth();
+		int height = inputImage.getHeight();
+		int[] smoothed = this.getSmoothedRGB(inputImage.getRGB(0, 0, width,
+				height, null, 0, width), width, height);
+		BufferedImage result = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_ARGB);
+		result.setRGB(0, 0, width, height, smoothed, 0, width);
+		return result;
 	}
 }
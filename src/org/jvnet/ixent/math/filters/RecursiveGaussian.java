@@ -0,0 +1,232 @@
+package org.jvnet.ixent.math.filters;
+
+/**
+ * Recursive (IIR) Gaussian filter as described in <i>"Recursive
+ * implementation of the Gaussian filter"</i> by Ian T. Young and Lucas J. van
+ * Vliet. Each 1-D pass is a third-order causal recursion followed by a
+ * third-order anti-causal recursion, so that the cost per pixel doesn't depend
+ * on sigma (unlike the kernels of {@link FilterFactory} and
+ * {@link GaussConvolution} that grow with sigma). The image is extended beyond
+ * its borders by replicating the border pixels; the anti-causal recursion is
+ * initialized as described in <i>"Boundary conditions for Young - van Vliet
+ * recursive filtering"</i> by Bill Triggs and Michael Sdika.
+ * <p>
+ * The first and second derivatives are computed as central differences of the
+ * smoothed signal. This is accurate for the large scales that this filter is
+ * meant for; for sigma below 1 prefer the explicit kernels.
+ * <p>
+ * All rasters are stored row by row - the value of pixel at
+ * <code>(col, row)</code> is at <code>row*width+col</code>.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class RecursiveGaussian {
+    /**
+     * Smallest sigma for which the recursion coefficients are defined
+     */
+    public static final double MIN_SIGMA = 0.5;
+
+    private double sigma;
+
+    /**
+     * Gain of the recursion
+     */
+    private double gain;
+
+    /**
+     * Feedback coefficients of the recursion (normalized by b0)
+     */
+    private double b1, b2, b3;
+
+    /**
+     * Triggs - Sdika matrix that gives the anti-causal output at the last
+     * element and the two values after it from the last three causal outputs
+     */
+    private double[][] boundary;
+
+    /**
+     * @param sigma standard deviation of the Gaussian
+     * @throws IllegalArgumentException if sigma is less than {@link
+     *                                  #MIN_SIGMA}
+     */
+    public RecursiveGaussian(double sigma) {
+        if (sigma < MIN_SIGMA) {
+            throw new IllegalArgumentException("Sigma " + sigma
+                    + " is less than " + MIN_SIGMA);
+        }
+        this.sigma = sigma;
+
+        double q;
+        if (sigma >= 2.5) {
+            q = 0.98711 * sigma - 0.96330;
+        }
+        else {
+            q = 3.97156 - 4.14554 * Math.sqrt(1.0 - 0.26891 * sigma);
+        }
+        double qq = q * q;
+        double qqq = qq * q;
+        double b0 = 1.57825 + 2.44413 * q + 1.4281 * qq + 0.422205 * qqq;
+        this.b1 = (2.44413 * q + 2.85619 * qq + 1.26661 * qqq) / b0;
+        this.b2 = -(1.4281 * qq + 1.26661 * qqq) / b0;
+        this.b3 = 0.422205 * qqq / b0;
+        this.gain = 1.0 - (this.b1 + this.b2 + this.b3);
+
+        double a1 = this.b1;
+        double a2 = this.b2;
+        double a3 = this.b3;
+        double c = 1.0 / ((1.0 + a1 - a2 + a3) * (1.0 + a2 + (a1 - a3) * a3));
+        this.boundary = new double[3][3];
+        this.boundary[0][0] = c * (-a3 * (a1 + a3) - a2 + 1.0);
+        this.boundary[0][1] = c * (a3 + a1) * (a2 + a3 * a1);
+        this.boundary[0][2] = c * a3 * (a1 + a3 * a2);
+        this.boundary[1][0] = c * (a1 + a3 * a2);
+        this.boundary[1][1] = c * (1.0 - a2) * (a2 + a3 * a1);
+        this.boundary[1][2] = c * a3 * (1.0 - a3 * a1 - a3 * a3 - a2);
+        this.boundary[2][0] = c * (a3 * a1 + a2 + a1 * a1 - a2 * a2);
+        this.boundary[2][1] = c * (a1 * a2 + a3 * a2 * a2 - a1 * a3 * a3
+                - a3 * a3 * a3 - a3 * a2 + a3);
+        this.boundary[2][2] = c * a3 * (a1 + a3 * a2);
+    }
+
+    /**
+     * @return standard deviation of the Gaussian
+     */
+    public double getSigma() {
+        return this.sigma;
+    }
+
+    /**
+     * Filter a 1-D line of the raster in place
+     *
+     * @param data   raster
+     * @param start  index of the first line element
+     * @param step   distance between two consecutive line elements
+     * @param length number of line elements
+     * @param order  derivative order (0, 1 or 2)
+     * @param buffer buffer of at least <code>length</code> elements
+     */
+    private void filterLine(float[] data, int start, int step, int length,
+                            int order, double[] buffer) {
+        double a1 = this.b1;
+        double a2 = this.b2;
+        double a3 = this.b3;
+        double gain = this.gain;
+
+        // causal pass - the signal before the line is the first element
+        double first = data[start];
+        double w1 = first, w2 = first, w3 = first;
+        int index = start;
+        for (int i = 0; i < length; i++) {
+            double w = gain * data[index] + a1 * w1 + a2 * w2 + a3 * w3;
+            buffer[i] = w;
+            w3 = w2;
+            w2 = w1;
+            w1 = w;
+            index += step;
+        }
+
+        // anti-causal pass - the last element and the two values after it
+        // are computed for the signal after the line being the last element
+        double last = data[start + (length - 1) * step];
+        double u0 = buffer[length - 1] - last;
+        double u1 = ((length > 1) ? buffer[length - 2] : first) - last;
+        double u2 = ((length > 2) ? buffer[length - 3] : first) - last;
+        double[][] m = this.boundary;
+        double y1 = m[0][0] * u0 + m[0][1] * u1 + m[0][2] * u2 + last;
+        double y2 = m[1][0] * u0 + m[1][1] * u1 + m[1][2] * u2 + last;
+        double y3 = m[2][0] * u0 + m[2][1] * u1 + m[2][2] * u2 + last;
+        buffer[length - 1] = y1;
+        for (int i = length - 2; i >= 0; i--) {
+            double y = gain * buffer[i] + a1 * y1 + a2 * y2 + a3 * y3;
+            buffer[i] = y;
+            y3 = y2;
+            y2 = y1;
+            y1 = y;
+        }
+
+        // central differences for the derivatives
+        index = start;
+        for (int i = 0; i < length; i++) {
+            double prev = buffer[Math.max(0, i - 1)];
+            double next = buffer[Math.min(length - 1, i + 1)];
+            switch (order) {
+                case 0:
+                    data[index] = (float) buffer[i];
+                    break;
+                case 1:
+                    data[index] = (float) ((next - prev) / 2.0);
+                    break;
+                default:
+                    data[index] = (float) (next - 2.0 * buffer[i] + prev);
+            }
+            index += step;
+        }
+    }
+
+    /**
+     * Compute the smoothed raster or its partial derivative
+     *
+     * @param raster input values
+     * @param width  raster width
+     * @param height raster height
+     * @param orderX derivative order along the rows (0, 1 or 2)
+     * @param orderY derivative order along the columns (0, 1 or 2)
+     * @return filtered raster
+     * @throws IllegalArgumentException if the raster is null, its size
+     *                                  doesn't match the dimensions or the
+     *                                  total derivative order is more than 2
+     */
+    public float[] getDerivative(float[] raster, int width, int height,
+                                 int orderX, int orderY) {
+        if (raster == null) {
+            throw new IllegalArgumentException("Can't pass null raster");
+        }
+        if (raster.length != width * height) {
+            throw new IllegalArgumentException("Raster size " + raster.length
+                    + " doesn't match " + width + "x" + height);
+        }
+        if ((orderX < 0) || (orderY < 0) || ((orderX + orderY) > 2)) {
+            throw new IllegalArgumentException("Derivative order (" + orderX
+                    + ", " + orderY + ") is not supported");
+        }
+
+        float[] result = raster.clone();
+        if (result.length == 0) {
+            return result;
+        }
+        double[] buffer = new double[Math.max(width, height)];
+        for (int row = 0; row < height; row++) {
+            this.filterLine(result, row * width, 1, width, orderX, buffer);
+        }
+        for (int col = 0; col < width; col++) {
+            this.filterLine(result, col, width, height, orderY, buffer);
+        }
+        return result;
+    }
+
+    /**
+     * @param raster input values
+     * @param width  raster width
+     * @param height raster height
+     * @return smoothed raster
+     * @throws IllegalArgumentException if the raster is null or its size
+     *                                  doesn't match the dimensions
+     */
+    public float[] getSmoothedRaster(float[] raster, int width, int height) {
+        return this.getDerivative(raster, width, height, 0, 0);
+    }
+
+    /**
+     * @param raster input values
+     * @param width  raster width
+     * @param height raster height
+     * @return first derivatives of the smoothed raster: along the rows
+     *         (index 0) and along the columns (index 1)
+     * @throws IllegalArgumentException if the raster is null or its size
+     *                                  doesn't match the dimensions
+     */
+    public float[][] getGradient(float[] raster, int width, int height) {
+        return new float[][]{this.getDerivative(raster, width, height, 1, 0),
+                             this.getDerivative(raster, width, height, 0, 1)};
+    }
+}
@@ -0,0 +1,252 @@
+package org.jvnet.ixent.math.filters;
+
+import java.util.Arrays;
+
+import org.jvnet.ixent.graphics.IndexBitmapObject;
+import org.jvnet.ixent.math.matrix.FeatureMatrix;
+
+/**
+ * Steerable alternative to the filter bank of {@link FilterBank}, after
+ * <i>"The design and use of steerable filters"</i> by William T. Freeman and
+ * Edward H. Adelson. At each scale only the basis filters are convolved: two
+ * first derivatives (G1) and three second derivatives (G2) of an isotropic
+ * Gaussian. The response at orientation theta is a linear combination of the
+ * basis responses at the same pixel:
+ * <ul>
+ * <li>G1: <code>c*Gx + s*Gy</code></li>
+ * <li>G2: <code>c*c*Gxx + 2*c*s*Gxy + s*s*Gyy</code></li>
+ * </ul>
+ * where <code>c=cos(theta)</code> and <code>s=sin(theta)</code>. The number of
+ * convolutions doesn't depend on the number of orientations.
+ * <p/>
+ * Note that the features are different from those of {@link FilterBank}. The
+ * oriented filters of {@link FilterBank} are elongated, rectified and
+ * normalized, and so are not steerable. The oriented filters of this bank are
+ * the isotropic derivatives of
+ * {@link FilterFactory#getOrientedGaussianDerivative(double, int, double)},
+ * which are steered exactly. The regular Gaussians and the differences of
+ * Gaussians are the same in both banks.
+ * <p/>
+ * The basis responses are computed either by convolving the sampled
+ * derivative filters or (see {@link #setRecursive(boolean)}) with
+ * {@link RecursiveGaussian}, whose cost per pixel doesn't depend on sigma.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class SteerableFilterBank {
+    /**
+     * Number of basis filters at each scale
+     */
+    private static final int BASIS_PER_SCALE = 5;
+
+    private int countRegular;
+
+    private int countDifference;
+
+    private int countOrientations;
+
+    private int countScales;
+
+    /**
+     * Sigma of each scale of G1 and G2
+     */
+    private double[] sigmas;
+
+    private boolean isRecursive;
+
+    /**
+     * Regular Gaussians, differences of Gaussians and then Gx, Gy, Gxx, Gxy,
+     * Gyy for each scale
+     */
+    private Filter[] basisFilters;
+
+    /**
+     * The parameters have the same meaning as in {@link
+     * FilterBank#getFilters(double, double, int, int, int, int)}
+     *
+     * @param sigmaStart        sigma of the first scale
+     * @param sigmaDelta        sigma difference between two consecutive
+     *                          scales
+     * @param countRegular      number of regular Gaussians
+     * @param countDifference   number of differences of Gaussians
+     * @param countOrientations number of orientations of G1 and G2
+     * @param countScales       number of scales of G1 and G2
+     */
+    public SteerableFilterBank(double sigmaStart, double sigmaDelta,
+                               int countRegular, int countDifference,
+                               int countOrientations, int countScales) {
+        this.countRegular = countRegular;
+        this.countDifference = countDifference;
+        this.countOrientations = countOrientations;
+        this.countScales = countScales;
+        this.sigmas = new double[countScales];
+
+        this.basisFilters = new Filter[countRegular + countDifference
+                + BASIS_PER_SCALE * countScales];
+        int count = 0;
+        for (int i = 0; i < countRegular; i++) {
+            this.basisFilters[count++] = FilterFactory.getGaussianRegular(
+                    sigmaStart + i * sigmaDelta);
+        }
+        for (int i = 0; i < countDifference; i++) {
+            this.basisFilters[count++] = FilterFactory.getDOOGFilter(
+                    sigmaStart + i * sigmaDelta, 2.0);
+        }
+        for (int sc = 0; sc < countScales; sc++) {
+            double sigma = sigmaStart + sc * sigmaDelta;
+            this.sigmas[sc] = sigma;
+            this.basisFilters[count++] = FilterFactory.getGaussianDerivative(
+                    sigma, 1, 0);
+            this.basisFilters[count++] = FilterFactory.getGaussianDerivative(
+                    sigma, 0, 1);
+            this.basisFilters[count++] = FilterFactory.getGaussianDerivative(
+                    sigma, 2, 0);
+            this.basisFilters[count++] = FilterFactory.getGaussianDerivative(
+                    sigma, 1, 1);
+            this.basisFilters[count++] = FilterFactory.getGaussianDerivative(
+                    sigma, 0, 2);
+        }
+    }
+
+    /**
+     * Set whether the derivative basis responses are computed with
+     * {@link RecursiveGaussian} instead of convolving the sampled derivative
+     * filters. The recursive derivatives are central differences of the
+     * smoothed image, and the image is extended beyond its borders by
+     * replicating the border pixels (instead of zeros), so the responses are
+     * close to the convolved ones only away from the borders. Off by default.
+     *
+     * @param pIsRecursive if <code>true</code>, the derivatives are computed
+     *                     recursively
+     * @throws IllegalArgumentException if a scale is less than {@link
+     *                                  RecursiveGaussian#MIN_SIGMA}
+     */
+    public void setRecursive(boolean pIsRecursive) {
+        if (pIsRecursive) {
+            for (double sigma : this.sigmas) {
+                if (sigma < RecursiveGaussian.MIN_SIGMA) {
+                    throw new IllegalArgumentException("Sigma " + sigma
+                            + " is less than " + RecursiveGaussian.MIN_SIGMA);
+                }
+            }
+        }
+        this.isRecursive = pIsRecursive;
+    }
+
+    /**
+     * @return filters that are actually convolved (unless the derivatives
+     *         are computed recursively)
+     */
+    public Filter[] getBasisFilters() {
+        return this.basisFilters.clone();
+    }
+
+    /**
+     * @return number of responses at each pixel
+     */
+    public int getResponseCount() {
+        return this.countRegular + this.countDifference + 2
+                * this.countOrientations * this.countScales;
+    }
+
+    /**
+     * Convolve the image with the basis filters and synthesize the oriented
+     * responses. The responses are in the same order as the filters of
+     * {@link FilterBank#getFilters(double, double, int, int, int, int)}:
+     * regular Gaussians, differences of Gaussians and then G1 and G2 for each
+     * orientation and scale.
+     *
+     * @param convolver convolver of the image
+     * @param layout    layout of the result
+     * @return responses - the sample of pixel <code>(col, row)</code> is
+     *         <code>row*width+col</code>
+     */
+    public FeatureMatrix getFeatureMatrix(Convolver convolver,
+                                          FeatureMatrix.Layout layout) {
+        FeatureMatrix basis = this.isRecursive ? this
+                .getRecursiveBasis(convolver) : convolver.getFeatureMatrix(
+                this.basisFilters, FeatureMatrix.Layout.PLANAR);
+        int sampleCount = basis.getSampleCount();
+        FeatureMatrix result = new FeatureMatrix(sampleCount, this
+                .getResponseCount(), FeatureMatrix.Layout.PLANAR);
+        float[] basisData = basis.getData();
+        float[] resultData = result.getData();
+
+        // regular Gaussians and differences of Gaussians are used as is
+        int nonOriented = this.countRegular + this.countDifference;
+        System.arraycopy(basisData, 0, resultData, 0, nonOriented
+                * sampleCount);
+
+        // steer G1 and G2
+        double angleDelta = 180.0 / this.countOrientations;
+        int count = nonOriented;
+        for (int or = 0; or < this.countOrientations; or++) {
+            double theta = or * angleDelta * Math.PI / 180.0;
+            double c = Math.cos(theta);
+            double s = Math.sin(theta);
+            for (int sc = 0; sc < this.countScales; sc++) {
+                int gx = basis.getIndex(0, nonOriented + BASIS_PER_SCALE * sc);
+                int gy = gx + sampleCount;
+                int gxx = gy + sampleCount;
+                int gxy = gxx + sampleCount;
+                int gyy = gxy + sampleCount;
+                int g1 = result.getIndex(0, count++);
+                int g2 = result.getIndex(0, count++);
+                for (int i = 0; i < sampleCount; i++) {
+                    resultData[g1 + i] = (float) (c * basisData[gx + i] + s
+                            * basisData[gy + i]);
+                    resultData[g2 + i] = (float) (c * c * basisData[gxx + i]
+                            + 2.0 * c * s * basisData[gxy + i] + s * s
+                            * basisData[gyy + i]);
+                }
+            }
+        }
+        return result.toLayout(layout);
+    }
+
+    /**
+     * Convolve the image with the regular Gaussians and the differences of
+     * Gaussians, and compute the derivative basis with {@link
+     * RecursiveGaussian}
+     *
+     * @param convolver convolver of the image
+     * @return basis responses in planar layout
+     */
+    private FeatureMatrix getRecursiveBasis(Convolver convolver) {
+        int nonOriented = this.countRegular + this.countDifference;
+        FeatureMatrix convolved = convolver.getFeatureMatrix(Arrays.copyOf(
+                this.basisFilters, nonOriented), FeatureMatrix.Layout.PLANAR);
+        int sampleCount = convolved.getSampleCount();
+        FeatureMatrix result = new FeatureMatrix(sampleCount,
+                this.basisFilters.length, FeatureMatrix.Layout.PLANAR);
+        float[] resultData = result.getData();
+        System.arraycopy(convolved.getData(), 0, resultData, 0, nonOriented
+                * sampleCount);
+
+        // the samples are row by row, as the rasters of the recursive filter
+        IndexBitmapObject image = convolver.getImage();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        float[] raster = new float[sampleCount];
+        for (int col = 0; col < width; col++) {
+            for (int row = 0; row < height; row++) {
+                raster[row * width + col] = image.getValue(col, row);
+            }
+        }
+        // Gx, Gy, Gxx, Gxy, Gyy
+        int[] ordersX = new int[]{1, 0, 2, 1, 0};
+        int[] ordersY = new int[]{0, 1, 0, 1, 2};
+        for (int sc = 0; sc < this.countScales; sc++) {
+            RecursiveGaussian gaussian = new RecursiveGaussian(
+                    this.sigmas[sc]);
+            for (int i = 0; i < BASIS_PER_SCALE; i++) {
+                float[] derivative = gaussian.getDerivative(raster, width,
+                        height, ordersX[i], ordersY[i]);
+                System.arraycopy(derivative, 0, resultData, result.getIndex(
+                        0, nonOriented + BASIS_PER_SCALE * sc + i),
+                        sampleCount);
+            }
+        }
+        return result;
+    }
+}
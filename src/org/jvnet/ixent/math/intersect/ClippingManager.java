@@ -3,6 +3,7 @@ package org.jvnet.ixent.math.intersect;
 import java.awt.geom.Point2D;
 
 import org.jvnet.ixent.math.coord.Polygon2D;
+import org.jvnet.ixent.math.coord.PolygonBuffer;
 import org.jvnet.ixent.math.coord.Vertex2D;
 
 public final class ClippingManager {
@@ -165,6 +166,91 @@ public final class ClippingManager {
         return outFinalPolygon;
     }
 
+    // same as clip() on flat coordinate arrays (x0, y0, x1, y1, ...). The
+    // output array must have room for twice as many points as the input.
+    // Returns the number of output points.
+    private static int clip(double[] in, int inCount, double[] out,
+                            double bndry, int side) {
+        int outCount = 0;
+        if (inCount == 0) {
+            return 0;
+        }
+        // the coordinate compared with the boundary (0 - x, 1 - y)
+        int axis = ((side == 0) || (side == 2)) ? 1 : 0;
+        // top and left sides keep the points above the boundary
+        boolean keepAbove = (side == 0) || (side == 3);
+
+        double sx = in[2 * inCount - 2];
+        double sy = in[2 * inCount - 1];
+        double sValue = (axis == 0) ? sx : sy;
+        boolean sInside = keepAbove ? (sValue >= bndry) : (sValue <= bndry);
+        for (int j = 0; j < inCount; j++) {
+            double px = in[2 * j];
+            double py = in[2 * j + 1];
+            double pValue = (axis == 0) ? px : py;
+            boolean pInside = keepAbove ? (pValue >= bndry)
+                    : (pValue <= bndry);
+            if (pInside != sInside) {
+                // the s-p segment crosses the boundary
+                double ix, iy;
+                if (axis == 1) {
+                    iy = bndry;
+                    ix = (sx == px) ? sx : sx + (px - sx) * (bndry - sy)
+                            / (py - sy);
+                }
+                else {
+                    ix = bndry;
+                    iy = (sy == py) ? sy : sy + (py - sy) * (bndry - sx)
+                            / (px - sx);
+                }
+                out[2 * outCount] = ix;
+                out[2 * outCount + 1] = iy;
+                outCount++;
+            }
+            if (pInside) {
+                out[2 * outCount] = px;
+                out[2 * outCount + 1] = py;
+                outCount++;
+            }
+            sx = px;
+            sy = py;
+            sInside = pInside;
+        }
+        return outCount;
+    }
+
+    // function to clip a closed polygon given as flat coordinate array
+    // (x0, y0, x1, y1, ...) against the 4 sides of the rectangle (given by TL
+    // and BR points). the clipped polygon is added to the buffer, with no
+    // points if it lies outside the rectangle
+    public static void clipPolygon(double[] coordinates, int offset,
+                                   int pointCount, Point2D topLeftPoint,
+                                   Point2D bottomRightPoint,
+                                   PolygonBuffer result) {
+        double[] in = new double[2 * pointCount];
+        System.arraycopy(coordinates, 2 * offset, in, 0, 2 * pointCount);
+        double[] out = new double[4 * pointCount];
+        int count = pointCount;
+        double[] bndries = new double[]{topLeftPoint.getY(),
+                                        bottomRightPoint.getX(),
+                                        bottomRightPoint.getY(),
+                                        topLeftPoint.getX()};
+        for (int side = 0; side < 4; side++) {
+            // each pass may at most double the number of points
+            if (out.length < 4 * count) {
+                out = new double[4 * count];
+            }
+            count = clip(in, count, out, bndries[side], side);
+            double[] temp = in;
+            in = out;
+            out = temp;
+        }
+        for (int i = 0; i < count; i++) {
+            result.addPoint(in[2 * i], in[2 * i + 1]);
+        }
+        result.endPolygon();
+    }
+
     private static double triangleArea(Vertex2D p1, Vertex2D p2, Vertex2D p3) {
         double d12 = p1.distance(p2);
         double d13 = p1.distance(p3);
@@ -0,0 +1,180 @@
+package org.jvnet.ixent.math.matrix;
+
+/**
+ * Matrix of feature vectors (such as filter responses of the image pixels)
+ * stored in a single contiguous <code>float</code> array. Each row is the
+ * feature vector of a single sample.
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class FeatureMatrix {
+    /**
+     * Layout of the values in the array
+     */
+    public enum Layout {
+        /**
+         * The features of each sample are contiguous - value of feature
+         * <code>f</code> of sample <code>s</code> is at
+         * <code>s*dimensionality+f</code>
+         */
+        INTERLEAVED,
+        /**
+         * Each feature is a contiguous plane - value of feature
+         * <code>f</code> of sample <code>s</code> is at
+         * <code>f*sampleCount+s</code>
+         */
+        PLANAR
+    }
+
+    private int sampleCount;
+
+    private int dimensionality;
+
+    private Layout layout;
+
+    private float[] data;
+
+    /**
+     * Distance between the values of two consecutive samples of the same
+     * feature
+     */
+    private int sampleStride;
+
+    /**
+     * Distance between the values of two consecutive features of the same
+     * sample
+     */
+    private int featureStride;
+
+    /**
+     * @param sampleCount    number of samples
+     * @param dimensionality number of features of each sample
+     * @param layout         layout of the values
+     * @throws IllegalArgumentException if the layout is null or the sizes
+     *                                  are negative
+     */
+    public FeatureMatrix(int sampleCount, int dimensionality, Layout layout) {
+        if (layout == null) {
+            throw new IllegalArgumentException("Can't pass null layout");
+        }
+        if ((sampleCount < 0) || (dimensionality < 0)) {
+            throw new IllegalArgumentException("Negative matrix size");
+        }
+        this.sampleCount = sampleCount;
+        this.dimensionality = dimensionality;
+        this.layout = layout;
+        this.data = new float[sampleCount * dimensionality];
+        if (layout == Layout.INTERLEAVED) {
+            this.sampleStride = dimensionality;
+            this.featureStride = 1;
+        }
+        else {
+            this.sampleStride = 1;
+            this.featureStride = sampleCount;
+        }
+    }
+
+    /**
+     * @return number of samples
+     */
+    public int getSampleCount() {
+        return this.sampleCount;
+    }
+
+    /**
+     * @return number of features of each sample
+     */
+    public int getDimensionality() {
+        return this.dimensionality;
+    }
+
+    /**
+     * @return layout of the values
+     */
+    public Layout getLayout() {
+        return this.layout;
+    }
+
+    /**
+     * @return the underlying array (not a copy)
+     */
+    public float[] getData() {
+        return this.data;
+    }
+
+    /**
+     * @param sample  sample index
+     * @param feature feature index
+     * @return index of the value in the underlying array
+     */
+    public int getIndex(int sample, int feature) {
+        return sample * this.sampleStride + feature * this.featureStride;
+    }
+
+    /**
+     * @param sample  sample index
+     * @param feature feature index
+     * @return the value
+     */
+    public float get(int sample, int feature) {
+        return this.data[sample * this.sampleStride + feature
+                * this.featureStride];
+    }
+
+    /**
+     * @param sample  sample index
+     * @param feature feature index
+     * @param value   new value
+     */
+    public void set(int sample, int feature, float value) {
+        this.data[sample * this.sampleStride + feature * this.featureStride] =
+                value;
+    }
+
+    /**
+     * @param pLayout layout of the result
+     * @return this matrix if it already has the specified layout, otherwise
+     *         a copy of this matrix in the specified layout
+     */
+    public FeatureMatrix toLayout(Layout pLayout) {
+        if (pLayout == this.layout) {
+            return this;
+        }
+        FeatureMatrix result = new FeatureMatrix(this.sampleCount,
+                this.dimensionality, pLayout);
+        int index = 0;
+        if (pLayout == Layout.INTERLEAVED) {
+            for (int sample = 0; sample < this.sampleCount; sample++) {
+                for (int feature = 0; feature < this.dimensionality; feature++) {
+                    result.data[index++] = this.get(sample, feature);
+                }
+            }
+        }
+        else {
+            for (int feature = 0; feature < this.dimensionality; feature++) {
+                for (int sample = 0; sample < this.sampleCount; sample++) {
+                    result.data[index++] = this.get(sample, feature);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute squared distance between a sample and a point
+     *
+     * @param sample sample index
+     * @param point  point coordinates (at least <code>dimensionality</code>)
+     * @return squared distance
+     */
+    public double dist2(int sample, double[] point) {
+        double result = 0.0;
+        int index = sample * this.sampleStride;
+        for (int feature = 0; feature < this.dimensionality; feature++) {
+            double diff = this.data[index] - point[feature];
+            result += diff * diff;
+            index += this.featureStride;
+        }
+        return result;
+    }
+}
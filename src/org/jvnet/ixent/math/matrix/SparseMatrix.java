@@ -192,6 +192,44 @@ public class SparseMatrix extends AbstractMatrix {
         }
     }
 
+    /**
+     * Replaces all values of the specified row. Only this row is changed, so
+     * different rows may be set concurrently
+     *
+     * @param row     row index
+     * @param columns columns of the values (distinct, not necessarily
+     *                sorted)
+     * @param values  values
+     * @param count   number of values to take from <b>columns</b> and
+     *                <b>values</b>
+     */
+    public void setRow(int row, int[] columns, double[] values, int count) {
+        if (count == 0) {
+            this.columnIndices[row] = null;
+            this.nzValues[row] = null;
+            this.nzCounters[row] = 0;
+            return;
+        }
+        int[] newColumnIndices = new int[count];
+        double[] newNzValues = new double[count];
+        // insertion sort by column - the rows are short
+        for (int i = 0; i < count; i++) {
+            int column = columns[i];
+            double value = values[i];
+            int j = i;
+            while ((j > 0) && (newColumnIndices[j - 1] > column)) {
+                newColumnIndices[j] = newColumnIndices[j - 1];
+                newNzValues[j] = newNzValues[j - 1];
+                j--;
+            }
+            newColumnIndices[j] = column;
+            newNzValues[j] = value;
+        }
+        this.columnIndices[row] = newColumnIndices;
+        this.nzValues[row] = newNzValues;
+        this.nzCounters[row] = count;
+    }
+
     /**
      * Dump to standard output
      */
@@ -404,6 +442,39 @@ public class SparseMatrix extends AbstractMatrix {
         return allNz;
     }
 
+    /**
+     * Returns the count of non zero values in given row
+     *
+     * @param row row index
+     * @return non-zero values count
+     */
+    public int getNzCountInRow(int row) {
+        return this.nzCounters[row];
+    }
+
+    /**
+     * Returns the column corresponding to non-zero value number <b>index</b>.
+     * The non-zero values of each row are sorted by their columns
+     *
+     * @param row   row index
+     * @param index non-zero column index
+     * @return column
+     */
+    public int getColumnByIndex(int row, int index) {
+        return this.columnIndices[row][index];
+    }
+
+    /**
+     * Returns the value corresponding to non-zero value number <b>index</b>
+     *
+     * @param row   row index
+     * @param index non-zero column index
+     * @return value
+     */
+    public double getValueByIndex(int row, int index) {
+        return this.nzValues[row][index];
+    }
+
     /**
      * Normalize all values to be in 0.0-1.0 range
      */
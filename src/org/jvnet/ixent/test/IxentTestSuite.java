@@ -11,7 +11,19 @@ public class IxentTestSuite {
         TestSuite ts = new TestSuite();
         ts.addTestSuite(TestSegments.class);
         ts.addTestSuite(TestSquares.class);
+        ts.addTestSuite(TestSquareIndex.class);
+        ts.addTestSuite(TestMosaic.class);
         ts.addTestSuite(TestMatrix.class);
+        ts.addTestSuite(TestWatercolorPrecision.class);
+        ts.addTestSuite(TestWatercolorCheckpoint.class);
+        ts.addTestSuite(TestDelaunay.class);
+        ts.addTestSuite(TestAMGSegmentation.class);
+        ts.addTestSuite(TestVoronoi.class);
+        ts.addTestSuite(TestPoissonDisk.class);
+        ts.addTestSuite(TestGaussConvolution.class);
+        ts.addTestSuite(TestConvolver.class);
+        ts.addTestSuite(TestSteerableFilterBank.class);
+        ts.addTestSuite(TestRecursiveGaussian.class);
         return ts;
     }
 
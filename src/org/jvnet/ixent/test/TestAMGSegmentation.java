@@ -0,0 +1,92 @@
+package org.jvnet.ixent.test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.algorithms.graphics.segmentation.multiscale.AMGSegmentator;
+import org.jvnet.ixent.algorithms.graphics.segmentation.multiscale.CoarsenerFactory;
+import org.jvnet.ixent.algorithms.graphics.segmentation.multiscale.SimpleCoarsener;
+
+/**
+ * Validates the AMG segmentation against the output of the sequential
+ * implementation.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestAMGSegmentation extends TestCase {
+    private static final int WIDTH = 60;
+    private static final int HEIGHT = 40;
+
+    /**
+     * Number of segments of the input image
+     */
+    private static final int SEGMENT_COUNT = 10;
+
+    /**
+     * Hash of the segment bitmap computed by the sequential implementation
+     */
+    private static final long SEGMENTATION_HASH = 6291501576180964438L;
+
+    public TestAMGSegmentation(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+        CoarsenerFactory.instance = new SimpleCoarsener();
+    }
+
+    /**
+     * Create grey image of diagonal stripes with a horizontal wave and noise
+     */
+    private BufferedImage createInputImage() {
+        BufferedImage result = new BufferedImage(WIDTH, HEIGHT,
+                BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(3);
+        for (int col = 0; col < WIDTH; col++) {
+            for (int row = 0; row < HEIGHT; row++) {
+                int base = ((col / 25) + (row / 20)) % 3 * 90
+                        + (int) (30 * Math.sin(col * 0.1));
+                int value = Math.max(0, Math.min(255, base
+                        + random.nextInt(10)));
+                result.setRGB(col, row, (value << 16) | (value << 8) | value);
+            }
+        }
+        return result;
+    }
+
+    private AMGSegmentator segment(int threadCount) {
+        AMGSegmentator segmentator = new AMGSegmentator();
+        segmentator.init(this.createInputImage());
+        segmentator.setThreadCount(threadCount);
+        segmentator.process(SEGMENT_COUNT);
+        return segmentator;
+    }
+
+    private static long getHash(int[][] bitmap) {
+        long result = 1;
+        for (int[] column : bitmap) {
+            for (int value : column) {
+                result = result * 31 + value;
+            }
+        }
+        return result;
+    }
+
+    public void testSequential() {
+        AMGSegmentator segmentator = this.segment(1);
+        assertEquals(SEGMENT_COUNT, segmentator.getSegmentationInfo()
+                .getNumberOfSegments());
+        assertEquals(SEGMENTATION_HASH, getHash(segmentator
+                .getSegmentationAreas().getBitmap()));
+    }
+
+    public void testParallel() {
+        AMGSegmentator segmentator = this.segment(3);
+        assertEquals(SEGMENT_COUNT, segmentator.getSegmentationInfo()
+                .getNumberOfSegments());
+        assertEquals(SEGMENTATION_HASH, getHash(segmentator
+                .getSegmentationAreas().getBitmap()));
+    }
+}
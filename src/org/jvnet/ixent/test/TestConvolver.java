@@ -0,0 +1,89 @@
+package org.jvnet.ixent.test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.graphics.IndexBitmapObject;
+import org.jvnet.ixent.math.filters.Convolver;
+import org.jvnet.ixent.math.filters.Filter;
+import org.jvnet.ixent.math.filters.FilterBank;
+import org.jvnet.ixent.math.matrix.FeatureMatrix;
+
+/**
+ * Validates the frequency domain convolution of {@link Convolver}.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestConvolver extends TestCase {
+    public TestConvolver(String name) {
+        super(name);
+    }
+
+    private IndexBitmapObject createImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        IndexBitmapObject result = new IndexBitmapObject(width, height);
+        for (int col = 0; col < width; col++) {
+            for (int row = 0; row < height; row++) {
+                result.setValue(col, row, random.nextInt(256));
+            }
+        }
+        return result;
+    }
+
+    private Filter[] getFilters() {
+        return FilterBank.getFilters(2.0, 1.0, 1, 2, 2, 2);
+    }
+
+    /**
+     * Compare the responses with the direct convolution of each pixel
+     */
+    private void checkDirect(IndexBitmapObject image, Filter[] filters,
+                             int threadCount) {
+        Convolver convolver = new Convolver(image);
+        convolver.setThreadCount(threadCount);
+        FeatureMatrix responses = convolver.getFeatureMatrix(filters,
+                FeatureMatrix.Layout.INTERLEAVED);
+        int width = image.getWidth();
+        for (int col = 0; col < width; col++) {
+            for (int row = 0; row < image.getHeight(); row++) {
+                for (int f = 0; f < filters.length; f++) {
+                    double direct = convolver.convolve(col, row, filters[f]);
+                    assertEquals("Filter " + f + " at " + col + ":" + row,
+                            direct, responses.get(row * width + col, f),
+                            1.0e-4 * Math.max(1.0, Math.abs(direct)));
+                }
+            }
+        }
+    }
+
+    public void testDirect() {
+        // wider than the largest tile, so that the tiles overlap
+        IndexBitmapObject image = this.createImage(300, 40, 46L);
+        this.checkDirect(image, this.getFilters(), 1);
+        this.checkDirect(image, this.getFilters(), 3);
+    }
+
+    public void testSpectrumCache() {
+        IndexBitmapObject image = this.createImage(90, 70, 146L);
+        Filter[] filters = this.getFilters();
+        Convolver convolver = new Convolver(image);
+
+        Convolver.clearSpectrumCache();
+        FeatureMatrix fresh = convolver.getFeatureMatrix(filters,
+                FeatureMatrix.Layout.PLANAR);
+        // the same filters created again have the same keys
+        FeatureMatrix cached = convolver.getFeatureMatrix(this.getFilters(),
+                FeatureMatrix.Layout.PLANAR);
+        float[] freshData = fresh.getData();
+        float[] cachedData = cached.getData();
+        assertEquals(freshData.length, cachedData.length);
+        for (int i = 0; i < freshData.length; i++) {
+            assertEquals("Response " + i, freshData[i], cachedData[i], 0.0f);
+        }
+
+        // the spectra are cached per transform size, which depends on the
+        // image size
+        this.checkDirect(this.createImage(600, 30, 246L), filters, 2);
+    }
+}
@@ -0,0 +1,419 @@
+package org.jvnet.ixent.test;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.algorithms.geometry.delaunay.*;
+import org.jvnet.ixent.algorithms.geometry.delaunay.locator.*;
+import org.jvnet.ixent.graphics.objects.Triangle;
+import org.jvnet.ixent.math.coord.Rectangle2D;
+import org.jvnet.ixent.math.coord.Vertex2D;
+import org.jvnet.ixent.util.LinearQuadTree;
+
+/**
+ * Validates the Delaunay triangulation managers.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestDelaunay extends TestCase {
+    private static final double SIZE = 1000.0;
+
+    public TestDelaunay(String name) {
+        super(name);
+    }
+
+    private Vertex2D[] createVertices(int count, long seed) {
+        Random random = new Random(seed);
+        Vertex2D[] result = new Vertex2D[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = new Vertex2D(SIZE * random.nextDouble(), SIZE
+                    * random.nextDouble());
+        }
+        return result;
+    }
+
+    private List<Triangle> triangulate(DelaunayManager manager,
+                                       Vertex2D[] vertices) {
+        manager.init(vertices);
+        return manager.getTriangulation();
+    }
+
+    private static String getKey(Vertex2D vertex) {
+        return vertex.getX() + ":" + vertex.getY();
+    }
+
+    private static String getKey(Vertex2D vertex1, Vertex2D vertex2) {
+        String key1 = getKey(vertex1);
+        String key2 = getKey(vertex2);
+        return (key1.compareTo(key2) < 0) ? key1 + "-" + key2 : key2 + "-"
+                + key1;
+    }
+
+    private static Vertex2D[] getVertices(Triangle triangle) {
+        return new Vertex2D[]{triangle.getVertex12(),
+                              triangle.getVertex23(),
+                              triangle.getVertex13()};
+    }
+
+    /**
+     * Return the set of triangles as vertex keys sorted inside each
+     * triangle, so that two triangulations can be compared
+     */
+    private Set<String> getTriangleKeys(List<Triangle> triangles) {
+        Set<String> result = new HashSet<String>();
+        for (Triangle triangle : triangles) {
+            Vertex2D[] vertices = getVertices(triangle);
+            String[] keys = new String[3];
+            for (int i = 0; i < 3; i++) {
+                keys[i] = getKey(vertices[i]);
+            }
+            Arrays.sort(keys);
+            assertTrue("Duplicate triangle", result.add(keys[0] + "/"
+                    + keys[1] + "/" + keys[2]));
+        }
+        return result;
+    }
+
+    /**
+     * Check that each triangle is covered by the vertices and that no
+     * vertex of a neighbouring triangle lies inside its circumcircle. The
+     * triangulation is Delaunay if and only if this holds for all the edges.
+     */
+    private void checkDelaunay(List<Triangle> triangles, Vertex2D[] vertices) {
+        Set<String> vertexKeys = new HashSet<String>();
+        for (Vertex2D vertex : vertices) {
+            vertexKeys.add(getKey(vertex));
+        }
+        Map<String, List<Vertex2D>> opposite = new HashMap<String, List<Vertex2D>>();
+        for (Triangle triangle : triangles) {
+            Vertex2D[] corners = getVertices(triangle);
+            for (int i = 0; i < 3; i++) {
+                assertTrue("Triangle vertex is not an input vertex",
+                        vertexKeys.contains(getKey(corners[i])));
+                String edgeKey = getKey(corners[i], corners[(i + 1) % 3]);
+                List<Vertex2D> edgeOpposite = opposite.get(edgeKey);
+                if (edgeOpposite == null) {
+                    edgeOpposite = new LinkedList<Vertex2D>();
+                    opposite.put(edgeKey, edgeOpposite);
+                }
+                edgeOpposite.add(corners[(i + 2) % 3]);
+                assertTrue("Edge shared by more than two triangles",
+                        edgeOpposite.size() <= 2);
+            }
+        }
+        for (Triangle triangle : triangles) {
+            assertTrue(triangle.isCircExists());
+            Point2D center = triangle.getCircCenter();
+            double radius = triangle.getCircRadius();
+            Vertex2D[] corners = getVertices(triangle);
+            for (int i = 0; i < 3; i++) {
+                for (Vertex2D vertex : opposite.get(getKey(corners[i],
+                        corners[(i + 1) % 3]))) {
+                    double dist = center.distance(vertex.getPoint());
+                    assertTrue("Vertex " + vertex + " inside circumcircle of "
+                            + triangle, dist > radius * (1.0 - 1.0e-9));
+                }
+            }
+        }
+    }
+
+    public void testParallel() {
+        Vertex2D[] vertices = this.createVertices(20000, 34L);
+        List<Triangle> sequential = this.triangulate(
+                new DelaunayManagerHalfEdge(), vertices);
+        DelaunayManagerParallel parallel = new DelaunayManagerParallel();
+        parallel.setThreadCount(3);
+        List<Triangle> result = this.triangulate(parallel, vertices);
+
+        this.checkDelaunay(result, vertices);
+        assertEquals(this.getTriangleKeys(sequential), this
+                .getTriangleKeys(result));
+    }
+
+    /**
+     * Triangulate the vertices with the specified point locator
+     */
+    private List<Triangle> triangulate(DelaunayManager manager,
+                                       PointLocator locator,
+                                       Vertex2D[] vertices) {
+        PointLocator oldLocator = PointLocatorFactory.instance;
+        PointLocatorFactory.instance = locator;
+        try {
+            return this.triangulate(manager, vertices);
+        } finally {
+            PointLocatorFactory.instance = oldLocator;
+        }
+    }
+
+    /**
+     * Check that each vertex is a vertex of some triangle
+     */
+    private void checkAllVerticesUsed(List<Triangle> triangles,
+                                      Vertex2D[] vertices) {
+        Set<String> usedKeys = new HashSet<String>();
+        for (Triangle triangle : triangles) {
+            for (Vertex2D vertex : getVertices(triangle)) {
+                usedKeys.add(getKey(vertex));
+            }
+        }
+        for (Vertex2D vertex : vertices) {
+            assertTrue("Vertex " + vertex + " is not triangulated", usedKeys
+                    .contains(getKey(vertex)));
+        }
+    }
+
+    public void testHalfEdge() {
+        Vertex2D[] vertices = this.createVertices(2000, 32L);
+        List<Triangle> reference = this.triangulate(
+                new DelaunayManagerWatson(), new PointLocatorHistoryDAG(),
+                vertices);
+        List<Triangle> result = this.triangulate(
+                new DelaunayManagerHalfEdge(), vertices);
+
+        this.checkDelaunay(result, vertices);
+        this.checkAllVerticesUsed(result, vertices);
+        // both managers drop some of the thin triangles along the convex
+        // hull (these have a vertex of the super triangle), and the
+        // reference drops more of them
+        assertTrue(this.getTriangleKeys(result).containsAll(
+                this.getTriangleKeys(reference)));
+    }
+
+    public void testHalfEdgeGrid() {
+        // co-circular vertices - any diagonal of each cell is valid
+        int side = 30;
+        Vertex2D[] vertices = new Vertex2D[side * side];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = new Vertex2D(10.0 * (i % side), 10.0 * (i / side));
+        }
+        List<Triangle> result = this.triangulate(
+                new DelaunayManagerHalfEdge(), vertices);
+
+        this.checkDelaunay(result, vertices);
+        this.checkAllVerticesUsed(result, vertices);
+        assertEquals(2 * (side - 1) * (side - 1), result.size());
+    }
+
+    public void testHilbertWalk() {
+        Vertex2D[] vertices = this.createVertices(2000, 33L);
+        List<Triangle> reference = this.triangulate(
+                new DelaunayManagerEdgeFlip(), new PointLocatorHistoryDAG(),
+                vertices);
+        List<Triangle> result = this.triangulate(
+                new DelaunayManagerEdgeFlip(), new PointLocatorHilbertWalk(),
+                vertices);
+        this.checkDelaunay(result, vertices);
+        assertEquals(this.getTriangleKeys(reference), this
+                .getTriangleKeys(result));
+
+        // the walk locator always returns the containing triangle, which is
+        // also valid for the managers that need any conflicting triangle
+        result = this.triangulate(new DelaunayManagerWatson(),
+                new PointLocatorHilbertWalk(), vertices);
+        this.checkDelaunay(result, vertices);
+        assertEquals(this.getTriangleKeys(reference), this
+                .getTriangleKeys(result));
+    }
+
+    public void testQuadTree() {
+        Vertex2D[] vertices = this.createVertices(2000, 39L);
+        List<Triangle> reference = this.triangulate(
+                new DelaunayManagerEdgeFlip(), new PointLocatorHistoryDAG(),
+                vertices);
+        // the edge flip manager locates the containing triangle, and the
+        // Watson manager any conflicting triangle
+        List<Triangle> result = this.triangulate(
+                new DelaunayManagerEdgeFlip(), new PointLocatorQuadTree(),
+                vertices);
+        this.checkDelaunay(result, vertices);
+        assertEquals(this.getTriangleKeys(reference), this
+                .getTriangleKeys(result));
+
+        result = this.triangulate(new DelaunayManagerWatson(),
+                new PointLocatorQuadTree(), vertices);
+        this.checkDelaunay(result, vertices);
+        assertEquals(this.getTriangleKeys(reference), this
+                .getTriangleKeys(result));
+    }
+
+    /**
+     * Check the triangle located by the quad tree against the scan of all
+     * the triangles in it
+     */
+    private void checkLocate(LinearQuadTree quadTree, Set<Triangle> live,
+                             Vertex2D point, boolean isExact) {
+        Triangle located = quadTree.locate(point);
+        boolean exists = false;
+        for (Triangle triangle : live) {
+            if (isExact ? triangle.isPointInside(point) : triangle
+                    .isPointInCircumcircle(point)) {
+                exists = true;
+                break;
+            }
+        }
+        if (located == null) {
+            assertFalse("No triangle located for " + point, exists);
+            return;
+        }
+        assertTrue("Located deleted triangle", live.contains(located));
+        assertTrue("Located triangle doesn't match " + point,
+                isExact ? located.isPointInside(point) : located
+                        .isPointInCircumcircle(point));
+    }
+
+    public void testQuadTreeLocate() {
+        Vertex2D[] vertices = this.createVertices(2000, 139L);
+        List<Triangle> triangles = this.triangulate(
+                new DelaunayManagerHalfEdge(), vertices);
+        Rectangle2D bounds = new Rectangle2D(0, 0, (int) SIZE, (int) SIZE);
+        Random random = new Random(239L);
+        for (boolean isExact : new boolean[]{true, false}) {
+            LinearQuadTree quadTree = new LinearQuadTree(bounds, 5, isExact);
+            Set<Triangle> live = new HashSet<Triangle>();
+            for (Triangle triangle : triangles) {
+                quadTree.insert(triangle);
+                live.add(triangle);
+            }
+            // delete every third triangle so that the freed slots are
+            // reused by the next insertions
+            int index = 0;
+            for (Triangle triangle : triangles) {
+                if ((index++ % 3) == 0) {
+                    quadTree.delete(triangle);
+                    live.remove(triangle);
+                }
+            }
+            index = 0;
+            for (Triangle triangle : triangles) {
+                if (((index++ % 6) == 0) && !live.contains(triangle)) {
+                    quadTree.insert(triangle);
+                    live.add(triangle);
+                }
+            }
+            assertEquals(live.size(), quadTree.size());
+
+            for (int i = 0; i < 5000; i++) {
+                this.checkLocate(quadTree, live, new Vertex2D(SIZE
+                        * random.nextDouble(), SIZE * random.nextDouble()),
+                        isExact);
+            }
+            for (Vertex2D vertex : vertices) {
+                this.checkLocate(quadTree, live, vertex, isExact);
+            }
+        }
+    }
+
+    public void testQuadTreeNearest() {
+        Vertex2D[] vertices = this.createVertices(2000, 339L);
+        List<Triangle> triangles = this.triangulate(
+                new DelaunayManagerHalfEdge(), vertices);
+        LinearQuadTree quadTree = new LinearQuadTree(new Rectangle2D(0, 0,
+                (int) SIZE, (int) SIZE), 5, true);
+        Map<String, Set<Vertex2D>> neighbours =
+                new HashMap<String, Set<Vertex2D>>();
+        for (Triangle triangle : triangles) {
+            quadTree.insert(triangle);
+            Vertex2D[] corners = getVertices(triangle);
+            for (int i = 0; i < 3; i++) {
+                String key = getKey(corners[i]);
+                Set<Vertex2D> vertexNeighbours = neighbours.get(key);
+                if (vertexNeighbours == null) {
+                    vertexNeighbours = new HashSet<Vertex2D>();
+                    neighbours.put(key, vertexNeighbours);
+                }
+                vertexNeighbours.add(corners[(i + 1) % 3]);
+                vertexNeighbours.add(corners[(i + 2) % 3]);
+            }
+        }
+
+        // the greedy walk along the Delaunay edges from a corner of the
+        // located triangle ends at the nearest vertex
+        Random random = new Random(439L);
+        int locatedCount = 0;
+        for (int i = 0; i < 5000; i++) {
+            Vertex2D point = new Vertex2D(SIZE * random.nextDouble(), SIZE
+                    * random.nextDouble());
+            Triangle located = quadTree.locate(point);
+            if (located == null) {
+                continue;
+            }
+            locatedCount++;
+            Vertex2D nearest = located.getVertex12();
+            boolean isImproved = true;
+            while (isImproved) {
+                isImproved = false;
+                for (Vertex2D neighbour : neighbours.get(getKey(nearest))) {
+                    if (neighbour.distanceSq(point) < nearest
+                            .distanceSq(point)) {
+                        nearest = neighbour;
+                        isImproved = true;
+                    }
+                }
+            }
+
+            double minDistance = Double.MAX_VALUE;
+            for (Vertex2D vertex : vertices) {
+                minDistance = Math.min(minDistance, vertex.distance(point));
+            }
+            assertEquals("Nearest vertex of " + point, minDistance, nearest
+                    .distance(point), 1.0e-9);
+        }
+        assertTrue(locatedCount > 4000);
+    }
+
+    /**
+     * Apply the change to the set of triangles and check that the result
+     * matches the triangulation of the manager
+     */
+    private void applyChange(Set<Triangle> triangles,
+                             TriangulationChange change,
+                             DelaunayManager manager) {
+        for (Triangle triangle : change.getRemovedTriangles()) {
+            assertTrue("Removed triangle is not in the triangulation",
+                    triangles.remove(triangle));
+        }
+        for (Triangle triangle : change.getAddedTriangles()) {
+            assertTrue("Added triangle is already in the triangulation",
+                    triangles.add(triangle));
+        }
+        assertEquals(new HashSet<Triangle>(manager.getTriangulation()),
+                triangles);
+    }
+
+    public void testDynamic() {
+        Vertex2D[] vertices = this.createVertices(500, 35L);
+        DelaunayManagerDynamic manager = new DelaunayManagerDynamic();
+        manager.init(vertices);
+        Set<Triangle> triangles = new HashSet<Triangle>(manager
+                .getTriangulation());
+        List<Vertex2D> live = new ArrayList<Vertex2D>(Arrays.asList(vertices));
+
+        // remove and insert vertices in turns, so that the indices of the
+        // removed vertices are reused
+        Random random = new Random(135L);
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 100; i++) {
+                Vertex2D vertex = live.remove(random.nextInt(live.size()));
+                this.applyChange(triangles, manager.removeVertex(vertex),
+                        manager);
+            }
+            Vertex2D[] current = live.toArray(new Vertex2D[live.size()]);
+            this.checkDelaunay(manager.getTriangulation(), current);
+            this.checkAllVerticesUsed(manager.getTriangulation(), current);
+
+            for (int i = 0; i < 100; i++) {
+                Vertex2D vertex = new Vertex2D(SIZE * random.nextDouble(),
+                        SIZE * random.nextDouble());
+                TriangulationChange change = manager.addVertex(vertex);
+                assertNotNull(change);
+                this.applyChange(triangles, change, manager);
+                live.add(vertex);
+            }
+            current = live.toArray(new Vertex2D[live.size()]);
+            this.checkDelaunay(manager.getTriangulation(), current);
+            this.checkAllVerticesUsed(manager.getTriangulation(), current);
+        }
+    }
+}
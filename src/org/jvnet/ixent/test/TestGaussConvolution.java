@@ -0,0 +1,102 @@
+package org.jvnet.ixent.test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.math.filters.GaussConvolution;
+
+/**
+ * Validates the separable smoothing of {@link GaussConvolution}.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestGaussConvolution extends TestCase {
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 29;
+
+    public TestGaussConvolution(String name) {
+        super(name);
+    }
+
+    private int[] createRandomRaster(long seed) {
+        Random random = new Random(seed);
+        int[] result = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (255 << 24) | random.nextInt(1 << 24);
+        }
+        return result;
+    }
+
+    public void testUniform() {
+        int color = (255 << 24) | (200 << 16) | (117 << 8) | 31;
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT,
+                BufferedImage.TYPE_INT_ARGB);
+        for (int col = 0; col < WIDTH; col++) {
+            for (int row = 0; row < HEIGHT; row++) {
+                image.setRGB(col, row, color);
+            }
+        }
+        for (int threadCount = 1; threadCount <= 3; threadCount++) {
+            GaussConvolution convolution = new GaussConvolution(2.0, 3);
+            convolution.setThreadCount(threadCount);
+            BufferedImage smoothed = convolution.getSmoothedImage(image);
+            for (int col = 0; col < WIDTH; col++) {
+                for (int row = 0; row < HEIGHT; row++) {
+                    assertEquals("Pixel " + col + ":" + row, color, smoothed
+                            .getRGB(col, row));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compare the separable passes with the direct convolution by the outer
+     * product of the 1-D kernel, normalized over the pixels inside the image
+     */
+    private void checkSeparable(double sigma, int size, long seed) {
+        int[] rgbs = this.createRandomRaster(seed);
+        GaussConvolution convolution = new GaussConvolution(sigma, size);
+        convolution.setThreadCount(1);
+        int[] sequential = convolution.getSmoothedRGB(rgbs, WIDTH, HEIGHT);
+        convolution.setThreadCount(3);
+        int[] parallel = convolution.getSmoothedRGB(rgbs, WIDTH, HEIGHT);
+
+        float[] kernel = convolution.getKernel1D();
+        assertEquals(2 * size + 1, kernel.length);
+        for (int col = 0; col < WIDTH; col++) {
+            for (int row = 0; row < HEIGHT; row++) {
+                double[] sums = new double[3];
+                double norm = 0.0;
+                for (int x = Math.max(0, col - size); x <= Math.min(
+                        WIDTH - 1, col + size); x++) {
+                    for (int y = Math.max(0, row - size); y <= Math.min(
+                            HEIGHT - 1, row + size); y++) {
+                        double weight = kernel[x - col + size]
+                                * kernel[y - row + size];
+                        int rgb = rgbs[y * WIDTH + x];
+                        sums[0] += weight * ((rgb >> 16) & 0xFF);
+                        sums[1] += weight * ((rgb >> 8) & 0xFF);
+                        sums[2] += weight * (rgb & 0xFF);
+                        norm += weight;
+                    }
+                }
+                int index = row * WIDTH + col;
+                String pixel = "Pixel " + col + ":" + row;
+                assertEquals(pixel, sequential[index], parallel[index]);
+                assertEquals(pixel, 0xFF, sequential[index] >>> 24);
+                for (int channel = 0; channel < 3; channel++) {
+                    int value = (sequential[index] >> (16 - 8 * channel))
+                            & 0xFF;
+                    assertEquals(pixel, sums[channel] / norm, value, 0.501);
+                }
+            }
+        }
+    }
+
+    public void testSeparable() {
+        this.checkSeparable(2.0, 3, 44L);
+        this.checkSeparable(1.0, 2, 144L);
+    }
+}
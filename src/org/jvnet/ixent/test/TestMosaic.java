@@ -0,0 +1,149 @@
+package org.jvnet.ixent.test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.ImageCallback;
+import org.jvnet.ixent.algorithms.graphics.engine.linkinfo.WeightedWrapper;
+import org.jvnet.ixent.algorithms.graphics.engine.npr.MosaicEngine;
+import org.jvnet.ixent.algorithms.graphics.engine.npr.MosaicEngine.PixelStatus;
+import org.jvnet.ixent.algorithms.graphics.segmentation.SegmentationInfo;
+import org.jvnet.ixent.algorithms.graphics.turbulence.DisplacementMatrix;
+import org.jvnet.ixent.graphics.IndexBitmapObject;
+import org.jvnet.ixent.math.coord.Polygon2D;
+import org.jvnet.ixent.math.coord.Square2D;
+import org.jvnet.ixent.util.ImageCreator;
+
+/**
+ * Validates the parallel tile placement of the mosaic engine.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestMosaic extends TestCase {
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 90;
+
+    public TestMosaic(String name) {
+        super(name);
+    }
+
+    protected void setUp() {
+        ImageCreator.imageCallback = new ImageCallback() {
+            public void imageUpdated(BufferedImage currImage) {
+            }
+        };
+    }
+
+    private BufferedImage createInputImage() {
+        BufferedImage result = new BufferedImage(WIDTH, HEIGHT,
+                BufferedImage.TYPE_INT_ARGB);
+        for (int col = 0; col < WIDTH; col++) {
+            for (int row = 0; row < HEIGHT; row++) {
+                int red = (255 * col) / WIDTH;
+                int blue = (255 * row) / HEIGHT;
+                result.setRGB(col, row, (255 << 24) | (red << 16) | blue);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Render the mosaic of an image with two straight features - a vertical
+     * and a horizontal line
+     */
+    private MosaicEngine render(int threadCount) {
+        IndexBitmapObject vicinity = new IndexBitmapObject(WIDTH, HEIGHT);
+        IndexBitmapObject gradient = new IndexBitmapObject(WIDTH, HEIGHT);
+        for (int col = 0; col < WIDTH; col++) {
+            for (int row = 0; row < HEIGHT; row++) {
+                int distX = Math.abs(col - 45);
+                int distY = Math.abs(row - 50);
+                vicinity.setValue(col, row, Math.min(12, Math.min(distX,
+                        distY)));
+                gradient.setValue(col, row, (distX < distY) ? 90 : 0);
+            }
+        }
+
+        BufferedImage inputImage = this.createInputImage();
+        ImageCreator.originalImage = inputImage;
+        MosaicEngine engine = new MosaicEngine();
+        engine.setSeed(30L);
+        engine.setThreadCount(threadCount);
+        engine.init(inputImage,
+                new WeightedWrapper<SegmentationInfo>(null, 0.0),
+                new WeightedWrapper<IndexBitmapObject>(null, 0.0),
+                new WeightedWrapper<List<Polygon2D>>(null, 0.0),
+                new WeightedWrapper<IndexBitmapObject>(vicinity, 1.0),
+                new WeightedWrapper<IndexBitmapObject>(gradient, 1.0),
+                new WeightedWrapper<DisplacementMatrix>(null, 0.0));
+        engine.getResultingImage();
+        return engine;
+    }
+
+    /**
+     * Check that no two squares placed without overlapping intersect
+     */
+    private void checkNoOverlaps(MosaicEngine engine) {
+        List<Square2D> squares = new ArrayList<Square2D>();
+        for (int col = 0; col < WIDTH; col++) {
+            for (int row = 0; row < HEIGHT; row++) {
+                if (engine.getPixelStatus()[col][row] == PixelStatus.marked) {
+                    squares.add(engine.getAllocatedSquares()[col][row]);
+                }
+            }
+        }
+        assertFalse(squares.isEmpty());
+        for (int i = 0; i < squares.size(); i++) {
+            Square2D square1 = squares.get(i);
+            for (int j = i + 1; j < squares.size(); j++) {
+                Square2D square2 = squares.get(j);
+                if ((square1.getMaxX() < square2.getMinX())
+                        || (square2.getMaxX() < square1.getMinX())
+                        || (square1.getMaxY() < square2.getMinY())
+                        || (square2.getMaxY() < square1.getMinY())) {
+                    continue;
+                }
+                assertFalse(square1 + " intersects " + square2, square1
+                        .intersects(square2, false));
+            }
+        }
+    }
+
+    public void testParallel() {
+        MosaicEngine engine2 = this.render(2);
+        MosaicEngine engine4 = this.render(4);
+        // render again on the same placement pool
+        engine4.getResultingImage();
+        this.checkNoOverlaps(engine2);
+        this.checkNoOverlaps(engine4);
+
+        for (int col = 0; col < WIDTH; col++) {
+            for (int row = 0; row < HEIGHT; row++) {
+                String pixel = "Pixel " + col + ":" + row;
+                assertEquals(pixel, engine2.getPixelStatus()[col][row],
+                        engine4.getPixelStatus()[col][row]);
+                Square2D square2 = engine2.getAllocatedSquares()[col][row];
+                Square2D square4 = engine4.getAllocatedSquares()[col][row];
+                if (square2 == null) {
+                    assertNull(pixel, square4);
+                }
+                else {
+                    assertNotNull(pixel, square4);
+                    assertEquals(pixel, square2.getCenter(), square4
+                            .getCenter());
+                    assertEquals(pixel, square2.getSide(), square4.getSide(),
+                            0.0);
+                    assertEquals(pixel, square2.getAngleInDegrees(), square4
+                            .getAngleInDegrees(), 0.0);
+                }
+            }
+        }
+    }
+
+    public void testSequential() {
+        this.checkNoOverlaps(this.render(1));
+    }
+}
@@ -0,0 +1,90 @@
+package org.jvnet.ixent.test;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.algorithms.geometry.spacefilling.SpaceFillingCurvePoissonDisk;
+import org.jvnet.ixent.graphics.IndexBitmapObject;
+import org.jvnet.ixent.math.coord.Vertex2D;
+
+/**
+ * Validates the seeded Poisson-disk sampling of the space filling curve.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestPoissonDisk extends TestCase {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+    private static final int CELL_RADIUS = 8;
+
+    public TestPoissonDisk(String name) {
+        super(name);
+    }
+
+    private Vertex2D[] getCenters(long seed) {
+        SpaceFillingCurvePoissonDisk curve = new SpaceFillingCurvePoissonDisk(
+                CELL_RADIUS, false);
+        curve.setSeed(seed);
+        curve.init(WIDTH, HEIGHT);
+        return curve.getCenters();
+    }
+
+    /**
+     * Vicinity map with a vertical feature in the middle of the image
+     */
+    private IndexBitmapObject createVicinityMap() {
+        IndexBitmapObject result = new IndexBitmapObject(WIDTH, HEIGHT);
+        for (int col = 0; col < WIDTH; col++) {
+            for (int row = 0; row < HEIGHT; row++) {
+                result.setValue(col, row, Math.min(CELL_RADIUS, Math
+                        .abs(col - WIDTH / 2)));
+            }
+        }
+        return result;
+    }
+
+    public void testSameSeed() {
+        Vertex2D[] centers1 = this.getCenters(38L);
+        Vertex2D[] centers2 = this.getCenters(38L);
+        assertTrue(centers1.length > 0);
+        assertEquals(centers1.length, centers2.length);
+        for (int i = 0; i < centers1.length; i++) {
+            assertEquals("Center " + i, centers1[i].getX(), centers2[i]
+                    .getX(), 0.0);
+            assertEquals("Center " + i, centers1[i].getY(), centers2[i]
+                    .getY(), 0.0);
+        }
+    }
+
+    public void testMinDistance() {
+        for (long seed = 0; seed < 5; seed++) {
+            Vertex2D[] centers = this.getCenters(seed);
+            for (int i = 0; i < centers.length; i++) {
+                for (int j = i + 1; j < centers.length; j++) {
+                    assertTrue("Centers " + centers[i] + " and " + centers[j],
+                            centers[i].distance(centers[j]) >= CELL_RADIUS);
+                }
+            }
+        }
+    }
+
+    public void testVicinityDistance() {
+        IndexBitmapObject vicinity = this.createVicinityMap();
+        SpaceFillingCurvePoissonDisk curve = new SpaceFillingCurvePoissonDisk(
+                CELL_RADIUS, false);
+        curve.setSeed(138L);
+        curve.init(vicinity);
+        Vertex2D[] centers = curve.getCenters();
+        int minRadius = curve.getMinDistanceBetweenCenters();
+        for (int i = 0; i < centers.length; i++) {
+            int radius1 = Math.max(minRadius, vicinity.getValue(
+                    (int) centers[i].getX(), (int) centers[i].getY()));
+            for (int j = i + 1; j < centers.length; j++) {
+                int radius2 = Math.max(minRadius, vicinity.getValue(
+                        (int) centers[j].getX(), (int) centers[j].getY()));
+                assertTrue("Centers " + centers[i] + " and " + centers[j],
+                        centers[i].distance(centers[j]) >= Math.max(radius1,
+                                radius2));
+            }
+        }
+    }
+}
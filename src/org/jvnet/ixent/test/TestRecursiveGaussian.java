@@ -0,0 +1,71 @@
+package org.jvnet.ixent.test;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.math.filters.RecursiveGaussian;
+
+/**
+ * Validates the recursive Gaussian filter against the sampled Gaussian.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestRecursiveGaussian extends TestCase {
+    public TestRecursiveGaussian(String name) {
+        super(name);
+    }
+
+    private void checkImpulse(double sigma) {
+        int size = 101;
+        int center = size / 2;
+        float[] raster = new float[size * size];
+        raster[center * size + center] = 1.0f;
+        float[] response = new RecursiveGaussian(sigma).getSmoothedRaster(
+                raster, size, size);
+
+        double sum = 0.0;
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                int dx = col - center;
+                int dy = row - center;
+                double expected = Math.exp(-(dx * dx + dy * dy)
+                        / (2.0 * sigma * sigma))
+                        / (2.0 * Math.PI * sigma * sigma);
+                float value = response[row * size + col];
+                assertEquals("Sigma " + sigma + " at " + col + ":" + row,
+                        expected, value, 5.0e-3);
+                sum += value;
+            }
+        }
+        assertEquals(1.0, sum, 1.0e-4);
+    }
+
+    public void testImpulse() {
+        this.checkImpulse(2.0);
+        this.checkImpulse(3.0);
+        this.checkImpulse(5.0);
+    }
+
+    public void testConstant() {
+        int width = 40;
+        int height = 30;
+        float[] raster = new float[width * height];
+        Arrays.fill(raster, 117.0f);
+        for (double sigma : new double[]{RecursiveGaussian.MIN_SIGMA, 1.0,
+                                          4.0, 20.0}) {
+            RecursiveGaussian gaussian = new RecursiveGaussian(sigma);
+            float[] smoothed = gaussian.getSmoothedRaster(raster, width,
+                    height);
+            float[] dxx = gaussian.getDerivative(raster, width, height, 2, 0);
+            float[][] gradient = gaussian.getGradient(raster, width, height);
+            for (int i = 0; i < raster.length; i++) {
+                assertEquals("Sigma " + sigma + " at " + i, 117.0,
+                        smoothed[i], 1.0e-3);
+                assertEquals(0.0, gradient[0][i], 1.0e-3);
+                assertEquals(0.0, gradient[1][i], 1.0e-3);
+                assertEquals(0.0, dxx[i], 1.0e-3);
+            }
+        }
+    }
+}
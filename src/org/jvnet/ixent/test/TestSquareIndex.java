@@ -0,0 +1,93 @@
+package org.jvnet.ixent.test;
+
+import java.awt.geom.Point2D;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.algorithms.graphics.engine.npr.mosaic.SquareIndex;
+import org.jvnet.ixent.math.coord.Square2D;
+
+/**
+ * Validates the intersection test of the mosaic tile index against
+ * {@link Square2D#intersects(List, boolean)}.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestSquareIndex extends TestCase {
+    private static final int SIZE = 100;
+    private static final double MAX_SIDE = 8.0;
+
+    public TestSquareIndex(String name) {
+        super(name);
+    }
+
+    /**
+     * Check that the index and the list of the tiles give the same answer for
+     * the candidate
+     */
+    private void checkIntersects(List<Square2D> squares, Square2D candidate) {
+        SquareIndex index = new SquareIndex(SIZE, SIZE, MAX_SIDE);
+        for (Square2D square : squares) {
+            index.add(square);
+        }
+        SquareIndex.Neighbourhood neighbourhood = index.getNeighbourhood(
+                candidate.getMinX(), candidate.getMinY(), candidate.getMaxX(),
+                candidate.getMaxY(), null);
+        assertEquals(candidate + " against " + squares, candidate.intersects(
+                squares, false), neighbourhood.intersects(candidate));
+    }
+
+    private void checkIntersects(Square2D square, Square2D candidate) {
+        List<Square2D> squares = new LinkedList<Square2D>();
+        squares.add(square);
+        this.checkIntersects(squares, candidate);
+    }
+
+    public void testRandom() {
+        Random random = new Random(29L);
+        for (int i = 0; i < 2000; i++) {
+            List<Square2D> squares = new LinkedList<Square2D>();
+            for (int j = 0; j < 5; j++) {
+                squares.add(new Square2D(new Point2D.Double(30.0 + 40.0
+                        * random.nextDouble(), 30.0 + 40.0 * random
+                        .nextDouble()), 1.0 + (MAX_SIDE - 1.0)
+                        * random.nextDouble(), 90.0 * random.nextDouble()));
+            }
+            Square2D candidate = new Square2D(new Point2D.Double(30.0 + 40.0
+                    * random.nextDouble(), 30.0 + 40.0 * random.nextDouble()),
+                    1.0 + (MAX_SIDE - 1.0) * random.nextDouble(), 90.0
+                    * random.nextDouble());
+            this.checkIntersects(squares, candidate);
+        }
+    }
+
+    public void testTouching() {
+        // shared part of a side
+        this.checkIntersects(new Square2D(new Point2D.Double(21.0, 22.0), 1.0,
+                0.0), new Square2D(new Point2D.Double(21.0, 23.5), 2.0, 0.0));
+        // shared corner
+        this.checkIntersects(new Square2D(new Point2D.Double(20.0, 20.0), 2.0,
+                0.0), new Square2D(new Point2D.Double(22.0, 22.0), 2.0, 0.0));
+        // corner on a side
+        this.checkIntersects(new Square2D(new Point2D.Double(20.0, 20.0), 2.0,
+                0.0), new Square2D(new Point2D.Double(22.0, 20.0), 2.0, 45.0));
+
+        // random tiles with a common side line, shifted along the side
+        Random random = new Random(129L);
+        for (int i = 0; i < 2000; i++) {
+            int side1 = 1 + random.nextInt(7);
+            int side2 = 1 + random.nextInt(7);
+            double shift = random.nextInt(2 * (side1 + side2) + 1)
+                    - (side1 + side2);
+            Point2D center1 = new Point2D.Double(40 + random.nextInt(20),
+                    40 + random.nextInt(20));
+            Point2D center2 = new Point2D.Double(center1.getX() + shift / 2.0,
+                    center1.getY() + (side1 + side2) / 2.0);
+            this.checkIntersects(new Square2D(center1, side1, 0.0),
+                    new Square2D(center2, side2, 0.0));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.jvnet.ixent.test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.graphics.IndexBitmapObject;
+import org.jvnet.ixent.math.filters.*;
+import org.jvnet.ixent.math.matrix.FeatureMatrix;
+
+/**
+ * Validates the steered responses of {@link SteerableFilterBank}.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestSteerableFilterBank extends TestCase {
+    private static final int WIDTH = 80;
+    private static final int HEIGHT = 60;
+
+    public TestSteerableFilterBank(String name) {
+        super(name);
+    }
+
+    private IndexBitmapObject createImage(long seed) {
+        Random random = new Random(seed);
+        IndexBitmapObject result = new IndexBitmapObject(WIDTH, HEIGHT);
+        for (int col = 0; col < WIDTH; col++) {
+            for (int row = 0; row < HEIGHT; row++) {
+                // smooth ramp with noise, so that all orientations respond
+                result.setValue(col, row, (col * 2 + row) % 200
+                        + random.nextInt(56));
+            }
+        }
+        return result;
+    }
+
+    public void testBasisCount() {
+        int count = new SteerableFilterBank(2.0, 1.0, 1, 2, 2, 2)
+                .getBasisFilters().length;
+        assertEquals(1 + 2 + 5 * 2, count);
+        assertEquals(count, new SteerableFilterBank(2.0, 1.0, 1, 2, 8, 2)
+                .getBasisFilters().length);
+        assertEquals(1 + 2 + 2 * 8 * 2, new SteerableFilterBank(2.0, 1.0, 1,
+                2, 8, 2).getResponseCount());
+    }
+
+    /**
+     * Compare the steered responses with the responses of the filters
+     * rotated to each orientation
+     */
+    public void testSteered() {
+        double sigmaStart = 1.5;
+        double sigmaDelta = 1.0;
+        int countOrientations = 6;
+        int countScales = 2;
+        SteerableFilterBank bank = new SteerableFilterBank(sigmaStart,
+                sigmaDelta, 1, 2, countOrientations, countScales);
+        Convolver convolver = new Convolver(this.createImage(47L));
+        FeatureMatrix steered = bank.getFeatureMatrix(convolver,
+                FeatureMatrix.Layout.INTERLEAVED);
+
+        Filter[] rotated = new Filter[bank.getResponseCount()];
+        int count = 0;
+        rotated[count++] = FilterFactory.getGaussianRegular(sigmaStart);
+        rotated[count++] = FilterFactory.getDOOGFilter(sigmaStart, 2.0);
+        rotated[count++] = FilterFactory.getDOOGFilter(sigmaStart
+                + sigmaDelta, 2.0);
+        for (int or = 0; or < countOrientations; or++) {
+            double theta = or * 180.0 / countOrientations;
+            for (int sc = 0; sc < countScales; sc++) {
+                double sigma = sigmaStart + sc * sigmaDelta;
+                rotated[count++] = FilterFactory
+                        .getOrientedGaussianDerivative(sigma, 1, theta);
+                rotated[count++] = FilterFactory
+                        .getOrientedGaussianDerivative(sigma, 2, theta);
+            }
+        }
+        FeatureMatrix direct = convolver.getFeatureMatrix(rotated,
+                FeatureMatrix.Layout.PLANAR);
+
+        assertEquals(direct.getDimensionality(), steered.getDimensionality());
+        for (int sample = 0; sample < WIDTH * HEIGHT; sample++) {
+            for (int f = 0; f < rotated.length; f++) {
+                double expected = direct.get(sample, f);
+                assertEquals("Response " + f + " of " + sample, expected,
+                        steered.get(sample, f), 1.0e-4 * Math.max(1.0, Math
+                                .abs(expected)));
+            }
+        }
+    }
+
+    /**
+     * Compare the responses of the recursive derivative basis with the
+     * convolved ones away from the image borders
+     */
+    public void testRecursive() {
+        SteerableFilterBank bank = new SteerableFilterBank(1.5, 1.0, 1, 1, 4,
+                2);
+        Convolver convolver = new Convolver(this.createImage(147L));
+        FeatureMatrix convolved = bank.getFeatureMatrix(convolver,
+                FeatureMatrix.Layout.PLANAR);
+        bank.setRecursive(true);
+        FeatureMatrix recursive = bank.getFeatureMatrix(convolver,
+                FeatureMatrix.Layout.PLANAR);
+
+        int margin = 15;
+        for (int f = 0; f < bank.getResponseCount(); f++) {
+            double max = 0.0;
+            for (int sample = 0; sample < WIDTH * HEIGHT; sample++) {
+                max = Math.max(max, Math.abs(convolved.get(sample, f)));
+            }
+            // the regular Gaussians and the differences of Gaussians are
+            // convolved in both modes
+            double tolerance = (f < 2) ? 0.0 : 0.1 * max;
+            for (int col = margin; col < WIDTH - margin; col++) {
+                for (int row = margin; row < HEIGHT - margin; row++) {
+                    int sample = row * WIDTH + col;
+                    assertEquals("Response " + f + " at " + col + ":" + row,
+                            convolved.get(sample, f), recursive.get(sample,
+                                    f), tolerance);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.jvnet.ixent.test;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.algorithms.geometry.delaunay.DelaunayManager;
+import org.jvnet.ixent.algorithms.geometry.delaunay.DelaunayManagerFactory;
+import org.jvnet.ixent.algorithms.geometry.delaunay.DelaunayManagerHalfEdge;
+import org.jvnet.ixent.algorithms.geometry.voronoi.VoronoiIndexDiagramInfo;
+import org.jvnet.ixent.algorithms.geometry.voronoi.VoronoiManager;
+import org.jvnet.ixent.math.coord.PolygonBuffer;
+import org.jvnet.ixent.math.coord.Rectangle2D;
+import org.jvnet.ixent.math.coord.Vertex2D;
+
+/**
+ * Validates the pixel-precision Voronoi diagrams and the exact Voronoi cells
+ * against the brute-force nearest center search.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestVoronoi extends TestCase {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    public TestVoronoi(String name) {
+        super(name);
+    }
+
+    /**
+     * Create centers at distinct pixels
+     */
+    private Point2D[] createCenters(int count, long seed) {
+        Random random = new Random(seed);
+        Set<Integer> usedPixels = new HashSet<Integer>();
+        Point2D[] result = new Point2D[count];
+        int centersCount = 0;
+        while (centersCount < count) {
+            int x = random.nextInt(WIDTH);
+            int y = random.nextInt(HEIGHT);
+            if (usedPixels.add(x * HEIGHT + y)) {
+                result[centersCount++] = new Point2D.Double(x, y);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check that each pixel is assigned to one of its nearest centers
+     */
+    private void checkNearest(VoronoiIndexDiagramInfo info) {
+        Point2D[] centers = info.getCenters();
+        int[][] diagramIndex = info.getDiagramIndex();
+        for (int col = 0; col < WIDTH; col++) {
+            for (int row = 0; row < HEIGHT; row++) {
+                double minDistance = Double.MAX_VALUE;
+                for (Point2D center : centers) {
+                    minDistance = Math.min(minDistance, center.distanceSq(col,
+                            row));
+                }
+                assertEquals("Pixel " + col + ":" + row, minDistance,
+                        centers[diagramIndex[col][row]].distanceSq(col, row),
+                        0.0);
+            }
+        }
+    }
+
+    public void testExact() {
+        Point2D[] centers = this.createCenters(300, 36L);
+        VoronoiIndexDiagramInfo sequential = VoronoiManager
+                .getVoronoiIndexDiagramExact(WIDTH, HEIGHT, centers, 1);
+        this.checkNearest(sequential);
+
+        VoronoiIndexDiagramInfo parallel = VoronoiManager
+                .getVoronoiIndexDiagramExact(WIDTH, HEIGHT, centers, 3);
+        for (int col = 0; col < WIDTH; col++) {
+            for (int row = 0; row < HEIGHT; row++) {
+                assertEquals("Pixel " + col + ":" + row, sequential
+                        .getDiagramIndex()[col][row], parallel
+                        .getDiagramIndex()[col][row]);
+            }
+        }
+        assertEquals(sequential.getMaxRadius(), parallel.getMaxRadius());
+    }
+
+    public void testByDistance() {
+        this.checkNearest(VoronoiManager.getVoronoiIndexDiagramByDistance(
+                WIDTH, HEIGHT, 12));
+    }
+
+    /**
+     * Compute the Voronoi cells of random centers inside the image
+     */
+    private PolygonBuffer getCells(Vertex2D[] centers) {
+        DelaunayManager oldManager = DelaunayManagerFactory.instance;
+        DelaunayManagerFactory.instance = new DelaunayManagerHalfEdge();
+        try {
+            return VoronoiManager.getVoronoiCells(centers, new Rectangle2D(0,
+                    0, WIDTH, HEIGHT));
+        } finally {
+            DelaunayManagerFactory.instance = oldManager;
+        }
+    }
+
+    private Vertex2D[] createVertices(int count, long seed) {
+        Random random = new Random(seed);
+        Vertex2D[] result = new Vertex2D[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = new Vertex2D(WIDTH * random.nextDouble(), HEIGHT
+                    * random.nextDouble());
+        }
+        return result;
+    }
+
+    public void testCellArea() {
+        PolygonBuffer cells = this.getCells(this.createVertices(300, 37L));
+        assertNotNull(cells);
+        assertEquals(300, cells.getPolygonCount());
+        double area = 0.0;
+        for (int i = 0; i < cells.getPolygonCount(); i++) {
+            assertTrue("Empty cell " + i, cells.getPointCount(i) >= 3);
+            area += Math.abs(cells.getPolygon(i).area());
+        }
+        assertEquals(WIDTH * HEIGHT, area, 1.0e-6 * WIDTH * HEIGHT);
+    }
+
+    public void testCellNearest() {
+        Vertex2D[] centers = this.createVertices(300, 137L);
+        PolygonBuffer cells = this.getCells(centers);
+        assertNotNull(cells);
+        Path2D[] paths = new Path2D[cells.getPolygonCount()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = new Path2D.Double();
+            paths[i].moveTo(cells.getX(i, 0), cells.getY(i, 0));
+            for (int j = 1; j < cells.getPointCount(i); j++) {
+                paths[i].lineTo(cells.getX(i, j), cells.getY(i, j));
+            }
+            paths[i].closePath();
+        }
+
+        Random random = new Random(237L);
+        for (int i = 0; i < 5000; i++) {
+            double x = WIDTH * random.nextDouble();
+            double y = HEIGHT * random.nextDouble();
+            int nearest = 0;
+            double minDistance = Double.MAX_VALUE;
+            double secondDistance = Double.MAX_VALUE;
+            for (int j = 0; j < centers.length; j++) {
+                double distance = centers[j].getPoint().distance(x, y);
+                if (distance < minDistance) {
+                    secondDistance = minDistance;
+                    minDistance = distance;
+                    nearest = j;
+                }
+                else {
+                    secondDistance = Math.min(secondDistance, distance);
+                }
+            }
+            if (secondDistance - minDistance < 1.0e-6) {
+                // on a cell boundary
+                continue;
+            }
+            assertTrue("Point " + x + ":" + y + " is not in the cell of "
+                    + centers[nearest], paths[nearest].contains(x, y));
+        }
+    }
+}
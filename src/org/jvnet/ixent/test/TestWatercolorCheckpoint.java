@@ -0,0 +1,131 @@
+package org.jvnet.ixent.test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.ImageCallback;
+import org.jvnet.ixent.algorithms.graphics.colorreduction.ColorReductorFactory;
+import org.jvnet.ixent.algorithms.graphics.colorreduction.MedianCutColorReductor;
+import org.jvnet.ixent.algorithms.graphics.engine.npr.WatercolorEngine;
+import org.jvnet.ixent.algorithms.graphics.engine.npr.watercolor.CheckpointCallback;
+import org.jvnet.ixent.util.ImageCreator;
+
+/**
+ * Validates that a watercolor simulation resumed from a checkpoint produces
+ * the same image as an uninterrupted simulation.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestWatercolorCheckpoint extends TestCase {
+    private static final int SIZE = 40;
+    private static final int CELL = 10;
+
+    /**
+     * Number of main loop iterations between checkpoints
+     */
+    private static final int CHECKPOINT_INTERVAL = 4;
+
+    private File checkpointFile;
+
+    /**
+     * Thrown from the checkpoint callback after the first checkpoint is
+     * written to simulate a crash
+     */
+    private static final class CrashException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    public TestWatercolorCheckpoint(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws IOException {
+        ImageCreator.imageCallback = new ImageCallback() {
+            public void imageUpdated(BufferedImage currImage) {
+            }
+        };
+        ColorReductorFactory.instance = new MedianCutColorReductor();
+        this.checkpointFile = File.createTempFile("watercolor", ".chk");
+        this.checkpointFile.delete();
+    }
+
+    protected void tearDown() {
+        this.checkpointFile.delete();
+    }
+
+    private WatercolorEngine createEngine(BufferedImage inputImage,
+                                          long paperSeed,
+                                          File checkpointFile) {
+        WatercolorEngine engine = new WatercolorEngine();
+        engine.setPaperSeed(paperSeed);
+        engine.setCheckpoint(checkpointFile, CHECKPOINT_INTERVAL);
+        WatercolorFixture.init(engine, inputImage, CELL);
+        return engine;
+    }
+
+    /**
+     * Run the simulation until the first checkpoint is written and abort it
+     */
+    private void renderUntilCheckpoint(BufferedImage inputImage,
+                                       long paperSeed) {
+        final int[] savedAt = new int[2];
+        WatercolorEngine engine = this.createEngine(inputImage, paperSeed,
+                this.checkpointFile);
+        engine.setCheckpointCallback(new CheckpointCallback() {
+            public void checkpointSaved(int glazeIndex, int iteration) {
+                savedAt[0] = glazeIndex;
+                savedAt[1] = iteration;
+                throw new CrashException();
+            }
+        });
+        try {
+            engine.getResultingImage();
+            fail("No checkpoint was written");
+        } catch (CrashException ce) {
+            // the simulation is aborted after the checkpoint
+        }
+        assertEquals(0, savedAt[0]);
+        assertEquals(CHECKPOINT_INTERVAL, savedAt[1]);
+        assertTrue(this.checkpointFile.isFile());
+    }
+
+    private void assertSameImage(BufferedImage expected,
+                                 BufferedImage actual) {
+        for (int col = 0; col < SIZE; col++) {
+            for (int row = 0; row < SIZE; row++) {
+                assertEquals("Pixel " + col + ":" + row, expected.getRGB(col,
+                        row), actual.getRGB(col, row));
+            }
+        }
+    }
+
+    public void testResume() {
+        BufferedImage inputImage = WatercolorFixture.createInputImage(SIZE,
+                CELL);
+        BufferedImage uninterrupted = this.createEngine(inputImage, 1L, null)
+                .getResultingImage();
+
+        this.renderUntilCheckpoint(inputImage, 1L);
+        BufferedImage resumed = this.createEngine(inputImage, 1L,
+                this.checkpointFile).getResultingImage();
+        assertFalse(this.checkpointFile.exists());
+        this.assertSameImage(uninterrupted, resumed);
+    }
+
+    public void testRejectMismatchingCheckpoint() {
+        BufferedImage inputImage = WatercolorFixture.createInputImage(SIZE,
+                CELL);
+        BufferedImage uninterrupted = this.createEngine(inputImage, 2L, null)
+                .getResultingImage();
+
+        // the checkpoint of a render with another paper seed must not be
+        // resumed
+        this.renderUntilCheckpoint(inputImage, 1L);
+        BufferedImage result = this.createEngine(inputImage, 2L,
+                this.checkpointFile).getResultingImage();
+        this.assertSameImage(uninterrupted, result);
+    }
+}
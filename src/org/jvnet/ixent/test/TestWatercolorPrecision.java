@@ -0,0 +1,82 @@
+package org.jvnet.ixent.test;
+
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+import org.jvnet.ixent.ImageCallback;
+import org.jvnet.ixent.algorithms.graphics.colorreduction.ColorReductorFactory;
+import org.jvnet.ixent.algorithms.graphics.colorreduction.MedianCutColorReductor;
+import org.jvnet.ixent.algorithms.graphics.engine.npr.WatercolorEngine;
+import org.jvnet.ixent.algorithms.graphics.engine.npr.watercolor.SimulationPrecision;
+import org.jvnet.ixent.util.ImageCreator;
+
+/**
+ * Validates the single-precision watercolor simulation against the
+ * double-precision one.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class TestWatercolorPrecision extends TestCase {
+    private static final int SIZE = 48;
+    private static final int CELL = 12;
+
+    /**
+     * Maximal allowed difference of a single color component. The outputs
+     * of both precisions are identical for this input, the tolerance allows
+     * a component to be rounded to the neighbouring 8-bit value
+     */
+    private static final int MAX_COMPONENT_DIFFERENCE = 1;
+
+    /**
+     * Maximal allowed average difference of color components
+     */
+    private static final double MAX_AVERAGE_DIFFERENCE = 0.01;
+
+    public TestWatercolorPrecision(String name) {
+        super(name);
+    }
+
+    private BufferedImage render(BufferedImage inputImage,
+                                 SimulationPrecision precision) {
+        ColorReductorFactory.instance = new MedianCutColorReductor();
+        WatercolorEngine engine = new WatercolorEngine();
+        engine.setPrecision(precision);
+        WatercolorFixture.init(engine, inputImage, CELL);
+        return engine.getResultingImage();
+    }
+
+    public void testFloatMatchesDouble() {
+        ImageCreator.imageCallback = new ImageCallback() {
+            public void imageUpdated(BufferedImage currImage) {
+            }
+        };
+        BufferedImage inputImage = WatercolorFixture.createInputImage(SIZE,
+                CELL);
+        BufferedImage doubleResult = this.render(inputImage,
+                SimulationPrecision.doublePrecision);
+        BufferedImage floatResult = this.render(inputImage,
+                SimulationPrecision.floatPrecision);
+
+        int maxDifference = 0;
+        long totalDifference = 0;
+        for (int col = 0; col < SIZE; col++) {
+            for (int row = 0; row < SIZE; row++) {
+                int rgb1 = doubleResult.getRGB(col, row);
+                int rgb2 = floatResult.getRGB(col, row);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    int diff = Math.abs(((rgb1 >> shift) & 0xFF)
+                            - ((rgb2 >> shift) & 0xFF));
+                    maxDifference = Math.max(maxDifference, diff);
+                    totalDifference += diff;
+                }
+            }
+        }
+        double averageDifference = (double) totalDifference
+                / (3.0 * SIZE * SIZE);
+        assertTrue("Maximal difference " + maxDifference,
+                maxDifference <= MAX_COMPONENT_DIFFERENCE);
+        assertTrue("Average difference " + averageDifference,
+                averageDifference <= MAX_AVERAGE_DIFFERENCE);
+    }
+}
@@ -0,0 +1,87 @@
+package org.jvnet.ixent.test;
+
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.jvnet.ixent.algorithms.graphics.engine.linkinfo.WeightedWrapper;
+import org.jvnet.ixent.algorithms.graphics.engine.npr.WatercolorEngine;
+import org.jvnet.ixent.algorithms.graphics.segmentation.SegmentationInfo;
+import org.jvnet.ixent.algorithms.graphics.turbulence.DisplacementMatrix;
+import org.jvnet.ixent.graphics.IndexBitmapObject;
+import org.jvnet.ixent.math.coord.Polygon2D;
+
+/**
+ * Input of the watercolor engine tests - a square image of colour gradients
+ * with a checkerboard, and the tesselation of the image into the checkerboard
+ * cells.
+ *
+ * @author Kirill Grouchnikov
+ */
+public class WatercolorFixture {
+    // make all calls be static
+    private WatercolorFixture() {
+    }
+
+    /**
+     * @param size image width and height
+     * @param cell checkerboard cell size
+     * @return input image
+     */
+    public static BufferedImage createInputImage(int size, int cell) {
+        BufferedImage result = new BufferedImage(size, size,
+                BufferedImage.TYPE_INT_ARGB);
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                int red = (255 * col) / size;
+                int green = (255 * row) / size;
+                int blue = ((col / cell + row / cell) % 2 == 0) ? 200 : 40;
+                result.setRGB(col, row, (255 << 24) | (red << 16)
+                        | (green << 8) | blue);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param size image width and height
+     * @param cell checkerboard cell size
+     * @return checkerboard cells
+     */
+    public static List<Polygon2D> createTesselation(int size, int cell) {
+        List<Polygon2D> result = new LinkedList<Polygon2D>();
+        for (int x = 0; x < size; x += cell) {
+            for (int y = 0; y < size; y += cell) {
+                result.add(new Polygon2D(new Point2D[]{
+                        new Point2D.Double(x, y),
+                        new Point2D.Double(x + cell, y),
+                        new Point2D.Double(x + cell, y + cell),
+                        new Point2D.Double(x, y + cell)}));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Initialize the engine with the image and its tesselation as the only
+     * links
+     *
+     * @param engine     engine
+     * @param inputImage image created by {@link #createInputImage(int, int)}
+     * @param cell       checkerboard cell size
+     */
+    public static void init(WatercolorEngine engine, BufferedImage inputImage,
+                            int cell) {
+        int size = inputImage.getWidth();
+        engine.init(inputImage,
+                new WeightedWrapper<SegmentationInfo>(null, 0.0),
+                new WeightedWrapper<IndexBitmapObject>(new IndexBitmapObject(
+                        size, size), 0.0),
+                new WeightedWrapper<List<Polygon2D>>(createTesselation(size,
+                        cell), 0.5),
+                new WeightedWrapper<IndexBitmapObject>(null, 0.0),
+                new WeightedWrapper<IndexBitmapObject>(null, 0.0),
+                new WeightedWrapper<DisplacementMatrix>(null, 0.0));
+    }
+}
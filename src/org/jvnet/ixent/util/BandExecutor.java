@@ -0,0 +1,110 @@
+package org.jvnet.ixent.util;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs a task concurrently on contiguous bands of an index range (rows,
+ * columns, nodes and so on) and waits for its completion. An exception
+ * thrown by the task is rethrown in the calling thread.
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class BandExecutor {
+    /**
+     * Task on a band of indices
+     */
+    public static abstract class BandTask {
+        /**
+         * @param from first index (inclusive) of the band
+         * @param to   last index (exclusive) of the band
+         */
+        public abstract void process(int from, int to);
+    }
+
+    private BandExecutor() {
+    }
+
+    /**
+     * Split the range into at most <code>threadCount</code> bands and process
+     * them concurrently on a new thread pool that is shut down on completion
+     *
+     * @param count       range size
+     * @param threadCount number of threads
+     * @param task        band task
+     */
+    public static void processInBands(int count, int threadCount,
+                                      BandTask task) {
+        int bandCount = Math.min(threadCount, count);
+        if (bandCount <= 1) {
+            task.process(0, count);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(bandCount);
+        try {
+            processInBands(executor, count, bandCount, task);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Split the range into at most <code>bandCount</code> bands and process
+     * them concurrently on the specified executor
+     *
+     * @param executor  executor, <code>null</code> to process the whole range
+     *                  in the calling thread
+     * @param count     range size
+     * @param bandCount number of bands
+     * @param task      band task
+     */
+    public static void processInBands(ExecutorService executor, int count,
+                                      int bandCount, final BandTask task) {
+        bandCount = Math.min(bandCount, count);
+        if ((executor == null) || (bandCount <= 1)) {
+            task.process(0, count);
+            return;
+        }
+        List<Future<?>> futures = new LinkedList<Future<?>>();
+        for (int band = 0; band < bandCount; band++) {
+            final int from = (int) ((long) count * band / bandCount);
+            final int to = (int) ((long) count * (band + 1) / bandCount);
+            futures.add(executor.submit(new Runnable() {
+                public void run() {
+                    task.process(from, to);
+                }
+            }));
+        }
+        waitFor(futures);
+    }
+
+    /**
+     * Wait for completion of all the specified tasks. If a task has failed,
+     * its exception is rethrown (checked exceptions are wrapped in
+     * {@link IllegalStateException}).
+     *
+     * @param futures pending results of the tasks
+     * @throws IllegalStateException if the calling thread is interrupted
+     */
+    public static void waitFor(List<Future<?>> futures) {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while waiting for the tasks");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.jvnet.ixent.util;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A first-in first-out queue of primitive <code>int</code> values backed by a
+ * growable ring buffer
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class IntQueue {
+    private int[] values;
+
+    /**
+     * Index of the first (oldest) value
+     */
+    private int head;
+
+    private int size;
+
+    /**
+     * Construct empty queue
+     *
+     * @param initialCapacity initial capacity
+     * @throws IllegalArgumentException if initial capacity is not positive
+     */
+    public IntQueue(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Initial capacity must be positive");
+        }
+        this.values = new int[initialCapacity];
+        this.head = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Add value to the end of this queue
+     *
+     * @param value value to add
+     */
+    public void add(int value) {
+        if (this.size == this.values.length) {
+            int[] newValues = new int[2 * this.values.length];
+            int firstPart = this.values.length - this.head;
+            System.arraycopy(this.values, this.head, newValues, 0, firstPart);
+            System.arraycopy(this.values, 0, newValues, firstPart, this.head);
+            this.values = newValues;
+            this.head = 0;
+        }
+        int tail = this.head + this.size;
+        if (tail >= this.values.length) {
+            tail -= this.values.length;
+        }
+        this.values[tail] = value;
+        this.size++;
+    }
+
+    /**
+     * Remove value from the beginning of this queue
+     *
+     * @return the removed value
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public int remove() {
+        if (this.size == 0) {
+            throw new NoSuchElementException("Queue is empty");
+        }
+        int result = this.values[this.head];
+        this.head++;
+        if (this.head == this.values.length) {
+            this.head = 0;
+        }
+        this.size--;
+        return result;
+    }
+
+    /**
+     * @return number of values in this queue
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return <code>true</code> if this queue is empty
+     */
+    public boolean isEmpty() {
+        return (this.size == 0);
+    }
+
+    /**
+     * Remove all values from this queue
+     */
+    public void clear() {
+        this.head = 0;
+        this.size = 0;
+    }
+}
@@ -0,0 +1,392 @@
+package org.jvnet.ixent.util;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+
+import org.jvnet.ixent.graphics.objects.Triangle;
+import org.jvnet.ixent.math.coord.Rectangle2D;
+import org.jvnet.ixent.math.coord.Vertex2D;
+
+/**
+ * Linear quad tree of triangles. The cells are not objects: the cells of
+ * each level are numbered by the Morton code (bit interleaving) of their
+ * column and row, and all levels are laid out in one array. A cell gets its
+ * <code>int</code> bucket of triangle slots only when the first triangle is
+ * added to it.<br>
+ * <p/>
+ * A triangle is put in the deepest cell that contains the bounding box of
+ * its circumcircle. The triangles that straddle the boundary of two large
+ * cells are put in the second tree that is shifted relatively to the first
+ * one, whichever of the two has the deeper cell. The slot of each triangle
+ * is stored in its <code>locatorHelperObject1</code>.
+ *
+ * @author Kirill Grouchnikov
+ */
+public final class LinearQuadTree {
+    /**
+     * Maximal number of levels below the root
+     */
+    public static final int MAX_LEVELS = 12;
+
+    private int maxLevels;
+
+    private boolean isExact;
+
+    /**
+     * Left / top corner and size of the regular tree
+     */
+    private double minX, minY, width, height;
+
+    /**
+     * Left / top corner of the shifted tree. The size is
+     * <code>SHIFTED_SCALE</code> times the size of the regular tree.
+     */
+    private double shiftedMinX, shiftedMinY;
+
+    private static final double SHIFTED_SCALE = 4.0 / 3.0;
+
+    /**
+     * Index of the first cell of each level in the cell arrays (of one tree)
+     */
+    private int[] levelStarts;
+
+    /**
+     * Triangle slots in each cell. The cells of the regular tree are followed
+     * by the cells of the shifted tree. Null for cells without triangles.
+     */
+    private int[][] cellSlots;
+
+    private int[] cellSizes;
+
+    private Triangle[] triangles;
+
+    /**
+     * Cell of each triangle slot
+     */
+    private int[] slotCells;
+
+    /**
+     * Position of each triangle slot in its cell
+     */
+    private int[] slotPositions;
+
+    private int slotCount;
+
+    private int[] freeSlots;
+
+    private int freeSlotCount;
+
+    /**
+     * @param boundingRectangle bounding rectangle of the tree
+     * @param maxLevels         number of levels below the root. Is clamped to
+     *                          <code>MAX_LEVELS</code>
+     * @param isExact           if <code>true</code>, <code>locate</code>
+     *                          returns the triangle that contains the point,
+     *                          otherwise any triangle whose circumcircle
+     *                          contains the point
+     */
+    public LinearQuadTree(Rectangle2D boundingRectangle, int maxLevels,
+                          boolean isExact) {
+        this.maxLevels = Math.max(0, Math.min(maxLevels, MAX_LEVELS));
+        this.isExact = isExact;
+        this.minX = boundingRectangle.getPointTL().getX();
+        this.minY = boundingRectangle.getPointTL().getY();
+        this.width = boundingRectangle.getPointBR().getX() - this.minX;
+        this.height = boundingRectangle.getPointBR().getY() - this.minY;
+        this.shiftedMinX = this.minX - this.width / 3.0;
+        this.shiftedMinY = this.minY - this.height / 3.0;
+
+        this.levelStarts = new int[this.maxLevels + 2];
+        for (int level = 0; level <= this.maxLevels; level++) {
+            this.levelStarts[level + 1] = this.levelStarts[level]
+                    + (1 << (2 * level));
+        }
+        int treeCellCount = this.levelStarts[this.maxLevels + 1];
+        this.cellSlots = new int[2 * treeCellCount][];
+        this.cellSizes = new int[2 * treeCellCount];
+
+        this.triangles = new Triangle[16];
+        this.slotCells = new int[16];
+        this.slotPositions = new int[16];
+        this.freeSlots = new int[16];
+        this.slotCount = 0;
+        this.freeSlotCount = 0;
+    }
+
+    /**
+     * Spread the lower 16 bits of the value to the even bits
+     *
+     * @param value value
+     * @return spread value
+     */
+    private static int spreadBits(int value) {
+        value &= 0x0000FFFF;
+        value = (value | (value << 8)) & 0x00FF00FF;
+        value = (value | (value << 4)) & 0x0F0F0F0F;
+        value = (value | (value << 2)) & 0x33333333;
+        value = (value | (value << 1)) & 0x55555555;
+        return value;
+    }
+
+    /**
+     * @param column cell column
+     * @param row    cell row
+     * @return Morton code of the cell
+     */
+    public static int getMortonCode(int column, int row) {
+        return spreadBits(column) | (spreadBits(row) << 1);
+    }
+
+    /**
+     * Get the finest level column or row of the coordinate
+     *
+     * @param value  coordinate relative to the tree corner
+     * @param extent tree size along the coordinate
+     * @return column or row, -1 if outside the tree
+     */
+    private int getFinestIndex(double value, double extent) {
+        if ((value < 0.0) || (value > extent)) {
+            return -1;
+        }
+        int cells = 1 << this.maxLevels;
+        return Math.min(cells - 1, (int) (value / extent * cells));
+    }
+
+    /**
+     * Get the deepest cell of the tree that contains the box
+     *
+     * @param treeMinX left corner of the tree
+     * @param treeMinY top corner of the tree
+     * @param scale    size of the tree relative to the regular tree
+     * @param xL       left side of the box
+     * @param xR       right side of the box
+     * @param yT       top side of the box
+     * @param yB       bottom side of the box
+     * @return cell index in the tree
+     */
+    private int getCell(double treeMinX, double treeMinY, double scale,
+                        double xL, double xR, double yT, double yB) {
+        double treeWidth = scale * this.width;
+        double treeHeight = scale * this.height;
+        int colL = this.getFinestIndex(xL - treeMinX, treeWidth);
+        int colR = this.getFinestIndex(xR - treeMinX, treeWidth);
+        int rowT = this.getFinestIndex(yT - treeMinY, treeHeight);
+        int rowB = this.getFinestIndex(yB - treeMinY, treeHeight);
+        if ((colL < 0) || (colR < 0) || (rowT < 0) || (rowB < 0)) {
+            return 0;
+        }
+        // the box corners share the cells above the highest differing bit
+        int differingBits = (colL ^ colR) | (rowT ^ rowB);
+        int shift = 32 - Integer.numberOfLeadingZeros(differingBits);
+        int level = this.maxLevels - shift;
+        return this.levelStarts[level]
+                + getMortonCode(colL >> shift, rowT >> shift);
+    }
+
+    /**
+     * Insert triangle
+     *
+     * @param triangle triangle
+     */
+    public void insert(Triangle triangle) {
+        Point2D circCenter = triangle.getCircCenter();
+        double circRadius = triangle.getCircRadius();
+        double xL = circCenter.getX() - circRadius;
+        double xR = circCenter.getX() + circRadius;
+        double yT = circCenter.getY() - circRadius;
+        double yB = circCenter.getY() + circRadius;
+        int regularCell = this.getCell(this.minX, this.minY, 1.0, xL, xR, yT,
+                yB);
+        int shiftedCell = this.getCell(this.shiftedMinX, this.shiftedMinY,
+                SHIFTED_SCALE, xL, xR, yT, yB);
+        int cell = regularCell;
+        if (this.getLevel(shiftedCell) > this.getLevel(regularCell)) {
+            cell = this.levelStarts[this.maxLevels + 1] + shiftedCell;
+        }
+
+        int slot;
+        if (this.freeSlotCount > 0) {
+            slot = this.freeSlots[--this.freeSlotCount];
+        }
+        else {
+            if (this.slotCount == this.triangles.length) {
+                int newLength = 2 * this.slotCount;
+                this.triangles = Arrays.copyOf(this.triangles, newLength);
+                this.slotCells = Arrays.copyOf(this.slotCells, newLength);
+                this.slotPositions = Arrays.copyOf(this.slotPositions,
+                        newLength);
+            }
+            slot = this.slotCount++;
+        }
+
+        int[] slots = this.cellSlots[cell];
+        int size = this.cellSizes[cell];
+        if (slots == null) {
+            slots = new int[4];
+            this.cellSlots[cell] = slots;
+        }
+        else if (size == slots.length) {
+            slots = Arrays.copyOf(slots, 2 * size);
+            this.cellSlots[cell] = slots;
+        }
+        slots[size] = slot;
+        this.cellSizes[cell] = size + 1;
+
+        this.triangles[slot] = triangle;
+        this.slotCells[slot] = cell;
+        this.slotPositions[slot] = size;
+        triangle.setLocatorHelperObject1(slot);
+    }
+
+    /**
+     * Delete triangle
+     *
+     * @param triangle triangle previously inserted into this tree
+     */
+    public void delete(Triangle triangle) {
+        int slot = (Integer) triangle.getLocatorHelperObject1();
+        int cell = this.slotCells[slot];
+        int position = this.slotPositions[slot];
+        int[] slots = this.cellSlots[cell];
+        int last = slots[--this.cellSizes[cell]];
+        slots[position] = last;
+        this.slotPositions[last] = position;
+
+        this.triangles[slot] = null;
+        triangle.setLocatorHelperObject1(null);
+        if (this.freeSlotCount == this.freeSlots.length) {
+            this.freeSlots = Arrays.copyOf(this.freeSlots,
+                    2 * this.freeSlotCount);
+        }
+        this.freeSlots[this.freeSlotCount++] = slot;
+    }
+
+    /**
+     * @param cell cell index in a tree
+     * @return level of the cell
+     */
+    private int getLevel(int cell) {
+        int level = 0;
+        while (cell >= this.levelStarts[level + 1]) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Find the matching triangle in the cell
+     *
+     * @param cell  cell index
+     * @param point point
+     * @return matching triangle, null if none
+     */
+    private Triangle locateInCell(int cell, Vertex2D point) {
+        int[] slots = this.cellSlots[cell];
+        int size = this.cellSizes[cell];
+        for (int i = 0; i < size; i++) {
+            Triangle triangle = this.triangles[slots[i]];
+            if (this.isExact) {
+                if (triangle.isPointInside(point)) {
+                    return triangle;
+                }
+            }
+            else {
+                if (triangle.isPointInCircumcircle(point)) {
+                    return triangle;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the matching triangle in the cells of one tree that contain the
+     * point, from the finest level up to the first level
+     *
+     * @param treeStart index of the tree root cell
+     * @param treeMinX  left corner of the tree
+     * @param treeMinY  top corner of the tree
+     * @param scale     size of the tree relative to the regular tree
+     * @param point     point
+     * @return matching triangle, null if none
+     */
+    private Triangle locateExceptRootLevel(int treeStart, double treeMinX,
+                                           double treeMinY, double scale,
+                                           Vertex2D point) {
+        int column = this.getFinestIndex(point.getX() - treeMinX,
+                scale * this.width);
+        int row = this.getFinestIndex(point.getY() - treeMinY,
+                scale * this.height);
+        if ((column < 0) || (row < 0)) {
+            return null;
+        }
+        int code = getMortonCode(column, row);
+        for (int level = this.maxLevels; level > 0; level--) {
+            // the parent code drops the lowest two bits
+            int cell = treeStart + this.levelStarts[level]
+                    + (code >> (2 * (this.maxLevels - level)));
+            if (this.cellSizes[cell] > 0) {
+                Triangle result = this.locateInCell(cell, point);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Locate triangle for the point
+     *
+     * @param point point
+     * @return the triangle that contains the point (if this tree is exact) or
+     *         any triangle whose circumcircle contains the point, null if none
+     */
+    public Triangle locate(Vertex2D point) {
+        int shiftedStart = this.levelStarts[this.maxLevels + 1];
+        Triangle result = this.locateExceptRootLevel(0, this.minX, this.minY,
+                1.0, point);
+        if (result != null) {
+            return result;
+        }
+        result = this.locateExceptRootLevel(shiftedStart, this.shiftedMinX,
+                this.shiftedMinY, SHIFTED_SCALE, point);
+        if (result != null) {
+            return result;
+        }
+        result = this.locateInCell(0, point);
+        if (result != null) {
+            return result;
+        }
+        return this.locateInCell(shiftedStart, point);
+    }
+
+    /**
+     * @return number of triangles in this tree
+     */
+    public int size() {
+        return this.slotCount - this.freeSlotCount;
+    }
+
+    public void dumpInfo() {
+        int treeCellCount = this.levelStarts[this.maxLevels + 1];
+        for (int tree = 0; tree < 2; tree++) {
+            System.out.println((tree == 0) ? "REGULAR QUADTREE"
+                    : "SHIFTED QUADTREE");
+            for (int level = 0; level <= this.maxLevels; level++) {
+                int triangleCount = 0;
+                int cellCount = 0;
+                for (int cell = this.levelStarts[level];
+                     cell < this.levelStarts[level + 1]; cell++) {
+                    int index = tree * treeCellCount + cell;
+                    if (this.cellSlots[index] != null) {
+                        cellCount++;
+                        triangleCount += this.cellSizes[index];
+                    }
+                }
+                System.out.println("level " + level + ": " + triangleCount
+                        + " triangles in " + cellCount + " cells");
+            }
+        }
+    }
+}